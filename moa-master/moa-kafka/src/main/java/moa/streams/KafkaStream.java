@@ -20,6 +20,7 @@
 
 package moa.streams;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.StringOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
@@ -32,25 +33,28 @@ import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
+import moa.util.CompactInstanceFormat;
+import moa.util.InstanceSerializer;
 import moa.util.KafkaUtils;
 import moa.util.ObjectDeserializer;
 import moa.util.ObjectSerializer;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.LongDeserializer;
 
 import java.io.Closeable;
-import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 
 /**
  * Instance stream which consumes instances from a Kafka topic.
@@ -62,7 +66,9 @@ import java.util.Queue;
  *   - The stream is considered ended when a record with a null
  *     value is found.
  *   - The serialised form of the instances is using Java's own
- *     serialisation tools (i.e. {@link ObjectSerializer}).
+ *     serialisation tools (i.e. {@link ObjectSerializer}), or the
+ *     compact format of {@link InstanceSerializer} if the compact
+ *     option is set.
  *
  * @author Corey Sterling (csterlin at waikato dot ac dot nz)
  */
@@ -86,13 +92,26 @@ public class KafkaStream extends AbstractOptionHandler implements
   public StringOption portOption = new StringOption("port", 'p',
     "The Kafka broker port", "9092");
 
+  // Whether the topic was written in the compact format
+  public FlagOption compactOption = new FlagOption("compact", 'c',
+    "Read instances written in the compact binary format");
+
   // -- TRANSIENTS -- //
 
   // The consumer which will retrieve records from the Kafka stream
-  protected transient KafkaConsumer<Long, Instance> m_Consumer = null;
+  protected transient Consumer<Long, Object> m_Consumer = null;
+
+  // A buffer of instances retrieved from the Kafka stream, reused between polls
+  protected transient Instance[] m_InstanceBuffer = null;
+
+  // The number of instances retrieved by the last poll
+  protected transient int m_BufferSize = 0;
 
-  // A buffer of instances retrieved from the Kafka stream
-  protected transient Queue<Instance> m_InstanceBuffer = null;
+  // The position of the next instance in the buffer
+  protected transient int m_BufferPosition = 0;
+
+  // The decoder of the records in the compact format
+  protected transient CompactInstanceFormat m_Format = null;
 
   // Whether we have reached the end of the stream
   protected transient boolean m_EndOfStreamReached = false;
@@ -124,7 +143,7 @@ public class KafkaStream extends AbstractOptionHandler implements
     // If we've reached the end of the stream, what's in the buffer is all
     // that remain
     if (m_EndOfStreamReached)
-      return m_InstanceBuffer.size();
+      return m_BufferSize - m_BufferPosition;
 
     // Other than that we can't know this
     return -1;
@@ -146,8 +165,10 @@ public class KafkaStream extends AbstractOptionHandler implements
     if (bufferIsEmpty())
       return null;
 
-    // Return the next instance from the buffer
-    return new InstanceExample(m_InstanceBuffer.remove());
+    // Return the next instance from the buffer, releasing its slot
+    Instance instance = m_InstanceBuffer[m_BufferPosition];
+    m_InstanceBuffer[m_BufferPosition++] = null;
+    return new InstanceExample(instance);
   }
 
   @Override
@@ -161,7 +182,10 @@ public class KafkaStream extends AbstractOptionHandler implements
     restartConsumer();
 
     // Throw away any buffered instances
-    m_InstanceBuffer = null;
+    if (m_InstanceBuffer != null)
+      Arrays.fill(m_InstanceBuffer, null);
+    m_BufferSize = 0;
+    m_BufferPosition = 0;
 
     // Mark the stream as not complete
     m_EndOfStreamReached = false;
@@ -207,7 +231,7 @@ public class KafkaStream extends AbstractOptionHandler implements
       return;
 
     // Create the consumer
-    m_Consumer = new KafkaConsumer<>(createConsumerConfiguration());
+    m_Consumer = createConsumer();
 
     // Subscribe to the given topic
     m_Consumer.subscribe(Collections.singletonList(topicOption.getValue()));
@@ -216,6 +240,13 @@ public class KafkaStream extends AbstractOptionHandler implements
     restartConsumer();
   }
 
+  /**
+   * Creates the Kafka consumer.
+   */
+  protected Consumer<Long, Object> createConsumer() {
+    return new KafkaConsumer<>(createConsumerConfiguration());
+  }
+
   /**
    * Creates the configuration for the Kafka consumer.
    */
@@ -223,7 +254,8 @@ public class KafkaStream extends AbstractOptionHandler implements
     Map<String, Object> config = new HashMap<>();
 
     config.put("key.deserializer", LongDeserializer.class);
-    config.put("value.deserializer", ObjectDeserializer.class);
+    // Compact records are decoded by the stream, a whole poll at a time
+    config.put("value.deserializer", compactOption.isSet() ? ByteArrayDeserializer.class : ObjectDeserializer.class);
     config.put("bootstrap.servers", broker());
     config.put("fetch.min.bytes", 1);
     config.put("group.id", KafkaUtils.uniqueGroupIDString(this));
@@ -296,33 +328,48 @@ public class KafkaStream extends AbstractOptionHandler implements
     // Make sure we have a consumer instance to use
     establishConsumer();
 
-    // If the buffer isn't there, create it
-    if (m_InstanceBuffer == null)
-      m_InstanceBuffer = new LinkedList<>();
-
     // Get some records from Kafka
-    ConsumerRecords<Long, Instance> records = m_Consumer.poll(KafkaUtils.WAIT_AS_LONG_AS_POSSIBLE);
+    ConsumerRecords<Long, Object> records = m_Consumer.poll(KafkaUtils.WAIT_AS_LONG_AS_POSSIBLE);
 
-    // Add each instance to the buffer
-    for (ConsumerRecord<Long, Instance> record : records) {
-      // Extract the instance from the record
-      Instance instance = record.value();
+    // Make sure the buffer can hold the whole poll
+    if (m_InstanceBuffer == null || m_InstanceBuffer.length < records.count())
+      m_InstanceBuffer = new Instance[Math.max(records.count(), 16)];
+    m_BufferSize = 0;
+    m_BufferPosition = 0;
+
+    // Decode each record into the buffer
+    for (ConsumerRecord<Long, Object> record : records) {
+      // Extract the value from the record
+      Object value = record.value();
 
       // If it's null, this is the sentinel that the end of stream has been reached
-      if (instance == null) {
+      if (value == null) {
         m_EndOfStreamReached = true;
         close();
         break;
       }
 
       // Add the instance to the buffer
-      m_InstanceBuffer.add(record.value());
+      m_InstanceBuffer[m_BufferSize++] = decode(value);
     }
 
     // Save the header if we can and need to
     cacheHeaderIfNecessary();
   }
 
+  /**
+   * Gets the instance held by the value of a record.
+   */
+  protected Instance decode(Object value) {
+    if (!compactOption.isSet())
+      return (Instance) value;
+
+    if (m_Format == null)
+      m_Format = new CompactInstanceFormat();
+
+    return m_Format.decode((byte[]) value);
+  }
+
   /**
    * Caches the header for these instances if it hasn't already.
    */
@@ -331,13 +378,13 @@ public class KafkaStream extends AbstractOptionHandler implements
     if (m_Header != null)
       return;
 
-    // Get one of the instances
-    Instance instance = m_InstanceBuffer.peek();
-
-    // If there isn't one (should always be at this point), abort
-    if (instance == null)
+    // If there isn't an instance (should always be one at this point), abort
+    if (bufferIsEmpty())
       return;
 
+    // Get one of the instances
+    Instance instance = m_InstanceBuffer[m_BufferPosition];
+
     // Get it's dataset
     Instances dataset = instance.dataset();
 
@@ -352,6 +399,6 @@ public class KafkaStream extends AbstractOptionHandler implements
    * Whether the instance buffer is empty.
    */
   protected boolean bufferIsEmpty() {
-    return m_InstanceBuffer == null || m_InstanceBuffer.peek() == null;
+    return m_BufferPosition >= m_BufferSize;
   }
 }
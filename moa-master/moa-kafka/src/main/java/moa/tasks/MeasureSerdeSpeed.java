@@ -0,0 +1,144 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MeasureSerdeSpeed.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package moa.tasks;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningEvaluation;
+import moa.options.ClassOption;
+import moa.streams.InstanceStream;
+import moa.util.InstanceDeserializer;
+import moa.util.InstanceSerializer;
+import moa.util.ObjectDeserializer;
+import moa.util.ObjectSerializer;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Task to measure the speed and record size of the Kafka serialisers and
+ * deserialisers of instances, without a broker: the Java object format and
+ * the compact format.
+ */
+public class MeasureSerdeSpeed extends AuxiliarMainTask {
+
+  private static final String TOPIC = "instances";
+
+  // The source of instances to serialise
+  public ClassOption streamOption = new ClassOption(
+        "stream",
+        's',
+        "Stream of the instances to serialise",
+        InstanceStream.class,
+        "generators.RandomRBFGenerator"
+  );
+
+  // The number of instances to serialise
+  public IntOption numInstancesOption = new IntOption(
+        "numInstances",
+        'n',
+        "Number of instances to serialise",
+        100_000,
+        1,
+        Integer.MAX_VALUE
+  );
+
+  // The number of times each format is measured, the first ones warming up
+  public IntOption repetitionsOption = new IntOption(
+        "repetitions",
+        'r',
+        "Number of times each format is measured, only the last one is reported",
+        5,
+        1,
+        Integer.MAX_VALUE
+  );
+
+  @Override
+  public String getPurposeString() {
+    return "Measures the speed and record size of the Kafka instance serialisers.";
+  }
+
+  @Override
+  protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+    InstanceStream stream = (InstanceStream) getPreparedClassOption(streamOption);
+
+    // Generate the instances up front so that only the serde is timed
+    List<Instance> instanceList = new ArrayList<>();
+    while (instanceList.size() < numInstancesOption.getValue() && stream.hasMoreInstances())
+      instanceList.add(stream.nextInstance().getData());
+    Instance[] instances = instanceList.toArray(new Instance[0]);
+
+    List<Measurement> measurements = new ArrayList<>();
+    for (int repetition = 0; repetition < repetitionsOption.getValue(); repetition++) {
+      if (monitor.isCancelled()) return null;
+      measurements.clear();
+      monitor.setCurrentActivity("Measuring the object format...", -1.0);
+      measure("object", new ObjectSerializer<>(), new ObjectDeserializer<>(), instances, measurements);
+      monitor.setCurrentActivity("Measuring the compact format...", -1.0);
+      measure("compact", new InstanceSerializer(), new InstanceDeserializer(), instances, measurements);
+    }
+
+    return new LearningEvaluation(measurements.toArray(new Measurement[0]));
+  }
+
+  /**
+   * Serialises and deserialises the instances with one format.
+   *
+   * @param format The name of the format.
+   * @param serializer The serialiser of the format.
+   * @param deserializer The deserialiser of the format.
+   * @param instances The instances to serialise.
+   * @param measurements The list to add the measurements to.
+   */
+  protected void measure(String format,
+                         Serializer<Instance> serializer,
+                         Deserializer<Instance> deserializer,
+                         Instance[] instances,
+                         List<Measurement> measurements) {
+    byte[][] records = new byte[instances.length][];
+    long numBytes = 0;
+
+    long startTime = System.nanoTime();
+    for (int i = 0; i < instances.length; i++) {
+      records[i] = serializer.serialize(TOPIC, instances[i]);
+      numBytes += records[i].length;
+    }
+    double serializeTime = (System.nanoTime() - startTime) / 1.0e9;
+
+    startTime = System.nanoTime();
+    for (byte[] record : records)
+      deserializer.deserialize(TOPIC, record);
+    double deserializeTime = (System.nanoTime() - startTime) / 1.0e9;
+
+    measurements.add(new Measurement(format + " records serialised per second", instances.length / serializeTime));
+    measurements.add(new Measurement(format + " records deserialised per second", instances.length / deserializeTime));
+    measurements.add(new Measurement(format + " bytes per record", numBytes / (double) instances.length));
+  }
+
+  @Override
+  public Class<?> getTaskResultType() {
+    return LearningEvaluation.class;
+  }
+}
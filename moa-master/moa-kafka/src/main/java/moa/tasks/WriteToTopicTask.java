@@ -20,6 +20,7 @@
 
 package moa.tasks;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -30,9 +31,11 @@ import moa.core.Example;
 import moa.core.ObjectRepository;
 import moa.options.ClassOption;
 import moa.streams.InstanceStream;
+import moa.util.InstanceSerializer;
 import moa.util.KafkaUtils;
 import moa.util.ObjectSerializer;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.LongSerializer;
 
@@ -89,6 +92,24 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
         ""
   );
 
+  // Whether to write the instances in the compact format
+  public FlagOption compactOption = new FlagOption(
+        "compact",
+        'c',
+        "Write the instances in the compact binary format (header sent once per topic)"
+  );
+
+  /**
+   * Creates the Kafka producer.
+   *
+   * @param host The Kafka host to connect to.
+   * @param port The Kafka port to connect to.
+   * @return The producer.
+   */
+  protected Producer<Long, Instance> createProducer(String host, String port) {
+    return new KafkaProducer<>(getProducerConfig(host, port));
+  }
+
   /**
    * Creates the configuration for the Kakfa producer.
    *
@@ -100,7 +121,7 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
     Map<String, Object> config = new HashMap<>();
 
     config.put("key.serializer", LongSerializer.class);
-    config.put("value.serializer", ObjectSerializer.class);
+    config.put("value.serializer", compactOption.isSet() ? InstanceSerializer.class : ObjectSerializer.class);
     config.put("bootstrap.servers", KafkaUtils.broker(host, port));
     config.put("fetch.min.bytes", 1);
     config.put("group.id", KafkaUtils.uniqueGroupIDString(this));
@@ -125,9 +146,7 @@ public class WriteToTopicTask extends AuxiliarMainTask implements CapabilitiesHa
     String port = portOption.getValue();
 
     // Create the Kakfa producer
-    KafkaProducer<Long, Instance> producer = new KafkaProducer<>(
-          getProducerConfig(host, port)
-    );
+    Producer<Long, Instance> producer = createProducer(host, port);
 
     int i = 0;
     while (i < maxInstances) {
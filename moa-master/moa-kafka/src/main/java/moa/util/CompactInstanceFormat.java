@@ -0,0 +1,210 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompactInstanceFormat.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact binary format for the instances of one topic. The header is
+ * written once, in front of the first record (and again whenever the
+ * instances change header), using Java's serialisation tools. Each record
+ * then only holds the weight and the values of the instance: all the
+ * values as packed doubles for dense instances, the index-value pairs for
+ * sparse ones.
+ *
+ * Record layout:
+ *   - a flags byte (header included, sparse values)
+ *   - if the header is included, its length and serialised form
+ *   - the weight
+ *   - dense: the values of all the attributes of the header
+ *   - sparse: the number of values, then the index-value pairs
+ *
+ * An object of this class keeps the header of its topic, so records must
+ * be decoded in the order they were encoded, and a reader of a topic with
+ * several partitions must read the record with the header first.
+ */
+public class CompactInstanceFormat {
+
+  // The record includes the serialised header
+  protected static final byte FLAG_HEADER = 1;
+
+  // The record holds index-value pairs
+  protected static final byte FLAG_SPARSE = 2;
+
+  // The header of the instances written/read so far
+  protected InstancesHeader m_Header = null;
+
+  // The dataset of the last instance written
+  protected Instances m_Dataset = null;
+
+  // Buffer the records are written to before copying them out
+  protected ByteBuffer m_Buffer = ByteBuffer.allocate(1024);
+
+  /**
+   * Gets the header of the instances encoded or decoded so far.
+   *
+   * @return The header, or null if no record has been seen yet.
+   */
+  public InstancesHeader getHeader() {
+    return m_Header;
+  }
+
+  /**
+   * Encodes an instance as a record. The header of the instance is
+   * included if it isn't the header of the previous record.
+   *
+   * @param instance  The instance to encode.
+   * @return          The record.
+   */
+  public byte[] encode(Instance instance) {
+    boolean includeHeader = instance.dataset() != m_Dataset;
+    boolean sparse = instance instanceof SparseInstance;
+    byte[] header = null;
+    if (includeHeader) {
+      m_Dataset = instance.dataset();
+      m_Header = m_Dataset instanceof InstancesHeader
+        ? (InstancesHeader) m_Dataset
+        : new InstancesHeader(m_Dataset);
+      header = serialiseHeader(m_Header);
+    }
+
+    int numValues = sparse ? instance.numValues() : instance.numAttributes();
+    int size = 1 + 8 + (sparse ? 4 + numValues * 12 : numValues * 8);
+    if (includeHeader)
+      size += 4 + header.length;
+    ensureCapacity(size);
+
+    m_Buffer.clear();
+    m_Buffer.put((byte) ((includeHeader ? FLAG_HEADER : 0) | (sparse ? FLAG_SPARSE : 0)));
+    if (includeHeader) {
+      m_Buffer.putInt(header.length);
+      m_Buffer.put(header);
+    }
+    m_Buffer.putDouble(instance.weight());
+    if (sparse) {
+      m_Buffer.putInt(numValues);
+      for (int i = 0; i < numValues; i++) {
+        m_Buffer.putInt(instance.index(i));
+        m_Buffer.putDouble(instance.valueSparse(i));
+      }
+    }
+    else {
+      for (int i = 0; i < numValues; i++)
+        m_Buffer.putDouble(instance.value(i));
+    }
+
+    return Arrays.copyOf(m_Buffer.array(), m_Buffer.position());
+  }
+
+  /**
+   * Decodes a record into an instance of the header last read.
+   *
+   * @param record  The record.
+   * @return        The instance.
+   */
+  public Instance decode(byte[] record) {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(record);
+      byte flags = buffer.get();
+      if ((flags & FLAG_HEADER) != 0) {
+        int length = buffer.getInt();
+        m_Header = deserialiseHeader(record, buffer.position(), length);
+        buffer.position(buffer.position() + length);
+      }
+      else if (m_Header == null) {
+        throw new RuntimeException("Record read before the header of its topic");
+      }
+
+      double weight = buffer.getDouble();
+      Instance instance;
+      if ((flags & FLAG_SPARSE) != 0) {
+        int numValues = buffer.getInt();
+        int[] indices = new int[numValues];
+        double[] values = new double[numValues];
+        for (int i = 0; i < numValues; i++) {
+          indices[i] = buffer.getInt();
+          values[i] = buffer.getDouble();
+        }
+        instance = new SparseInstance(weight, values, indices, m_Header.numAttributes());
+      }
+      else {
+        double[] values = new double[m_Header.numAttributes()];
+        for (int i = 0; i < values.length; i++)
+          values[i] = buffer.getDouble();
+        instance = new DenseInstance(weight, values);
+      }
+      instance.setDataset(m_Header);
+
+      return instance;
+    } catch (BufferUnderflowException e) {
+      throw new RuntimeException("Truncated instance record", e);
+    }
+  }
+
+  /**
+   * Makes sure the write buffer can hold a record of the given size.
+   */
+  protected void ensureCapacity(int size) {
+    if (m_Buffer.capacity() < size)
+      m_Buffer = ByteBuffer.allocate(Math.max(size, m_Buffer.capacity() * 2));
+  }
+
+  /**
+   * Serialises a header.
+   */
+  protected byte[] serialiseHeader(InstancesHeader header) {
+    try {
+      ByteArrayOutputStream streamSerialiser = new ByteArrayOutputStream();
+      ObjectOutputStream objectStream = new ObjectOutputStream(streamSerialiser);
+      objectStream.writeObject(header);
+      objectStream.flush();
+      return streamSerialiser.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to serialise instances header", e);
+    }
+  }
+
+  /**
+   * Deserialises a header from part of a record.
+   */
+  protected InstancesHeader deserialiseHeader(byte[] record, int offset, int length) {
+    try {
+      ObjectInputStream streamDeserialiser = new ObjectInputStream(
+        new ByteArrayInputStream(record, offset, length));
+      return (InstancesHeader) streamDeserialiser.readObject();
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new RuntimeException("Failed to deserialise instances header", e);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstanceDeserializer.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kafka deserialiser for instances written by {@link InstanceSerializer}.
+ * Keeps the header of each topic read from.
+ */
+public class InstanceDeserializer
+  implements Deserializer<Instance> {
+
+  // The format of each topic read from
+  protected Map<String, CompactInstanceFormat> m_Formats = new HashMap<>();
+
+  @Override
+  public synchronized Instance deserialize(String topic, byte[] bytes) {
+    // Bytes can be null; deserialise to null
+    if (bytes == null)
+      return null;
+
+    CompactInstanceFormat format = m_Formats.get(topic);
+    if (format == null) {
+      format = new CompactInstanceFormat();
+      m_Formats.put(topic, format);
+    }
+
+    return format.decode(bytes);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstanceSerializer.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package moa.util;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kafka serialiser for instances, using the {@link CompactInstanceFormat}:
+ * the header is only sent with the first instance of each topic.
+ */
+public class InstanceSerializer
+  implements Serializer<Instance> {
+
+  // The format of each topic written to
+  protected Map<String, CompactInstanceFormat> m_Formats = new HashMap<>();
+
+  @Override
+  public synchronized byte[] serialize(String topic, Instance data) {
+    // Null serialises to null
+    if (data == null)
+      return null;
+
+    CompactInstanceFormat format = m_Formats.get(topic);
+    if (format == null) {
+      format = new CompactInstanceFormat();
+      m_Formats.put(topic, format);
+    }
+
+    return format.encode(data);
+  }
+}
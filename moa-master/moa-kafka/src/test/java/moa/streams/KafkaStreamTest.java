@@ -0,0 +1,178 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KafkaStreamTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.streams.generators.RandomRBFGenerator;
+import moa.tasks.WriteToTopicTask;
+import moa.util.InstanceDeserializer;
+import moa.util.InstanceSerializer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the compact instance format and the stream reading it, using
+ * Kafka's mock producer and consumer.
+ */
+public class KafkaStreamTest {
+
+  private static final String TOPIC = "instances";
+
+  private static final double EPS = 1e-12;
+
+  private static List<Instance> generateInstances(int count) {
+    RandomRBFGenerator generator = new RandomRBFGenerator();
+    generator.prepareForUse();
+    List<Instance> instances = new ArrayList<>();
+    for (int i = 0; i < count; i++)
+      instances.add(generator.nextInstance().getData());
+    return instances;
+  }
+
+  private static void assertSameInstance(Instance expected, Instance actual) {
+    assertEquals(expected.numAttributes(), actual.numAttributes());
+    assertEquals(expected.weight(), actual.weight(), EPS);
+    for (int i = 0; i < expected.numAttributes(); i++)
+      assertEquals(expected.value(i), actual.value(i), EPS);
+    assertEquals(expected.classIndex(), actual.classIndex());
+    assertEquals(expected.numClasses(), actual.numClasses());
+  }
+
+  @Test
+  public void testDenseRoundTrip() {
+    List<Instance> instances = generateInstances(10);
+    InstanceSerializer serializer = new InstanceSerializer();
+    InstanceDeserializer deserializer = new InstanceDeserializer();
+
+    byte[] first = serializer.serialize(TOPIC, instances.get(0));
+    assertSameInstance(instances.get(0), deserializer.deserialize(TOPIC, first));
+
+    for (int i = 1; i < instances.size(); i++) {
+      byte[] record = serializer.serialize(TOPIC, instances.get(i));
+      // only the first record carries the header
+      assertEquals(1 + 8 + 8 * instances.get(i).numAttributes(), record.length);
+      assertSameInstance(instances.get(i), deserializer.deserialize(TOPIC, record));
+    }
+
+    assertNull(serializer.serialize(TOPIC, null));
+    assertNull(deserializer.deserialize(TOPIC, null));
+  }
+
+  @Test
+  public void testSparseRoundTrip() {
+    Instance dense = generateInstances(1).get(0);
+    Instance sparse = new SparseInstance(2.0, new double[]{0.5, 1.0}, new int[]{1, dense.classIndex()}, dense.numAttributes());
+    sparse.setDataset(dense.dataset());
+    InstanceSerializer serializer = new InstanceSerializer();
+    InstanceDeserializer deserializer = new InstanceDeserializer();
+
+    deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, dense));
+    byte[] record = serializer.serialize(TOPIC, sparse);
+    assertEquals(1 + 8 + 4 + 2 * 12, record.length);
+    Instance decoded = deserializer.deserialize(TOPIC, record);
+    assertTrue(decoded instanceof SparseInstance);
+    assertSameInstance(sparse, decoded);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testRecordWithoutHeader() {
+    List<Instance> instances = generateInstances(2);
+    InstanceSerializer serializer = new InstanceSerializer();
+    serializer.serialize(TOPIC, instances.get(0));
+    new InstanceDeserializer().deserialize(TOPIC, serializer.serialize(TOPIC, instances.get(1)));
+  }
+
+  @Test
+  public void testWriteAndReadTopic() {
+    int numInstances = 250;
+
+    // write the instances to a mock producer
+    final MockProducer<Long, Instance> producer = new MockProducer<>(true, new LongSerializer(), new InstanceSerializer());
+    WriteToTopicTask task = new WriteToTopicTask() {
+      @Override
+      protected Producer<Long, Instance> createProducer(String host, String port) {
+        return producer;
+      }
+    };
+    task.streamOption.setValueViaCLIString("generators.RandomRBFGenerator");
+    task.maxInstancesOption.setValue(numInstances);
+    task.topicOption.setValue(TOPIC);
+    task.compactOption.set();
+    task.prepareForUse();
+    task.doTask();
+
+    List<ProducerRecord<Long, Instance>> history = producer.history();
+    assertEquals(numInstances + 1, history.size());
+
+    // hand the serialised records to a mock consumer, in two polls
+    final TopicPartition partition = new TopicPartition(TOPIC, 0);
+    final MockConsumer<Long, Object> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    consumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+    InstanceSerializer serializer = new InstanceSerializer();
+    final List<ConsumerRecord<Long, Object>> records = new ArrayList<>();
+    for (ProducerRecord<Long, Instance> record : history)
+      records.add(new ConsumerRecord<>(TOPIC, 0, records.size(), record.key(), (Object) serializer.serialize(TOPIC, record.value())));
+    consumer.schedulePollTask(() -> {
+      consumer.rebalance(Collections.singletonList(partition));
+      for (ConsumerRecord<Long, Object> record : records.subList(0, 100))
+        consumer.addRecord(record);
+    });
+    consumer.schedulePollTask(() -> {
+      for (ConsumerRecord<Long, Object> record : records.subList(100, records.size()))
+        consumer.addRecord(record);
+    });
+
+    KafkaStream stream = new KafkaStream() {
+      @Override
+      protected Consumer<Long, Object> createConsumer() {
+        return consumer;
+      }
+    };
+    stream.topicOption.setValue(TOPIC);
+    stream.compactOption.set();
+    stream.prepareForUse();
+
+    List<Instance> expected = generateInstances(numInstances);
+    assertEquals(expected.get(0).numAttributes(), stream.getHeader().numAttributes());
+    int count = 0;
+    while (stream.hasMoreInstances()) {
+      assertSameInstance(expected.get(count), stream.nextInstance().getData());
+      count++;
+    }
+    assertEquals(numInstances, count);
+    assertNull(stream.nextInstance());
+  }
+}
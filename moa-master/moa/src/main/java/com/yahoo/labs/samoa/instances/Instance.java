@@ -245,6 +245,17 @@ public interface Instance extends Serializable {
      */
     public Instance copy();
 
+    /**
+     * Weighted view. Returns an instance with the given weight that shares
+     * the values of this instance instead of copying them. Changing the
+     * values of one of them changes both, so it is meant to hand a
+     * reweighted instance to a learner that only reads it.
+     *
+     * @param weight the weight of the view
+     * @return the instance
+     */
+    public Instance weightedView(double weight);
+
     /**
      * Sets the dataset.
      *
@@ -347,6 +347,19 @@ public class InstanceImpl implements MultiLabelInstance {
         return inst;
     }
 
+    /**
+     * Weighted view sharing the instance data.
+     *
+     * @param weight the weight of the view
+     * @return the instance
+     */
+    @Override
+    public Instance weightedView(double weight) {
+        InstanceImpl inst = new InstanceImpl(weight, this.instanceData);
+        inst.instanceHeader = this.instanceHeader;
+        return inst;
+    }
+
     /**
      * Dataset.
      *
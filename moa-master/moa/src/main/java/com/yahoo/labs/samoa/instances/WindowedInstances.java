@@ -0,0 +1,366 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.util.Arrays;
+
+/**
+ * Instances stored in a ring buffer of primitive values, for sliding windows.
+ *
+ * <p>All the rows share one row-major <code>double[]</code>, so a row costs
+ * its values and its weight instead of an instance, its data and an array.
+ * Appending a row and deleting the oldest one are O(1); deleting any other
+ * row shifts the shorter side of the window. Added instances are stored as
+ * dense rows.</p>
+ *
+ * <p><code>instance(i)</code> returns a lightweight view of the stored row:
+ * setting a value through it changes the window, and it is only valid until
+ * the window is next modified. Copy it to keep it longer.</p>
+ */
+public class WindowedInstances extends Instances {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The values of the rows, row after row.
+     */
+    protected double[] values;
+
+    /**
+     * The weights of the rows.
+     */
+    protected double[] weights;
+
+    /**
+     * The number of values of a row.
+     */
+    protected int width;
+
+    /**
+     * The slot of the first row.
+     */
+    protected int first;
+
+    /**
+     * The number of rows.
+     */
+    protected int count;
+
+    /**
+     * The header given to the views, the one of the last added instance.
+     */
+    protected InstancesHeader header;
+
+    /**
+     * Instantiates a new windowed instances.
+     *
+     * @param chunk the chunk
+     * @param capacity the initial capacity
+     */
+    public WindowedInstances(Instances chunk, int capacity) {
+        super(chunk, 0);
+        this.width = numAttributes();
+        if (capacity < 1) {
+            capacity = 1;
+        }
+        this.values = new double[capacity * this.width];
+        this.weights = new double[capacity];
+    }
+
+    /**
+     * Instantiates a new windowed instances with the instances of a chunk.
+     *
+     * @param chunk the chunk
+     */
+    public WindowedInstances(Instances chunk) {
+        this(chunk, chunk.numInstances());
+        chunk.copyInstances(0, this, chunk.numInstances());
+    }
+
+    /**
+     * Capacity.
+     *
+     * @return the number of rows that fit without growing the buffer
+     */
+    public int capacity() {
+        return this.weights.length;
+    }
+
+    /**
+     * Slot of a row in the buffer.
+     *
+     * @param num the index of the row
+     * @return the slot
+     */
+    protected int slot(int num) {
+        int slot = this.first + num;
+        return slot < this.weights.length ? slot : slot - this.weights.length;
+    }
+
+    protected void checkIndex(int num) {
+        if (num < 0 || num >= this.count) {
+            throw new IndexOutOfBoundsException("Index: " + num + ", Size: " + this.count);
+        }
+    }
+
+    @Override
+    public Instance instance(int num) {
+        checkIndex(num);
+        int slot = slot(num);
+        InstanceImpl inst = new InstanceImpl(this.weights[slot], new RowData(slot));
+        inst.instanceHeader = this.header;
+        return inst;
+    }
+
+    @Override
+    public int numInstances() {
+        return this.count;
+    }
+
+    @Override
+    public void add(Instance inst) {
+        if (this.count == this.weights.length) {
+            resize(2 * this.weights.length);
+        }
+        if (inst.dataset() != null && (this.header == null || inst.dataset() != this)) {
+            this.header = inst.dataset() instanceof InstancesHeader
+                    ? (InstancesHeader) inst.dataset() : new InstancesHeader(inst.dataset());
+        }
+        store(slot(this.count), inst);
+        this.count++;
+    }
+
+    @Override
+    public void set(int i, Instance inst) {
+        checkIndex(i);
+        store(slot(i), inst);
+    }
+
+    /**
+     * Writes the values and the weight of an instance in a slot.
+     */
+    protected void store(int slot, Instance inst) {
+        int offset = slot * this.width;
+        Arrays.fill(this.values, offset, offset + this.width, 0.0);
+        for (int p = 0; p < inst.numValues(); p++) {
+            this.values[offset + inst.index(p)] = inst.valueSparse(p);
+        }
+        this.weights[slot] = inst.weight();
+    }
+
+    /**
+     * Moves the rows to a buffer of another capacity, the first row in the
+     * first slot.
+     */
+    protected void resize(int capacity) {
+        double[] newValues = new double[capacity * this.width];
+        double[] newWeights = new double[capacity];
+        for (int i = 0; i < this.count; i++) {
+            int slot = slot(i);
+            System.arraycopy(this.values, slot * this.width, newValues, i * this.width, this.width);
+            newWeights[i] = this.weights[slot];
+        }
+        this.values = newValues;
+        this.weights = newWeights;
+        this.first = 0;
+    }
+
+    /**
+     * Copies the row in slot <code>from</code> to slot <code>to</code>.
+     */
+    protected void moveRow(int from, int to) {
+        System.arraycopy(this.values, from * this.width, this.values, to * this.width, this.width);
+        this.weights[to] = this.weights[from];
+    }
+
+    @Override
+    public void delete() {
+        this.first = 0;
+        this.count = 0;
+    }
+
+    @Override
+    public void delete(int index) {
+        checkIndex(index);
+        if (index < this.count / 2) {
+            // shift the older rows forward
+            for (int i = index; i > 0; i--) {
+                moveRow(slot(i - 1), slot(i));
+            }
+            this.first = slot(1);
+        } else {
+            for (int i = index; i < this.count - 1; i++) {
+                moveRow(slot(i + 1), slot(i));
+            }
+        }
+        this.count--;
+        if (this.count == 0) {
+            this.first = 0;
+        }
+    }
+
+    @Override
+    public void swap(int i, int j) {
+        checkIndex(i);
+        checkIndex(j);
+        int offsetI = slot(i) * this.width;
+        int offsetJ = slot(j) * this.width;
+        for (int k = 0; k < this.width; k++) {
+            double value = this.values[offsetI + k];
+            this.values[offsetI + k] = this.values[offsetJ + k];
+            this.values[offsetJ + k] = value;
+        }
+        double weight = this.weights[slot(i)];
+        this.weights[slot(i)] = this.weights[slot(j)];
+        this.weights[slot(j)] = weight;
+    }
+
+    @Override
+    protected void stratStep(int numFolds) {
+        double[] newValues = new double[this.values.length];
+        double[] newWeights = new double[this.weights.length];
+        int index = 0, start = 0, j;
+
+        // create stratified batch
+        while (index < this.count) {
+            j = start;
+            while (j < this.count) {
+                int slot = slot(j);
+                System.arraycopy(this.values, slot * this.width, newValues, index * this.width, this.width);
+                newWeights[index] = this.weights[slot];
+                index++;
+                j = j + numFolds;
+            }
+            start++;
+        }
+        this.values = newValues;
+        this.weights = newWeights;
+        this.first = 0;
+    }
+
+    /**
+     * Euclidean distances between a point and all the rows, over the input
+     * attributes.
+     *
+     * @param point the values of all the attributes of the point
+     * @return the distance to each row, in the order of the rows
+     */
+    public double[] distances(double[] point) {
+        double[] distances = new double[this.count];
+        int classIndex = classIndex();
+        int before = classIndex < 0 ? this.width : classIndex;
+        for (int i = 0; i < this.count; i++) {
+            int offset = slot(i) * this.width;
+            double sum = 0;
+            // two branch free loops around the class
+            for (int k = 0; k < before; k++) {
+                double diff = point[k] - this.values[offset + k];
+                sum += diff * diff;
+            }
+            for (int k = before + 1; k < this.width; k++) {
+                double diff = point[k] - this.values[offset + k];
+                sum += diff * diff;
+            }
+            distances[i] = Math.sqrt(sum);
+        }
+        return distances;
+    }
+
+    @Override
+    public void deleteAttributeAt(Integer integer) {
+        throw new UnsupportedOperationException("The rows of a window have a fixed number of attributes.");
+    }
+
+    @Override
+    public void insertAttributeAt(Attribute attribute, int position) {
+        throw new UnsupportedOperationException("The rows of a window have a fixed number of attributes.");
+    }
+
+    /**
+     * The data of a view, read from and written to the slot of the row.
+     */
+    protected class RowData implements InstanceData {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final int offset;
+
+        public RowData(int slot) {
+            this.offset = slot * WindowedInstances.this.width;
+        }
+
+        @Override
+        public int numAttributes() {
+            return WindowedInstances.this.width;
+        }
+
+        @Override
+        public double value(int instAttIndex) {
+            return WindowedInstances.this.values[this.offset + instAttIndex];
+        }
+
+        @Override
+        public boolean isMissing(int instAttIndex) {
+            return Double.isNaN(this.value(instAttIndex));
+        }
+
+        @Override
+        public int numValues() {
+            return numAttributes();
+        }
+
+        @Override
+        public int index(int i) {
+            return i;
+        }
+
+        @Override
+        public double valueSparse(int i) {
+            return this.value(i);
+        }
+
+        @Override
+        public boolean isMissingSparse(int p1) {
+            return this.isMissing(p1);
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            return Arrays.copyOfRange(WindowedInstances.this.values, this.offset,
+                    this.offset + WindowedInstances.this.width);
+        }
+
+        @Override
+        public void setValue(int m_numAttributes, double d) {
+            WindowedInstances.this.values[this.offset + m_numAttributes] = d;
+        }
+
+        @Override
+        public void deleteAttributeAt(int index) {
+            throw new UnsupportedOperationException("The rows of a window have a fixed number of attributes.");
+        }
+
+        @Override
+        public void insertAttributeAt(int index) {
+            throw new UnsupportedOperationException("The rows of a window have a fixed number of attributes.");
+        }
+
+        @Override
+        public InstanceData copy() {
+            return new DenseInstanceData(this.toDoubleArray());
+        }
+    }
+}
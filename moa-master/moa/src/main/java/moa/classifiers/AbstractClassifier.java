@@ -105,6 +105,13 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
     @Override
     public abstract double[] getVotesForInstance(Instance inst);
 
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        for (int i = 0; i < batch.length; i++) {
+            out[i] = getVotesForInstance(batch[i]);
+        }
+    }
+
     @Override
     public Prediction getPredictionForInstance(Example<Instance> example){
 		return getPredictionForInstance(example.getData());
@@ -76,7 +76,18 @@ public interface Classifier extends Learner<Example<Instance>> {
      * test instance in each class
      */
     public double[] getVotesForInstance(Instance inst);
-    
+
+    /**
+     * Predicts the class memberships for a batch of instances. The votes of
+     * each instance are the ones returned by getVotesForInstance, the batch
+     * only lets the classifier share the work between the instances.
+     *
+     * @param batch the instances to be classified
+     * @param out the array receiving the votes of each instance of the batch,
+     * at the same index
+     */
+    public void getVotesForInstances(Instance[] batch, double[][] out);
+
     /**
      * Sets the reference to the header of the data stream. The header of the
      * data stream is extended from WEKA
@@ -88,6 +88,12 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
                 this.attributeObservers);
     }
 
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        doNaiveBayesPredictions(batch, out, this.observedClassDistribution,
+                this.attributeObservers);
+    }
+
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
         return null;
@@ -153,6 +159,48 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         return votes;
     }
 
+    /**
+     * Naive Bayes prediction for a batch of instances, giving the same votes
+     * as doNaiveBayesPrediction. The attributes are the outer loop, so that
+     * each attribute observer is used for the whole batch at once.
+     */
+    public static void doNaiveBayesPredictions(Instance[] batch, double[][] out,
+            DoubleVector observedClassDistribution,
+            AutoExpandVector<AttributeClassObserver> attributeObservers) {
+        double[] priors = new double[observedClassDistribution.numValues()];
+        double observedClassSum = observedClassDistribution.sumOfValues();
+        for (int classIndex = 0; classIndex < priors.length; classIndex++) {
+            priors[classIndex] = observedClassDistribution.getValue(classIndex)
+                    / observedClassSum;
+        }
+        int numAttributes = 0;
+        for (int i = 0; i < batch.length; i++) {
+            out[i] = priors.clone();
+            numAttributes = Math.max(numAttributes, batch[i].numAttributes() - 1);
+        }
+        for (int attIndex = 0; attIndex < numAttributes; attIndex++) {
+            AttributeClassObserver obs = attributeObservers.get(attIndex);
+            if (obs == null) {
+                continue;
+            }
+            for (int i = 0; i < batch.length; i++) {
+                Instance inst = batch[i];
+                if (attIndex >= inst.numAttributes() - 1) {
+                    continue;
+                }
+                int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex,
+                        inst);
+                if (!inst.isMissing(instAttIndex)) {
+                    double value = inst.value(instAttIndex);
+                    double[] votes = out[i];
+                    for (int classIndex = 0; classIndex < votes.length; classIndex++) {
+                        votes[classIndex] *= obs.probabilityOfAttributeValueGivenClass(value, classIndex);
+                    }
+                }
+            }
+        }
+    }
+
     // Naive Bayes Prediction using log10 for VFDR rules 
     public static double[] doNaiveBayesPredictionLog(Instance inst,
             DoubleVector observedClassDistribution,
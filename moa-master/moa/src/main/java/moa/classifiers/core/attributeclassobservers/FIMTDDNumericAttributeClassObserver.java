@@ -32,6 +32,7 @@ import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.DoubleVector;
 import moa.core.ObjectRepository;
+import moa.options.OptionHandler;
 import moa.tasks.TaskMonitor;
 
 public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttributeClassObserver implements NumericAttributeClassObserver {
@@ -228,6 +229,19 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
         return false;
     }
 
+    /**
+     * Copying an empty E-BST only needs a new observer, which is much cheaper
+     * than the deep copy by serialization. Trees copy an observer for every
+     * numeric attribute of every new leaf.
+     */
+    @Override
+    public OptionHandler copy() {
+        if (this.root == null && getClass() == FIMTDDNumericAttributeClassObserver.class) {
+            return new FIMTDDNumericAttributeClassObserver();
+        }
+        return super.copy();
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
@@ -0,0 +1,223 @@
+/*
+ *    QuantizationNumericAttributeClassObserver.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.options.OptionHandler;
+
+import com.github.javacliparser.FloatOption;
+
+/**
+ * Quantization observer (QO) for numeric attributes in regression trees and rules.
+ *
+ * <p>Instead of the E-BST, which keeps one node per distinct value, the
+ * attribute values are quantized in bins of fixed width (the radius). Each bin
+ * keeps the weight, the sum of the attribute values and the sum and sum of
+ * squares of the target. The bins are stored in an open addressing hash table
+ * of primitive arrays, so an observation costs O(1) and the memory depends on
+ * the range of the attribute instead of on the number of distinct values.
+ * The split search sorts the bins and evaluates one cut point between each
+ * pair of consecutive bins, at the midpoint of their mean values.</p>
+ *
+ * <p>See details in:<br> Saulo Martiello Mastelini, Andre Carlos Ponce de Leon
+ * Ferreira de Carvalho. Using dynamical quantization to perform split attempts
+ * in online tree regressors. Pattern Recognition Letters, 2021.</p>
+ */
+public class QuantizationNumericAttributeClassObserver extends FIMTDDNumericAttributeClassObserver {
+
+    private static final long serialVersionUID = 1L;
+
+    public FloatOption radiusOption = new FloatOption("radius", 'r',
+            "Width of the bins in which the attribute values are quantized.", 0.25, Double.MIN_VALUE, Double.MAX_VALUE);
+
+    protected static final int INITIAL_CAPACITY = 16;
+
+    // Hash table of the bins: key of the bin and whether the slot is used
+    protected long[] keys;
+    protected boolean[] used;
+
+    // Statistics of the bins, in the same slots as their keys
+    protected double[] weights;
+    protected double[] sumOfAttValues;
+    protected double[] sumOfValues;
+    protected double[] sumOfSquares;
+
+    protected int numBins;
+
+    public int getNumBins() {
+        return this.numBins;
+    }
+
+    @Override
+    public void observeAttributeClass(double attVal, double classVal, double weight) {
+        if (Double.isNaN(attVal) || weight == 0.0) { //Instance.isMissingValue(attVal)
+        } else {
+            if (this.keys == null) {
+                allocate(INITIAL_CAPACITY);
+            }
+            int slot = findSlot((long) Math.floor(attVal / this.radiusOption.getValue()));
+            this.weights[slot] += weight;
+            this.sumOfAttValues[slot] += weight * attVal;
+            this.sumOfValues[slot] += weight * classVal;
+            this.sumOfSquares[slot] += weight * classVal * classVal;
+        }
+    }
+
+    protected void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.used = new boolean[capacity];
+        this.weights = new double[capacity];
+        this.sumOfAttValues = new double[capacity];
+        this.sumOfValues = new double[capacity];
+        this.sumOfSquares = new double[capacity];
+        this.numBins = 0;
+    }
+
+    protected static int hash(long key, int capacity) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (capacity - 1);
+    }
+
+    /**
+     * Slot of the bin with the given key, created if needed.
+     */
+    protected int findSlot(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key, this.keys.length);
+        while (this.used[slot]) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (2 * (this.numBins + 1) > this.keys.length) {
+            rehash(2 * this.keys.length);
+            return findSlot(key);
+        }
+        this.used[slot] = true;
+        this.keys[slot] = key;
+        this.numBins++;
+        return slot;
+    }
+
+    protected void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        boolean[] oldUsed = this.used;
+        double[] oldWeights = this.weights;
+        double[] oldSumOfAttValues = this.sumOfAttValues;
+        double[] oldSumOfValues = this.sumOfValues;
+        double[] oldSumOfSquares = this.sumOfSquares;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(oldKeys[i]);
+                this.weights[slot] = oldWeights[i];
+                this.sumOfAttValues[slot] = oldSumOfAttValues[i];
+                this.sumOfValues[slot] = oldSumOfValues[i];
+                this.sumOfSquares[slot] = oldSumOfSquares[i];
+            }
+        }
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(SplitCriterion criterion, double[] preSplitDist, int attIndex, boolean binaryOnly) {
+        if (this.numBins < 2) {
+            return null;
+        }
+        // Sort the used slots by the key of their bin
+        long[] sortedKeys = new long[this.numBins];
+        int[] slots = new int[this.numBins];
+        for (int i = 0, j = 0; i < this.keys.length; i++) {
+            if (this.used[i]) {
+                sortedKeys[j++] = this.keys[i];
+            }
+        }
+        Arrays.sort(sortedKeys);
+        for (int j = 0; j < sortedKeys.length; j++) {
+            slots[j] = findSlot(sortedKeys[j]);
+        }
+
+        double countTotal = 0, sumTotal = 0, sumSqTotal = 0;
+        for (int slot : slots) {
+            countTotal += this.weights[slot];
+            sumTotal += this.sumOfValues[slot];
+            sumSqTotal += this.sumOfSquares[slot];
+        }
+        double[] totalDist = new double[]{countTotal, sumTotal, sumSqTotal};
+
+        AttributeSplitSuggestion bestOption = null;
+        double countLeft = 0, sumLeft = 0, sumSqLeft = 0;
+        for (int j = 0; j < slots.length - 1; j++) {
+            int slot = slots[j];
+            countLeft += this.weights[slot];
+            sumLeft += this.sumOfValues[slot];
+            sumSqLeft += this.sumOfSquares[slot];
+
+            double[][] postSplitDists = new double[][]{{countLeft, sumLeft, sumSqLeft},
+                {countTotal - countLeft, sumTotal - sumLeft, sumSqTotal - sumSqLeft}};
+            double merit = criterion.getMeritOfSplit(totalDist, postSplitDists);
+
+            if ((bestOption == null) || (merit > bestOption.merit)) {
+                int next = slots[j + 1];
+                double cutPoint = (this.sumOfAttValues[slot] / this.weights[slot]
+                        + this.sumOfAttValues[next] / this.weights[next]) / 2.0;
+                bestOption = new AttributeSplitSuggestion(
+                        new NumericAttributeBinaryTest(attIndex, cutPoint, true), postSplitDists, merit);
+            }
+        }
+        return bestOption;
+    }
+
+    /**
+     * The bins are never pruned, their number is bounded by the range of the
+     * attribute divided by the radius.
+     */
+    @Override
+    public void removeBadSplits(SplitCriterion criterion, double lastCheckRatio, double lastCheckSDR, double lastCheckE) {
+    }
+
+    /**
+     * Copies the bins without the serialization of the deep copy.
+     */
+    @Override
+    public OptionHandler copy() {
+        if (getClass() != QuantizationNumericAttributeClassObserver.class) {
+            return super.copy();
+        }
+        QuantizationNumericAttributeClassObserver copy = new QuantizationNumericAttributeClassObserver();
+        copy.radiusOption.setValue(this.radiusOption.getValue());
+        if (this.keys != null) {
+            copy.keys = this.keys.clone();
+            copy.used = this.used.clone();
+            copy.weights = this.weights.clone();
+            copy.sumOfAttValues = this.sumOfAttValues.clone();
+            copy.sumOfValues = this.sumOfValues.clone();
+            copy.sumOfSquares = this.sumOfSquares.clone();
+            copy.numBins = this.numBins;
+        }
+        return copy;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
@@ -27,6 +27,7 @@ import moa.core.Measurement;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.WindowedInstances;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
@@ -80,17 +81,23 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
         return "SAMkNN: special.";
     }
 
-    private Instances stm;
-	private Instances ltm;
+    private WindowedInstances stm;
+	private WindowedInstances ltm;
 	private int maxLTMSize;
 	private int maxSTMSize;
 	private List<Integer> stmHistory;
 	private List<Integer> ltmHistory;
 	private List<Integer> cmHistory;
 	private double[][] distanceMatrixSTM;
+	private long[] distanceRowStarts;
+	private long stmStart;
 	//private int trainStepCount;
 	private Map<Integer, List<Integer>> predictionHistories;
 	private Random random;
+	//STM distances of the last predicted sample, reused when the same sample is trained on
+	private transient Instance lastPredicted;
+	private transient double[] lastPredictedDistances;
+	private transient long lastPredictedStart;
 
     protected void init(){
     	this.maxLTMSize = (int)(relativeLTMSizeOption.getValue() * limitOption.getValue());
@@ -98,8 +105,14 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
     	this.stmHistory = new ArrayList<>();
     	this.ltmHistory = new ArrayList<>();
     	this.cmHistory = new ArrayList<>();
-    	//store calculated STM distances in a matrix to avoid recalculation, are reused in the STM adaption phase
-		this.distanceMatrixSTM = new double[limitOption.getValue()+1][limitOption.getValue()+1];
+    	//store calculated STM distances to avoid recalculation, are reused in the STM adaption phase.
+		//The row of a sample holds its distances to the samples before it (triangular matrix), the rows are stored
+		//in a ring indexed by the position of the sample in the stream, so that removing samples moves no data.
+		this.distanceMatrixSTM = new double[limitOption.getValue()+1][];
+		this.distanceRowStarts = new long[limitOption.getValue()+1];
+		this.stmStart = 0;
+		this.lastPredicted = null;
+		this.lastPredictedDistances = null;
 		this.predictionHistories = new HashMap<>();
 		this.random = new Random();
 
@@ -108,9 +121,9 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 	@Override
 	public void setModelContext(InstancesHeader context) {
 		try {
-			this.stm = new Instances(context,0);
+			this.stm = new WindowedInstances(context,0);
 			this.stm.setClassIndex(context.classIndex());
-			this.ltm = new Instances(context,0); 
+			this.ltm = new WindowedInstances(context,0); 
 			this.ltm.setClassIndex(context.classIndex());
 			this.init();
 		} catch(Exception e) {
@@ -128,7 +141,10 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 		this.ltmHistory = null;
 		this.cmHistory = null;
 		this.distanceMatrixSTM = null;
+		this.distanceRowStarts = null;
 		this.predictionHistories = null;
+		this.lastPredicted = null;
+		this.lastPredictedDistances = null;
     }
 
     @Override
@@ -138,26 +154,20 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 			maxClassValue = (int)inst.classValue();
 		this.stm.add(inst);
 		memorySizeCheck();
-		clean(this.stm, this.ltm, true);
-		double distancesSTM[] = this.get1ToNDistances(inst, this.stm);
-		for (int i =0; i < this.stm.numInstances();i++){
-			this.distanceMatrixSTM[this.stm.numInstances()-1][i] = distancesSTM[i];
-		}
+		int slot = this.getDistanceRowSlot(this.stm.numInstances()-1);
+		this.distanceMatrixSTM[slot] = this.getLastSTMDistances(inst);
+		this.distanceRowStarts[slot] = this.stmStart;
+		clean(this.ltm, true);
 		int oldWindowSize = this.stm.numInstances();
 		int newWindowSize = this.getNewSTMSize(recalculateSTMErrorOption.isSet());
 
 		if (newWindowSize < oldWindowSize) {
 			int diff = oldWindowSize - newWindowSize;
-			Instances discardedSTMInstances = new Instances(this.stm, 0);
+			WindowedInstances discardedSTMInstances = new WindowedInstances(this.stm, diff);
 
 			for (int i = diff; i>0;i--){
-				discardedSTMInstances.add(this.stm.get(0).copy());
-				this.stm.delete(0);
-			}
-			for (int i = 0; i < this.stm.numInstances(); i++){
-				for (int j = 0; j < this.stm.numInstances(); j++){
-					this.distanceMatrixSTM[i][j] = this.distanceMatrixSTM[diff+i][diff+j];
-				}
+				discardedSTMInstances.add(this.stm.get(0));
+				this.deleteOldestSTM();
 			}
 			for (int i = 0; i < diff; i++) {
 				if(this.stmHistory.size() > 0)	this.stmHistory.remove(0);
@@ -165,9 +175,9 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 				if(this.cmHistory.size()  > 0)	 this.cmHistory.remove(0);
 			}
 
-			this.clean(this.stm, discardedSTMInstances, false);
+			this.clean(discardedSTMInstances, false);
 			for (int i = 0; i < discardedSTMInstances.numInstances(); i++){
-				this.ltm.add(discardedSTMInstances.get(i).copy());
+				this.ltm.add(discardedSTMInstances.get(i));
 			}
 			memorySizeCheck();
 		}
@@ -190,6 +200,9 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 		try {
 			if (this.stm.numInstances()>0) {
 				distancesSTM = get1ToNDistances(inst, this.stm);
+				this.lastPredicted = inst;
+				this.lastPredictedDistances = distancesSTM;
+				this.lastPredictedStart = this.stmStart;
 				int nnIndicesSTM[] = nArgMin(Math.min(distancesSTM.length, this.kOption.getValue()), distancesSTM);
 				vSTM = getDistanceWeightedVotes(distancesSTM, nnIndicesSTM, this.stm);
                 predClassSTM = this.getClassFromVotes(vSTM);
@@ -308,34 +321,80 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 			}else{ //shift values from STM directly to LTM since STM is full
 				int numShifts = this.maxLTMSize - this.ltm.numInstances() + 1;
 				for (int i = 0; i < numShifts; i++){
-					this.ltm.add(this.stm.get(0).copy());
-					this.stm.delete(0);
+					this.ltm.add(this.stm.get(0));
+					this.deleteOldestSTM();
 					this.stmHistory.remove(0);
 					this.ltmHistory.remove(0);
 					this.cmHistory.remove(0);
 				}
 				this.clusterDown();
 				this.predictionHistories.clear();
-				for (int i = 0; i < this.stm.numInstances(); i++){
-					for (int j = 0; j < this.stm.numInstances(); j++){
-						this.distanceMatrixSTM[i][j] = this.distanceMatrixSTM[numShifts+i][numShifts+j];
-					}
-				}
 			}
 		}
 	}
 
-	private void cleanSingle(Instances cleanAgainst, int cleanAgainstindex, Instances toClean){
-		Instances cleanAgainstTmp = new Instances(cleanAgainst);
-		cleanAgainstTmp.delete(cleanAgainstindex);
-		double distancesSTM[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), cleanAgainstTmp);
+	/**
+	 * Removes the oldest sample of the STM. The distance rows of the remaining samples are not moved.
+	 */
+	private void deleteOldestSTM(){
+		this.stm.delete(0);
+		this.distanceMatrixSTM[this.getDistanceRowSlot(0)] = null;
+		this.stmStart++;
+	}
+
+	/**
+	 * Returns the slot of the distance row of the STM sample at the given index.
+	 */
+	private int getDistanceRowSlot(int index){
+		return (int)((this.stmStart + index) % this.distanceMatrixSTM.length);
+	}
+
+	/**
+	 * Returns the position of the oldest STM sample in the distance row of the STM sample at the given index.
+	 */
+	private int getDistanceRowShift(int index){
+		return (int)(this.stmStart - this.distanceRowStarts[this.getDistanceRowSlot(index)]);
+	}
+
+	/**
+	 * Returns the distances of the last STM sample to all STM samples. They are taken from the prediction if the
+	 * sample was just predicted and the STM only lost its oldest samples since.
+	 */
+	private double[] getLastSTMDistances(Instance inst){
+		int n = this.stm.numInstances();
+		if (inst == this.lastPredicted && this.lastPredictedStart <= this.stmStart
+				&& this.lastPredictedStart + this.lastPredictedDistances.length == this.stmStart + n - 1){
+			double distances[] = new double[n];
+			System.arraycopy(this.lastPredictedDistances, (int)(this.stmStart - this.lastPredictedStart), distances, 0, n - 1);
+			return distances;
+		}
+		return get1ToNDistances(inst, this.stm);
+	}
+
+	/**
+	 * Returns the distances of the STM sample at the given index to the other STM samples, read from the distance rows.
+	 */
+	private double[] getSTMDistancesWithout(int index){
+		int n = this.stm.numInstances();
+		double distances[] = new double[n - 1];
+		System.arraycopy(this.distanceMatrixSTM[this.getDistanceRowSlot(index)], this.getDistanceRowShift(index), distances, 0, index);
+		for (int j = index + 1; j < n; j++){
+			distances[j - 1] = this.distanceMatrixSTM[this.getDistanceRowSlot(j)][this.getDistanceRowShift(j) + index];
+		}
+		return distances;
+	}
+
+	private void cleanSingle(int stmIndex, WindowedInstances toClean){
+		double distancesSTM[] = getSTMDistancesWithout(stmIndex);
 		int nnIndicesSTM[] = nArgMin(Math.min(this.kOption.getValue(), distancesSTM.length), distancesSTM);
 
-		double distancesLTM[] = get1ToNDistances(cleanAgainst.get(cleanAgainstindex), toClean);
+		Instance sample = this.stm.get(stmIndex);
+		double classValue = sample.classValue();
+		double distancesLTM[] = get1ToNDistances(sample, toClean);
 		int nnIndicesLTM[] = nArgMin(Math.min(this.kOption.getValue(), distancesLTM.length), distancesLTM);
 		double distThreshold = 0;
 		for (int nnIdx: nnIndicesSTM){
-			if (cleanAgainstTmp.get(nnIdx).classValue() == cleanAgainst.get(cleanAgainstindex).classValue()){
+			if (this.stm.get(nnIdx < stmIndex ? nnIdx : nnIdx + 1).classValue() == classValue){
 				if (distancesSTM[nnIdx] > distThreshold){
 					distThreshold = distancesSTM[nnIdx];
 				}
@@ -343,7 +402,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 		}
 		List<Integer> delIndices = new ArrayList<>();
         for (int nnIdx: nnIndicesLTM){
-			if (toClean.get(nnIdx).classValue() != cleanAgainst.get(cleanAgainstindex).classValue()) {
+			if (toClean.get(nnIdx).classValue() != classValue) {
 				if (distancesLTM[nnIdx] <= distThreshold){
 					delIndices.add(nnIdx);
 				}
@@ -356,13 +415,13 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
     /**
      * Removes distance-based all instances from the input samples that contradict those in the STM.
      */
-	private void clean(Instances cleanAgainst, Instances toClean, boolean onlyLast) {
-		if (cleanAgainst.numInstances() > this.kOption.getValue() && toClean.numInstances() > 0){
+	private void clean(WindowedInstances toClean, boolean onlyLast) {
+		if (this.stm.numInstances() > this.kOption.getValue() && toClean.numInstances() > 0){
 			if (onlyLast){
-				cleanSingle(cleanAgainst, (cleanAgainst.numInstances()-1), toClean);
+				cleanSingle((this.stm.numInstances()-1), toClean);
 			}else{
-				for (int i=0; i < cleanAgainst.numInstances(); i++){
-					cleanSingle(cleanAgainst, i, toClean);
+				for (int i=0; i < this.stm.numInstances(); i++){
+					cleanSingle(i, toClean);
 				}
 			}
 		}
@@ -417,35 +476,25 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 		return maxVoteClass;
 	}
 
-	private int getLabelFct(double distances[], Instances instances, int startIdx, int endIdx){
-		int nnIndices[] = nArgMin(Math.min(this.kOption.getValue(), distances.length), distances, startIdx, endIdx);
-		double votes[] = getDistanceWeightedVotes(distances, nnIndices, instances);
+	/**
+	 * Returns the label of the STM sample at the given index predicted by the STM samples from startIdx to the sample before it.
+	 */
+	private int getLabelFct(Instances instances, int index, int startIdx){
+		double distances[] = this.distanceMatrixSTM[this.getDistanceRowSlot(index)];
+		int shift = this.getDistanceRowShift(index);
+		int nnIndices[] = nArgMin(Math.min(this.kOption.getValue(), distances.length), distances, startIdx + shift, index - 1 + shift);
+		double votes[] = new double[this.maxClassValue +1];
+		for (int nnIdx : nnIndices) {
+			votes[(int)instances.instance(nnIdx - shift).classValue()] += 1./Math.max(distances[nnIdx], 0.000000001);
+		}
 		return this.getClassFromVotes(votes);
 	}
 
-    /**
-     * Returns the Euclidean distance.
-     */
-	private double getDistance(Instance sample, Instance sample2)
-    {
-        double sum=0;
-        for (int i=0; i<sample.numInputAttributes(); i++)
-        {
-            double diff = sample.valueInputAttribute(i)-sample2.valueInputAttribute(i);
-            sum += diff*diff;
-        }
-        return Math.sqrt(sum);
-    }
-
     /**
      * Returns the Euclidean distance between one sample and a collection of samples in an 1D-array.
      */
-	private double[] get1ToNDistances(Instance sample, Instances samples){
-		double distances[] = new double[samples.numInstances()];
-		for (int i=0; i<samples.numInstances(); i++){
-			distances[i] = this.getDistance(sample, samples.get(i));
-		}
-		return distances;
+	private double[] get1ToNDistances(Instance sample, WindowedInstances samples){
+		return samples.distances(sample.toDoubleArray());
 	}
 
     /**
@@ -453,6 +502,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
      */
 	private int[] nArgMin(int n, double[] values, int startIdx, int endIdx){
 		int indices[] = new int[n];
+		Arrays.fill(indices, startIdx);
 		for (int i=0; i<n; i++){
 			double minValue = Double.MAX_VALUE;
 			for (int j=startIdx; j<endIdx+1; j++){
@@ -497,7 +547,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
      */
 	private List<Integer> getIncrementalTestTrainPredHistory(Instances instances, int startIdx, List<Integer> predictionHistory){
 		for (int i= startIdx + this.kOption.getValue() + predictionHistory.size(); i < instances.numInstances(); i++){
-			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], instances, startIdx,  i-1)==instances.get(i).classValue()) ? 1 : 0);
+			predictionHistory.add((this.getLabelFct(instances, i, startIdx)==instances.get(i).classValue()) ? 1 : 0);
 		}
 		return predictionHistory;
 	}
@@ -507,7 +557,7 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
 	private List<Integer> getTestTrainPredHistory(Instances instances, int startIdx){
 		List<Integer> predictionHistory = new ArrayList<>();
 		for (int i= startIdx + this.kOption.getValue(); i < instances.numInstances(); i++){
-			predictionHistory.add((this.getLabelFct(distanceMatrixSTM[i], instances, startIdx, i-1)==instances.get(i).classValue()) ? 1 : 0);
+			predictionHistory.add((this.getLabelFct(instances, i, startIdx)==instances.get(i).classValue()) ? 1 : 0);
 		}
 		return predictionHistory;
 	}
@@ -31,6 +31,7 @@ import moa.core.Measurement;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.WindowedInstances;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 
@@ -75,7 +76,7 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier, Reg
 	@Override
 	public void setModelContext(InstancesHeader context) {
 		try {
-			this.window = new Instances(context,0); //new StringReader(context.toString())
+			this.window = new WindowedInstances(context, this.limitOption.getValue()); //new StringReader(context.toString())
 			this.window.setClassIndex(context.classIndex());
 		} catch(Exception e) {
 			System.err.println("Error: no Model Context available.");
@@ -94,7 +95,7 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier, Reg
 		if (inst.classValue() > C)
 			C = (int)inst.classValue();
 		if (this.window == null) {
-			this.window = new Instances(inst.dataset());
+			this.window = new WindowedInstances(inst.dataset(), this.limitOption.getValue());
 		}
 		if (this.limitOption.getValue() <= this.window.numInstances()) {
 			this.window.delete(0);
@@ -20,7 +20,7 @@ package moa.classifiers.lazy;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.driftdetection.ADWIN;
 import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.WindowedInstances;
 
 /**
  * k Nearest Neighbor ADAPTIVE with PAW.<p>
@@ -58,7 +58,7 @@ public class kNNwithPAW extends kNN implements MultiClassClassifier {
             C = (int) inst.classValue();
         }
         if (this.window == null) {
-            this.window = new Instances(inst.dataset());
+            this.window = new WindowedInstances(inst.dataset(), this.limitOption.getValue());
         }
 
         for (int i = 0; i < this.window.size(); i++) {
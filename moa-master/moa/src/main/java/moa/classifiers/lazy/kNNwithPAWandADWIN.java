@@ -22,7 +22,7 @@ import java.util.ArrayList;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.driftdetection.ADWIN;
 import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.WindowedInstances;
 
 /**
  * k Nearest Neighbor ADAPTIVE with ADWIN+PAW.<p>
@@ -69,7 +69,7 @@ public class kNNwithPAWandADWIN extends kNN implements MultiClassClassifier {
         }
         // ADWIN
         if (this.window == null) {
-            this.window = new Instances(inst.dataset());
+            this.window = new WindowedInstances(inst.dataset(), this.limitOption.getValue());
         }
 
         if (this.timeStamp == null) {
@@ -138,8 +138,7 @@ public class ADOB extends AbstractClassifier implements MultiClassClassifier {
             }
             
             if (k > 0.0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
+                Instance weightedInst = inst.weightedView(inst.weight() * k);
                 this.ensemble[pos].trainOnInstance(weightedInst);
             }
 
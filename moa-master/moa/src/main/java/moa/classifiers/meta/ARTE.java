@@ -301,7 +301,7 @@ CapabilitiesHandler {
 
             if(this.useDriftDetector) {
                 this.driftOption = driftOption;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
             }
 
         }
@@ -323,7 +323,7 @@ CapabilitiesHandler {
         public void reset() {
         	this.classifier.resetLearning();
         	this.createdOn = instancesSeen;
-        	this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+        	this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
             accClassifierArray = null;
             this.classifier.subspaceSizeOption.setValue(randomSubSpaceSizeLocal());
         }
@@ -340,8 +340,7 @@ CapabilitiesHandler {
     	}
         
         public void trainOnInstance(Instance instance, double weight, long instancesSeen) {
-            Instance weightedInstance = instance.copy();
-            weightedInstance.setWeight(instance.weight() * weight);
+            Instance weightedInstance = instance.weightedView(instance.weight() * weight);
             this.classifier.trainOnInstance(weightedInstance);
             
             // Should it use a drift detector?  
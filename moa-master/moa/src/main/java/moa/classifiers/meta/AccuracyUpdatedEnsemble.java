@@ -19,6 +19,14 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
@@ -36,6 +44,12 @@ import com.yahoo.labs.samoa.instances.Instances;
  * The revised version of the Accuracy Updated Ensemble as proposed by
  * Brzezinski and Stefanowski in "Reacting to Different Types of Concept Drift:
  * The Accuracy Updated Ensemble Algorithm", IEEE Trans. Neural Netw, 2013.
+ *
+ * <p>With more than one job, each full chunk is handed over to a background
+ * thread that scores and trains copies of the members in parallel while the
+ * next chunk is being collected. The new members and weights replace the
+ * current ones as soon as the chunk is processed, so the predictions made in
+ * the meantime come from the previous ensemble.</p>
  */
 public class AccuracyUpdatedEnsemble extends AbstractClassifier implements MultiClassClassifier {
 
@@ -66,6 +80,14 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	public IntOption maxByteSizeOption = new IntOption("maxByteSize", 'm', "Maximum memory consumed by ensemble.",
 			33554432, 0, Integer.MAX_VALUE);
 
+	/**
+	 * Number of threads used for processing chunks.
+	 */
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Total number of concurrent jobs used for processing chunks in the background (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+	protected static final int SINGLE_THREAD = 0;
+
 	/**
 	 * The weights of stored classifiers. 
 	 * weights[x][0] = weight
@@ -98,6 +120,21 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	 */
 	protected Instances currentChunk;
 
+	/**
+	 * Threads scoring and training the members, null when chunks are processed in place.
+	 */
+	private transient ExecutorService executor;
+
+	/**
+	 * Single thread processing one chunk at a time in the background.
+	 */
+	private transient ExecutorService chunkExecutor;
+
+	/**
+	 * Chunk being processed in the background.
+	 */
+	private transient Future<ProcessedChunk> processedChunk;
+
 	@Override
 	public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
 		this.candidate = (Classifier) getPreparedClassOption(this.learnerOption);
@@ -112,15 +149,22 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 		this.classDistributions = null;
 		this.processedInstances = 0;
 		this.learners = new Classifier[0];
+		this.weights = new double[0][];
 
 		this.candidate = (Classifier) getPreparedClassOption(this.learnerOption);
 		this.candidate.resetLearning();
+
+		this.cleanThreads();
 	}
 
 	@Override
 	public void trainOnInstanceImpl(Instance inst) {
 		this.initVariables();
 
+		if (this.processedChunk != null && this.processedChunk.isDone()) {
+			this.installProcessedChunk();
+		}
+
 		this.classDistributions[(int) inst.classValue()]++;
 		this.currentChunk.add(inst);
 		this.processedInstances++;
@@ -173,58 +217,51 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 
 	/**
 	 * Processes a chunk of instances.
-	 * This method is called after collecting a chunk of examples.
+	 * This method is called after collecting a chunk of examples. With more
+	 * than one job the chunk is processed in the background, after the
+	 * previous chunk has been installed.
 	 */
 	protected void processChunk() {
-		Classifier addedClassifier = null;
-		double mse_r = this.computeMseR();
-
-		// Compute weights
-		double candidateClassifierWeight = 1.0 / (mse_r + Double.MIN_VALUE);
-
-		for (int i = 0; i < this.learners.length; i++) {
-			this.weights[i][0] = 1.0 / (mse_r + this.computeMse(this.learners[(int) this.weights[i][1]], this.currentChunk) + Double.MIN_VALUE);
-		}	
-
-		if (this.learners.length < this.memberCountOption.getValue()) {
-			// Train and add classifier
-			addedClassifier = this.addToStored(this.candidate, candidateClassifierWeight);
-		} else {
-			// Substitute poorest classifier
-			int poorestClassifier = this.getPoorestClassifierIndex();
-
-			if (this.weights[poorestClassifier][0] < candidateClassifierWeight) {
-				this.weights[poorestClassifier][0] = candidateClassifierWeight;
-				addedClassifier = this.candidate.copy();
-				this.learners[(int) this.weights[poorestClassifier][1]] = addedClassifier;
-			}
+		// the processor starts from the members of the previous chunk
+		this.installProcessedChunk();
+		double[][] chunkWeights = new double[this.weights.length][];
+		for (int i = 0; i < chunkWeights.length; i++) {
+			chunkWeights[i] = this.weights[i].clone();
 		}
+		ChunkProcessor processor = new ChunkProcessor(this.currentChunk, this.classDistributions,
+				this.candidate, this.learners, chunkWeights, this.executor != null);
 
-		// train classifiers
-		for (int i = 0; i < this.learners.length; i++) {
-			this.trainOnChunk(this.learners[(int) this.weights[i][1]]);
+		if (this.executor != null) {
+			this.processedChunk = this.chunkExecutor.submit(processor);
+		} else {
+			this.installProcessedChunk(processor.call());
 		}
 
 		this.classDistributions = null;
 		this.currentChunk = null;
 		this.candidate = (Classifier) getPreparedClassOption(this.learnerOption);
 		this.candidate.resetLearning();
-
-		if (this.candidate instanceof HoeffdingTree) {
-			this.enforceMemoryLimit();
-		}
 	}
 
 	/**
 	 * Checks if the memory limit is exceeded and if so prunes the classifiers in the ensemble.
 	 */
 	protected void enforceMemoryLimit() {
-		double memoryLimit = this.maxByteSizeOption.getValue() / (double) (this.learners.length + 1);
+		this.enforceMemoryLimit(this.learners);
+	}
+
+	/**
+	 * Prunes the given classifiers so that they fit the memory limit of the ensemble.
+	 * 
+	 * @param members HoeffdingTree members of the ensemble
+	 */
+	protected void enforceMemoryLimit(Classifier[] members) {
+		double memoryLimit = this.maxByteSizeOption.getValue() / (double) (members.length + 1);
 
-		for (int i = 0; i < this.learners.length; i++) {
-			((HoeffdingTree) this.learners[(int) this.weights[i][1]]).maxByteSizeOption.setValue((int) Math
+		for (int i = 0; i < members.length; i++) {
+			((HoeffdingTree) members[i]).maxByteSizeOption.setValue((int) Math
 					.round(memoryLimit));
-			((HoeffdingTree) this.learners[(int) this.weights[i][1]]).enforceTrackerLimit();
+			((HoeffdingTree) members[i]).enforceTrackerLimit();
 		}
 	}
 
@@ -234,11 +271,21 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	 * @return The MSEr threshold.
 	 */
 	protected double computeMseR() {
+		return this.computeMseR(this.classDistributions);
+	}
+
+	/**
+	 * Computes the MSEr threshold of a chunk.
+	 * 
+	 * @param chunkClassDistributions class counts of the chunk
+	 * @return The MSEr threshold.
+	 */
+	protected double computeMseR(long[] chunkClassDistributions) {
 		double p_c;
 		double mse_r = 0;
 
-		for (int i = 0; i < this.classDistributions.length; i++) {
-			p_c = (double) this.classDistributions[i] / (double) this.chunkSizeOption.getValue();
+		for (int i = 0; i < chunkClassDistributions.length; i++) {
+			p_c = (double) chunkClassDistributions[i] / (double) this.chunkSizeOption.getValue();
 			mse_r += p_c * ((1 - p_c) * (1 - p_c));
 		}
 
@@ -256,17 +303,18 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 
 		double f_ci;
 		double voteSum;
+		double[] votes;
 
 		for (int i = 0; i < chunk.numInstances(); i++) {
 			try {
 				voteSum = 0;
-				for (double element : learner.getVotesForInstance(chunk.instance(i))) {
+				votes = learner.getVotesForInstance(chunk.instance(i));
+				for (double element : votes) {
 					voteSum += element;
 				}
 
 				if (voteSum > 0) {
-					f_ci = learner.getVotesForInstance(chunk.instance(i))[(int) chunk.instance(i).classValue()]
-							/ voteSum;
+					f_ci = votes[(int) chunk.instance(i).classValue()] / voteSum;
 					mse_i += (1 - f_ci) * (1 - f_ci);
 				} else {
 					mse_i += 1;
@@ -333,13 +381,14 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	
 	/**
 	 * Finds the index of the classifier with the smallest weight.
+	 * @param memberWeights weights of the stored classifiers
 	 * @return
 	 */
-	private int getPoorestClassifierIndex() {
+	private static int getPoorestClassifierIndex(double[][] memberWeights) {
 		int minIndex = 0;
 		
-		for (int i = 1; i < this.weights.length; i++) {
-			if(this.weights[i][0] < this.weights[minIndex][0]){
+		for (int i = 1; i < memberWeights.length; i++) {
+			if(memberWeights[i][0] < memberWeights[minIndex][0]){
 				minIndex = i;
 			}
 		}
@@ -355,6 +404,20 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 			this.currentChunk = new Instances(this.getModelContext());
 		}
 
+		if (this.executor == null) {
+			int numberOfJobs;
+			if (this.numberOfJobsOption.getValue() == -1)
+				numberOfJobs = Runtime.getRuntime().availableProcessors();
+			else
+				numberOfJobs = this.numberOfJobsOption.getValue();
+			// SINGLE_THREAD and requesting for only 1 thread are equivalent.
+			// this.executor will be null and not used...
+			if (numberOfJobs != AccuracyUpdatedEnsemble.SINGLE_THREAD && numberOfJobs != 1) {
+				this.executor = Executors.newFixedThreadPool(numberOfJobs);
+				this.chunkExecutor = Executors.newSingleThreadExecutor();
+			}
+		}
+
 		if (this.classDistributions == null) {
 			this.classDistributions = new long[this.getModelContext().classAttribute().numValues()];
 
@@ -365,14 +428,189 @@ public class AccuracyUpdatedEnsemble extends AbstractClassifier implements Multi
 	}
 	
 	/**
-	 * Trains a component classifier on the most recent chunk of data.
+	 * Trains a component classifier on a chunk of data.
 	 * 
 	 * @param classifierToTrain
 	 *            Classifier being trained.
+	 * @param chunk
+	 *            Chunk of examples.
 	 */
-	private void trainOnChunk(Classifier classifierToTrain) {
+	private void trainOnChunk(Classifier classifierToTrain, Instances chunk) {
 		for (int num = 0; num < this.chunkSizeOption.getValue(); num++) {
-			classifierToTrain.trainOnInstance(this.currentChunk.instance(num));
+			classifierToTrain.trainOnInstance(chunk.instance(num));
+		}
+	}
+
+	/**
+	 * Runs the tasks on the member threads, or in place when there are none.
+	 */
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			if (this.executor != null) {
+				for (Future<T> future : this.executor.invokeAll(tasks)) {
+					results.add(future.get());
+				}
+			} else {
+				for (Callable<T> task : tasks) {
+					results.add(task.call());
+				}
+			}
+		} catch (InterruptedException ex) {
+			throw new RuntimeException("Could not call invokeAll() on chunk processing threads.");
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Chunk processing failed.", ex.getCause());
+		} catch (Exception ex) {
+			throw new RuntimeException("Chunk processing failed.", ex);
+		}
+		return results;
+	}
+
+	/**
+	 * Waits for the chunk being processed in the background, if any, and
+	 * installs its members and weights.
+	 */
+	protected void installProcessedChunk() {
+		if (this.processedChunk == null) {
+			return;
+		}
+		try {
+			this.installProcessedChunk(this.processedChunk.get());
+		} catch (InterruptedException ex) {
+			throw new RuntimeException("Interrupted while waiting for chunk processing thread.");
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Chunk processing failed.", ex.getCause());
+		} finally {
+			this.processedChunk = null;
+		}
+	}
+
+	/**
+	 * Replaces the members and weights by those of a processed chunk.
+	 */
+	private void installProcessedChunk(ProcessedChunk chunk) {
+		this.learners = chunk.learners;
+		this.weights = chunk.weights;
+	}
+
+	/**
+	 * Stops the chunk processing threads. A chunk still being processed is discarded.
+	 */
+	public void cleanThreads() {
+		if (this.chunkExecutor != null) {
+			this.chunkExecutor.shutdownNow();
+			this.chunkExecutor = null;
+		}
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+		this.processedChunk = null;
+	}
+
+	/**
+	 * Members and weights of the ensemble after processing a chunk.
+	 */
+	protected static class ProcessedChunk {
+		final Classifier[] learners;
+		final double[][] weights;
+
+		ProcessedChunk(Classifier[] learners, double[][] weights) {
+			this.learners = learners;
+			this.weights = weights;
+		}
+	}
+
+	/**
+	 * Scores the members and the candidate on a chunk, substitutes the poorest
+	 * member and trains all members on the chunk. Members are only read while
+	 * scoring. When processing in the background, copies of the members are
+	 * trained so that the current ones can still be used for prediction.
+	 */
+	protected class ChunkProcessor implements Callable<ProcessedChunk> {
+		final private Instances chunk;
+		final private long[] chunkClassDistributions;
+		final private Classifier chunkCandidate;
+		final private Classifier[] members;
+		final private double[][] memberWeights;
+		final private boolean copyMembers;
+
+		public ChunkProcessor(Instances chunk, long[] chunkClassDistributions, Classifier chunkCandidate,
+				Classifier[] members, double[][] memberWeights, boolean copyMembers) {
+			this.chunk = chunk;
+			this.chunkClassDistributions = chunkClassDistributions;
+			this.chunkCandidate = chunkCandidate;
+			this.members = members;
+			this.memberWeights = memberWeights;
+			this.copyMembers = copyMembers;
+		}
+
+		@Override
+		public ProcessedChunk call() {
+			double mse_r = computeMseR(this.chunkClassDistributions);
+
+			// Compute weights
+			double candidateClassifierWeight = 1.0 / (mse_r + Double.MIN_VALUE);
+
+			List<Callable<Double>> scorers = new ArrayList<Callable<Double>>();
+			for (int i = 0; i < this.members.length; i++) {
+				final Classifier member = this.members[(int) this.memberWeights[i][1]];
+				scorers.add(new Callable<Double>() {
+					@Override
+					public Double call() {
+						return computeMse(member, chunk);
+					}
+				});
+			}
+			List<Double> mse = invokeAll(scorers);
+			for (int i = 0; i < this.members.length; i++) {
+				this.memberWeights[i][0] = 1.0 / (mse_r + mse.get(i) + Double.MIN_VALUE);
+			}
+
+			Classifier[] newMembers;
+			double[][] newWeights;
+			int addedIndex = -1;
+			if (this.members.length < memberCountOption.getValue()) {
+				// Add classifier
+				addedIndex = this.members.length;
+				newMembers = new Classifier[addedIndex + 1];
+				newWeights = new double[addedIndex + 1][];
+				System.arraycopy(this.members, 0, newMembers, 0, addedIndex);
+				System.arraycopy(this.memberWeights, 0, newWeights, 0, addedIndex);
+				newMembers[addedIndex] = this.chunkCandidate.copy();
+				newWeights[addedIndex] = new double[] {candidateClassifierWeight, addedIndex};
+			} else {
+				// Substitute poorest classifier
+				newMembers = this.members.clone();
+				newWeights = this.memberWeights;
+				int poorestClassifier = getPoorestClassifierIndex(newWeights);
+
+				if (newWeights[poorestClassifier][0] < candidateClassifierWeight) {
+					newWeights[poorestClassifier][0] = candidateClassifierWeight;
+					addedIndex = (int) newWeights[poorestClassifier][1];
+					newMembers[addedIndex] = this.chunkCandidate.copy();
+				}
+			}
+
+			// train classifiers
+			List<Callable<Classifier>> trainers = new ArrayList<Callable<Classifier>>();
+			for (int i = 0; i < newMembers.length; i++) {
+				final Classifier member = this.copyMembers && i != addedIndex ? newMembers[i].copy() : newMembers[i];
+				trainers.add(new Callable<Classifier>() {
+					@Override
+					public Classifier call() {
+						trainOnChunk(member, chunk);
+						return member;
+					}
+				});
+			}
+			newMembers = invokeAll(trainers).toArray(new Classifier[newMembers.length]);
+
+			if (this.chunkCandidate instanceof HoeffdingTree) {
+				enforceMemoryLimit(newMembers);
+			}
+
+			return new ProcessedChunk(newMembers, newWeights);
 		}
 	}
 
@@ -19,7 +19,14 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
@@ -37,6 +44,12 @@ import moa.core.Utils;
 /**
  * The Accuracy Weighted Ensemble classifier as proposed by Wang et al. in
  * "Mining concept-drifting data streams using ensemble classifiers", KDD 2003.
+ *
+ * <p>With more than one job, each full chunk is handed over to a background
+ * thread that cross-validates the candidate and scores the stored classifiers in
+ * parallel while the next chunk is being collected. The new ensemble replaces
+ * the current one as soon as the chunk is processed, so the predictions made
+ * in the meantime come from the previous ensemble.</p>
  */
 public class AccuracyWeightedEnsemble extends AbstractClassifier implements MultiClassClassifier {
 
@@ -94,6 +107,14 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
      */
     public IntOption numFoldsOption = new IntOption("numFolds", 'f', "Number of cross-validation folds for candidate classifier testing.", 10, 1, Integer.MAX_VALUE);
 
+    /**
+     * Number of threads used for processing chunks.
+     */
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing chunks in the background (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
     protected long[] classDistributions;
 
     protected Classifier[] ensemble;
@@ -122,6 +143,21 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
 
     protected Instances currentChunk;
 
+    /**
+     * Threads scoring the classifiers, null when chunks are processed in place.
+     */
+    private transient ExecutorService executor;
+
+    /**
+     * Single thread processing one chunk at a time in the background.
+     */
+    private transient ExecutorService chunkExecutor;
+
+    /**
+     * Chunk being processed in the background.
+     */
+    private transient Future<ProcessedChunk> processedChunk;
+
     @Override
     public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
         this.maxMemberCount = (int) memberCountOption.getValue();
@@ -146,15 +182,22 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         this.processedInstances = 0;
         this.ensemble = new Classifier[0];
         this.storedLearners = new Classifier[0];
+        this.storedWeights = null;
 
         this.candidateClassifier = (Classifier) getPreparedClassOption(this.learnerOption);
         this.candidateClassifier.resetLearning();
+
+        this.cleanThreads();
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
         this.initVariables();
 
+        if (this.processedChunk != null && this.processedChunk.isDone()) {
+            this.installProcessedChunk();
+        }
+
         this.classDistributions[(int) inst.classValue()]++;
         this.currentChunk.add(inst);
         this.processedInstances++;
@@ -172,6 +215,20 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
             this.currentChunk = new Instances(this.getModelContext());
         }
 
+        if (this.executor == null) {
+            int numberOfJobs;
+            if (this.numberOfJobsOption.getValue() == -1)
+                numberOfJobs = Runtime.getRuntime().availableProcessors();
+            else
+                numberOfJobs = this.numberOfJobsOption.getValue();
+            // SINGLE_THREAD and requesting for only 1 thread are equivalent.
+            // this.executor will be null and not used...
+            if (numberOfJobs != AccuracyWeightedEnsemble.SINGLE_THREAD && numberOfJobs != 1) {
+                this.executor = Executors.newFixedThreadPool(numberOfJobs);
+                this.chunkExecutor = Executors.newSingleThreadExecutor();
+            }
+        }
+
         if (this.classDistributions == null) {
             this.classDistributions = new long[this.getModelContext().classAttribute().numValues()];
 
@@ -182,49 +239,26 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
     }
 
     /**
-     * Processes a chunk.
+     * Processes a chunk. With more than one job the chunk is processed in the
+     * background, after the previous chunk has been installed.
      */
     protected void processChunk() {
-        // Compute weights
-        double candidateClassifierWeight = this.computeCandidateWeight(this.candidateClassifier, this.currentChunk, this.numFolds);
-
-        for (int i = 0; i < this.storedLearners.length; i++) {
-            this.storedWeights[i][0] = this.computeWeight(this.storedLearners[(int) this.storedWeights[i][1]], this.currentChunk);
-        }
-
-        if (this.storedLearners.length < this.maxStoredCount) {
-            // Train and add classifier
-            for (int num = 0; num < this.chunkSize; num++) {
-                this.candidateClassifier.trainOnInstance(this.currentChunk.instance(num));
-            }
-
-            this.addToStored(this.candidateClassifier, candidateClassifierWeight);
-        } else {
-            // Substitute poorest classifier
-            java.util.Arrays.sort(this.storedWeights, weightComparator);
-
-            if (this.storedWeights[0][0] < candidateClassifierWeight) {
-                for (int num = 0; num < this.chunkSize; num++) {
-                    this.candidateClassifier.trainOnInstance(this.currentChunk.instance(num));
-                }
-
-                this.storedWeights[0][0] = candidateClassifierWeight;
-                this.storedLearners[(int) this.storedWeights[0][1]] = this.candidateClassifier.copy();
+        // the processor starts from the members of the previous chunk
+        this.installProcessedChunk();
+        double[][] chunkWeights = null;
+        if (this.storedWeights != null) {
+            chunkWeights = new double[this.storedWeights.length][];
+            for (int i = 0; i < chunkWeights.length; i++) {
+                chunkWeights[i] = this.storedWeights[i].clone();
             }
         }
+        ChunkProcessor processor = new ChunkProcessor(this.currentChunk, this.classDistributions,
+                this.candidateClassifier, this.storedLearners, chunkWeights);
 
-        int ensembleSize = java.lang.Math.min(this.storedLearners.length, this.maxMemberCount);
-        this.ensemble = new Classifier[ensembleSize];
-        this.ensembleWeights = new double[ensembleSize];
-
-        // Sort learners according to their weights
-        java.util.Arrays.sort(this.storedWeights, weightComparator);
-
-        // Select top k classifiers to construct the ensemble
-        int storeSize = this.storedLearners.length;
-        for (int i = 0; i < ensembleSize; i++) {
-            this.ensembleWeights[i] = this.storedWeights[storeSize - i - 1][0];
-            this.ensemble[i] = this.storedLearners[(int) this.storedWeights[storeSize - i - 1][1]];
+        if (this.executor != null) {
+            this.processedChunk = this.chunkExecutor.submit(processor);
+        } else {
+            this.installProcessedChunk(processor.call());
         }
 
         this.classDistributions = null;
@@ -242,7 +276,35 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
      * @return Candidate classifier weight.
      */
     protected double computeCandidateWeight(Classifier candidate, Instances chunk, int numFolds) {
-        double candidateWeight = 0.0;
+        return this.computeCandidateWeight(candidate, chunk, numFolds, this.computeMseR());
+    }
+
+    /**
+     * Computes the weight of a candidate classifier.
+     *
+     * @param candidate Candidate classifier.
+     * @param chunk Data chunk of examples.
+     * @param numFolds Number of folds in candidate classifier cross-validation.
+     * @param mse_r The MSEr threshold of the chunk.
+     * @return Candidate classifier weight.
+     */
+    protected double computeCandidateWeight(Classifier candidate, Instances chunk, int numFolds, double mse_r) {
+        return this.averageFoldWeights(this.invokeAll(this.createFoldScorers(candidate, chunk, numFolds, mse_r)));
+    }
+
+    /**
+     * Creates one task per cross-validation fold of a candidate classifier.
+     * Folds are drawn here, in order, so that the folds do not depend on the
+     * order in which the tasks run.
+     *
+     * @param candidate Candidate classifier.
+     * @param chunk Data chunk of examples.
+     * @param numFolds Number of folds in candidate classifier cross-validation.
+     * @param mse_r The MSEr threshold of the chunk.
+     * @return Tasks computing the weight of the candidate on each fold.
+     */
+    protected List<Callable<Double>> createFoldScorers(Classifier candidate, Instances chunk, int numFolds, final double mse_r) {
+        List<Callable<Double>> scorers = new ArrayList<Callable<Double>>(numFolds);
         Random random = new Random(1);
         Instances randData = new Instances(chunk);
         randData.randomize(random);
@@ -251,19 +313,36 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         }
 
         for (int n = 0; n < numFolds; n++) {
-            Instances train = randData.trainCV(numFolds, n, random);
-            Instances test = randData.testCV(numFolds, n);
-
-            Classifier learner = candidate.copy();
-
-            for (int num = 0; num < train.numInstances(); num++) {
-                learner.trainOnInstance(train.instance(num));
-            }
+            final Instances train = randData.trainCV(numFolds, n, random);
+            final Instances test = randData.testCV(numFolds, n);
+            final Classifier learner = candidate.copy();
+
+            scorers.add(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    for (int num = 0; num < train.numInstances(); num++) {
+                        learner.trainOnInstance(train.instance(num));
+                    }
+                    return computeWeight(learner, test, mse_r);
+                }
+            });
+        }
+        return scorers;
+    }
 
-            candidateWeight += computeWeight(learner, test);
+    /**
+     * Averages the weights of a candidate classifier over the folds.
+     *
+     * @param foldWeights Weight of the candidate on each fold.
+     * @return Candidate classifier weight.
+     */
+    protected double averageFoldWeights(List<Double> foldWeights) {
+        double candidateWeight = 0.0;
+        for (double foldWeight : foldWeights) {
+            candidateWeight += foldWeight;
         }
 
-        double resultWeight = candidateWeight / numFolds;
+        double resultWeight = candidateWeight / foldWeights.size();
 
         if (Double.isInfinite(resultWeight)) {
             return Double.MAX_VALUE;
@@ -280,21 +359,34 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
      * @return The given classifier's weight.
      */
     protected double computeWeight(Classifier learner, Instances chunk) {
+        return this.computeWeight(learner, chunk, this.computeMseR());
+    }
+
+    /**
+     * Computes the weight of a given classifier.
+     *
+     * @param learner Classifier to calculate weight for.
+     * @param chunk Data chunk of examples.
+     * @param mse_r The MSEr threshold of the chunk.
+     * @return The given classifier's weight.
+     */
+    protected double computeWeight(Classifier learner, Instances chunk, double mse_r) {
         double mse_i = 0;
-        double mse_r = 0;
 
         double f_ci;
         double voteSum;
+        double[] votes;
 
         for (int i = 0; i < chunk.numInstances(); i++) {
             try {
                 voteSum = 0;
-                for (double element : learner.getVotesForInstance(chunk.instance(i))) {
+                votes = learner.getVotesForInstance(chunk.instance(i));
+                for (double element : votes) {
                     voteSum += element;
                 }
 
                 if (voteSum > 0) {
-                    f_ci = learner.getVotesForInstance(chunk.instance(i))[(int) chunk.instance(i).classValue()] / voteSum;
+                    f_ci = votes[(int) chunk.instance(i).classValue()] / voteSum;
                     mse_i += (1 - f_ci) * (1 - f_ci);
                 } else {
                     mse_i += 1;
@@ -305,7 +397,6 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         }
 
         mse_i /= this.chunkSize;
-        mse_r = this.computeMseR();
 
         return java.lang.Math.max(mse_r - mse_i, 0);
     }
@@ -316,11 +407,21 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
      * @return The MSEr threshold.
      */
     protected double computeMseR() {
+        return this.computeMseR(this.classDistributions);
+    }
+
+    /**
+     * Computes the MSEr threshold of a chunk.
+     *
+     * @param chunkClassDistributions Class counts of the chunk.
+     * @return The MSEr threshold.
+     */
+    protected double computeMseR(long[] chunkClassDistributions) {
         double p_c;
         double mse_r = 0;
 
-        for (int i = 0; i < this.classDistributions.length; i++) {
-            p_c = (double) this.classDistributions[i] / (double) this.chunkSize;
+        for (int i = 0; i < chunkClassDistributions.length; i++) {
+            p_c = (double) chunkClassDistributions[i] / (double) this.chunkSize;
             mse_r += p_c * ((1 - p_c) * (1 - p_c));
         }
 
@@ -458,4 +559,182 @@ public class AccuracyWeightedEnsemble extends AbstractClassifier implements Mult
         this.ensemble = newEnsemble;
         this.ensembleWeights = newEnsembleWeights;
     }
+
+    /**
+     * Runs the tasks on the scoring threads, or in place when there are none.
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            if (this.executor != null) {
+                for (Future<T> future : this.executor.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            } else {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on chunk processing threads.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Chunk processing failed.", ex.getCause());
+        } catch (Exception ex) {
+            throw new RuntimeException("Chunk processing failed.", ex);
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the chunk being processed in the background, if any, and
+     * installs the resulting ensemble.
+     */
+    protected void installProcessedChunk() {
+        if (this.processedChunk == null) {
+            return;
+        }
+        try {
+            this.installProcessedChunk(this.processedChunk.get());
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Interrupted while waiting for chunk processing thread.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Chunk processing failed.", ex.getCause());
+        } finally {
+            this.processedChunk = null;
+        }
+    }
+
+    /**
+     * Replaces the stored classifiers and the ensemble by those of a processed chunk.
+     */
+    private void installProcessedChunk(ProcessedChunk chunk) {
+        this.storedLearners = chunk.storedLearners;
+        this.storedWeights = chunk.storedWeights;
+        this.ensemble = chunk.ensemble;
+        this.ensembleWeights = chunk.ensembleWeights;
+    }
+
+    /**
+     * Stops the chunk processing threads. A chunk still being processed is discarded.
+     */
+    public void cleanThreads() {
+        if (this.chunkExecutor != null) {
+            this.chunkExecutor.shutdownNow();
+            this.chunkExecutor = null;
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.processedChunk = null;
+    }
+
+    /**
+     * Stored classifiers and ensemble after processing a chunk.
+     */
+    protected static class ProcessedChunk {
+        final Classifier[] storedLearners;
+        final double[][] storedWeights;
+        final Classifier[] ensemble;
+        final double[] ensembleWeights;
+
+        ProcessedChunk(Classifier[] storedLearners, double[][] storedWeights,
+                Classifier[] ensemble, double[] ensembleWeights) {
+            this.storedLearners = storedLearners;
+            this.storedWeights = storedWeights;
+            this.ensemble = ensemble;
+            this.ensembleWeights = ensembleWeights;
+        }
+    }
+
+    /**
+     * Evaluates the candidate and scores the stored classifiers on a chunk,
+     * then selects the top classifiers. Each cross-validation fold of the
+     * candidate and each stored classifier are scored as independent tasks. Stored
+     * classifiers are only read, so the current ensemble can still be used for
+     * prediction while a chunk is processed in the background.
+     */
+    protected class ChunkProcessor implements Callable<ProcessedChunk> {
+        final private Instances chunk;
+        final private Classifier candidate;
+        final private Classifier[] stored;
+        final private double[][] weights;
+        final private double mse_r;
+
+        public ChunkProcessor(Instances chunk, long[] chunkClassDistributions, Classifier candidate,
+                Classifier[] stored, double[][] weights) {
+            this.chunk = chunk;
+            this.candidate = candidate;
+            this.stored = stored;
+            this.weights = weights;
+            this.mse_r = computeMseR(chunkClassDistributions);
+        }
+
+        @Override
+        public ProcessedChunk call() {
+            // Compute weights
+            List<Callable<Double>> scorers = createFoldScorers(this.candidate, this.chunk, numFolds, this.mse_r);
+            for (int i = 0; i < this.stored.length; i++) {
+                final Classifier learner = this.stored[(int) this.weights[i][1]];
+                scorers.add(new Callable<Double>() {
+                    @Override
+                    public Double call() {
+                        return computeWeight(learner, chunk, mse_r);
+                    }
+                });
+            }
+            List<Double> scores = invokeAll(scorers);
+            double candidateClassifierWeight = averageFoldWeights(scores.subList(0, numFolds));
+            for (int i = 0; i < this.stored.length; i++) {
+                this.weights[i][0] = scores.get(numFolds + i);
+            }
+
+            Classifier[] newStored = this.stored;
+            double[][] newWeights = this.weights;
+            if (this.stored.length < maxStoredCount) {
+                // Train and add classifier
+                for (int num = 0; num < chunkSize; num++) {
+                    this.candidate.trainOnInstance(this.chunk.instance(num));
+                }
+
+                newStored = new Classifier[this.stored.length + 1];
+                newWeights = new double[newStored.length][];
+                System.arraycopy(this.stored, 0, newStored, 0, this.stored.length);
+                if (this.weights != null) {
+                    System.arraycopy(this.weights, 0, newWeights, 0, this.stored.length);
+                }
+                newStored[this.stored.length] = this.candidate.copy();
+                newWeights[this.stored.length] = new double[] {candidateClassifierWeight, this.stored.length};
+            } else {
+                // Substitute poorest classifier
+                java.util.Arrays.sort(newWeights, weightComparator);
+
+                if (newWeights[0][0] < candidateClassifierWeight) {
+                    for (int num = 0; num < chunkSize; num++) {
+                        this.candidate.trainOnInstance(this.chunk.instance(num));
+                    }
+
+                    newWeights[0][0] = candidateClassifierWeight;
+                    newStored = this.stored.clone();
+                    newStored[(int) newWeights[0][1]] = this.candidate.copy();
+                }
+            }
+
+            int ensembleSize = java.lang.Math.min(newStored.length, maxMemberCount);
+            Classifier[] newEnsemble = new Classifier[ensembleSize];
+            double[] newEnsembleWeights = new double[ensembleSize];
+
+            // Sort learners according to their weights
+            java.util.Arrays.sort(newWeights, weightComparator);
+
+            // Select top k classifiers to construct the ensemble
+            int storeSize = newStored.length;
+            for (int i = 0; i < ensembleSize; i++) {
+                newEnsembleWeights[i] = newWeights[storeSize - i - 1][0];
+                newEnsemble[i] = newStored[(int) newWeights[storeSize - i - 1][1]];
+            }
+
+            return new ProcessedChunk(newStored, newWeights, newEnsemble, newEnsembleWeights);
+        }
+    }
 }
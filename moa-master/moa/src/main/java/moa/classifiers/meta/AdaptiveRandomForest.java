@@ -220,6 +220,47 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         return combinedVote.getArrayRef();
     }
 
+    /**
+     * Gets the votes of each tree for the whole batch in turn, so that the
+     * trees route the batch together. Predicting does not change the
+     * instances, the batch is used without copies.
+     */
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        if (batch.length == 0) {
+            return;
+        }
+        if(this.ensemble == null) 
+            initEnsemble(batch[0].copy());
+        DoubleVector[] combinedVotes = new DoubleVector[batch.length];
+        for (int j = 0; j < batch.length; j++) {
+            combinedVotes[j] = new DoubleVector();
+        }
+        double[][] memberVotes = new double[batch.length][];
+        for(int i = 0 ; i < this.ensemble.length ; ++i) {
+            this.ensemble[i].getVotesForInstances(batch, memberVotes);
+            // only read once the tree votes, as the evaluator is empty before
+            double acc = -1.0;
+            for (int j = 0; j < batch.length; j++) {
+                DoubleVector vote = new DoubleVector(memberVotes[j]);
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    if (acc < 0.0)
+                        acc = this.ensemble[i].evaluator.getPerformanceMeasurements()[1].getValue();
+                    if(! this.disableWeightedVote.isSet() && acc > 0.0) {
+                        for(int v = 0 ; v < vote.numValues() ; ++v) {
+                            vote.setValue(v, vote.getValue(v) * acc);
+                        }
+                    }
+                    combinedVotes[j].addValues(vote);
+                }
+            }
+        }
+        for (int j = 0; j < batch.length; j++) {
+            out[j] = combinedVotes[j].getArrayRef();
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
@@ -364,13 +405,13 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
 
             if(this.useDriftDetector) {
                 this.driftOption = driftOption;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
             }
 
             // Init Drift Detector for Warning detection. 
             if(this.useBkgLearner) {
                 this.warningOption = warningOption;
-                this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
+                this.warningDetectionMethod = (ChangeDetector) newPreparedClassOption(this.warningOption);
             }
         }
 
@@ -393,14 +434,13 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
             else {
                 this.classifier.resetLearning();
                 this.createdOn = instancesSeen;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
             }
             this.evaluator.reset();
         }
 
         public void trainOnInstance(Instance instance, double weight, long instancesSeen) {
-            Instance weightedInstance = instance.copy();
-            weightedInstance.setWeight(instance.weight() * weight);
+            Instance weightedInstance = instance.weightedView(instance.weight() * weight);
             this.classifier.trainOnInstance(weightedInstance);
             
             if(this.bkgLearner != null)
@@ -431,7 +471,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                         
                         // Update the warning detection object for the current object 
                         // (this effectively resets changes made to the object while it was still a bkg learner). 
-                        this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
+                        this.warningDetectionMethod = (ChangeDetector) newPreparedClassOption(this.warningOption);
                     }
                 }
                 
@@ -452,6 +492,10 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
             return vote.getArrayRef();
         }
 
+        public void getVotesForInstances(Instance[] batch, double[][] out) {
+            this.classifier.getVotesForInstances(batch, out);
+        }
+
         @Override
         public void getDescription(StringBuilder sb, int indent) {
         }
@@ -33,6 +33,14 @@ import moa.core.MiscUtils;
 import moa.evaluation.BasicRegressionPerformanceEvaluator;
 import moa.options.ClassOption;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Implementation of AdaptiveRandomForestRegressor, an extension of AdaptiveRandomForest for classification.
  *
@@ -40,6 +48,12 @@ import moa.options.ClassOption;
  * Adaptive random forests for data stream regression.
  * In European Symposium on Artificial Neural Networks, Computational Intelligence and Machine Learning (ESANN), 2018.
  * https://www.elen.ucl.ac.be/Proceedings/esann/esannpdf/es2018-183.pdf</p>
+ *
+ * <p>As in AdaptiveRandomForest, the trees can be evaluated and trained by
+ * concurrent jobs (-j option). The bagging weights are drawn on the calling
+ * thread in tree order and every tree keeps its own random generator, drift
+ * and warning detectors and background tree, so the forest is the same for a
+ * given seed whatever the number of jobs.</p>
  */
 public class AdaptiveRandomForestRegressor extends AbstractClassifier implements Regressor {
 
@@ -81,16 +95,24 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
     public FlagOption disableBackgroundLearnerOption = new FlagOption("disableBackgroundLearner", 'q',
             "Should use bkg learner? If disabled then reset tree immediately.");
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected static final int FEATURES_M = 0;
     protected static final int FEATURES_SQRT = 1;
     protected static final int FEATURES_SQRT_INV = 2;
     protected static final int FEATURES_PERCENT = 3;
 
+    protected static final int SINGLE_THREAD = 0;
+
     protected ARFFIMTDDBaseLearner[] ensemble;
     protected long instancesSeen;
     protected int subspaceSize;
     protected BasicRegressionPerformanceEvaluator evaluator;
 
+    private transient ExecutorService executor;
+    private transient boolean threadsInitialized;
+
     @Override
     public void resetLearningImpl() {
         // Reset attributes
@@ -98,6 +120,7 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
         this.subspaceSize = 0;
         this.instancesSeen = 0;
         this.evaluator = new BasicRegressionPerformanceEvaluator();
+        this.cleanThreads();
     }
 
     @Override
@@ -105,18 +128,66 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
         ++this.instancesSeen;
         if(this.ensemble == null)
             initEnsemble(instance);
+        if(!this.threadsInitialized)
+            initThreads();
 
+        Collection<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>();
         for (int i = 0 ; i < this.ensemble.length ; i++) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(instance));
-            InstanceExample example = new InstanceExample(instance);
-            this.ensemble[i].evaluator.addResult(example, vote.getArrayRef());
-            int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
-            if (k > 0) {
-                this.ensemble[i].trainOnInstance(instance, k, this.instancesSeen);
+            if(this.executor != null) {
+                // The weight is drawn here so that the trees get the same weights whatever the order of the jobs
+                int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+                trainers.add(new TrainingRunnable(this.ensemble[i], instance, k, this.instancesSeen));
+            }
+            else { // SINGLE_THREAD is in-place...
+                DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(instance));
+                InstanceExample example = new InstanceExample(instance);
+                this.ensemble[i].evaluator.addResult(example, vote.getArrayRef());
+                int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+                if (k > 0) {
+                    this.ensemble[i].trainOnInstance(instance, k, this.instancesSeen);
+                }
+            }
+        }
+        if(this.executor != null) {
+            try {
+                for (Future<Integer> trainer : this.executor.invokeAll(trainers)) {
+                    trainer.get();
+                }
+            } catch (InterruptedException ex) {
+                throw new RuntimeException("Could not call invokeAll() on training threads.");
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
             }
         }
     }
 
+    /**
+     * Starts the training threads if more than one job is requested.
+     */
+    protected void initThreads() {
+        int numberOfJobs;
+        if(this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = this.numberOfJobsOption.getValue();
+        // SINGLE_THREAD and requesting for only 1 thread are equivalent.
+        // this.executor will be null and not used...
+        if(numberOfJobs != AdaptiveRandomForestRegressor.SINGLE_THREAD && numberOfJobs != 1)
+            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+        this.threadsInitialized = true;
+    }
+
+    /**
+     * Stops the training threads.
+     */
+    public void cleanThreads() {
+        if(this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.threadsInitialized = false;
+    }
+
     @Override
     public double[] getVotesForInstance(Instance instance) {
         Instance testInstance = instance.copy();
@@ -267,13 +338,13 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
 
             if(this.useDriftDetector) {
                 this.driftOption = driftOption;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
             }
 
             // Init Drift Detector for Warning detection.
             if(this.useBkgLearner) {
                 this.warningOption = warningOption;
-                this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
+                this.warningDetectionMethod = (ChangeDetector) newPreparedClassOption(this.warningOption);
             }
         }
 
@@ -296,14 +367,13 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
             else {
                 this.classifier.resetLearning();
                 this.createdOn = instancesSeen;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
             }
             this.evaluator.reset();
         }
 
         public void trainOnInstance(Instance instance, double weight, long instancesSeen) {
-            Instance weightedInstance = (Instance) instance.copy();
-            weightedInstance.setWeight(instance.weight() * weight);
+            Instance weightedInstance = instance.weightedView(instance.weight() * weight);
             this.classifier.trainOnInstance(weightedInstance);
 
             if(this.bkgLearner != null)
@@ -335,7 +405,7 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
 
                         // Update the warning detection object for the current object
                         // (this effectively resets changes made to the object while it was still a bkg learner).
-                        this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
+                        this.warningDetectionMethod = (ChangeDetector) newPreparedClassOption(this.warningOption);
                     }
                 }
 
@@ -362,4 +432,38 @@ public class AdaptiveRandomForestRegressor extends AbstractClassifier implements
         public void getDescription(StringBuilder sb, int indent) {
         }
     }
+
+    /**
+     * Inner class to assist with the multi-thread execution.
+     */
+    protected class TrainingRunnable implements Runnable, Callable<Integer> {
+        final private ARFFIMTDDBaseLearner learner;
+        final private Instance instance;
+        final private double weight;
+        final private long instancesSeen;
+
+        public TrainingRunnable(ARFFIMTDDBaseLearner learner, Instance instance,
+                                double weight, long instancesSeen) {
+            this.learner = learner;
+            this.instance = instance;
+            this.weight = weight;
+            this.instancesSeen = instancesSeen;
+        }
+
+        @Override
+        public void run() {
+            DoubleVector vote = new DoubleVector(this.learner.getVotesForInstance(this.instance));
+            InstanceExample example = new InstanceExample(this.instance);
+            this.learner.evaluator.addResult(example, vote.getArrayRef());
+            if (this.weight > 0) {
+                this.learner.trainOnInstance(this.instance, this.weight, this.instancesSeen);
+            }
+        }
+
+        @Override
+        public Integer call() {
+            run();
+            return 0;
+        }
+    }
 }
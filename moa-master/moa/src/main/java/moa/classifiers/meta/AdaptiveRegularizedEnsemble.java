@@ -353,7 +353,7 @@ CapabilitiesHandler {
 
 			if(this.useDriftDetector) {
 				this.driftOption = driftOption;
-				this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+				this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
 			}
 
 			this.windowObservationSize = windowObservationSize;
@@ -377,7 +377,7 @@ CapabilitiesHandler {
 			
 			this.classifier.resetLearning();
 			this.createdOn = instancesSeen;
-			this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+			this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
 			
 			accClassifierArray = null;
 			this.classifier.subspaceSizeOption.setValue(randomSubSpaceSizeLocal(this.classifier.subspaceSizeOption.getValue()));
@@ -404,8 +404,7 @@ CapabilitiesHandler {
 	        
 
 		public void trainOnInstance(Instance instance, double weight, long instancesSeen) {
-			Instance weightedInstance = instance.copy();
-			weightedInstance.setWeight(instance.weight() * weight);
+			Instance weightedInstance = instance.weightedView(instance.weight() * weight);
 			this.classifier.trainOnInstance(weightedInstance);
 			this.countInstanceTrain++;
 
@@ -151,8 +151,7 @@ public class BOLE extends AbstractClassifier implements MultiClassClassifier {
                 k = MiscUtils.poisson(lambda_d, this.classifierRandom);
             
             if (k > 0.0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
+                Instance weightedInst = inst.weightedView(inst.weight() * k);
                 this.ensemble[pos].trainOnInstance(weightedInst);
             }
 
@@ -26,12 +26,18 @@ import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.Utils;
 import moa.options.ClassOption;
 
 /**
@@ -48,6 +54,12 @@ import moa.options.ClassOption;
  * http://dx.doi.org/10.1109/TNN.2011.2160459
  * </p>
  *
+ * <p>With more than one job, each full batch is handed over to a background
+ * thread that trains the new classifier and scores the members in parallel
+ * while the next batch is being collected. The new ensemble replaces the
+ * current one as soon as the batch is processed, so the predictions made in
+ * the meantime come from the previous ensemble.</p>
+ *
  * @author Paulo Gonçalves (paulogoncalves@recife.ifpe.edu.br)
  * @author Dariusz Brzezinski
  *
@@ -83,6 +95,11 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
             new String[]{"NO", "AGE", "ERROR"}, new String[]{
                 "Don't prune classifiers", "Age-based", "Error-based"}, 0);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing batches in the background (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
     protected List<Classifier> ensemble;
     protected List<Double> ensembleWeights;
     protected List<ArrayList<Double>> bkts, wkts;
@@ -91,6 +108,21 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
     protected double slope, crossingPoint;
     protected int pruning, ensembleSize;
 
+    /**
+     * Threads scoring the members, null when batches are processed in place.
+     */
+    private transient ExecutorService executor;
+
+    /**
+     * Single thread processing one batch at a time in the background.
+     */
+    private transient ExecutorService chunkExecutor;
+
+    /**
+     * Batch being processed in the background.
+     */
+    private transient Future<ProcessedChunk> processedChunk;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new ArrayList<>();
@@ -103,10 +135,29 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
         this.crossingPoint = this.sigmoidCrossingPointOption.getValue();
         this.pruning = this.pruningStrategyOption.getChosenIndex();
         this.ensembleSize = this.ensembleSizeOption.getValue();
+        this.cleanThreads();
+
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
+        if (this.executor == null) {
+            int numberOfJobs;
+            if (this.numberOfJobsOption.getValue() == -1)
+                numberOfJobs = Runtime.getRuntime().availableProcessors();
+            else
+                numberOfJobs = this.numberOfJobsOption.getValue();
+            // SINGLE_THREAD and requesting for only 1 thread are equivalent.
+            // this.executor will be null and not used...
+            if (numberOfJobs != LearnNSE.SINGLE_THREAD && numberOfJobs != 1) {
+                this.executor = Executors.newFixedThreadPool(numberOfJobs);
+                this.chunkExecutor = Executors.newSingleThreadExecutor();
+            }
+        }
+        if (this.processedChunk != null && this.processedChunk.isDone()) {
+            this.installProcessedChunk();
+        }
+
         this.index++;
         // Store instance in the buffer
         if (this.buffer == null) {
@@ -116,18 +167,212 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
 
         if (this.index % this.periodOption.getValue() == 0) {
             this.index = 0;
-            double mt = this.buffer.numInstances();
-            Classifier classifier = ((Classifier) getPreparedClassOption(this.baseLearnerOption));
+            // the processor starts from the members of the previous batch
+            this.installProcessedChunk();
+            ChunkProcessor processor = new ChunkProcessor(this.buffer,
+                    this.ensemble, this.ensembleWeights, this.bkts, this.wkts);
+            if (this.executor != null) {
+                this.processedChunk = this.chunkExecutor.submit(processor);
+            } else {
+                this.installProcessedChunk(processor.call());
+            }
+            this.buffer = new Instances(this.getModelContext());
+        }
+    }
+
+    @Override
+    public boolean isRandomizable() {
+        return false;
+    }
+
+    @Override
+    public double[] getVotesForInstance(Instance inst) {
+        DoubleVector combinedVote = new DoubleVector();
+        if (this.trainingWeightSeenByModel > 0.0) {
+            for (int i = 0; i < this.ensemble.size(); i++) {
+                if (this.ensembleWeights.get(i) > 0.0) {
+                    DoubleVector vote = new DoubleVector(this.ensemble.get(i)
+                            .getVotesForInstance(inst));
+                    if (vote.sumOfValues() > 0.0) {
+                        vote.normalize();
+                        vote.scaleValues(this.ensembleWeights.get(i));
+                        combinedVote.addValues(vote);
+                    }
+                }
+            }
+        }
+        return combinedVote.getArrayRef();
+    }
+
+    @Override
+    public void getModelDescription(StringBuilder out, int indent) {
+    }
+
+    @Override
+    protected Measurement[] getModelMeasurementsImpl() {
+        Measurement[] measurements = null;
+        if (this.ensembleWeights != null) {
+            measurements = new Measurement[this.ensembleWeights.size()];
+            for (int i = 0; i < this.ensembleWeights.size(); i++) {
+                measurements[i] = new Measurement("member weight " + (i + 1),
+                        this.ensembleWeights.get(i));
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * Runs the tasks on the scoring threads, or in place when there are none.
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (this.executor != null) {
+                for (Future<T> future : this.executor.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            } else {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on batch processing threads.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Batch processing failed.", ex.getCause());
+        } catch (Exception ex) {
+            throw new RuntimeException("Batch processing failed.", ex);
+        }
+        return results;
+    }
+
+    /**
+     * Waits for the batch being processed in the background, if any, and
+     * installs the resulting ensemble.
+     */
+    protected void installProcessedChunk() {
+        if (this.processedChunk == null) {
+            return;
+        }
+        try {
+            this.installProcessedChunk(this.processedChunk.get());
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Interrupted while waiting for batch processing thread.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Batch processing failed.", ex.getCause());
+        } finally {
+            this.processedChunk = null;
+        }
+    }
+
+    /**
+     * Replaces the members, their weights and error histories by those of a
+     * processed batch.
+     */
+    private void installProcessedChunk(ProcessedChunk chunk) {
+        this.ensemble = chunk.ensemble;
+        this.ensembleWeights = chunk.ensembleWeights;
+        this.bkts = chunk.bkts;
+        this.wkts = chunk.wkts;
+    }
+
+    /**
+     * Stops the batch processing threads. A batch still being processed is discarded.
+     */
+    public void cleanThreads() {
+        if (this.chunkExecutor != null) {
+            this.chunkExecutor.shutdownNow();
+            this.chunkExecutor = null;
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.processedChunk = null;
+    }
+
+    /**
+     * Members, weights and error histories after processing a batch.
+     */
+    protected static class ProcessedChunk {
+        final List<Classifier> ensemble;
+        final List<Double> ensembleWeights;
+        final List<ArrayList<Double>> bkts, wkts;
+
+        ProcessedChunk(List<Classifier> ensemble, List<Double> ensembleWeights,
+                List<ArrayList<Double>> bkts, List<ArrayList<Double>> wkts) {
+            this.ensemble = ensemble;
+            this.ensembleWeights = ensembleWeights;
+            this.bkts = bkts;
+            this.wkts = wkts;
+        }
+    }
+
+    /**
+     * Trains a new classifier on a batch and updates the voting weights of
+     * all members. Works on copies of the member lists, and the members are
+     * only read, so the current ensemble can still be used for prediction
+     * while a batch is processed in the background.
+     */
+    protected class ChunkProcessor implements Callable<ProcessedChunk> {
+        final private Instances buffer;
+        final private List<Classifier> ensemble;
+        final private List<Double> ensembleWeights;
+        final private List<ArrayList<Double>> bkts, wkts;
+        final private List<Classifier> currentEnsemble;
+        final private List<Double> currentEnsembleWeights;
+
+        public ChunkProcessor(Instances buffer, List<Classifier> ensemble, List<Double> ensembleWeights,
+                List<ArrayList<Double>> bkts, List<ArrayList<Double>> wkts) {
+            this.buffer = buffer;
+            this.currentEnsemble = ensemble;
+            this.currentEnsembleWeights = ensembleWeights;
+            this.ensemble = new ArrayList<>(ensemble);
+            this.ensembleWeights = new ArrayList<>();
+            this.bkts = new ArrayList<>(bkts.size() + 1);
+            for (ArrayList<Double> nbkt : bkts) {
+                this.bkts.add(new ArrayList<>(nbkt));
+            }
+            this.wkts = new ArrayList<>(wkts.size() + 1);
+            for (ArrayList<Double> weights : wkts) {
+                this.wkts.add(new ArrayList<>(weights));
+            }
+        }
+
+        /**
+         * Checks whether the ensemble the batch was handed over with
+         * classifies an instance correctly.
+         */
+        private boolean ensembleCorrectlyClassifies(Instance inst) {
+            DoubleVector combinedVote = new DoubleVector();
+            for (int i = 0; i < this.currentEnsemble.size(); i++) {
+                if (this.currentEnsembleWeights.get(i) > 0.0) {
+                    DoubleVector vote = new DoubleVector(this.currentEnsemble.get(i)
+                            .getVotesForInstance(inst));
+                    if (vote.sumOfValues() > 0.0) {
+                        vote.normalize();
+                        vote.scaleValues(this.currentEnsembleWeights.get(i));
+                        combinedVote.addValues(vote);
+                    }
+                }
+            }
+            return Utils.maxIndex(combinedVote.getArrayRef()) == (int) inst.classValue();
+        }
+
+        @Override
+        public ProcessedChunk call() {
+            final int mt = this.buffer.numInstances();
+            Classifier classifier = ((Classifier) getPreparedClassOption(baseLearnerOption));
             classifier.resetLearning();
 
-            if (this.ensemble.size() > 0) {
+            if (this.currentEnsemble.size() > 0) {
+                // Compute error of the existing ensemble on new data
+                boolean[] votes = new boolean[mt];
                 double et = 0;
                 // Reading all data chunk instances
                 for (int i = 0; i < mt; i++) {
-                    // Compute error of the existing ensemble on new data
-                    boolean vote = this.correctlyClassifies(this.buffer
-                            .instance(i));
-                    if (!vote) {
+                    votes[i] = this.ensembleCorrectlyClassifies(this.buffer.instance(i));
+                    if (!votes[i]) {
                         et += 1.0 / mt;
                     }
                 }
@@ -137,8 +382,7 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
                 for (int i = 0; i < mt; i++) {
                     Instance instance = this.buffer.instance(i);
                     // Updating instance weights
-                    boolean vote = this.correctlyClassifies(instance);
-                    double error = (1.0 / mt) * (vote ? et : 1.0);
+                    double error = (1.0 / mt) * (votes[i] ? et : 1.0);
                     instance.setWeight(error);
                     weightSum += error;
                 }
@@ -168,33 +412,44 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
                 }
             }
             this.ensemble.add(classifier);
-            this.bkts.add(new ArrayList());
-            this.wkts.add(new ArrayList());
-            this.ensembleWeights.clear();
+            this.bkts.add(new ArrayList<Double>());
+            this.wkts.add(new ArrayList<Double>());
             int t = this.ensemble.size();
+            // Evaluate all existing classifiers on new data set, in parallel
+            List<Callable<Double>> scorers = new ArrayList<>(t);
+            for (int k = 1; k <= t; k++) {
+                final Classifier member = this.ensemble.get(k - 1);
+                scorers.add(new Callable<Double>() {
+                    @Override
+                    public Double call() {
+                        double ekt = 0;
+                        // Reading all data chunk instances
+                        for (int i = 0; i < mt; i++) {
+                            Instance instance = buffer.instance(i);
+                            if (!member.correctlyClassifies(instance)) {
+                                // Ensemble incorrectly classifies this instance
+                                ekt += instance.weight();
+                            }
+                        }
+                        return ekt;
+                    }
+                });
+            }
+            List<Double> errors = invokeAll(scorers);
             double maxError = Double.NEGATIVE_INFINITY;
             int errorIndex = Integer.MIN_VALUE;
-            // Evaluate all existing classifiers on new data set
             for (int k = 1; k <= t; k++) {
-                double ekt = 0;
-                // Reading all data chunk instances
-                for (int i = 0; i < mt; i++) {
-                    Instance instance = this.buffer.instance(i);
-                    if (!this.ensemble.get(k - 1).correctlyClassifies(instance)) {
-                        // Ensemble incorrectly classifies this instance
-                        ekt += instance.weight();
-                    }
-                }
+                double ekt = errors.get(k - 1);
                 if (k == t && ekt > 0.5) {
                     // Generate a new classifier
-                    Classifier c = (Classifier) getPreparedClassOption(this.baseLearnerOption);
+                    Classifier c = (Classifier) getPreparedClassOption(baseLearnerOption);
                     c.resetLearning();
                     this.ensemble.set(k - 1, c);
                 } else if (ekt > 0.5) {
                     // Remove voting power of this classifier
                     ekt = 0.5;
                 }
-				// Storing the index of the classifier with higher error in case
+                // Storing the index of the classifier with higher error in case
                 // of error-based pruning
                 if (ekt > maxError) {
                     maxError = ekt;
@@ -205,10 +460,10 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
                 // Retrieving normalized errors for this classifier
                 ArrayList<Double> nbkt = this.bkts.get(k - 1);
                 nbkt.add(bkt);
-				// Compute the weighted average of all normalized errors for kth
+                // Compute the weighted average of all normalized errors for kth
                 // classifier h_k
-                double wkt = 1.0 / (1.0 + Math.exp(-this.slope
-                        * (t - k - this.crossingPoint)));
+                double wkt = 1.0 / (1.0 + Math.exp(-slope
+                        * (t - k - crossingPoint)));
                 List<Double> weights = this.wkts.get(k - 1);
                 double sum = 0;
                 for (Double weight : weights) {
@@ -222,7 +477,7 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
                 // Calculate classifier voting weights
                 this.ensembleWeights.add(Math.log(1.0 / sbkt));
             }
-            // Ensemble pruning strategy				
+            // Ensemble pruning strategy
             if (pruning == 1 && t > ensembleSize) { // Age-based
                 this.ensemble.remove(0);
                 this.ensembleWeights.remove(0);
@@ -234,48 +489,7 @@ public class LearnNSE extends AbstractClassifier implements MultiClassClassifier
                 this.bkts.remove(errorIndex - 1);
                 this.wkts.remove(errorIndex - 1);
             }
-            this.buffer = new Instances(this.getModelContext());
+            return new ProcessedChunk(this.ensemble, this.ensembleWeights, this.bkts, this.wkts);
         }
     }
-
-    @Override
-    public boolean isRandomizable() {
-        return false;
-    }
-
-    @Override
-    public double[] getVotesForInstance(Instance inst) {
-        DoubleVector combinedVote = new DoubleVector();
-        if (this.trainingWeightSeenByModel > 0.0) {
-            for (int i = 0; i < this.ensemble.size(); i++) {
-                if (this.ensembleWeights.get(i) > 0.0) {
-                    DoubleVector vote = new DoubleVector(this.ensemble.get(i)
-                            .getVotesForInstance(inst));
-                    if (vote.sumOfValues() > 0.0) {
-                        vote.normalize();
-                        vote.scaleValues(this.ensembleWeights.get(i));
-                        combinedVote.addValues(vote);
-                    }
-                }
-            }
-        }
-        return combinedVote.getArrayRef();
-    }
-
-    @Override
-    public void getModelDescription(StringBuilder out, int indent) {
-    }
-
-    @Override
-    protected Measurement[] getModelMeasurementsImpl() {
-        Measurement[] measurements = null;
-        if (this.ensembleWeights != null) {
-            measurements = new Measurement[this.ensembleWeights.size()];
-            for (int i = 0; i < this.ensembleWeights.size(); i++) {
-                measurements[i] = new Measurement("member weight " + (i + 1),
-                        this.ensembleWeights.get(i));
-            }
-        }
-        return measurements;
-    }
 }
@@ -19,6 +19,14 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
@@ -45,6 +53,11 @@ import moa.core.MiscUtils;
  * Leveraging Bagging for Evolving Data Streams Machine Learning and Knowledge
  * Discovery in Databases, European Conference, ECML PKDD}, 2010.</p>
  *
+ * <p>With more than one job (-j option), the models are trained and monitored
+ * by their ADWIN detectors in parallel. The weights of the instance are still
+ * drawn on the calling thread, in model order, so the ensemble is the same
+ * whatever the number of jobs.</p>
+ *
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
  */
@@ -84,6 +97,11 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
                 "Leveraging Subagging using resampling without replacement."
             }, 0);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
     protected Classifier[] ensemble;
 
     protected ADWIN[] ADError;
@@ -94,6 +112,10 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
 
     protected boolean initMatrixCodes = false;
 
+    private transient ExecutorService executor;
+
+    private transient boolean threadsInitialized;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -110,10 +132,14 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         if (this.outputCodesOption.isSet()) {
             this.initMatrixCodes = true;
         }
+        this.cleanThreads();
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
+        if (!this.threadsInitialized)
+            this.initThreads();
+
         int numClasses = inst.numClasses();
         //Output Codes
         if (this.initMatrixCodes == true) {
@@ -148,45 +174,26 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
 
         boolean Change = false;
         Instance weightedInst = (Instance) inst.copy();
-        double w = this.weightShrinkOption.getValue();
 
-        //Train ensemble of classifiers
-        for (int i = 0; i < this.ensemble.length; i++) {
-            double k = 0.0;
-            switch (this.leveraginBagAlgorithmOption.getChosenIndex()) {
-                case 0: //LeveragingBag
-                    k = MiscUtils.poisson(w, this.classifierRandom);
-                    break;
-                case 1: //LeveragingBagME
-                    double error = this.ADError[i].getEstimation();
-                    k = !this.ensemble[i].correctlyClassifies(weightedInst) ? 1.0 : (this.classifierRandom.nextDouble() < (error / (1.0 - error)) ? 1.0 : 0.0);
-                    break;
-                case 2: //LeveragingBagHalf
-                    w = 1.0;
-                    k = this.classifierRandom.nextBoolean() ? 0.0 : w;
-                    break;
-                case 3: //LeveragingBagWT
-                    w = 1.0;
-                    k = 1.0 + MiscUtils.poisson(w, this.classifierRandom);
-                    break;
-                case 4: //LeveragingSubag
-                    w = 1.0;
-                    k = MiscUtils.poisson(1, this.classifierRandom);
-                    k = (k > 0) ? w : 0;
-                    break;
-            }
-            if (k > 0) {
-                if (this.outputCodesOption.isSet()) {
-                    weightedInst.setClassValue((double) this.matrixCodes[i][(int) inst.classValue()]);
+        if (this.executor != null) {
+            Change = trainInParallel(inst, weightedInst);
+        } else { // SINGLE_THREAD is in-place...
+            //Train ensemble of classifiers
+            for (int i = 0; i < this.ensemble.length; i++) {
+                double k = drawWeight(i, weightedInst);
+                if (k > 0) {
+                    if (this.outputCodesOption.isSet()) {
+                        weightedInst.setClassValue((double) this.matrixCodes[i][(int) inst.classValue()]);
+                    }
+                    weightedInst.setWeight(inst.weight() * k);
+                    this.ensemble[i].trainOnInstance(weightedInst);
                 }
-                weightedInst.setWeight(inst.weight() * k);
-                this.ensemble[i].trainOnInstance(weightedInst);
-            }
-            boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(weightedInst);
-            double ErrEstim = this.ADError[i].getEstimation();
-            if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
-                if (this.ADError[i].getEstimation() > ErrEstim) {
-                    Change = true;
+                boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(weightedInst);
+                double ErrEstim = this.ADError[i].getEstimation();
+                if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
+                    if (this.ADError[i].getEstimation() > ErrEstim) {
+                        Change = true;
+                    }
                 }
             }
         }
@@ -208,6 +215,107 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         }
     }
 
+    /**
+     * Draws the weight of the instance for the i-th model.
+     *
+     * @param i the index of the model
+     * @param weightedInst the instance as seen by the model
+     * @return the weight, 0 if the model does not train on the instance
+     */
+    protected double drawWeight(int i, Instance weightedInst) {
+        double w = this.weightShrinkOption.getValue();
+        double k = 0.0;
+        switch (this.leveraginBagAlgorithmOption.getChosenIndex()) {
+            case 0: //LeveragingBag
+                k = MiscUtils.poisson(w, this.classifierRandom);
+                break;
+            case 1: //LeveragingBagME
+                double error = this.ADError[i].getEstimation();
+                k = !this.ensemble[i].correctlyClassifies(weightedInst) ? 1.0 : (this.classifierRandom.nextDouble() < (error / (1.0 - error)) ? 1.0 : 0.0);
+                break;
+            case 2: //LeveragingBagHalf
+                w = 1.0;
+                k = this.classifierRandom.nextBoolean() ? 0.0 : w;
+                break;
+            case 3: //LeveragingBagWT
+                w = 1.0;
+                k = 1.0 + MiscUtils.poisson(w, this.classifierRandom);
+                break;
+            case 4: //LeveragingSubag
+                w = 1.0;
+                k = MiscUtils.poisson(1, this.classifierRandom);
+                k = (k > 0) ? w : 0;
+                break;
+        }
+        return k;
+    }
+
+    /**
+     * Trains and monitors the models on the training threads. Weights and
+     * output codes are assigned here, in model order, exactly as in the
+     * sequential loop; LeveragingBagME still evaluates the models on this
+     * thread before drawing their weights.
+     *
+     * @return true if some ADWIN detected an increase of the error
+     */
+    protected boolean trainInParallel(Instance inst, Instance weightedInst) {
+        List<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>(this.ensemble.length);
+        for (int i = 0; i < this.ensemble.length; i++) {
+            double k = drawWeight(i, weightedInst);
+            if (k > 0 && this.outputCodesOption.isSet()) {
+                weightedInst.setClassValue((double) this.matrixCodes[i][(int) inst.classValue()]);
+            }
+            Instance memberInst;
+            if (this.outputCodesOption.isSet()) { // the class value differs between models
+                memberInst = (Instance) weightedInst.copy();
+                memberInst.setWeight(inst.weight() * k);
+            } else {
+                memberInst = inst.weightedView(inst.weight() * k);
+            }
+            trainers.add(new TrainingRunnable(this.ensemble[i], this.ADError[i], memberInst, k > 0));
+        }
+        boolean Change = false;
+        try {
+            for (Future<Boolean> trainer : this.executor.invokeAll(trainers)) {
+                if (trainer.get()) {
+                    Change = true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on training threads.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+        return Change;
+    }
+
+    /**
+     * Starts the training threads if more than one job is requested.
+     */
+    protected void initThreads() {
+        int numberOfJobs;
+        if (this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = this.numberOfJobsOption.getValue();
+        // SINGLE_THREAD and requesting for only 1 thread are equivalent.
+        // this.executor will be null and not used...
+        if (numberOfJobs != LeveragingBag.SINGLE_THREAD && numberOfJobs != 1)
+            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+        this.threadsInitialized = true;
+    }
+
+    /**
+     * Stops the training threads.
+     */
+    public void cleanThreads() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.threadsInitialized = false;
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         if (this.outputCodesOption.isSet()) {
@@ -224,6 +332,32 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         return combinedVote.getArrayRef();
     }
 
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        if (this.outputCodesOption.isSet()) {
+            super.getVotesForInstances(batch, out);
+            return;
+        }
+        DoubleVector[] combinedVotes = new DoubleVector[batch.length];
+        for (int j = 0; j < batch.length; j++) {
+            combinedVotes[j] = new DoubleVector();
+        }
+        double[][] memberVotes = new double[batch.length][];
+        for (int i = 0; i < this.ensemble.length; i++) {
+            this.ensemble[i].getVotesForInstances(batch, memberVotes);
+            for (int j = 0; j < batch.length; j++) {
+                DoubleVector vote = new DoubleVector(memberVotes[j]);
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    combinedVotes[j].addValues(vote);
+                }
+            }
+        }
+        for (int j = 0; j < batch.length; j++) {
+            out[j] = combinedVotes[j].getArrayRef();
+        }
+    }
+
     public double[] getVotesForInstanceBinary(Instance inst) {
         double combinedVote[] = new double[(int) inst.numClasses()];
         Instance weightedInst = (Instance) inst.copy();
@@ -280,5 +414,39 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         else
             return new ImmutableCapabilities(Capability.VIEW_STANDARD);
     }
-}
 
+    /**
+     * Inner class to assist with the multi-thread execution.
+     */
+    protected class TrainingRunnable implements Runnable, Callable<Boolean> {
+        final private Classifier learner;
+        final private ADWIN adwin;
+        final private Instance instance;
+        final private boolean train;
+        private boolean change;
+
+        public TrainingRunnable(Classifier learner, ADWIN adwin, Instance instance, boolean train) {
+            this.learner = learner;
+            this.adwin = adwin;
+            this.instance = instance;
+            this.train = train;
+        }
+
+        @Override
+        public void run() {
+            if (this.train) {
+                this.learner.trainOnInstance(this.instance);
+            }
+            boolean correctlyClassifies = this.learner.correctlyClassifies(this.instance);
+            double ErrEstim = this.adwin.getEstimation();
+            this.change = this.adwin.setInput(correctlyClassifies ? 0 : 1)
+                    && this.adwin.getEstimation() > ErrEstim;
+        }
+
+        @Override
+        public Boolean call() {
+            run();
+            return this.change;
+        }
+    }
+}
@@ -138,8 +138,7 @@ public class OCBoost extends AbstractClassifier implements MultiClassClassifier
             d = d * Math.exp(-alpha[j] * m[j]);
 
             if (d > 0.0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * d);
+                Instance weightedInst = inst.weightedView(inst.weight() * d);
                 this.ensemble[j].trainOnInstance(weightedInst);
             }
         }
@@ -19,6 +19,14 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
@@ -48,7 +56,11 @@ import com.github.javacliparser.IntOption;
  *
  * <p>Parameters:</p> <ul>
  * <li>-l : Classiﬁer to train</li>
- * <li>-s : The number of models in the bag</li> </ul>
+ * <li>-s : The number of models in the bag</li>
+ * <li>-j : Number of threads training the models</li> </ul>
+ *
+ * <p>The Poisson weights are always drawn on the calling thread, in member
+ * order, so the models are the same whatever the number of threads.</p>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
@@ -69,8 +81,17 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
     public IntOption ensembleSizeOption = new IntOption("ensembleSize", 's',
             "The number of models in the bag.", 10, 1, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
     protected Classifier[] ensemble;
 
+    private transient ExecutorService executor;
+
+    private transient boolean threadsInitialized;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -79,20 +100,66 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         for (int i = 0; i < this.ensemble.length; i++) {
             this.ensemble[i] = baseLearner.copy();
         }
+        this.cleanThreads();
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
+        if (!this.threadsInitialized)
+            this.initThreads();
+
+        List<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>();
         for (int i = 0; i < this.ensemble.length; i++) {
             int k = MiscUtils.poisson(1.0, this.classifierRandom);
             if (k > 0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
-                this.ensemble[i].trainOnInstance(weightedInst);
+                if (this.executor != null) {
+                    trainers.add(new TrainingRunnable(this.ensemble[i], inst, k));
+                } else { // SINGLE_THREAD is in-place...
+                    Instance weightedInst = inst.weightedView(inst.weight() * k);
+                    this.ensemble[i].trainOnInstance(weightedInst);
+                }
+            }
+        }
+        if (this.executor != null) {
+            try {
+                for (Future<Integer> trainer : this.executor.invokeAll(trainers)) {
+                    trainer.get();
+                }
+            } catch (InterruptedException ex) {
+                throw new RuntimeException("Could not call invokeAll() on training threads.");
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
             }
         }
     }
 
+    /**
+     * Starts the training threads if more than one job is requested.
+     */
+    protected void initThreads() {
+        int numberOfJobs;
+        if (this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = this.numberOfJobsOption.getValue();
+        // SINGLE_THREAD and requesting for only 1 thread are equivalent.
+        // this.executor will be null and not used...
+        if (numberOfJobs != OzaBag.SINGLE_THREAD && numberOfJobs != 1)
+            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+        this.threadsInitialized = true;
+    }
+
+    /**
+     * Stops the training threads.
+     */
+    public void cleanThreads() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.threadsInitialized = false;
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         DoubleVector combinedVote = new DoubleVector();
@@ -106,6 +173,32 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         return combinedVote.getArrayRef();
     }
 
+    /**
+     * Gets the votes of each member for the whole batch in turn, so that the
+     * members can share the work between the instances.
+     */
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        DoubleVector[] combinedVotes = new DoubleVector[batch.length];
+        for (int j = 0; j < batch.length; j++) {
+            combinedVotes[j] = new DoubleVector();
+        }
+        double[][] memberVotes = new double[batch.length][];
+        for (int i = 0; i < this.ensemble.length; i++) {
+            this.ensemble[i].getVotesForInstances(batch, memberVotes);
+            for (int j = 0; j < batch.length; j++) {
+                DoubleVector vote = new DoubleVector(memberVotes[j]);
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    combinedVotes[j].addValues(vote);
+                }
+            }
+        }
+        for (int j = 0; j < batch.length; j++) {
+            out[j] = combinedVotes[j].getArrayRef();
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
@@ -134,4 +227,31 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         else
             return new ImmutableCapabilities(Capability.VIEW_STANDARD);
     }
+
+    /**
+     * Inner class to assist with the multi-thread execution.
+     */
+    protected class TrainingRunnable implements Runnable, Callable<Integer> {
+        final private Classifier learner;
+        final private Instance instance;
+        final private double k;
+
+        public TrainingRunnable(Classifier learner, Instance instance, double k) {
+            this.learner = learner;
+            this.instance = instance;
+            this.k = k;
+        }
+
+        @Override
+        public void run() {
+            Instance weightedInst = this.instance.weightedView(this.instance.weight() * this.k);
+            this.learner.trainOnInstance(weightedInst);
+        }
+
+        @Override
+        public Integer call() {
+            run();
+            return 0;
+        }
+    }
 }
@@ -140,8 +140,7 @@ public class OzaBagASHT extends AbstractClassifier implements MultiClassClassifi
         for (int i = 0; i < this.ensemble.length; i++) {
             int k = MiscUtils.poisson(1.0, this.classifierRandom);
             if (k > 0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
+                Instance weightedInst = inst.weightedView(inst.weight() * k);
                 if (Utils.maxIndex(this.ensemble[i].getVotesForInstance(inst)) == trueClass) {
                     this.error[i] += alpha * (0.0 - this.error[i]); //EWMA
                 } else {
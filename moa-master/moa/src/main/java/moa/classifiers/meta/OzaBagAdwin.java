@@ -19,6 +19,14 @@
  */
 package moa.classifiers.meta;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
@@ -78,7 +86,13 @@ import com.github.javacliparser.IntOption;
  * <code>OzaBagAdwin -l HoeffdingTreeNBAdaptive -s 10</code>
  * <p>Parameters:</p> <ul>
  * <li>-l : Classiﬁer to train</li>
- * <li>-s : The number of models in the bag</li> </ul>
+ * <li>-s : The number of models in the bag</li>
+ * <li>-j : Number of threads training the models</li> </ul>
+ *
+ * <p>With more than one thread, each model is trained and monitored by its
+ * own ADWIN in parallel. The Poisson weights are still drawn on the calling
+ * thread, in model order, so the results do not depend on the number of
+ * threads.</p>
  *
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
@@ -99,10 +113,19 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
     public IntOption ensembleSizeOption = new IntOption("ensembleSize", 's',
             "The number of models in the bag.", 10, 1, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
     protected Classifier[] ensemble;
 
     protected ADWIN[] ADError;
 
+    private transient ExecutorService executor;
+
+    private transient boolean threadsInitialized;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -115,23 +138,30 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
         for (int i = 0; i < this.ensemble.length; i++) {
             this.ADError[i] = new ADWIN();
         }
+        this.cleanThreads();
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
+        if (!this.threadsInitialized)
+            this.initThreads();
+
         boolean Change = false;
-        for (int i = 0; i < this.ensemble.length; i++) {
-            int k = MiscUtils.poisson(1.0, this.classifierRandom);
-            if (k > 0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
-                this.ensemble[i].trainOnInstance(weightedInst);
-            }
-            boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(inst);
-            double ErrEstim = this.ADError[i].getEstimation();
-            if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
-                if (this.ADError[i].getEstimation() > ErrEstim) {
-                    Change = true;
+        if (this.executor != null) {
+            Change = trainInParallel(inst);
+        } else { // SINGLE_THREAD is in-place...
+            for (int i = 0; i < this.ensemble.length; i++) {
+                int k = MiscUtils.poisson(1.0, this.classifierRandom);
+                if (k > 0) {
+                    Instance weightedInst = inst.weightedView(inst.weight() * k);
+                    this.ensemble[i].trainOnInstance(weightedInst);
+                }
+                boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(inst);
+                double ErrEstim = this.ADError[i].getEstimation();
+                if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
+                    if (this.ADError[i].getEstimation() > ErrEstim) {
+                        Change = true;
+                    }
                 }
             }
         }
@@ -152,6 +182,59 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
         }
     }
 
+    /**
+     * Trains and monitors the models on the training threads.
+     *
+     * @return true if some ADWIN detected an increase of the error
+     */
+    protected boolean trainInParallel(Instance inst) {
+        List<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>(this.ensemble.length);
+        for (int i = 0; i < this.ensemble.length; i++) {
+            int k = MiscUtils.poisson(1.0, this.classifierRandom);
+            trainers.add(new TrainingRunnable(this.ensemble[i], this.ADError[i], inst, k));
+        }
+        boolean Change = false;
+        try {
+            for (Future<Boolean> trainer : this.executor.invokeAll(trainers)) {
+                if (trainer.get()) {
+                    Change = true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on training threads.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+        return Change;
+    }
+
+    /**
+     * Starts the training threads if more than one job is requested.
+     */
+    protected void initThreads() {
+        int numberOfJobs;
+        if (this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = this.numberOfJobsOption.getValue();
+        // SINGLE_THREAD and requesting for only 1 thread are equivalent.
+        // this.executor will be null and not used...
+        if (numberOfJobs != OzaBagAdwin.SINGLE_THREAD && numberOfJobs != 1)
+            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+        this.threadsInitialized = true;
+    }
+
+    /**
+     * Stops the training threads.
+     */
+    public void cleanThreads() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        this.threadsInitialized = false;
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         DoubleVector combinedVote = new DoubleVector();
@@ -165,6 +248,28 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
         return combinedVote.getArrayRef();
     }
 
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        DoubleVector[] combinedVotes = new DoubleVector[batch.length];
+        for (int j = 0; j < batch.length; j++) {
+            combinedVotes[j] = new DoubleVector();
+        }
+        double[][] memberVotes = new double[batch.length][];
+        for (int i = 0; i < this.ensemble.length; i++) {
+            this.ensemble[i].getVotesForInstances(batch, memberVotes);
+            for (int j = 0; j < batch.length; j++) {
+                DoubleVector vote = new DoubleVector(memberVotes[j]);
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    combinedVotes[j].addValues(vote);
+                }
+            }
+        }
+        for (int j = 0; j < batch.length; j++) {
+            out[j] = combinedVotes[j].getArrayRef();
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
@@ -193,4 +298,40 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
         else
             return new ImmutableCapabilities(Capability.VIEW_STANDARD);
     }
+
+    /**
+     * Inner class to assist with the multi-thread execution.
+     */
+    protected class TrainingRunnable implements Runnable, Callable<Boolean> {
+        final private Classifier learner;
+        final private ADWIN adwin;
+        final private Instance instance;
+        final private double k;
+        private boolean change;
+
+        public TrainingRunnable(Classifier learner, ADWIN adwin, Instance instance, double k) {
+            this.learner = learner;
+            this.adwin = adwin;
+            this.instance = instance;
+            this.k = k;
+        }
+
+        @Override
+        public void run() {
+            if (this.k > 0) {
+                Instance weightedInst = this.instance.weightedView(this.instance.weight() * this.k);
+                this.learner.trainOnInstance(weightedInst);
+            }
+            boolean correctlyClassifies = this.learner.correctlyClassifies(this.instance);
+            double ErrEstim = this.adwin.getEstimation();
+            this.change = this.adwin.setInput(correctlyClassifies ? 0 : 1)
+                    && this.adwin.getEstimation() > ErrEstim;
+        }
+
+        @Override
+        public Boolean call() {
+            run();
+            return this.change;
+        }
+    }
 }
@@ -94,8 +94,7 @@ public class OzaBoost extends AbstractClassifier implements MultiClassClassifier
         for (int i = 0; i < this.ensemble.length; i++) {
             double k = this.pureBoostOption.isSet() ? lambda_d : MiscUtils.poisson(lambda_d, this.classifierRandom);
             if (k > 0.0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
+                Instance weightedInst = inst.weightedView(inst.weight() * k);
                 this.ensemble[i].trainOnInstance(weightedInst);
             }
             if (this.ensemble[i].correctlyClassifies(inst)) {
@@ -409,13 +409,13 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
 
             if(!this.disableDriftDetector) {
                 this.driftOption = driftOption;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(driftOption);
             }
 
             // Init Drift Detector for Warning detection.
             if(!this.disableBkgLearner) {
                 this.warningOption = warningOption;
-                this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(warningOption)).copy();
+                this.warningDetectionMethod = (ChangeDetector) newPreparedClassOption(warningOption);
             }
 
             this.numberOfDriftsDetected = this.numberOfDriftsInduced = 0;
@@ -512,7 +512,7 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
                 this.classifier.resetLearning();
                 this.evaluator.reset();
                 this.createdOn = instancesSeen;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                this.driftDetectionMethod = (ChangeDetector) newPreparedClassOption(this.driftOption);
 
                 if(this.subset != null) {
                     ArrayList<Integer> fIndexes = this.applySubsetResetStrategy(instance, random);
@@ -544,8 +544,7 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
                     this.bkgLearner.trainOnInstance(instance, weight, instancesSeen, random);
             }
             else {
-                Instance weightedInstance = instance.copy();
-                weightedInstance.setWeight(instance.weight() * weight);
+                Instance weightedInstance = instance.weightedView(instance.weight() * weight);
                 this.classifier.trainOnInstance(weightedInstance);
                 correctlyClassifies = this.classifier.correctlyClassifies(instance);
                 if(this.bkgLearner != null)
@@ -594,7 +593,7 @@ public class StreamingRandomPatches extends AbstractClassifier implements MultiC
                         this.disableBkgLearner, this.disableDriftDetector, this.driftOption, this.warningOption,
                         fIndexes, instance,true);
             }
-            this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
+            this.warningDetectionMethod = (ChangeDetector) newPreparedClassOption(this.warningOption);
         }
 
         /**
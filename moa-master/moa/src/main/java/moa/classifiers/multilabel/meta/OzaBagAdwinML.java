@@ -100,6 +100,13 @@ public class OzaBagAdwinML extends OzaBagAdwin implements MultiLabelLearner, Mul
 		return OzaBagML.compileVotes(this.ensemble, inst);
 	}
 
+	@Override
+	public void getVotesForInstances(Instance[] batch, double[][] out) {
+		for (int i = 0; i < batch.length; i++) {
+			out[i] = OzaBagML.compileVotes(this.ensemble, batch[i]);
+		}
+	}
+
 	@Override
 	public Prediction getPredictionForInstance(MultiLabelInstance instance) {
 		return getPredictionForInstance((new InstanceExample(instance)));
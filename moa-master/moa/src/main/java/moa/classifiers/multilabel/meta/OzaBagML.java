@@ -94,6 +94,13 @@ public class OzaBagML extends OzaBag implements MultiLabelLearner, MultiTargetRe
 		return compileVotes(this.ensemble, inst);
 	}
 
+	@Override
+	public void getVotesForInstances(Instance[] batch, double[][] out) {
+		for (int i = 0; i < batch.length; i++) {
+			out[i] = compileVotes(this.ensemble, batch[i]);
+		}
+	}
+
 	public static double[] compileVotes(Classifier h[], Instance inst) {
 		double votes[] = h[0].getVotesForInstance(inst);
 		for (int i = 1; i < h.length; i++) {
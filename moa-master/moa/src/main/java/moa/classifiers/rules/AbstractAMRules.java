@@ -39,7 +39,7 @@ import moa.classifiers.rules.core.Rule;
 import moa.classifiers.rules.core.Rule.Builder;
 import moa.classifiers.rules.core.RuleActiveLearningNode;
 import moa.classifiers.rules.core.RuleSet;
-import moa.classifiers.rules.core.attributeclassobservers.FIMTDDNumericAttributeClassLimitObserver;
+import moa.classifiers.core.attributeclassobservers.FIMTDDNumericAttributeClassObserver;
 import moa.classifiers.rules.core.voting.ErrorWeightedVote;
 import moa.classifiers.rules.core.voting.Vote;
 import moa.core.Measurement;
@@ -111,8 +111,8 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 
 	public ClassOption numericObserverOption = new ClassOption("numericObserver",
 			'z', "Numeric observer.", 
-			FIMTDDNumericAttributeClassLimitObserver.class,
-			"FIMTDDNumericAttributeClassLimitObserver");
+			FIMTDDNumericAttributeClassObserver.class,
+			"moa.classifiers.rules.core.attributeclassobservers.FIMTDDNumericAttributeClassLimitObserver");
 	
 
 	protected double attributesPercentage;
@@ -82,6 +82,10 @@ public class ARFFIMTDD extends AbstractClassifier implements Regressor {
             "splitCriterion", 's', "Split criterion to use.",
             SplitCriterion.class, "moa.classifiers.core.splitcriteria.VarianceReductionSplitCriterion");
 
+    public ClassOption numericObserverOption = new ClassOption(
+            "numericObserver", 'n', "Numeric observer to use (E-BST or quantization).",
+            FIMTDDNumericAttributeClassObserver.class, "FIMTDDNumericAttributeClassObserver");
+
     public IntOption gracePeriodOption = new IntOption(
             "gracePeriod", 'g', "Number of instances a leaf should observe between split attempts.",
             200, 0, Integer.MAX_VALUE);
@@ -868,7 +872,8 @@ public class ARFFIMTDD extends AbstractClassifier implements Regressor {
     // region --- Object instatiation methods
 
     protected FIMTDDNumericAttributeClassObserver newNumericClassObserver() {
-        return new FIMTDDNumericAttributeClassObserver();
+        FIMTDDNumericAttributeClassObserver numericClassObserver = (FIMTDDNumericAttributeClassObserver) getPreparedClassOption(this.numericObserverOption);
+        return (FIMTDDNumericAttributeClassObserver) numericClassObserver.copy();
     }
 
     protected SplitNode newSplitNode(InstanceConditionalTest splitTest) {
@@ -92,7 +92,7 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
 
         private static final long serialVersionUID = 1L;
 
-        protected Node alternateTree;
+        protected volatile Node alternateTree;
 
         protected ADWIN estimationErrorWeight;
         //public boolean isAlternateTree = false;
@@ -294,8 +294,9 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
                     foundNodes.add(new FoundNode(null, this, childIndex));
                 }
             }
-            if (this.alternateTree != null) {
-                ((NewNode) this.alternateTree).filterInstanceToLeaves(inst, this, -999,
+            Node alternateTree = this.alternateTree;
+            if (alternateTree != null) {
+                ((NewNode) alternateTree).filterInstanceToLeaves(inst, this, -999,
                         foundNodes, updateSplitterCounts);
             }
         }
@@ -509,6 +510,14 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
         return new double[0];
     }
 
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        // the instances can reach several leaves, they are not routed as a batch
+        for (int i = 0; i < batch.length; i++) {
+            out[i] = getVotesForInstance(batch[i]);
+        }
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == HoeffdingAdaptiveTree.class)
@@ -93,6 +93,13 @@ import com.yahoo.labs.samoa.instances.Instance;
  * permitting Naive Bayes</li>
  * </ul>
  *
+ * <p>Predicting only reads the tree, so any number of threads can get the
+ * votes of instances while one thread trains the tree. The nodes added by
+ * training are only published through the root and the children of the split
+ * nodes, which are volatile, so that the readers always find fully built
+ * nodes. The statistics of a leaf are read while they are updated: a reader
+ * gets the votes of the leaf from before or during the update.</p>
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
@@ -259,7 +266,12 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
         protected InstanceConditionalTest splitTest;
 
-        protected AutoExpandVector<Node> children; // = new AutoExpandVector<Node>();
+        /**
+         * Never changed in place: setChild replaces the vector, so that the
+         * threads reading the tree while it is trained only find fully built
+         * children.
+         */
+        protected volatile AutoExpandVector<Node> children; // = new AutoExpandVector<Node>();
 
         @Override
         public int calcByteSize() {
@@ -325,7 +337,11 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     && (index >= this.splitTest.maxBranches())) {
                 throw new IndexOutOfBoundsException();
             }
-            this.children.set(index, child);
+            AutoExpandVector<Node> newChildren = new AutoExpandVector<Node>(
+                    Math.max(index + 1, this.children.size()));
+            newChildren.addAll(this.children);
+            newChildren.set(index, child);
+            this.children = newChildren;
         }
 
         public Node getChild(int index) {
@@ -495,7 +511,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         }
     }
 
-    protected Node treeRoot;
+    protected volatile Node treeRoot;
 
     protected int decisionNodeCount;
 
@@ -583,8 +599,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
-        if (this.treeRoot != null) {
-            FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(inst,
+        Node root = this.treeRoot;
+        if (root != null) {
+            FoundNode foundNode = root.filterInstanceToLeaf(inst,
                     null, -1);
             Node leafNode = foundNode.node;
             if (leafNode == null) {
@@ -597,6 +614,49 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
           }
     }
 
+    /**
+     * Routes the whole batch down the tree one level at a time, keeping the
+     * instances that still have to move down. Each instance stops at the
+     * node filterInstanceToLeaf would find, and gets the votes of this node.
+     * Subclasses routing the instances differently must override it.
+     */
+    @Override
+    public void getVotesForInstances(Instance[] batch, double[][] out) {
+        Node root = this.treeRoot;
+        if (root == null) {
+            super.getVotesForInstances(batch, out);
+            return;
+        }
+        Node[] nodes = new Node[batch.length];
+        int[] moving = new int[batch.length];
+        int numMoving = 0;
+        for (int i = 0; i < batch.length; i++) {
+            nodes[i] = root;
+            moving[numMoving++] = i;
+        }
+        while (numMoving > 0) {
+            int numStillMoving = 0;
+            for (int j = 0; j < numMoving; j++) {
+                int i = moving[j];
+                if (nodes[i] instanceof SplitNode) {
+                    SplitNode splitNode = (SplitNode) nodes[i];
+                    int childIndex = splitNode.instanceChildIndex(batch[i]);
+                    if (childIndex >= 0) {
+                        Node child = splitNode.getChild(childIndex);
+                        if (child != null) {
+                            nodes[i] = child;
+                            moving[numStillMoving++] = i;
+                        }
+                    }
+                }
+            }
+            numMoving = numStillMoving;
+        }
+        for (int i = 0; i < batch.length; i++) {
+            out[i] = nodes[i].getClassVotes(batch[i], this);
+        }
+    }
+
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
         return new Measurement[]{
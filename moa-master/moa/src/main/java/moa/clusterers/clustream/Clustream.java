@@ -54,6 +54,7 @@ public class Clustream extends AbstractClusterer{
 	private int timeWindow;
 	private long timestamp = -1;
 	private ClustreamKernel[] kernels;
+	private KernelCenterIndex index; // Centers of the kernels
 	private boolean initialized;
 	private List<ClustreamKernel> buffer; // Buffer for initialization with kNN
 	private int bufferSize;
@@ -102,44 +103,33 @@ public class Clustream extends AbstractClusterer{
 			}
 
 			buffer.clear();
+			index = new KernelCenterIndex(kernels.length, dim);
+			for ( int i = 0; i < kernels.length; i++ ) {
+				index.update(i, kernels[i]);
+			}
 			initialized = true;
 		}
 
 
 		// 1. Determine closest kernel
-		ClustreamKernel closestKernel = null;
-		double minDistance = Double.MAX_VALUE;
-		for ( int i = 0; i < kernels.length; i++ ) {
-			//System.out.println(i+" "+kernels[i].getWeight()+" "+kernels[i].getDeviation());
-			double distance = distance(instance.toDoubleArray(), kernels[i].getCenter() );
-			if ( distance < minDistance ) {
-				closestKernel = kernels[i];
-				minDistance = distance;
-			}
-		}
+		double[] minDistance = new double[1];
+		int closest = index.nearest(instance.toDoubleArray(), minDistance);
+		ClustreamKernel closestKernel = kernels[closest];
 
 		// 2. Check whether instance fits into closestKernel
 		double radius = 0.0;
 		if ( closestKernel.getWeight() == 1 ) {
 			// Special case: estimate radius by determining the distance to the
 			// next closest cluster
-			radius = Double.MAX_VALUE;
-			double[] center = closestKernel.getCenter();
-			for ( int i = 0; i < kernels.length; i++ ) {
-				if ( kernels[i] == closestKernel ) {
-					continue;
-				}
-
-				double distance = distance(kernels[i].getCenter(), center );
-				radius = Math.min( distance, radius );
-			}
+			radius = index.nearestCenterDistance(closest);
 		} else {
 			radius = closestKernel.getRadius();
 		}
 
-		if ( minDistance < radius ) {
+		if ( minDistance[0] < radius ) {
 			// Date fits, put into kernel and be happy
 			closestKernel.insert( instance, timestamp );
+			index.update(closest, closestKernel);
 			return;
 		}
 
@@ -151,29 +141,21 @@ public class Clustream extends AbstractClusterer{
 		for ( int i = 0; i < kernels.length; i++ ) {
 			if ( kernels[i].getRelevanceStamp() < threshold ) {
 				kernels[i] = new ClustreamKernel( instance, dim, timestamp, t, m );
+				index.update(i, kernels[i]);
 				return;
 			}
 		}
 
 		// 3.2 Merge closest two kernels
-		int closestA = 0;
-		int closestB = 0;
-		minDistance = Double.MAX_VALUE;
-		for ( int i = 0; i < kernels.length; i++ ) {
-			double[] centerA = kernels[i].getCenter();
-			for ( int j = i + 1; j < kernels.length; j++ ) {
-				double dist = distance( centerA, kernels[j].getCenter() );
-				if ( dist < minDistance ) {
-					minDistance = dist;
-					closestA = i;
-					closestB = j;
-				}
-			}
-		}
+		int[] closestPair = index.closestPair();
+		int closestA = closestPair[0];
+		int closestB = closestPair[1];
 		assert (closestA != closestB);
 
 		kernels[closestA].add( kernels[closestB] );
 		kernels[closestB] = new ClustreamKernel( instance, dim, timestamp, t,  m );
+		index.update(closestA, kernels[closestA]);
+		index.update(closestB, kernels[closestB]);
 	}
 
 	@Override
@@ -249,14 +231,29 @@ public class Clustream extends AbstractClusterer{
 			clustering.add( new ArrayList<Cluster>() );
 		}
 
+		// The centers of the points never change, the ones of the clusters once
+		// per repetition
+		double[][] pointCenters = new double[data.size()][];
+		int p = 0;
+		for ( Cluster point : data ) {
+			pointCenters[p++] = point.getCenter();
+		}
+		double[][] clusterCenters = new double[k][];
+
 		int repetitions = 100;
 		while ( repetitions-- >= 0 ) {
+			for ( int i = 0; i < k; i++ ) {
+				clusterCenters[i] = centers[i].getCenter();
+			}
+
 			// Assign points to clusters
+			p = 0;
 			for ( Cluster point : data ) {
-				double minDistance = distance( point.getCenter(), centers[0].getCenter() );
+				double[] pointCenter = pointCenters[p++];
+				double minDistance = distance( pointCenter, clusterCenters[0] );
 				int closestCluster = 0;
 				for ( int i = 1; i < k; i++ ) {
-					double distance = distance( point.getCenter(), centers[i].getCenter() );
+					double distance = distance( pointCenter, clusterCenters[i] );
 					if ( distance < minDistance ) {
 						closestCluster = i;
 						minDistance = distance;
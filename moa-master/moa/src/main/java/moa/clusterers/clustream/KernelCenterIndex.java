@@ -0,0 +1,251 @@
+/*
+ *    KernelCenterIndex.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.clusterers.clustream;
+
+import java.io.Serializable;
+
+/**
+ * Centers of the micro kernels of CluStream, for the nearest kernel searches
+ * of the online phase.
+ *
+ * <p>The centers are kept in one primitive array, slot after slot, and are
+ * updated when a kernel changes instead of being computed for every search.
+ * For the merge step, every kernel keeps its nearest other kernel. The kernels
+ * changed since the last merge are only marked, and their neighbours are
+ * refreshed when the closest pair is needed, so a merge costs O(q) per changed
+ * kernel instead of O(q^2).</p>
+ *
+ * <p>Distances and ties are computed as the brute force loops of the
+ * clusterer did: the first kernel (or pair of kernels) at the smallest
+ * distance is returned.</p>
+ */
+public class KernelCenterIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected final int size;
+
+	protected final int dim;
+
+	/**
+	 * The centers of the kernels, slot after slot.
+	 */
+	protected final double[] centers;
+
+	/**
+	 * The nearest other kernel of every kernel, and its distance.
+	 */
+	protected final int[] nearest;
+
+	protected final double[] nearestDistance;
+
+	/**
+	 * The kernels changed since the nearest kernels were last refreshed.
+	 */
+	protected final boolean[] changed;
+
+	protected final int[] changedSlots;
+
+	protected int numChanged;
+
+	public KernelCenterIndex(int size, int dim) {
+		this.size = size;
+		this.dim = dim;
+		this.centers = new double[size * dim];
+		this.nearest = new int[size];
+		this.nearestDistance = new double[size];
+		this.changed = new boolean[size];
+		this.changedSlots = new int[size];
+	}
+
+	/**
+	 * Copies the center of a kernel, to be called whenever the kernel in a slot
+	 * changes.
+	 */
+	public void update(int slot, ClustreamKernel kernel) {
+		double n = kernel.getN();
+		int offset = slot * this.dim;
+		for (int i = 0; i < this.dim; i++) {
+			this.centers[offset + i] = kernel.LS[i] / n;
+		}
+		if (!this.changed[slot]) {
+			this.changed[slot] = true;
+			this.changedSlots[this.numChanged++] = slot;
+		}
+	}
+
+	/**
+	 * Finds the kernel nearest to a point.
+	 *
+	 * @param point the point
+	 * @param distance receives the distance to the nearest kernel
+	 * @return the slot of the nearest kernel, -1 if no distance is finite
+	 */
+	public int nearest(double[] point, double[] distance) {
+		int closest = -1;
+		double minDistance = Double.MAX_VALUE;
+		double minSum = Double.MAX_VALUE;
+		for (int j = 0; j < this.size; j++) {
+			double sum = partialSum(point, j * this.dim, minSum);
+			if (sum <= minSum) {
+				double dist = Math.sqrt(sum);
+				if (dist < minDistance) {
+					closest = j;
+					minDistance = dist;
+					minSum = sum;
+				}
+			}
+		}
+		distance[0] = minDistance;
+		return closest;
+	}
+
+	/**
+	 * Distance between the center of a kernel and the nearest other center.
+	 *
+	 * @return the distance, Double.MAX_VALUE if there is no other kernel and
+	 * NaN if a distance is NaN
+	 */
+	public double nearestCenterDistance(int slot) {
+		double minDistance = Double.MAX_VALUE;
+		int offset = slot * this.dim;
+		for (int j = 0; j < this.size; j++) {
+			if (j == slot) {
+				continue;
+			}
+			double distance = Math.sqrt(pairSum(offset, j * this.dim, Double.POSITIVE_INFINITY));
+			minDistance = Math.min(distance, minDistance);
+		}
+		return minDistance;
+	}
+
+	/**
+	 * Finds the two kernels with the closest centers.
+	 *
+	 * @return the slots of the two kernels, the smaller one first, or {0, 0}
+	 * if no distance is finite
+	 */
+	public int[] closestPair() {
+		refresh();
+		int closestA = 0;
+		int closestB = 0;
+		double minDistance = Double.MAX_VALUE;
+		for (int i = 0; i < this.size; i++) {
+			if (this.nearestDistance[i] < minDistance) {
+				minDistance = this.nearestDistance[i];
+				closestA = i;
+				closestB = this.nearest[i];
+			}
+		}
+		return new int[]{closestA, closestB};
+	}
+
+	/**
+	 * Updates the nearest kernels after the changes of the centers.
+	 */
+	protected void refresh() {
+		if (2 * this.numChanged >= this.size) {
+			for (int i = 0; i < this.size; i++) {
+				findNearest(i);
+			}
+		} else {
+			for (int c = 0; c < this.numChanged; c++) {
+				int slot = this.changedSlots[c];
+				findNearest(slot);
+				int offset = slot * this.dim;
+				for (int j = 0; j < this.size; j++) {
+					if (this.changed[j]) {
+						continue;
+					}
+					double dist = Math.sqrt(pairSum(j * this.dim, offset, Double.POSITIVE_INFINITY));
+					if (dist < this.nearestDistance[j]
+							|| (dist == this.nearestDistance[j] && slot < this.nearest[j])) {
+						this.nearest[j] = slot;
+						this.nearestDistance[j] = dist;
+					} else if (this.nearest[j] == slot && !(dist <= this.nearestDistance[j])) {
+						// moved away from a kernel it was the nearest of
+						findNearest(j);
+					}
+				}
+			}
+		}
+		for (int c = 0; c < this.numChanged; c++) {
+			this.changed[this.changedSlots[c]] = false;
+		}
+		this.numChanged = 0;
+	}
+
+	/**
+	 * Searches the nearest other kernel of a kernel, the first one on ties.
+	 */
+	protected void findNearest(int slot) {
+		int closest = -1;
+		double minDistance = Double.MAX_VALUE;
+		double minSum = Double.MAX_VALUE;
+		int offset = slot * this.dim;
+		for (int j = 0; j < this.size; j++) {
+			if (j == slot) {
+				continue;
+			}
+			double sum = pairSum(offset, j * this.dim, minSum);
+			if (sum <= minSum) {
+				double dist = Math.sqrt(sum);
+				if (dist < minDistance) {
+					closest = j;
+					minDistance = dist;
+					minSum = sum;
+				}
+			}
+		}
+		this.nearest[slot] = closest;
+		this.nearestDistance[slot] = minDistance;
+	}
+
+	/**
+	 * Squared distance between a point and a center, stopped as soon as it
+	 * exceeds the bound: the result is then larger than the bound but not the
+	 * squared distance.
+	 */
+	protected double partialSum(double[] point, int offset, double bound) {
+		double sum = 0.0;
+		for (int i = 0; i < this.dim; i++) {
+			double d = point[i] - this.centers[offset + i];
+			sum += d * d;
+			if (sum > bound) {
+				break;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Squared distance between two centers, stopped as in partialSum.
+	 */
+	protected double pairSum(int offsetA, int offsetB, double bound) {
+		double sum = 0.0;
+		for (int i = 0; i < this.dim; i++) {
+			double d = this.centers[offsetA + i] - this.centers[offsetB + i];
+			sum += d * d;
+			if (sum > bound) {
+				break;
+			}
+		}
+		return sum;
+	}
+}
@@ -64,6 +64,7 @@ public class WithKmeans extends AbstractClusterer {
 	private int timeWindow;
 	private long timestamp = -1;
 	private ClustreamKernel[] kernels;
+	private KernelCenterIndex index; // Centers of the kernels
 	private boolean initialized;
 	private List<ClustreamKernel> buffer; // Buffer for initialization with kNN
 	private int bufferSize;
@@ -100,45 +101,34 @@ public class WithKmeans extends AbstractClusterer {
 				}
 	
 				buffer.clear();
+				index = new KernelCenterIndex(kernels.length, dim);
+				for (int i = 0; i < kernels.length; i++) {
+					index.update(i, kernels[i]);
+				}
 				initialized = true;
 			}
 		}
 
 
 		// 1. Determine closest kernel
-		ClustreamKernel closestKernel = null;
-		double minDistance = Double.MAX_VALUE;
-		for ( int i = 0; i < kernels.length; i++ ) {
-			//System.out.println(i+" "+kernels[i].getWeight()+" "+kernels[i].getDeviation());
-			double distance = distance(instance.toDoubleArray(), kernels[i].getCenter());
-			if (distance < minDistance) {
-				closestKernel = kernels[i];
-				minDistance = distance;
-			}
-		}
+		double[] minDistance = new double[1];
+		int closest = index.nearest(instance.toDoubleArray(), minDistance);
+		ClustreamKernel closestKernel = kernels[closest];
 
 		// 2. Check whether instance fits into closestKernel
 		double radius = 0.0;
 		if ( closestKernel.getWeight() == 1 ) {
 			// Special case: estimate radius by determining the distance to the
 			// next closest cluster
-			radius = Double.MAX_VALUE;
-			double[] center = closestKernel.getCenter();
-			for ( int i = 0; i < kernels.length; i++ ) {
-				if ( kernels[i] == closestKernel ) {
-					continue;
-				}
-
-				double distance = distance(kernels[i].getCenter(), center );
-				radius = Math.min( distance, radius );
-			}
+			radius = index.nearestCenterDistance(closest);
 		} else {
 			radius = closestKernel.getRadius();
 		}
 
-		if ( minDistance < radius ) {
+		if ( minDistance[0] < radius ) {
 			// Date fits, put into kernel and be happy
 			closestKernel.insert( instance, timestamp );
+			index.update(closest, closestKernel);
 			return;
 		}
 
@@ -150,29 +140,21 @@ public class WithKmeans extends AbstractClusterer {
 		for ( int i = 0; i < kernels.length; i++ ) {
 			if ( kernels[i].getRelevanceStamp() < threshold ) {
 				kernels[i] = new ClustreamKernel( instance, dim, timestamp, t, m );
+				index.update(i, kernels[i]);
 				return;
 			}
 		}
 
 		// 3.2 Merge closest two kernels
-		int closestA = 0;
-		int closestB = 0;
-		minDistance = Double.MAX_VALUE;
-		for ( int i = 0; i < kernels.length; i++ ) {
-			double[] centerA = kernels[i].getCenter();
-			for ( int j = i + 1; j < kernels.length; j++ ) {
-				double dist = distance( centerA, kernels[j].getCenter() );
-				if ( dist < minDistance ) {
-					minDistance = dist;
-					closestA = i;
-					closestB = j;
-				}
-			}
-		}
+		int[] closestPair = index.closestPair();
+		int closestA = closestPair[0];
+		int closestB = closestPair[1];
 		assert (closestA != closestB);
 
 		kernels[closestA].add( kernels[closestB] );
 		kernels[closestB] = new ClustreamKernel( instance, dim, timestamp, t,  m );
+		index.update(closestA, kernels[closestA]);
+		index.update(closestB, kernels[closestB]);
 	}
 	
 	@Override
@@ -29,6 +29,7 @@ import moa.clusterers.AbstractClusterer;
 import moa.core.Measurement;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.FloatOption;
 import com.yahoo.labs.samoa.instances.Instance;
 
 /**
@@ -49,6 +50,20 @@ public class ClusTree extends AbstractClusterer{
 	public FlagOption breadthFirstStrategyOption = new FlagOption(
 			"breadthFirstStrategy", 'B',
 			"Use breadth first strategy");
+
+	public FlagOption timeBudgetOption = new FlagOption(
+			"timeBudget", 'T',
+			"Limit each insertion by a wall-clock budget derived from the arrival rate of the points.");
+
+	public FloatOption arrivalRateOption = new FloatOption(
+			"arrivalRate", 'r',
+			"Points per second for the time budget, 0 to measure the time between the arrivals.",
+			0, 0, Double.MAX_VALUE);
+
+	public FloatOption budgetFractionOption = new FloatOption(
+			"budgetFraction", 'f',
+			"Fraction of the time between two points an insertion may take.",
+			0.9, 0, 1);
     
     protected int getDefaultHeight() {
     	return 8;
@@ -99,6 +114,11 @@ public class ClusTree extends AbstractClusterer{
      */
     protected boolean breadthFirstStrat = false;
     
+    /**
+     * Gives the time budgets of the insertions, null if they are not limited.
+     */
+    protected TimeBudgetController budgetController;
+
     //TODO: cleanup
     private Entry alsoUpdate;
     
@@ -114,12 +134,24 @@ public class ClusTree extends AbstractClusterer{
         height = 0;
         numRootSplits = 0;
         numberInsertions = 0;
+        budgetController = timeBudgetOption.isSet()
+                ? new TimeBudgetController(arrivalRateOption.getValue(), budgetFractionOption.getValue())
+                : null;
     }
 
 
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return null;
+        if (budgetController == null) {
+            return null;
+        }
+        return new Measurement[]{
+            new Measurement("inter-arrival time (ms)", budgetController.getInterArrivalTime()),
+            new Measurement("insertion latency p50 (ms)", budgetController.getLatencyQuantile(0.5)),
+            new Measurement("insertion latency p99 (ms)", budgetController.getLatencyQuantile(0.99)),
+            new Measurement("insertion latency p99.9 (ms)", budgetController.getLatencyQuantile(0.999)),
+            new Measurement("insertions ended early (%)", 100.0 * budgetController.getEndedEarlyFraction())
+        };
     }
 
     public boolean isRandomizable() {
@@ -143,6 +175,8 @@ public class ClusTree extends AbstractClusterer{
 
     @Override
     public void trainOnInstanceImpl(Instance instance) {
+        Budget budget = budgetController != null
+                ? budgetController.arrival() : new SimpleBudget(1000);
         timestamp++;
         
         //TODO check if instance contains label
@@ -156,7 +190,10 @@ public class ClusTree extends AbstractClusterer{
         }
 
         ClusKernel newPointAsKernel = new ClusKernel(instance.toDoubleArray(), numberDimensions);
-        insert(newPointAsKernel, new SimpleBudget(1000),timestamp);
+        insert(newPointAsKernel, budget, timestamp);
+        if (budgetController != null) {
+            budgetController.insertionDone();
+        }
     }
 
 
@@ -360,34 +397,44 @@ public class ClusTree extends AbstractClusterer{
 	        Entry bufferEntry = new Entry(this.numberDimensions,
 	                carriedBuffer, timestamp, parentEntry, currentNode);
 	
-	        if (numFreeEntries <= 1) {
+	        Entry irrelevantEntry = numFreeEntries == 0
+	                ? currentNode.getIrrelevantEntry(this.weightThreshold) : null;
+	        if (irrelevantEntry != null) {
+	            // Make room by forgetting an outdated entry, as for the point.
+	            irrelevantEntry.overwriteOldEntry(bufferEntry);
+	        } else if (numFreeEntries <= 1) {
 	            // Distance from buffer to entries.
 	            Entry nearestEntryToCarriedBuffer =
-	                    currentNode.nearestEntry(newEntry);
+	                    currentNode.nearestEntry(bufferEntry);
 	            double distanceNearestEntryToBuffer =
-	                    nearestEntryToCarriedBuffer.calcDistance(newEntry);
+	                    nearestEntryToCarriedBuffer.calcDistance(bufferEntry);
 	
 	            // Distance between buffer and point to insert.
 	            double distanceBufferNewEntry =
 	                    newEntry.calcDistance(carriedBuffer);
 	
-	            // Best distance between Entrys in the Node.
-	            BestMergeInNode bestMergeInNode =
-	                    calculateBestMergeInNode(currentNode);
+	            // Best distance between Entrys in the Node, only needed to
+	            // make room in a full node.
+	            BestMergeInNode bestMergeInNode = numFreeEntries == 0
+	                    ? calculateBestMergeInNode(currentNode) : null;
+	            double distanceBestMerge = bestMergeInNode != null
+	                    ? bestMergeInNode.distance : Double.MAX_VALUE;
 	
 	            // See what the minimal distance is and do the correspoding
 	            // action.
 	            if (distanceNearestEntryToBuffer <= distanceBufferNewEntry
-	                    && distanceNearestEntryToBuffer <= bestMergeInNode.distance) {
+	                    && distanceNearestEntryToBuffer <= distanceBestMerge) {
 	                // Aggregate buffer entry to nearest entry in node.
 	                nearestEntryToCarriedBuffer.aggregateEntry(bufferEntry,
 	                        timestamp, this.negLambda);
 	            } else if (distanceBufferNewEntry <= distanceNearestEntryToBuffer
-	                    && distanceBufferNewEntry <= bestMergeInNode.distance) {
+	                    && distanceBufferNewEntry <= distanceBestMerge) {
 	                newEntry.mergeWith(bufferEntry);
 	            } else {
-	                currentNode.mergeEntries(bestMergeInNode.entryPos1,
-	                        bestMergeInNode.entryPos2);
+	                if (bestMergeInNode != null) {
+	                    currentNode.mergeEntries(bestMergeInNode.entryPos1,
+	                            bestMergeInNode.entryPos2);
+	                }
 	                currentNode.addEntry(bufferEntry, timestamp);
 	            }
 	
@@ -395,6 +442,9 @@ public class ClusTree extends AbstractClusterer{
 	            assert (currentNode.isLeaf());
 	            currentNode.addEntry(bufferEntry, timestamp);
 	        }
+	        // The buffer is in the leaf now, it must not be inserted again in
+	        // the nodes above when a split propagates.
+	        carriedBuffer.clear();
 	    }
 	
 	    // Normally the insertion of the carries buffer does not change the
@@ -734,6 +784,9 @@ public class ClusTree extends AbstractClusterer{
             for (int i = 0; i < entries.length; i++) {
                 Entry e = entries[i];
                 e.setChild(null);
+                // The buffered points are already in the data of the entry,
+                // which is a leaf now.
+                e.getBuffer().clear();
             }
         } else {
             for (int i = 0; i < entries.length; i++) {
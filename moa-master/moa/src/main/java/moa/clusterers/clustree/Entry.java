@@ -221,8 +221,10 @@ public class Entry implements Serializable {
      */
     protected void initializeEntry(Entry other, long currentTime) {
         assert (this.isEmpty());
-        assert (other.getBuffer().isEmpty());
         this.data.add(other.data);
+        // Entries moved by a split keep the points that wait in their buffer
+        // when the time budget ran out.
+        this.buffer.add(other.buffer);
         this.timestamp = currentTime;
         this.child = other.child;
         if (child!=null){
@@ -401,8 +403,9 @@ public class Entry implements Serializable {
      * @param newEntry The cluster that should overwrite the information.
      */
     protected void overwriteOldEntry(Entry newEntry) {
-        assert (this.getBuffer().isEmpty());
         assert (newEntry.getBuffer().isEmpty());
+        // The points waiting in the buffer are forgotten with the rest.
+        this.buffer.clear();
         this.data.overwriteOldCluster(newEntry.data);
         newEntry.setParentEntry(this.parentEntry);
         if (newEntry.getChild()!=null)
@@ -0,0 +1,124 @@
+/*
+ *    TimeBudget.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.clusterers.clustree.util;
+
+import java.io.Serializable;
+
+/**
+ * A <code>Budget</code> measured in wall-clock time: the insertion may go on
+ * until a deadline. The operations reported by the tree are not counted, the
+ * clock is read instead. The budget can be restarted for the next insertion,
+ * so that no object is created per point.
+ */
+public class TimeBudget implements Budget, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long start;
+
+    private long nanos;
+
+    private boolean exhausted;
+
+    /**
+     * Creates a budget that ends after the given time.
+     * @param nanos the time of the insertion in nanoseconds.
+     */
+    public TimeBudget(long nanos) {
+        restart(System.nanoTime(), nanos);
+    }
+
+    /**
+     * Starts the budget of a new insertion.
+     * @param start the moment at which the insertion starts, as given by
+     * <code>System.nanoTime()</code>.
+     * @param nanos the time of the insertion in nanoseconds.
+     */
+    public void restart(long start, long nanos) {
+        assert (nanos >= 0);
+        this.start = start;
+        this.nanos = nanos;
+        this.exhausted = false;
+    }
+
+    @Override
+    public boolean hasMoreTime() {
+        if (!exhausted && System.nanoTime() - start < nanos) {
+            return true;
+        }
+        exhausted = true;
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the tree was told to stop since the last
+     * restart, i.e. the insertion ended early.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public void integerAddition() {
+    }
+
+    @Override
+    public void integerAddition(int number) {
+    }
+
+    @Override
+    public void doubleAddition() {
+    }
+
+    @Override
+    public void doubleAddition(int number) {
+    }
+
+    @Override
+    public void integerMultiplication() {
+    }
+
+    @Override
+    public void integerMultiplication(int number) {
+    }
+
+    @Override
+    public void doubleMultiplication() {
+    }
+
+    @Override
+    public void doubleMultiplication(int number) {
+    }
+
+    @Override
+    public void integerDivision() {
+    }
+
+    @Override
+    public void integerDivision(int number) {
+    }
+
+    @Override
+    public void doubleDivision() {
+    }
+
+    @Override
+    public void doubleDivision(int number) {
+    }
+}
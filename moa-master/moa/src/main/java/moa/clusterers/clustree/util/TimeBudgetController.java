@@ -0,0 +1,156 @@
+/*
+ *    TimeBudgetController.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.clusterers.clustree.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Gives every insertion in the tree a wall-clock budget derived from the
+ * arrival rate of the points, and collects statistics about the insertions.
+ *
+ * <p>The time between two points is either given, as a rate in points per
+ * second, or measured between the arrivals and smoothed. An insertion may take
+ * a fraction of it, so that it ends before the next point arrives. When the
+ * budget runs out the tree stops the descent and leaves the point in the
+ * buffer of an entry, to be carried down by a later point.</p>
+ *
+ * <p>When the rate is measured and the points are given as fast as the tree
+ * takes them, the time between the arrivals is the time of the insertions
+ * themselves: set the rate explicitly to replay a stream at a given speed.</p>
+ */
+public class TimeBudgetController implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Weight of the last inter-arrival time in the smoothed one.
+     */
+    private static final double SMOOTHING = 0.01;
+
+    /**
+     * Number of the last insertions whose latency is kept.
+     */
+    private static final int LATENCY_WINDOW = 10000;
+
+    private final double budgetFraction;
+
+    /**
+     * Time between two points in nanoseconds, given or smoothed. Zero until
+     * it is known.
+     */
+    private double interArrivalTime;
+
+    private final boolean measureArrivals;
+
+    private long lastArrival;
+
+    private boolean started;
+
+    private final TimeBudget budget = new TimeBudget(Long.MAX_VALUE);
+
+    private long arrival;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    private long numInsertions;
+
+    private long numEndedEarly;
+
+    /**
+     * @param arrivalRate the number of points per second, 0 to measure the
+     * time between the arrivals.
+     * @param budgetFraction the fraction of the time between two points an
+     * insertion may take.
+     */
+    public TimeBudgetController(double arrivalRate, double budgetFraction) {
+        this.budgetFraction = budgetFraction;
+        this.measureArrivals = arrivalRate <= 0;
+        if (!this.measureArrivals) {
+            this.interArrivalTime = 1e9 / arrivalRate;
+        }
+    }
+
+    /**
+     * To be called when a point arrives.
+     * @return the budget of its insertion. Unbounded until the time between
+     * the points is known.
+     */
+    public TimeBudget arrival() {
+        this.arrival = System.nanoTime();
+        if (this.measureArrivals) {
+            if (this.started) {
+                double gap = this.arrival - this.lastArrival;
+                if (this.interArrivalTime == 0) {
+                    this.interArrivalTime = gap;
+                } else {
+                    this.interArrivalTime += SMOOTHING * (gap - this.interArrivalTime);
+                }
+            }
+            this.lastArrival = this.arrival;
+            this.started = true;
+        }
+        long nanos = this.interArrivalTime == 0 ? Long.MAX_VALUE
+                : (long) (this.budgetFraction * this.interArrivalTime);
+        this.budget.restart(this.arrival, nanos);
+        return this.budget;
+    }
+
+    /**
+     * To be called when the insertion of the last arrived point is done.
+     */
+    public void insertionDone() {
+        this.latencies[(int) (this.numInsertions % LATENCY_WINDOW)] = System.nanoTime() - this.arrival;
+        this.numInsertions++;
+        if (this.budget.isExhausted()) {
+            this.numEndedEarly++;
+        }
+    }
+
+    /**
+     * @return the time between two points in milliseconds, 0 if unknown.
+     */
+    public double getInterArrivalTime() {
+        return this.interArrivalTime / 1e6;
+    }
+
+    /**
+     * @param quantile the quantile, between 0 and 1.
+     * @return the latency of the last insertions at the given quantile, in
+     * milliseconds.
+     */
+    public double getLatencyQuantile(double quantile) {
+        int n = (int) Math.min(this.numInsertions, LATENCY_WINDOW);
+        if (n == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(this.latencies, n);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))] / 1e6;
+    }
+
+    /**
+     * @return the fraction of the insertions that ran out of budget, i.e.
+     * that left the point in a buffer or merged instead of splitting a leaf.
+     */
+    public double getEndedEarlyFraction() {
+        return this.numInsertions == 0 ? 0.0 : (double) this.numEndedEarly / this.numInsertions;
+    }
+}
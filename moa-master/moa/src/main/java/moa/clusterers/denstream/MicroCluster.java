@@ -29,6 +29,13 @@ public class MicroCluster extends CFCluster {
     private double lambda;
     private Timestamp currentTimestamp;
 
+    // Center and radius at a timestamp, until the cluster changes
+    private transient double[] cachedCenter;
+    private transient long cachedCenterTimestamp;
+    private transient boolean cachedRadiusValid;
+    private transient double cachedRadius;
+    private transient long cachedRadiusTimestamp;
+
     public MicroCluster(double[] center, int dimensions, long creationTimestamp, double lambda, Timestamp currentTimestamp) {
         super(center, dimensions);
         this.creationTimestamp = creationTimestamp;
@@ -42,6 +49,7 @@ public class MicroCluster extends CFCluster {
     }
 
     public void insert(Instance instance, long timestamp) {
+        clearCache();
         N++;
         super.setWeight(super.getWeight() + 1);
         this.lastEditT = timestamp;
@@ -52,6 +60,23 @@ public class MicroCluster extends CFCluster {
         }
     }
 
+    @Override
+    public void add(CFCluster cluster) {
+        clearCache();
+        super.add(cluster);
+    }
+
+    @Override
+    public void setN(double N) {
+        clearCache();
+        super.setN(N);
+    }
+
+    private void clearCache() {
+        cachedCenter = null;
+        cachedRadiusValid = false;
+    }
+
     public long getLastEditTimestamp() {
         return lastEditT;
     }
@@ -127,6 +152,52 @@ public class MicroCluster extends CFCluster {
         return max;
     }
 
+    /**
+     * The center at a timestamp, as getCenter, computed once until the
+     * timestamp or the cluster changes. The array must not be modified.
+     */
+    public double[] getCachedCenter(long timestamp) {
+        if (cachedCenter == null || cachedCenterTimestamp != timestamp) {
+            cachedCenter = getCenter(timestamp);
+            cachedCenterTimestamp = timestamp;
+        }
+        return cachedCenter;
+    }
+
+    /**
+     * The radius at a timestamp, as getRadius(timestamp), computed once until
+     * the timestamp or the cluster changes.
+     */
+    public double getCachedRadius(long timestamp) {
+        if (!cachedRadiusValid || cachedRadiusTimestamp != timestamp) {
+            cachedRadius = getRadius(timestamp);
+            cachedRadiusTimestamp = timestamp;
+            cachedRadiusValid = true;
+        }
+        return cachedRadius;
+    }
+
+    /**
+     * The radius the cluster would have after the insertion of a point at the
+     * timestamp of the insertion, without copying the cluster.
+     *
+     * @param point the values of the point
+     * @return the radius
+     */
+    public double getRadiusWithPoint(double[] point) {
+        // no decay at the time of the insertion
+        double w = N + 1;
+        double max = 0;
+        for (int i = 0; i < SS.length; i++) {
+            double x1 = (SS[i] + point[i] * point[i]) / w;
+            double x2 = Math.pow((LS[i] + point[i]) / w, 2);
+            if (Math.sqrt(x1 - x2) > max) {
+                max = Math.sqrt(x1 - x2);
+            }
+        }
+        return max;
+    }
+
     @Override
     public MicroCluster copy() {
         MicroCluster copy = new MicroCluster(this.LS.clone(), this.LS.length, this.getCreationTime(), this.lambda, this.currentTimestamp);
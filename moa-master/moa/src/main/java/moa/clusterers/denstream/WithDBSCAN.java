@@ -92,9 +92,13 @@ public class WithDBSCAN extends AbstractClusterer {
 		
 		protected boolean covered;
 
+		// the values, copied once for the distances
+		protected final double[] values;
+
 		public DenPoint(Instance nextInstance, Long timestamp) {
 			super(nextInstance);
 			this.setDataset(nextInstance.dataset());
+			this.values = this.toDoubleArray();
 		}
 	}
 
@@ -169,19 +173,14 @@ public class WithDBSCAN extends AbstractClusterer {
 			boolean merged = false;
 			if (p_micro_cluster.getClustering().size() != 0) {
 				MicroCluster x = nearestCluster(point, p_micro_cluster);
-				MicroCluster xCopy = x.copy();
-				xCopy.insert(point, timestamp);
-				if (xCopy.getRadius(timestamp) <= epsilon) {
+				if (x.getRadiusWithPoint(point.values) <= epsilon) {
 					x.insert(point, timestamp);
 					merged = true;
 				}
 			}
 			if (!merged && (o_micro_cluster.getClustering().size() != 0)) {
 				MicroCluster x = nearestCluster(point, o_micro_cluster);
-				MicroCluster xCopy = x.copy();
-				xCopy.insert(point, timestamp);
-
-				if (xCopy.getRadius(timestamp) <= epsilon) {
+				if (x.getRadiusWithPoint(point.values) <= epsilon) {
 					x.insert(point, timestamp);
 					merged = true;
 					if (x.getWeight() > beta * mu) {
@@ -251,8 +250,7 @@ public class WithDBSCAN extends AbstractClusterer {
 		for (int p = 0; p < points.size(); p++) {
 			DenPoint npoint = points.get(p);
 			if (!npoint.covered) {
-				double dist = distance(point.toDoubleArray(), points.get(p)
-						.toDoubleArray());
+				double dist = distance(point.values, npoint.values);
 				if (dist < eps) {
 					neighbourIDs.add(p);
 				}
@@ -264,13 +262,20 @@ public class WithDBSCAN extends AbstractClusterer {
 	private MicroCluster nearestCluster(DenPoint p, Clustering cl) {
 		MicroCluster min = null;
 		double minDist = 0;
+		long centerTimestamp = currentTimestamp.getTimestamp();
 		for (int c = 0; c < cl.size(); c++) {
 			MicroCluster x = (MicroCluster) cl.get(c);
 			if (min == null) {
 				min = x;
 			}
-			double dist = distance(p.toDoubleArray(), x.getCenter());
-			dist -= x.getRadius(timestamp);
+			// centers and radii only change with the timestamp or an insertion
+			double radius = x.getCachedRadius(timestamp);
+			if (minDist + radius <= 0) {
+				// dist - radius >= -radius >= minDist
+				continue;
+			}
+			double dist = distance(p.values, x.getCachedCenter(centerTimestamp));
+			dist -= radius;
 			if (dist < minDist) {
 				minDist = dist;
 				min = x;
@@ -232,12 +232,27 @@ public class CharacteristicVector {
 	 * @param dm the threshold for dense grids
 	 */
 	public void updateGridDensity(int currTime, double decayFactor, double dl, double dm)
+	{
+		decayGridDensity(currTime, Math.pow(decayFactor, (currTime-this.getDensityTimeStamp())), dl, dm);
+	}
+	
+	/**
+	 * Same as updateGridDensity, with the decay since the density time stamp,
+	 * decayFactor^(currTime - densityTimeStamp), already computed. Grids whose
+	 * density was updated at the same time share the same decay.
+	 * 
+	 * @param currTime the data stream's current internal time
+	 * @param decay the decay of the density since the density time stamp
+	 * @param dl the threshold for sparse grids
+	 * @param dm the threshold for dense grids
+	 */
+	public void decayGridDensity(int currTime, double decay, double dl, double dm)
 	{
 		// record the last attribute
 		int lastAtt = this.getAttribute();
 
 		// Update the density grid's density
-		double densityOfG = (Math.pow(decayFactor, (currTime-this.getDensityTimeStamp())) * this.getGridDensity());
+		double densityOfG = (decay * this.getGridDensity());
 
 		this.setGridDensity(densityOfG, currTime);
 
@@ -59,6 +59,12 @@ public class DensityGrid extends CFCluster
 	 */
 	private boolean isVisited;
 	
+	/**
+	 * The hash code of the coordinates, computed on first use as density grids are
+	 * hashed on every look up in grid_list.
+	 */
+	private transient int hashCode;
+	
 	/**
 	 * A constructor method for a density grid
 	 * 
@@ -70,8 +76,7 @@ public class DensityGrid extends CFCluster
 		this.dimensions = c.length;
 		this.coordinates = new int[this.dimensions];
 		N = 1;
-		LS = new double[this.dimensions];
-		SS = new double[this.dimensions];
+		// LS and SS are allocated and zeroed by the super constructor
 		
 		for (int i = 0 ; i < this.dimensions ; i++)
 		{
@@ -96,8 +101,7 @@ public class DensityGrid extends CFCluster
 		this.dimensions = dg.getDimensions();
 		this.coordinates = new int[this.dimensions];
 		N = 1;
-		LS = new double[this.dimensions];
-		SS = new double[this.dimensions];
+		// LS and SS are allocated and zeroed by the super constructor
 		
 		for (int i = 0 ; i < this.dimensions ; i++)
 		{
@@ -150,11 +154,18 @@ public class DensityGrid extends CFCluster
 	public int hashCode()
 	{
 		//int[] primes = {31, 37, 41, 43, 47, 53, 59};
-		int hc = 1;
+		int hc = this.hashCode;
 		
-		for (int i = 0 ; i < this.dimensions ; i++)
+		if (hc == 0)
 		{
-			hc = (hc * 31) + this.coordinates[i];
+			hc = 1;
+			
+			for (int i = 0 ; i < this.dimensions ; i++)
+			{
+				hc = (hc * 31) + this.coordinates[i];
+			}
+			
+			this.hashCode = hc;
 		}
 		
 		return hc;
@@ -171,7 +182,7 @@ public class DensityGrid extends CFCluster
 	{
 		ArrayList<DensityGrid> neighbours = new ArrayList<DensityGrid>();
 		DensityGrid h;
-		int[] hCoord = this.getCoordinates();
+		int[] hCoord = this.getCoordinates().clone();
 		
 		for (int i = 0 ; i < this.dimensions ; i++)
 		{
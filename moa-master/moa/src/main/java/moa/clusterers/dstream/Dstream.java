@@ -325,7 +325,9 @@ public class Dstream extends AbstractClusterer {
 		// 3. If (g not in grid_list) insert dg to grid_list
 		//System.out.println(" & Step 3 or 4");
 		
-		if(!this.grid_list.containsKey(dg))
+		cv = this.grid_list.get(dg);
+		
+		if(cv == null)
 		{
 			//System.out.print("3 - dg wasn't in grid_list!");
 			if(this.deleted_grids.containsKey(dg))
@@ -345,15 +347,11 @@ public class Dstream extends AbstractClusterer {
 		else
 		{
 			//System.out.print("4 - dg was in grid_list!");
-			cv = this.grid_list.get(dg);
-				
 			cv.densityWithNew(this.getCurrTime(), this.getDecayFactor());
 				
 			cv.setUpdateTime(this.getCurrTime());
 		
 			//System.out.println(" "+dg.toString()+" "+cv.toString());
-		
-			grid_list.put(dg, cv);
 		}
 
 		// 5. If tc == gap, then initial clustering
@@ -413,8 +411,8 @@ public class Dstream extends AbstractClusterer {
 		// 2. Assign each dense grid to a distinct cluster
 		// and
 		// 3. Label all other grids as NO_CLASS	
+		// The characteristic vectors are labelled in place, grid_list is not rebuilt
 		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> glIter = this.grid_list.entrySet().iterator();
-		HashMap<DensityGrid, CharacteristicVector> newGL = new HashMap<DensityGrid, CharacteristicVector>();
 		
 		while(glIter.hasNext())
 		{
@@ -436,10 +434,8 @@ public class Dstream extends AbstractClusterer {
 				cvOfG.setLabel(NO_CLASS);
 
 			//System.out.println();
-			newGL.put(dg, cvOfG);
 		}
 
-		this.grid_list = newGL;
 		//printGridClusters();
 		
 		// 4. Make changes to grid labels by doing:
@@ -1066,14 +1062,13 @@ public class Dstream extends AbstractClusterer {
 
 		// Adjust remaining clusters as necessary
 		clusIter = this.cluster_list.iterator();
+		int index = 0;
 
 		while(clusIter.hasNext())
 		{
 			GridCluster c = clusIter.next();
-			int index = this.cluster_list.indexOf(c);
 
 			c.setClusterLabel(index);
-			this.cluster_list.set(index, c);
 
 			Iterator<Map.Entry<DensityGrid, Boolean>> gridsOfClus = c.getGrids().entrySet().iterator();
 
@@ -1089,8 +1084,9 @@ public class Dstream extends AbstractClusterer {
 				}
 				//System.out.println("Cluster "+index+": "+dg.toString()+" is here.");
 				cv.setLabel(index);
-				this.grid_list.put(dg, cv);
 			}
+			
+			index++;
 		}
 	}
 	
@@ -1157,9 +1153,8 @@ public class Dstream extends AbstractClusterer {
 		//       i. If (S1 && S2), mark as sporadic
 		
 		// For each grid g in grid_list
+		// The grids are updated or removed in place, grid_list is not rebuilt
 		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> glIter = this.grid_list.entrySet().iterator();
-		HashMap<DensityGrid, CharacteristicVector> newGL = new HashMap<DensityGrid, CharacteristicVector>();
-		ArrayList<DensityGrid> remGL = new ArrayList<DensityGrid>();
 				
 		while(glIter.hasNext())
 		{
@@ -1178,7 +1173,8 @@ public class Dstream extends AbstractClusterer {
 					if (dgClass != -1)
 						this.cluster_list.get(dgClass).removeGrid(dg);
 					
-					remGL.add(dg);
+					this.deleted_grids.put(dg, new Integer(this.getCurrTime()));
+					glIter.remove();
 					//System.out.println("Removed "+dg.toString()+" from cluster "+dgClass);
 				}
 				// Else if (S1 && S2), mark as sporadic - Else mark as normal
@@ -1186,7 +1182,6 @@ public class Dstream extends AbstractClusterer {
 				{
 					cv.setSporadic(checkIfSporadic(cv));
 					//System.out.println("within gap" + dg.toString() + " sporadicity assessed "+cv.isSporadic());
-					newGL.put(dg, cv);
 				}
 				
 			}
@@ -1195,23 +1190,9 @@ public class Dstream extends AbstractClusterer {
 			{
 				cv.setSporadic(checkIfSporadic(cv));
 				//System.out.println(dg.toString() + " sporadicity assessed "+cv.isSporadic());
-				newGL.put(dg, cv);
 			}
 		}
 		
-		this.grid_list.putAll(newGL);
-		
-		//System.out.println(" - Removed "+remGL.size()+" grids from grid_list.");
-		Iterator<DensityGrid> remIter = remGL.iterator();
-		
-		while(remIter.hasNext())
-		{
-			DensityGrid sporadicDG = remIter.next();
-			//System.out.println("Removing sporadic grid "+sporadicDG.toString()+" at time "+this.getCurrTime()+".");
-			this.deleted_grids.put(sporadicDG, new Integer(this.getCurrTime()));
-			this.grid_list.remove(sporadicDG);
-		}
-		
 	}
 
 	/**
@@ -1256,17 +1237,11 @@ public class Dstream extends AbstractClusterer {
 	{		
 		//System.out.println("Merge clusters "+smallClus+" and "+bigClus+".");
 		// Iterate through the density grids in grid_list to find those which are in highClass
-		for (Map.Entry<DensityGrid, CharacteristicVector> grid : grid_list.entrySet())
+		for (CharacteristicVector cv : this.grid_list.values())
 		{
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cv = grid.getValue();
-
 			// Assign density grids in smallClus to bigClus
 			if(cv.getLabel() == smallClus)
-			{
 				cv.setLabel(bigClus);
-				this.grid_list.put(dg, cv);
-			}
 		}
 		//System.out.println("Density grids assigned to cluster "+bigClus+".");
 		
@@ -1282,18 +1257,28 @@ public class Dstream extends AbstractClusterer {
 	/**
 	 * Iterates through grid_list and updates the density for each density grid therein.
 	 * Also marks each density grid as unvisited for this call to adjustClustering.
+	 * 
+	 * Most grids had their density updated at the previous call, so the decay is only
+	 * recomputed when the density time stamp differs from the one of the previous grid.
 	 */
 	private void updateGridListDensity()
 	{
+		int timeStamp = -1;
+		double decay = 1.0;
+		
 		for (Map.Entry<DensityGrid, CharacteristicVector> grid : grid_list.entrySet())
 		{
 			DensityGrid dg = grid.getKey();
 			CharacteristicVector cvOfG = grid.getValue();
 
+			if (cvOfG.getDensityTimeStamp() != timeStamp)
+			{
+				timeStamp = cvOfG.getDensityTimeStamp();
+				decay = Math.pow(this.getDecayFactor(), (this.getCurrTime()-timeStamp));
+			}
+			
 			dg.setVisited(false);
-			cvOfG.updateGridDensity(this.getCurrTime(), this.getDecayFactor(), this.getDL(), this.getDM());
-
-			this.grid_list.put(dg, cvOfG);
+			cvOfG.decayGridDensity(this.getCurrTime(), decay, this.getDL(), this.getDM());
 		}
 	}
 
@@ -22,7 +22,7 @@ package moa.clusterers.outliers.AbstractC;
 
 import java.util.Vector;
 import moa.clusterers.outliers.AbstractC.ISBIndex.ISBNode;
-import moa.clusterers.outliers.AbstractC.ISBIndex.ISBSearchResult;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
@@ -68,6 +68,7 @@ public class AbstractC extends AbstractCBase {
         windowNodes = new Vector<ISBNode>();
         // create ISB
         ISB = new ISBIndex(m_radius, m_Fraction);
+        resultNodes = new GridRangeIndex.Results<ISBNode>();
         
         // init statistics
         m_nBothInlierOutlier = 0;
@@ -146,11 +147,11 @@ public class AbstractC extends AbstractCBase {
         // perform range query search
         if (bTrace) Println("Perform range query seach");
         nRangeQueriesExecuted++;
-        Vector<ISBIndex.ISBSearchResult> neighbors = ISB.RangeSearch(nodeNew, m_radius);
+        ISB.RangeSearch(nodeNew, m_radius, resultNodes);
 
         // process each returned node
-        for (ISBSearchResult res : neighbors) {
-            ISBNode node = res.node;
+        for (int i = 0; i < resultNodes.size(); i++) {
+            ISBNode node = resultNodes.get(i);
             UpdateNeighbors(nodeNew, node);
         }
         
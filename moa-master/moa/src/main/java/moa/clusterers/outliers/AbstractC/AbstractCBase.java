@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Vector;
 import moa.clusterers.outliers.AbstractC.ISBIndex.ISBNode;
 import moa.clusterers.outliers.MyBaseOutlierDetector;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 
 public abstract class AbstractCBase extends MyBaseOutlierDetector {    
     protected static final Long FIRST_OBJ_ID = 1L;
@@ -34,6 +35,7 @@ public abstract class AbstractCBase extends MyBaseOutlierDetector {
     // list used to find expired nodes
     protected Vector<ISBNode> windowNodes; 
     protected ISBIndex ISB;
+    protected GridRangeIndex.Results<ISBNode> resultNodes;
     protected int m_WindowSize;
     protected double m_radius;
     protected double m_Fraction;
@@ -27,7 +27,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
 import moa.clusterers.outliers.Angiulli.ISBIndex.ISBNode;
-import moa.clusterers.outliers.Angiulli.ISBIndex.ISBSearchResult;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -122,6 +122,7 @@ public class ApproxSTORM extends STORMBase {
         windowNodes = new Vector<ISBNode>();
         // create ISB
         ISB = new ISBIndex(m_radius, m_k);
+        resultNodes = new GridRangeIndex.Results<ISBNode>();
         // create safe_inliers list
         safe_inliers = new HashSet<ISBNode>();
         
@@ -228,16 +229,16 @@ public class ApproxSTORM extends STORMBase {
         // perform range query search
         if (bTrace) Println("Perform range query seach:");
         nRangeQueriesExecuted++;
-        Vector<ISBIndex.ISBSearchResult> nodes = ISB.RangeSearch(nodeNew, m_radius);
+        ISB.RangeSearch(nodeNew, m_radius, resultNodes);
 
         // process each returned node
         int nSafeInliers;
         Long count_si_before = 0L;
-        for (ISBSearchResult res : nodes) {
-            ISBNodeAppr n = (ISBNodeAppr) res.node;
+        for (int i = 0; i < resultNodes.size(); i++) {
+            ISBNodeAppr n = (ISBNodeAppr) resultNodes.get(i);
             if (bTrace) {
-                Printf("   Found at d=%.2f: ", res.distance);
-                PrintNode(res.node);
+                Printf("   Found at d=%.2f: ", resultNodes.distance(i));
+                PrintNode(n);
             }
 
             n.count_after++;
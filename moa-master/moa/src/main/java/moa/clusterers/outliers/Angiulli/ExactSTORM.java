@@ -25,7 +25,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.Vector;
 import moa.clusterers.outliers.Angiulli.ISBIndex.ISBNode;
-import moa.clusterers.outliers.Angiulli.ISBIndex.ISBSearchResult;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -155,6 +155,7 @@ public class ExactSTORM extends STORMBase {
         windowNodes = new Vector<ISBNode>();
         // create ISB
         ISB = new ISBIndex(m_radius, m_k);
+        resultNodes = new GridRangeIndex.Results<ISBNode>();
         
         // init statistics
         m_nBothInlierOutlier = 0;
@@ -219,18 +220,18 @@ public class ExactSTORM extends STORMBase {
         // perform range query search
         if (bTrace) Println("Perform range query seach:");
         nRangeQueriesExecuted++;
-        Vector<ISBIndex.ISBSearchResult> nodes = ISB.RangeSearch(nodeNew, m_radius);
+        ISB.RangeSearch(nodeNew, m_radius, resultNodes);
 
         // process each returned node
-        for (ISBSearchResult res : nodes) {
-            ISBNodeExact n = (ISBNodeExact) res.node;
+        for (int i = 0; i < resultNodes.size(); i++) {
+            ISBNodeExact n = (ISBNodeExact) resultNodes.get(i);
             if (bTrace)  {
-                Printf("   Found at d=%.2f: ", res.distance);
-                PrintNode(res.node);
+                Printf("   Found at d=%.2f: ", resultNodes.distance(i));
+                PrintNode(n);
             }
             
             n.count_after++;            
-            nodeNew.AddPrecNeigh(res.node.id);
+            nodeNew.AddPrecNeigh(n.id);
         }
 
         if (bTrace) Println("Insert new node to ISB.");
@@ -23,6 +23,7 @@ package moa.clusterers.outliers.Angiulli;
 import java.util.Vector;
 import moa.clusterers.outliers.Angiulli.ISBIndex.ISBNode;
 import moa.clusterers.outliers.MyBaseOutlierDetector;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 import com.github.javacliparser.FlagOption;
 
 public abstract class STORMBase extends MyBaseOutlierDetector {   
@@ -35,6 +36,7 @@ public abstract class STORMBase extends MyBaseOutlierDetector {
     // list used to find expired nodes
     protected Vector<ISBNode> windowNodes; 
     protected ISBIndex ISB;
+    protected GridRangeIndex.Results<ISBNode> resultNodes;
     protected int m_WindowSize;
     protected double m_radius;
     protected int m_k;
@@ -22,10 +22,11 @@ package moa.clusterers.outliers.MCOD;
 
 import java.util.ArrayList;
 import java.util.TreeSet;
+import java.util.List;
 import java.util.Vector;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode.NodeType;
-import moa.clusterers.outliers.MCOD.ISBIndex.ISBSearchResult;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -67,6 +68,7 @@ public class MCOD extends MCODBase {
         windowNodes = new Vector<ISBNode>();
         // create ISB
         ISB_PD = new ISBIndex(m_radius, m_k);
+        resultNodes = new GridRangeIndex.Results<ISBNode>();
         // create helper sets for micro-cluster management
         setMC = new TreeSet<MicroCluster>();
         // micro-cluster index
@@ -160,7 +162,7 @@ public class MCOD extends MCODBase {
             if (bTrace) { Print("mcClosest.nodes: "); PrintNodeList(mcClosest.nodes); } 
             
             if (bTrace) Println("Update neighbors of set PD"); 
-            Vector<ISBNode> nodes;
+            List<ISBNode> nodes;
             nodes = ISB_PD.GetAllNodes();
             for (ISBNode q : nodes) {
                 if (q.Rmc.contains(mcClosest)) {
@@ -187,11 +189,11 @@ public class MCOD extends MCODBase {
             // create helper sets for micro-cluster management
             ArrayList<ISBNode> setNC = new ArrayList<ISBNode>();
             ArrayList<ISBNode> setNNC = new ArrayList<ISBNode>();
-            Vector<ISBSearchResult> resultNodes;
-            resultNodes = ISB_PD.RangeSearch(nodeNew, 1.5 * m_radius); // 1.5 ###
-            for (ISBSearchResult sr : resultNodes) {
-                ISBNode q = sr.node;
-                if (sr.distance <= m_radius) {                    
+            ISB_PD.RangeSearch(nodeNew, 1.5 * m_radius, resultNodes); // 1.5 ###
+            for (int i = 0; i < resultNodes.size(); i++) {
+                ISBNode q = resultNodes.get(i);
+                double distance = resultNodes.distance(i);
+                if (distance <= m_radius) {                    
                     // add q to neighs of nodeNew
                     AddNeighbor(nodeNew, q, false);                
                     if (bNewNode) {
@@ -205,7 +207,7 @@ public class MCOD extends MCODBase {
                     }
                 }
                 
-                if (sr.distance <= m_radius / 2.0) {
+                if (distance <= m_radius / 2.0) {
                     setNC.add(q);
                 } else {
                     setNNC.add(q);
@@ -28,6 +28,7 @@ import java.util.Vector;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode;
 import moa.clusterers.outliers.MCOD.ISBIndex.ISBNode.NodeType;
 import moa.clusterers.outliers.MyBaseOutlierDetector;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 
 public abstract class MCODBase extends MyBaseOutlierDetector {    
     protected static class EventItem implements Comparable<EventItem> {
@@ -99,6 +100,7 @@ public abstract class MCODBase extends MyBaseOutlierDetector {
     protected TreeSet<ISBNode> nodesReinsert;
     // index of objects not in any micro-cluster
     protected ISBIndex ISB_PD;
+    protected GridRangeIndex.Results<ISBNode> resultNodes;
     protected int m_WindowSize;
     protected double m_radius;
     protected int m_k;
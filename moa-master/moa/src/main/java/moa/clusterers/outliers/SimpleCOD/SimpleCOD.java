@@ -22,7 +22,7 @@ package moa.clusterers.outliers.SimpleCOD;
 
 import java.util.Vector;
 import moa.clusterers.outliers.SimpleCOD.ISBIndex.ISBNode;
-import moa.clusterers.outliers.SimpleCOD.ISBIndex.ISBSearchResult;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -63,6 +63,7 @@ public class SimpleCOD extends SimpleCODBase {
         windowNodes = new Vector<ISBNode>();
         // create ISB
         ISB = new ISBIndex(m_radius, m_k);
+        resultNodes = new GridRangeIndex.Results<ISBNode>();
         // create event queue
         eventQueue = new EventQueue();
         
@@ -77,11 +78,10 @@ public class SimpleCOD extends SimpleCODBase {
         
         if (bTrace) Println("Perform R range query");    
         nRangeQueriesExecuted++;
-        Vector<ISBSearchResult> resultNodes;
-        resultNodes = ISB.RangeSearch(nodeNew, m_radius);
-        for (ISBSearchResult sr : resultNodes) {
-            double distance = sr.distance;
-            ISBNode q = sr.node;
+        ISB.RangeSearch(nodeNew, m_radius, resultNodes);
+        for (int i = 0; i < resultNodes.size(); i++) {
+            double distance = resultNodes.distance(i);
+            ISBNode q = resultNodes.get(i);
             if ( (nodeNew != q) && (distance <= m_radius) ) {  
                 if (bTrace) Println("nodeNew has neighbor q.id " + q.id);  
                 nodeNew.AddPrecNeigh(q);
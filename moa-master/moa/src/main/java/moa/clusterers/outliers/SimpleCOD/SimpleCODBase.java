@@ -26,6 +26,7 @@ import java.util.TreeSet;
 import java.util.Vector;
 import moa.clusterers.outliers.MyBaseOutlierDetector;
 import moa.clusterers.outliers.SimpleCOD.ISBIndex.ISBNode;
+import moa.clusterers.outliers.utils.GridRangeIndex;
 
 public abstract class SimpleCODBase extends MyBaseOutlierDetector {    
     protected static class EventItem implements Comparable<EventItem> {
@@ -91,6 +92,7 @@ public abstract class SimpleCODBase extends MyBaseOutlierDetector {
     protected EventQueue eventQueue;
     // index of objects
     protected ISBIndex ISB;
+    protected GridRangeIndex.Results<ISBNode> resultNodes;
     protected int m_WindowSize;
     protected double m_radius;
     protected int m_k;
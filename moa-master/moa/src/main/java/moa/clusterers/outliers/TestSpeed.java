@@ -21,53 +21,66 @@
 package moa.clusterers.outliers;
 
 import moa.clusterers.outliers.AbstractC.AbstractC;
+import moa.clusterers.outliers.Angiulli.ApproxSTORM;
 import moa.clusterers.outliers.Angiulli.ExactSTORM;
 import moa.clusterers.outliers.MCOD.MCOD;
+import moa.clusterers.outliers.MyBaseOutlierDetector.Outlier;
+import moa.clusterers.outliers.MyBaseOutlierDetector.OutlierNotifier;
 import moa.clusterers.outliers.SimpleCOD.SimpleCOD;
 import moa.streams.clustering.RandomRBFGeneratorEvents;
 import com.yahoo.labs.samoa.instances.Instance;
 
+/**
+ * Runs the distance-based outlier detectors on the same stream and prints
+ * their total time and the number of outliers they reported.
+ * 
+ * Usage: TestSpeed [numInstances] [windowSize] [detector]
+ */
 public class TestSpeed {    
     public static void main(String[] args) throws Exception 
     {        
-        int numInstances = 2000;        
-        RandomRBFGeneratorEvents stream = new RandomRBFGeneratorEvents();
-        stream.prepareForUse();
-        
-        SimpleCOD scod = new SimpleCOD();   
-        MCOD mcod = new MCOD();        
-        ExactSTORM angiulli = new ExactSTORM();   
-        //DistanceOutliersAppr angiulli = new DistanceOutliersAppr(); 
-        AbstractC abstractC = new AbstractC();        
-        
-        angiulli.queryFreqOption.setValue(1);
-        
-        scod.setModelContext(stream.getHeader());
-        scod.prepareForUse(); 
-        
-        mcod.setModelContext(stream.getHeader());
-        mcod.prepareForUse(); 
+        int numInstances = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int windowSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        String only = args.length > 2 ? args[2] : null;
         
-        angiulli.setModelContext(stream.getHeader());
-        angiulli.prepareForUse(); 
+        MyBaseOutlierDetector[] detectors = new MyBaseOutlierDetector[] {
+            new SimpleCOD(), new MCOD(), new ExactSTORM(), new ApproxSTORM(), new AbstractC() };
         
-        abstractC.setModelContext(stream.getHeader());
-        abstractC.prepareForUse();
-        
-        Long tmStart = System.currentTimeMillis();
-        
-        int numberSamples = 0;     
-        while (stream.hasMoreInstances() && (numberSamples < numInstances)) {               
-            Instance newInst = stream.nextInstance().getData();
+        for (MyBaseOutlierDetector detector : detectors) {
+            String name = detector.getClass().getSimpleName();
+            if ((only != null) && !only.equalsIgnoreCase(name))
+                continue;
+            
+            RandomRBFGeneratorEvents stream = new RandomRBFGeneratorEvents();
+            stream.prepareForUse();
             
-            //scod.processNewInstanceImpl(newInst);  
-            mcod.processNewInstanceImpl(newInst);  
-            //angiulli.processNewInstanceImpl(newInst);  
-            //abstractC.processNewInstanceImpl(newInst); 
+            detector.windowSizeOption.setValue(windowSize);
+            detector.setModelContext(stream.getHeader());
+            detector.prepareForUse();
+            detector.SetShowProgress(false);
             
-            numberSamples++;
-        }      
+            final int[] nOutliers = new int[1];
+            detector.outlierNotifier = new OutlierNotifier() {
+                @Override
+                public void OnOutlier(Outlier outlier) {
+                    nOutliers[0]++;
+                }
+                
+                @Override
+                public void OnInlier(Outlier outlier) {
+                }
+            };
+        
+            Long tmStart = System.currentTimeMillis();
+        
+            int numberSamples = 0;     
+            while (stream.hasMoreInstances() && (numberSamples < numInstances)) {               
+                Instance newInst = stream.nextInstance().getData();
+                detector.processNewInstanceImpl(newInst);  
+                numberSamples++;
+            }      
         
-        System.out.println("Total time = " + (System.currentTimeMillis() - tmStart) + " ms");
+            System.out.println(name + ": total time = " + (System.currentTimeMillis() - tmStart) + " ms, outliers reported = " + nOutliers[0]);
+        }
     }
 }
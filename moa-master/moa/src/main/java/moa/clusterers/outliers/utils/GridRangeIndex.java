@@ -0,0 +1,488 @@
+/*
+ *    GridRangeIndex.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.clusterers.outliers.utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import moa.clusterers.outliers.utils.mtree.DistanceFunctions.EuclideanCoordinate;
+
+/**
+ * Range query index for the objects of a sliding window.
+ *
+ * <p>The coordinates of the objects are stored in one primitive array and the
+ * objects are hashed in a uniform grid over their first dimensions, with cells
+ * as wide as the radius of the detector. A range query only computes the
+ * distances to the objects of the cells that overlap the query ball, and
+ * writes its results to a reusable {@link Results} buffer in ascending order
+ * of distance, as the M-tree did. Inserting an object and removing an expired
+ * one are O(1) besides the scan of its cell.</p>
+ *
+ * <p>The index is not thread safe and a results buffer is only valid until
+ * the next query that uses it.</p>
+ *
+ * @param <T> the type of the indexed objects, compared by identity
+ */
+public class GridRangeIndex<T> {
+
+    /**
+     * The number of dimensions of the grid, so that a query visits a bounded
+     * number of cells. The other dimensions are only used in the distances.
+     */
+    public static final int MAX_GRID_DIMENSIONS = 3;
+
+    // bits of a cell coordinate in the key of a cell
+    private static final int CELL_BITS = 21;
+
+    private static final long MAX_CELL = (1L << (CELL_BITS - 1)) - 1;
+
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+
+    protected final double cellWidth;
+
+    protected int dimensions = -1;
+
+    protected int gridDimensions;
+
+    // objects and coordinates, densely stored in insertion slots
+    protected Object[] items = new Object[16];
+
+    protected double[] coordinates;
+
+    protected Cell[] cellOfSlot = new Cell[16];
+
+    protected int[] positionInCell = new int[16];
+
+    protected int size;
+
+    // open addressing hash table of the non empty cells
+    protected long[] cellKeys = new long[16];
+
+    protected Cell[] cells = new Cell[16];
+
+    protected int numCells;
+
+    // scratch buffers of the queries
+    protected double[] query;
+
+    protected long[] low, high, current;
+
+    protected List<T> view;
+
+    /**
+     * Creates an index whose grid cells are as wide as the given radius.
+     *
+     * @param cellWidth the width of the cells, usually the query radius
+     */
+    public GridRangeIndex(double cellWidth) {
+        this.cellWidth = cellWidth > 0.0 ? cellWidth : Double.MAX_VALUE;
+    }
+
+    /**
+     * Reusable buffer of range query results, sorted by ascending distance.
+     */
+    public static class Results<T> {
+        protected Object[] items = new Object[16];
+        protected double[] distances = new double[16];
+        protected int size;
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int i) {
+            return (T) items[i];
+        }
+
+        public double distance(int i) {
+            return distances[i];
+        }
+
+        public void clear() {
+            Arrays.fill(items, 0, size, null);
+            size = 0;
+        }
+
+        protected void add(Object item, double distance) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2 * size);
+                distances = Arrays.copyOf(distances, 2 * size);
+            }
+            items[size] = item;
+            distances[size] = distance;
+            size++;
+        }
+
+        /**
+         * Stable merge sort of the results, with insertion sort of the runs.
+         */
+        protected void sortByDistance() {
+            final int run = 16;
+            for (int start = 0; start < size; start += run) {
+                int end = Math.min(start + run, size);
+                for (int i = start + 1; i < end; i++) {
+                    Object item = items[i];
+                    double d = distances[i];
+                    int j = i - 1;
+                    while ((j >= start) && (distances[j] > d)) {
+                        items[j + 1] = items[j];
+                        distances[j + 1] = distances[j];
+                        j--;
+                    }
+                    items[j + 1] = item;
+                    distances[j + 1] = d;
+                }
+            }
+            if (size <= run) {
+                return;
+            }
+            Object[] fromItems = items, toItems = new Object[items.length];
+            double[] fromDistances = distances, toDistances = new double[distances.length];
+            for (int width = run; width < size; width *= 2) {
+                for (int left = 0; left < size; left += 2 * width) {
+                    int mid = Math.min(left + width, size);
+                    int right = Math.min(left + 2 * width, size);
+                    int i = left, j = mid, k = left;
+                    while (k < right) {
+                        if ((j >= right) || ((i < mid) && (fromDistances[i] <= fromDistances[j]))) {
+                            toItems[k] = fromItems[i];
+                            toDistances[k++] = fromDistances[i++];
+                        } else {
+                            toItems[k] = fromItems[j];
+                            toDistances[k++] = fromDistances[j++];
+                        }
+                    }
+                }
+                Object[] swapItems = fromItems;
+                fromItems = toItems;
+                toItems = swapItems;
+                double[] swapDistances = fromDistances;
+                fromDistances = toDistances;
+                toDistances = swapDistances;
+            }
+            items = fromItems;
+            distances = fromDistances;
+        }
+    }
+
+    /**
+     * The slots of the objects of a grid cell.
+     */
+    protected static class Cell {
+        int[] slots = new int[4];
+        int size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The object in a slot, the slots of the objects are 0 to size() - 1.
+     * Removing an object moves the object of the last slot to its slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int slot) {
+        return (T) items[slot];
+    }
+
+    /**
+     * A live, read only view of the objects, in the order of their slots.
+     */
+    public List<T> asList() {
+        if (view == null) {
+            view = new AbstractList<T>() {
+                @Override
+                public T get(int index) {
+                    return GridRangeIndex.this.get(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return view;
+    }
+
+    /**
+     * Adds an object at the given coordinates, nothing is done if the
+     * object is already indexed at these coordinates.
+     */
+    public void insert(EuclideanCoordinate point, T item) {
+        if (dimensions < 0) {
+            init(point.dimensions());
+        }
+        long key = cellKey(point);
+        Cell cell = findCell(key);
+        if (cell == null) {
+            cell = new Cell();
+            putCell(key, cell);
+        } else if (indexInCell(cell, item) >= 0) {
+            return;
+        }
+
+        if (size == items.length) {
+            int capacity = 2 * size;
+            items = Arrays.copyOf(items, capacity);
+            coordinates = Arrays.copyOf(coordinates, capacity * dimensions);
+            cellOfSlot = Arrays.copyOf(cellOfSlot, capacity);
+            positionInCell = Arrays.copyOf(positionInCell, capacity);
+        }
+        int slot = size++;
+        items[slot] = item;
+        int offset = slot * dimensions;
+        for (int k = 0; k < dimensions; k++) {
+            coordinates[offset + k] = point.get(k);
+        }
+
+        if (cell.size == cell.slots.length) {
+            cell.slots = Arrays.copyOf(cell.slots, 2 * cell.size);
+        }
+        cellOfSlot[slot] = cell;
+        positionInCell[slot] = cell.size;
+        cell.slots[cell.size++] = slot;
+    }
+
+    /**
+     * Removes an object given the coordinates at which it was inserted.
+     *
+     * @return whether the object was indexed
+     */
+    public boolean remove(EuclideanCoordinate point, T item) {
+        if (size == 0) {
+            return false;
+        }
+        long key = cellKey(point);
+        Cell cell = findCell(key);
+        if (cell == null) {
+            return false;
+        }
+        int pos = indexInCell(cell, item);
+        if (pos < 0) {
+            return false;
+        }
+
+        int slot = cell.slots[pos];
+        // remove the slot from its cell
+        int lastPos = --cell.size;
+        if (pos != lastPos) {
+            int moved = cell.slots[lastPos];
+            cell.slots[pos] = moved;
+            positionInCell[moved] = pos;
+        }
+        if (cell.size == 0) {
+            deleteCell(key);
+        }
+
+        // move the last slot to the free one
+        int last = --size;
+        if (slot != last) {
+            items[slot] = items[last];
+            System.arraycopy(coordinates, last * dimensions, coordinates, slot * dimensions, dimensions);
+            Cell lastCell = cellOfSlot[last];
+            cellOfSlot[slot] = lastCell;
+            positionInCell[slot] = positionInCell[last];
+            lastCell.slots[positionInCell[last]] = slot;
+        }
+        items[last] = null;
+        cellOfSlot[last] = null;
+        return true;
+    }
+
+    /**
+     * Finds the objects within a distance of a point.
+     *
+     * @param point the center of the query
+     * @param radius the maximum distance, inclusive
+     * @param results the buffer that receives the objects and their distances
+     */
+    public void rangeSearch(EuclideanCoordinate point, double radius, Results<T> results) {
+        results.clear();
+        if ((size == 0) || !(radius >= 0.0)) {
+            return;
+        }
+        int n = Math.min(dimensions, point.dimensions());
+        for (int k = 0; k < dimensions; k++) {
+            query[k] = k < n ? point.get(k) : 0.0;
+        }
+
+        long reach = (long) Math.ceil(radius / cellWidth);
+        double numQueryCells = 1;
+        for (int g = 0; g < gridDimensions; g++) {
+            long c = cell(query[g]);
+            low[g] = clamp(c - reach);
+            high[g] = clamp(c + reach);
+            current[g] = low[g];
+            numQueryCells *= high[g] - low[g] + 1;
+        }
+
+        if (numQueryCells > numCells) {
+            // the query overlaps more cells than there are objects in cells
+            for (int slot = 0; slot < size; slot++) {
+                addIfInRange(slot, n, radius, results);
+            }
+        } else {
+            // visit the cells of the hypercube low..high
+            while (true) {
+                Cell cell = findCell(pack(current));
+                if (cell != null) {
+                    for (int i = 0; i < cell.size; i++) {
+                        addIfInRange(cell.slots[i], n, radius, results);
+                    }
+                }
+                int g = 0;
+                while ((g < gridDimensions) && (current[g] == high[g])) {
+                    current[g] = low[g];
+                    g++;
+                }
+                if (g == gridDimensions) {
+                    break;
+                }
+                current[g]++;
+            }
+        }
+        results.sortByDistance();
+    }
+
+    protected void addIfInRange(int slot, int n, double radius, Results<T> results) {
+        int offset = slot * dimensions;
+        double d = 0;
+        for (int k = 0; k < n; k++) {
+            double diff = query[k] - coordinates[offset + k];
+            d += diff * diff;
+        }
+        d = Math.sqrt(d);
+        if (d <= radius) {
+            results.add(items[slot], d);
+        }
+    }
+
+    protected void init(int dimensions) {
+        this.dimensions = dimensions;
+        this.gridDimensions = Math.max(1, Math.min(dimensions, MAX_GRID_DIMENSIONS));
+        this.coordinates = new double[items.length * dimensions];
+        this.query = new double[dimensions];
+        this.low = new long[gridDimensions];
+        this.high = new long[gridDimensions];
+        this.current = new long[gridDimensions];
+    }
+
+    /**
+     * The coordinate of the cell of a value, cells out of range are clamped
+     * to the border cells.
+     */
+    protected long cell(double value) {
+        return clamp((long) Math.floor(value / cellWidth));
+    }
+
+    protected static long clamp(long c) {
+        return c < -MAX_CELL - 1 ? -MAX_CELL - 1 : (c > MAX_CELL ? MAX_CELL : c);
+    }
+
+    protected long cellKey(EuclideanCoordinate point) {
+        long key = 0;
+        for (int g = 0; g < gridDimensions; g++) {
+            double value = g < point.dimensions() ? point.get(g) : 0.0;
+            key |= (cell(value) & CELL_MASK) << (g * CELL_BITS);
+        }
+        return key;
+    }
+
+    protected long pack(long[] cell) {
+        long key = 0;
+        for (int g = 0; g < gridDimensions; g++) {
+            key |= (cell[g] & CELL_MASK) << (g * CELL_BITS);
+        }
+        return key;
+    }
+
+    protected int indexInCell(Cell cell, Object item) {
+        for (int i = 0; i < cell.size; i++) {
+            if (items[cell.slots[i]] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (cells.length - 1);
+    }
+
+    protected Cell findCell(long key) {
+        int mask = cells.length - 1;
+        for (int i = hash(key); cells[i] != null; i = (i + 1) & mask) {
+            if (cellKeys[i] == key) {
+                return cells[i];
+            }
+        }
+        return null;
+    }
+
+    protected void putCell(long key, Cell cell) {
+        if (2 * (numCells + 1) > cells.length) {
+            long[] oldKeys = cellKeys;
+            Cell[] oldCells = cells;
+            cellKeys = new long[2 * oldKeys.length];
+            cells = new Cell[2 * oldCells.length];
+            numCells = 0;
+            for (int i = 0; i < oldCells.length; i++) {
+                if (oldCells[i] != null) {
+                    putCell(oldKeys[i], oldCells[i]);
+                }
+            }
+        }
+        int mask = cells.length - 1;
+        int i = hash(key);
+        while (cells[i] != null) {
+            i = (i + 1) & mask;
+        }
+        cellKeys[i] = key;
+        cells[i] = cell;
+        numCells++;
+    }
+
+    /**
+     * Deletes a cell from the hash table, shifting back the following cells
+     * of its probe sequence.
+     */
+    protected void deleteCell(long key) {
+        int mask = cells.length - 1;
+        int i = hash(key);
+        while (cellKeys[i] != key || cells[i] == null) {
+            i = (i + 1) & mask;
+        }
+        cells[i] = null;
+        numCells--;
+        for (int j = (i + 1) & mask; cells[j] != null; j = (j + 1) & mask) {
+            int h = hash(cellKeys[j]);
+            // move the cell back if its home is not between the hole and j
+            if (((j - h) & mask) >= ((j - i) & mask)) {
+                cellKeys[i] = cellKeys[j];
+                cells[i] = cells[j];
+                cells[j] = null;
+                i = j;
+            }
+        }
+    }
+}
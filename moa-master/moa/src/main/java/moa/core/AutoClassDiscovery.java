@@ -22,65 +22,252 @@ package moa.core;
 import nz.ac.waikato.cms.locator.ClassCache;
 import nz.ac.waikato.cms.locator.FixedClassListTraversal;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * Class for discovering classes via reflection in the java class path.
  * <br>
- * If analyzing of classpath fails, it falls back on reading class names
- * from file list {@link #CLASS_LIST} as resource stream.
+ * The classes below "moa" are read from the class lists {@link #CLASS_LIST}
+ * generated at build time, so that the class path does not have to be
+ * traversed at startup. Only the entries of the class path without a class
+ * list (e.g. plugins) are scanned for further classes below "moa". If no
+ * class list is found, or classes outside of "moa" are searched for, the
+ * class path is traversed.
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  */
 public class AutoClassDiscovery {
 
-    protected static final Map<String, String[]> cachedClassNames = new HashMap<String, String[]>();
+    protected static final ConcurrentHashMap<String, String[]> cachedClassNames = new ConcurrentHashMap<String, String[]>();
 
-    protected static ClassCache m_Cache;
+    protected static volatile ClassCache m_Cache;
+
+    /** the cache of the whole class path, for packages outside of "moa" */
+    protected static volatile ClassCache m_ClasspathCache;
 
     public final static String CLASS_LIST = "moa.classes";
 
     /**
-     * Initializes the class cache
+     * Initializes the class cache, from the class lists if available.
      */
-    protected static synchronized void initCache() {
+    protected static void initCache() {
         if (m_Cache == null) {
-            m_Cache = new ClassCache();
-            // failed to locate any classes on the classpath, maybe inside Weka?
-            // try loading fixed list of classes
-            if (m_Cache.getClassnames("moa.classifiers.trees").isEmpty()) {
-                InputStream inputStream = null;
-                try {
-                    inputStream = m_Cache.getClass().getClassLoader().getResourceAsStream(CLASS_LIST);
-                    m_Cache = new ClassCache(new FixedClassListTraversal(inputStream));
+            synchronized (AutoClassDiscovery.class) {
+                if (m_Cache == null) {
+                    m_Cache = createCache(false);
                 }
-                catch (Exception e) {
-                    System.err.println("Failed to initialize class cache from fixed list (" + CLASS_LIST + ")!");
-                    e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Creates the cache of the classes below "moa".
+     *
+     * @param scan whether to traverse the class path even if class lists
+     * are available
+     * @return the cache
+     */
+    protected static ClassCache createCache(boolean scan) {
+        if (!scan) {
+            try {
+                Set<String> classNames = new TreeSet<>();
+                Set<File> indexed = readClassLists(classNames);
+                if (!classNames.isEmpty()) {
+                    scanClasspath(indexed, classNames);
+                    StringBuilder list = new StringBuilder();
+                    for (String className : classNames)
+                        list.append(className).append('\n');
+                    return new ClassCache(new FixedClassListTraversal(
+                        new ByteArrayInputStream(list.toString().getBytes(StandardCharsets.UTF_8))));
                 }
-                finally {
-                    if (inputStream != null) {
-                        try {
-                            inputStream.close();
-                        }
-                        catch (Exception e) {
-                            // ignored
-                        }
+            }
+            catch (Exception e) {
+                System.err.println("Failed to initialize class cache from class lists (" + CLASS_LIST + ")!");
+                e.printStackTrace();
+            }
+        }
+
+        ClassCache cache = getClasspathCache();
+        // failed to locate any classes on the classpath, maybe inside Weka?
+        // try loading fixed list of classes
+        if (cache.getClassnames("moa.classifiers.trees").isEmpty()) {
+            InputStream inputStream = null;
+            try {
+                inputStream = cache.getClass().getClassLoader().getResourceAsStream(CLASS_LIST);
+                cache = new ClassCache(new FixedClassListTraversal(inputStream));
+            }
+            catch (Exception e) {
+                System.err.println("Failed to initialize class cache from fixed list (" + CLASS_LIST + ")!");
+                e.printStackTrace();
+            }
+            finally {
+                if (inputStream != null) {
+                    try {
+                        inputStream.close();
+                    }
+                    catch (Exception e) {
+                        // ignored
                     }
                 }
             }
         }
+        return cache;
+    }
+
+    /**
+     * Returns the cache of the whole class path, traversing it on first use.
+     * @return the cache
+     */
+    protected static ClassCache getClasspathCache() {
+        if (m_ClasspathCache == null) {
+            synchronized (AutoClassDiscovery.class) {
+                if (m_ClasspathCache == null) {
+                    m_ClasspathCache = new ClassCache();
+                }
+            }
+        }
+        return m_ClasspathCache;
+    }
+
+    /**
+     * Reads the class names of all the class lists on the class path.
+     *
+     * @param classNames receives the class names
+     * @return the jars the class lists were found in
+     * @throws IOException if reading a class list fails
+     */
+    protected static Set<File> readClassLists(Set<String> classNames) throws IOException {
+        Set<File> indexed = new HashSet<>();
+        ClassLoader loader = AutoClassDiscovery.class.getClassLoader();
+        Enumeration<URL> lists = loader.getResources(CLASS_LIST);
+        while (lists.hasMoreElements()) {
+            URL url = lists.nextElement();
+            File entry = classpathEntryOf(url);
+            if (entry != null)
+                indexed.add(entry);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty())
+                        classNames.add(line);
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Determines the jar a resource is located in. Directories are not
+     * returned: their class list may be outdated while developing, so they
+     * are scanned anyway.
+     *
+     * @param url the URL of the resource
+     * @return the jar, null if it cannot be determined or the resource is
+     * not in a jar
+     */
+    protected static File classpathEntryOf(URL url) {
+        try {
+            if (url.getProtocol().equals("jar"))
+                return new File(((JarURLConnection) url.openConnection()).getJarFileURL().toURI()).getCanonicalFile();
+        }
+        catch (Exception e) {
+            // ignored
+        }
+        return null;
+    }
+
+    /**
+     * Adds the classes below "moa" of the class path entries without a class
+     * list, e.g. plugins.
+     *
+     * @param indexed the jars with a class list
+     * @param classNames receives the class names
+     */
+    protected static void scanClasspath(Set<File> indexed, Set<String> classNames) {
+        String classpath = System.getProperty("java.class.path", "");
+        for (String path : classpath.split(File.pathSeparator)) {
+            if (path.isEmpty())
+                continue;
+            File entry;
+            try {
+                entry = new File(path).getCanonicalFile();
+            }
+            catch (IOException e) {
+                continue;
+            }
+            if (indexed.contains(entry) || !entry.exists())
+                continue;
+            if (entry.isDirectory())
+                scanDirectory(new File(entry, "moa"), "moa", classNames);
+            else
+                scanJar(entry, classNames);
+        }
+    }
+
+    /**
+     * Adds the classes of a directory and its subdirectories.
+     */
+    protected static void scanDirectory(File dir, String pkg, Set<String> classNames) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory())
+                scanDirectory(file, pkg + "." + name, classNames);
+            else if (isClassFile(name))
+                classNames.add(pkg + "." + name.substring(0, name.length() - ".class".length()));
+        }
+    }
+
+    /**
+     * Adds the classes below "moa" of a jar.
+     */
+    protected static void scanJar(File jar, Set<String> classNames) {
+        try (JarFile file = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith("moa/") && isClassFile(name))
+                    classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+            }
+        }
+        catch (IOException e) {
+            // not a jar
+        }
+    }
+
+    /**
+     * Whether a file name is the one of a top-level class.
+     */
+    protected static boolean isClassFile(String name) {
+        return name.endsWith(".class") && name.indexOf('$') < 0;
     }
 
     /**
@@ -88,33 +275,49 @@ public class AutoClassDiscovery {
      * @return the class names
      */
     public static List<String> getAllClassNames() {
+        initCache();
+        return getAllClassNames(m_Cache);
+    }
+
+    /**
+     * Returns all class names below "moa" stored in a cache.
+     * @param cache the cache
+     * @return the class names
+     */
+    protected static List<String> getAllClassNames(ClassCache cache) {
         List<String> result = new ArrayList<>();
-        Iterator<String> pkgs = m_Cache.packages();
+        Iterator<String> pkgs = cache.packages();
         while (pkgs.hasNext()) {
             String pkg = pkgs.next();
             if (pkg.startsWith("moa")) {
-                Set<String> classnames = m_Cache.getClassnames(pkg);
+                Set<String> classnames = cache.getClassnames(pkg);
                 result.addAll(classnames);
             }
         }
         return result;
     }
 
-    public static synchronized String[] findClassNames(String packageNameToSearch) {
+    public static String[] findClassNames(String packageNameToSearch) {
         String[] cached = cachedClassNames.get(packageNameToSearch);
         if (cached == null) {
             HashSet<String> classNames = new HashSet<String>();
 
             initCache();
-            Iterator<String> iter = m_Cache.packages();
+            // the class lists only hold the classes below "moa"
+            ClassCache cache = m_Cache;
+            if (!packageNameToSearch.equals("moa") && !packageNameToSearch.startsWith("moa."))
+                cache = getClasspathCache();
+            Iterator<String> iter = cache.packages();
             while (iter.hasNext()) {
                 String pkg = iter.next();
                 if (pkg.equals(packageNameToSearch) || pkg.startsWith(packageNameToSearch + "."))
-                    classNames.addAll(m_Cache.getClassnames(pkg));
+                    classNames.addAll(cache.getClassnames(pkg));
             }
             cached = classNames.toArray(new String[classNames.size()]);
             Arrays.sort(cached);
-            cachedClassNames.put(packageNameToSearch, cached);
+            String[] previous = cachedClassNames.putIfAbsent(packageNameToSearch, cached);
+            if (previous != null)
+                cached = previous;
         }
         return cached;
     }
@@ -160,14 +363,15 @@ public class AutoClassDiscovery {
 
     /**
      * Outputs all class names below "moa" either to stdout or to the
-     * file provided as first argument.
+     * file provided as first argument. The class path is always traversed,
+     * so that the class list {@link #CLASS_LIST} can be generated from the
+     * output at build time.
      *
      * @param args optional file for storing the classnames
      * @throws Exception if writing to file fails
      */
     public static void main(String[] args) throws Exception {
-        initCache();
-        List<String> allClassnames = getAllClassNames();
+        List<String> allClassnames = getAllClassNames(createCache(true));
         PrintStream out = System.out;
         if (args.length > 0)
             out = new PrintStream(new File(args[0]));
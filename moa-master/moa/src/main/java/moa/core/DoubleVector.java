@@ -161,8 +161,10 @@ public class DoubleVector extends AbstractMOAObject {
     }
 
     public double[] getArrayCopy() {
-        double[] aCopy = new double[this.array.length];
-        System.arraycopy(this.array, 0, aCopy, 0, this.array.length);
+        // a single read, the array can be replaced by another thread
+        double[] array = this.array;
+        double[] aCopy = new double[array.length];
+        System.arraycopy(array, 0, aCopy, 0, array.length);
         return aCopy;
     }
 
@@ -46,6 +46,50 @@ public class MiscUtils {
         return index - 1;
     }
 
+    /**
+     * Chooses the same index as <code>chooseRandomIndexBasedOnWeights</code>,
+     * given the cumulative sums of the weights instead of the weights, with a
+     * binary search instead of a linear one.
+     *
+     * @param cumulativeWeights the sums of the weights up to each index
+     * @param random the random number generator
+     * @return the chosen index
+     */
+    public static int chooseRandomIndexBasedOnCumulativeWeights(
+            double[] cumulativeWeights, Random random) {
+        double val = random.nextDouble()
+                * cumulativeWeights[cumulativeWeights.length - 1];
+        // first index whose cumulative weight exceeds val, the last one if none
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeWeights[mid] <= val) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes the cumulative sums of weights, in the order of
+     * <code>Utils.sum</code>.
+     *
+     * @param weights the weights
+     * @return the sums of the weights up to each index
+     */
+    public static double[] cumulativeSums(double[] weights) {
+        double[] sums = new double[weights.length];
+        double sum = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            sums[i] = sum;
+        }
+        return sums;
+    }
+
     public static int poisson(double lambda, Random r) {
         if (lambda < 100.0) {
             double product = 1.0;
@@ -53,15 +53,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     private static final long serialVersionUID = 1L;
 
-    protected Estimator weightCorrect;
-
-    protected Estimator[] columnKappa;
-
-    protected Estimator[] rowKappa;
-
-    protected Estimator[] precision;
-
-    protected Estimator[] recall;
+    protected ConfusionMatrixEstimator confusionMatrix;
 
     protected int numClasses;
 
@@ -95,17 +87,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     public void reset(int numClasses) {
         this.numClasses = numClasses;
-        this.rowKappa = new Estimator[numClasses];
-        this.columnKappa = new Estimator[numClasses];
-        this.precision = new Estimator[numClasses];
-        this.recall = new Estimator[numClasses];
-        for (int i = 0; i < this.numClasses; i++) {
-            this.rowKappa[i] = newEstimator();
-            this.columnKappa[i] = newEstimator();
-            this.precision[i] = newEstimator();
-            this.recall[i] = newEstimator();
-        }
-        this.weightCorrect = newEstimator();
+        this.confusionMatrix = newConfusionMatrixEstimator(numClasses);
         this.weightCorrectNoChangeClassifier = newEstimator();
         this.weightMajorityClassifier = newEstimator();
         this.lastSeenClass = 0;
@@ -124,38 +106,14 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
                     reset(inst.dataset().numClasses());
                 }
                 this.totalWeightObserved += weight;
-                this.weightCorrect.add(predictedClass == trueClass ? weight : 0);
-                for (int i = 0; i < this.numClasses; i++) {
-                    this.rowKappa[i].add(predictedClass == i ? weight : 0);
-                    this.columnKappa[i].add(trueClass == i ? weight : 0);
-                    // for both precision and recall, NaN values are used to 'balance' the number
-                    // of instances seen across classes
-                    if (predictedClass == i) {
-                        precision[i].add(predictedClass == trueClass ? weight : 0.0);
-                    } else precision[i].add(Double.NaN);
-                    if (trueClass == i) {
-                        recall[i].add(predictedClass == trueClass ? weight : 0.0);
-                    } else recall[i].add(Double.NaN);
-                }
+                this.confusionMatrix.add(trueClass, predictedClass, weight);
             }
             this.weightCorrectNoChangeClassifier.add(this.lastSeenClass == trueClass ? weight : 0);
-            this.weightMajorityClassifier.add(getMajorityClass() == trueClass ? weight : 0);
+            this.weightMajorityClassifier.add(this.confusionMatrix.majorityClass() == trueClass ? weight : 0);
             this.lastSeenClass = trueClass;
         }
     }
 
-    private int getMajorityClass() {
-        int majorityClass = 0;
-        double maxProbClass = 0.0;
-        for (int i = 0; i < this.numClasses; i++) {
-            if (this.columnKappa[i].estimation() > maxProbClass) {
-                majorityClass = i;
-                maxProbClass = this.columnKappa[i].estimation();
-            }
-        }
-        return majorityClass;
-    }
-
     @Override
     public Measurement[] getPerformanceMeasurements() {
         ArrayList<Measurement> measurements = new ArrayList<Measurement>();
@@ -203,7 +161,7 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
     }
 
     public double getFractionCorrectlyClassified() {
-        return this.weightCorrect.estimation();
+        return this.confusionMatrix.fractionCorrect();
     }
 
     public double getFractionIncorrectlyClassified() {
@@ -215,8 +173,8 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
             double p0 = getFractionCorrectlyClassified();
             double pc = 0.0;
             for (int i = 0; i < this.numClasses; i++) {
-                pc += this.rowKappa[i].estimation()
-                        * this.columnKappa[i].estimation();
+                pc += this.confusionMatrix.fractionPredicted(i)
+                        * this.confusionMatrix.fractionTrue(i);
             }
             return (p0 - pc) / (1.0 - pc);
         } else {
@@ -248,26 +206,26 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     public double getPrecisionStatistic() {
         double total = 0;
-        for (Estimator ck : this.precision) {
-            total += ck.estimation();
+        for (int i = 0; i < this.numClasses; i++) {
+            total += this.confusionMatrix.precision(i);
         }
-        return total / this.precision.length;
+        return total / this.numClasses;
     }
 
     public double getPrecisionStatistic(int numClass) {
-        return this.precision[numClass].estimation();
+        return this.confusionMatrix.precision(numClass);
     }
 
     public double getRecallStatistic() {
         double total = 0;
-        for (Estimator ck : this.recall) {
-            total += ck.estimation();
+        for (int i = 0; i < this.numClasses; i++) {
+            total += this.confusionMatrix.recall(i);
         }
-        return total / this.recall.length;
+        return total / this.numClasses;
     }
 
     public double getRecallStatistic(int numClass) {
-        return this.recall[numClass].estimation();
+        return this.confusionMatrix.recall(numClass);
     }
 
     public double getF1Statistic() {
@@ -329,6 +287,233 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
         return new BasicEstimator();
     }
 
+    /**
+     * Estimates the measures of the evaluator from the pairs of true and
+     * predicted classes of the instances, i.e. from their confusion matrix.
+     */
+    public interface ConfusionMatrixEstimator extends Serializable {
+
+        void add(int trueClass, int predictedClass, double weight);
+
+        double fractionCorrect();
+
+        /**
+         * @return the estimated fraction of the weight predicted as the class
+         */
+        double fractionPredicted(int classIndex);
+
+        /**
+         * @return the estimated fraction of the weight of the class
+         */
+        double fractionTrue(int classIndex);
+
+        double precision(int classIndex);
+
+        double recall(int classIndex);
+
+        /**
+         * @return the class with the largest fraction of the weight, the
+         * lowest one in case of ties
+         */
+        int majorityClass();
+    }
+
+    /**
+     * Confusion matrix estimator made of one estimator per measure and class,
+     * from <code>newEstimator</code>. Used by the evaluators only defining
+     * their estimator, it costs several estimator updates per class and
+     * instance.
+     */
+    public class PerClassEstimators implements ConfusionMatrixEstimator {
+
+        protected Estimator weightCorrect;
+
+        protected Estimator[] columnKappa;
+
+        protected Estimator[] rowKappa;
+
+        protected Estimator[] precision;
+
+        protected Estimator[] recall;
+
+        public PerClassEstimators(int numClasses) {
+            this.rowKappa = new Estimator[numClasses];
+            this.columnKappa = new Estimator[numClasses];
+            this.precision = new Estimator[numClasses];
+            this.recall = new Estimator[numClasses];
+            for (int i = 0; i < numClasses; i++) {
+                this.rowKappa[i] = newEstimator();
+                this.columnKappa[i] = newEstimator();
+                this.precision[i] = newEstimator();
+                this.recall[i] = newEstimator();
+            }
+            this.weightCorrect = newEstimator();
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            this.weightCorrect.add(predictedClass == trueClass ? weight : 0);
+            for (int i = 0; i < this.rowKappa.length; i++) {
+                this.rowKappa[i].add(predictedClass == i ? weight : 0);
+                this.columnKappa[i].add(trueClass == i ? weight : 0);
+                // for both precision and recall, NaN values are used to 'balance' the number
+                // of instances seen across classes
+                if (predictedClass == i) {
+                    precision[i].add(predictedClass == trueClass ? weight : 0.0);
+                } else precision[i].add(Double.NaN);
+                if (trueClass == i) {
+                    recall[i].add(predictedClass == trueClass ? weight : 0.0);
+                } else recall[i].add(Double.NaN);
+            }
+        }
+
+        @Override
+        public double fractionCorrect() {
+            return this.weightCorrect.estimation();
+        }
+
+        @Override
+        public double fractionPredicted(int classIndex) {
+            return this.rowKappa[classIndex].estimation();
+        }
+
+        @Override
+        public double fractionTrue(int classIndex) {
+            return this.columnKappa[classIndex].estimation();
+        }
+
+        @Override
+        public double precision(int classIndex) {
+            return this.precision[classIndex].estimation();
+        }
+
+        @Override
+        public double recall(int classIndex) {
+            return this.recall[classIndex].estimation();
+        }
+
+        @Override
+        public int majorityClass() {
+            int majorityClass = 0;
+            double maxProbClass = 0.0;
+            for (int i = 0; i < this.columnKappa.length; i++) {
+                if (this.columnKappa[i].estimation() > maxProbClass) {
+                    majorityClass = i;
+                    maxProbClass = this.columnKappa[i].estimation();
+                }
+            }
+            return majorityClass;
+        }
+    }
+
+    /**
+     * Confusion matrix estimator keeping the weights of the rows, columns and
+     * diagonal of the matrix since the last reset. Each instance updates a
+     * constant number of sums.
+     */
+    public class BasicConfusionMatrix implements ConfusionMatrixEstimator {
+
+        protected double numInstances;
+
+        protected double weightCorrect;
+
+        protected double[] weightPredicted;
+
+        protected double[] weightTrue;
+
+        protected double[] weightCorrectPerClass;
+
+        protected double[] numPredicted;
+
+        protected double[] numTrue;
+
+        protected int majorityClass;
+
+        public BasicConfusionMatrix(int numClasses) {
+            this.weightPredicted = new double[numClasses];
+            this.weightTrue = new double[numClasses];
+            this.weightCorrectPerClass = new double[numClasses];
+            this.numPredicted = new double[numClasses];
+            this.numTrue = new double[numClasses];
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            this.numInstances++;
+            if (predictedClass == trueClass) {
+                this.weightCorrect += weight;
+            }
+            if (predictedClass < this.weightPredicted.length) {
+                this.weightPredicted[predictedClass] += weight;
+                this.numPredicted[predictedClass]++;
+                if (predictedClass == trueClass) {
+                    this.weightCorrectPerClass[predictedClass] += weight;
+                }
+            }
+            if (trueClass < this.weightTrue.length) {
+                this.weightTrue[trueClass] += weight;
+                this.numTrue[trueClass]++;
+                // the weights only grow, so only the class of the instance
+                // can become the majority class
+                if (isMajorityCandidate(trueClass)) {
+                    this.majorityClass = trueClass;
+                }
+            }
+        }
+
+        protected boolean isMajorityCandidate(int classIndex) {
+            double weight = this.weightTrue[classIndex];
+            double majorityWeight = this.weightTrue[this.majorityClass];
+            return weight > 0.0 && (weight > majorityWeight
+                    || (weight == majorityWeight && classIndex < this.majorityClass));
+        }
+
+        @Override
+        public double fractionCorrect() {
+            return this.weightCorrect / this.numInstances;
+        }
+
+        @Override
+        public double fractionPredicted(int classIndex) {
+            return this.weightPredicted[classIndex] / this.numInstances;
+        }
+
+        @Override
+        public double fractionTrue(int classIndex) {
+            return this.weightTrue[classIndex] / this.numInstances;
+        }
+
+        @Override
+        public double precision(int classIndex) {
+            return this.weightCorrectPerClass[classIndex] / this.numPredicted[classIndex];
+        }
+
+        @Override
+        public double recall(int classIndex) {
+            return this.weightCorrectPerClass[classIndex] / this.numTrue[classIndex];
+        }
+
+        @Override
+        public int majorityClass() {
+            return this.majorityClass;
+        }
+    }
+
+    /**
+     * Creates the estimator of the confusion matrix the measures are derived
+     * from. The evaluators only overriding <code>newEstimator</code> get one
+     * estimator per measure and class.
+     *
+     * @param numClasses the number of classes
+     * @return the estimator
+     */
+    protected ConfusionMatrixEstimator newConfusionMatrixEstimator(int numClasses) {
+        if (this.getClass() == BasicClassificationPerformanceEvaluator.class)
+            return new BasicConfusionMatrix(numClasses);
+        else
+            return new PerClassEstimators(numClasses);
+    }
+
 
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
@@ -34,12 +34,13 @@
 package moa.evaluation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.stream.IntStream;
 import moa.cluster.Clustering;
 import moa.core.AutoExpandVector;
 import moa.gui.visualization.DataPoint;
-import com.yahoo.labs.samoa.instances.Instance;
 
 public class CMM_GTAnalysis{
 	
@@ -150,6 +151,16 @@ public class CMM_GTAnalysis{
     private double lambdaConnRefXValue = 0.01;
     private double lambdaConnX = 4;
     private double lamdaConn;
+
+    /**
+     * coordinates of the points, shared by the knn queries of all clusters
+     */
+    private double[][] coordinates;
+
+    /**
+     * number of points above which the knn queries run in parallel
+     */
+    private static final int PARALLEL_KNN_THRESHOLD = 256;
     
     
     /******************************************/
@@ -256,6 +267,13 @@ public class CMM_GTAnalysis{
         /** connectivity of the cluster to all other clusters */
         private ArrayList<Double> connections = new ArrayList<Double>();
         
+        /** k-d tree of the points of the cluster, built on the first knn query */
+        private PointKDTree knnTree = null;
+        
+        /** average knn distance of each point to the cluster: NaN if not yet 
+         * computed, -1 if the cluster has no other point */
+        private double[] knnAvgDist = null;
+        
 
         private GTCluster(int workclass, int label, int gtClusteringID) {
            this.orgWorkClass = workclass;
@@ -294,24 +312,14 @@ public class CMM_GTAnalysis{
          * + average knn distance and average knn distance deviation of all points 
          */
         private void calculateKnn(){
+            //calculate nearest neighbours
+            prefetchKnn(points, true);
             for (int p0 : points) {
                 CMMPoint cmdp = cmmpoints.get(p0);
                 if(!cmdp.isNoise()){
-                    AutoExpandVector<Double> knnDist = new AutoExpandVector<Double>();
-                    AutoExpandVector<Integer> knnPointIndex = new AutoExpandVector<Integer>();
-                    
-                    //calculate nearest neighbours 
-                    getKnnInCluster(cmdp, knnNeighbourhood, points, knnDist,knnPointIndex);
-
                     //TODO: What to do if we have less then k neighbours?
-                    double avgKnn = 0;
-                    for (int i = 0; i < knnDist.size(); i++) {
-                        avgKnn+= knnDist.get(i);
-                    }
-                    if(knnDist.size()!=0)
-                        avgKnn/=knnDist.size();
+                    double avgKnn = Math.max(getKnnAvgDistance(cmdp, null), 0);
                     cmdp.knnInCluster = avgKnn;
-                    cmdp.knnIndices = knnPointIndex;
                     cmdp.p.setMeasureValue("knnAvg", cmdp.knnInCluster);
 
                     knnMeanAvg+=avgKnn;
@@ -329,6 +337,69 @@ public class CMM_GTAnalysis{
         }
 
         
+        /**
+         * Average distance of a point to its k nearest neighbours in the 
+         * cluster, cached until the points of the cluster change
+         * @param cmmp the point
+         * @param knnIndices receives the indices of the neighbours, or null
+         * @return the average knn distance or -1 if the cluster has no other point
+         */
+        private double getKnnAvgDistance(CMMPoint cmmp, ArrayList<Integer> knnIndices){
+            if(knnTree == null){
+                int[] ids = new int[points.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = points.get(i);
+                }
+                knnTree = new PointKDTree(coordinates, numDims, ids);
+                knnAvgDist = new double[numPoints];
+                Arrays.fill(knnAvgDist, Double.NaN);
+            }
+            double avgDist = knnAvgDist[cmmp.pID];
+            if(Double.isNaN(avgDist) || knnIndices != null){
+                double[] knnDist = new double[knnNeighbourhood];
+                int[] knnIDs = new int[knnNeighbourhood];
+                int count = knnTree.knn(coordinates[cmmp.pID], cmmp.pID, knnNeighbourhood, knnDist, knnIDs);
+                avgDist = 0;
+                for (int i = 0; i < count; i++) {
+                    avgDist+= knnDist[i];
+                    if(knnIndices != null)
+                        knnIndices.add(knnIDs[i]);
+                }
+                if(count!=0)
+                    avgDist/=count;
+                else
+                    avgDist = -1;
+                knnAvgDist[cmmp.pID] = avgDist;
+            }
+            return avgDist;
+        }
+
+        /**
+         * Compute the knn distances of points to the cluster, in parallel for
+         * large sets of points
+         * @param pointIDs the points
+         * @param keepIndices store the knn indices of the points (debugging)
+         */
+        private void prefetchKnn(final ArrayList<Integer> pointIDs, final boolean keepIndices){
+            if(pointIDs.isEmpty()) return;
+            //build the tree before the parallel queries
+            getKnnAvgDistance(cmmpoints.get(pointIDs.get(0)), null);
+            IntStream range = IntStream.range(0, pointIDs.size());
+            if(pointIDs.size() >= PARALLEL_KNN_THRESHOLD){
+                range = range.parallel();
+            }
+            range.forEach(i -> {
+                CMMPoint cmdp = cmmpoints.get(pointIDs.get(i));
+                if(keepIndices){
+                    cmdp.knnIndices = new ArrayList<Integer>();
+                    getKnnAvgDistance(cmdp, cmdp.knnIndices);
+                }
+                else{
+                    getKnnAvgDistance(cmdp, null);
+                }
+            });
+        }
+
         /**
          * Calculate the connection of a cluster to this cluster
          * @param otherCid cluster id of the other cluster
@@ -343,6 +414,7 @@ public class CMM_GTAnalysis{
                 AutoExpandVector<Double> kmax = new AutoExpandVector<Double>();
                 AutoExpandVector<Integer> kmaxIndexes = new AutoExpandVector<Integer>();
 
+                gt0Clusters.get(otherCid).prefetchKnn(points, false);
                 for(int p : points){
                     CMMPoint cmdp = cmmpoints.get(p);
                     double con_p_Cj = getConnectionValue(cmmpoints.get(p), otherCid);
@@ -418,6 +490,8 @@ public class CMM_GTAnalysis{
 
                 //merge points from B into A
                 points.addAll(gtcMerge.points);
+                knnTree = null;
+                knnAvgDist = null;
                 clusterRepresentations.addAll(gtcMerge.clusterRepresentations);
                 if(mergedWorkLabels==null){
                     mergedWorkLabels = new ArrayList<Integer>();
@@ -507,6 +581,14 @@ public class CMM_GTAnalysis{
         }
 
 
+        coordinates = new double[numPoints][numDims];
+        for (int p = 0; p < numPoints; p++) {
+            CMMPoint cmdp = cmmpoints.get(p);
+            for (int i = 0; i < numDims; i++) {
+                coordinates[p][i] = cmdp.value(i);
+            }
+        }
+
         //split points up into their GTClusters and Noise (according to class labels)
         noise = new ArrayList<Integer>();
         for (int p = 0; p < numPoints; p++) {
@@ -541,23 +623,12 @@ public class CMM_GTAnalysis{
      * @param clusterID the corresponding cluster
      * @return the connection value
      */
-    //TODO: Cache the connection value for a point to the different clusters???
     protected double getConnectionValue(CMMPoint cmmp, int clusterID){
-        AutoExpandVector<Double> knnDist = new AutoExpandVector<Double>();
-        AutoExpandVector<Integer> knnPointIndex = new AutoExpandVector<Integer>();
-        
         //calculate the knn distance of the point to the cluster
-        getKnnInCluster(cmmp, knnNeighbourhood, gt0Clusters.get(clusterID).points, knnDist, knnPointIndex);
-
         //TODO: What to do if we have less then k neighbors?
-        double avgDist = 0;
-        for (int i = 0; i < knnDist.size(); i++) {
-            avgDist+= knnDist.get(i);
-        }
+        double avgDist = gt0Clusters.get(clusterID).getKnnAvgDistance(cmmp, null);
         //what to do if we only have a single point???
-        if(knnDist.size()!=0)
-            avgDist/=knnDist.size();
-        else
+        if(avgDist < 0)
             return 0;
 
         //get the upper knn distance of the cluster
@@ -585,40 +656,6 @@ public class CMM_GTAnalysis{
     }
 
     
-    /**
-     * @param cmmp point to calculate knn distance for
-     * @param k number of nearest neighbors to look for
-     * @param pointIDs list of point IDs to check
-     * @param knnDist sorted list of smallest knn distances (can already be filled to make updates possible)  
-     * @param knnPointIndex list of corresponding knn indices
-     */
-    private void getKnnInCluster(CMMPoint cmmp, int k,
-                                 ArrayList<Integer> pointIDs,
-                                 AutoExpandVector<Double> knnDist,
-                                 AutoExpandVector<Integer> knnPointIndex) {
-
-        //iterate over every point in the choosen cluster, cal distance and insert into list
-        for (int p1 = 0; p1 < pointIDs.size(); p1++) {
-            int pid = pointIDs.get(p1);
-            if(cmmp.pID == pid) continue;
-            double dist = distance(cmmp,cmmpoints.get(pid));
-            if(knnDist.size() < k || dist < knnDist.get(knnDist.size()-1)){
-                int index = 0;
-                while(index < knnDist.size() && dist > knnDist.get(index)) {
-                    index++;
-                }
-                knnDist.add(index, dist);
-                knnPointIndex.add(index,pid);
-                if(knnDist.size() > k){
-                    knnDist.remove(knnDist.size()-1);
-                    knnPointIndex.remove(knnPointIndex.size()-1);
-                }
-            }
-        }
-    }
-
-
-    
     /**
      * calculate initial connectivities
      */
@@ -719,6 +756,9 @@ public class CMM_GTAnalysis{
             return 1;
 
         double connectivity = 0;
+        for (GTCluster gtc : gt0Clusters) {
+            gtc.prefetchKnn(noise, false);
+        }
         for(int p : noise){
             CMMPoint npoint = cmmpoints.get(p);
             double maxConnection = 0;
@@ -790,32 +830,6 @@ public class CMM_GTAnalysis{
         return numGT0Classes;
     }
     
-    /**
-     * Calculates Euclidian distance 
-     * @param inst1 point as double array
-     * @param inst2 point as double array
-     * @return euclidian distance
-     */
-    private double distance(Instance inst1, Instance inst2){
-          return distance(inst1, inst2.toDoubleArray());
-
-    }
-    
-    /**
-     * Calculates Euclidian distance 
-     * @param inst1 point as an instance
-     * @param inst2 point as double array
-     * @return euclidian distance
-     */
-    private double distance(Instance inst1, double[] inst2){
-        double distance = 0.0;
-        for (int i = 0; i < numDims; i++) {
-            double d = inst1.value(i) - inst2[i];
-            distance += d * d;
-        }
-        return Math.sqrt(distance);
-    }
-    
     /**
      * String with main CMM parameters
      * @return main CMM parameter
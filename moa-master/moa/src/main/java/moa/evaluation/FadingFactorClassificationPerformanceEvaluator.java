@@ -42,6 +42,11 @@ public class FadingFactorClassificationPerformanceEvaluator extends BasicClassif
         return new FadingFactorEstimator(this.alphaOption.getValue());
     }
 
+    @Override
+    protected ConfusionMatrixEstimator newConfusionMatrixEstimator(int numClasses) {
+        return new FadingFactorConfusionMatrix(numClasses, this.alphaOption.getValue());
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == FadingFactorClassificationPerformanceEvaluator.class)
@@ -79,4 +84,118 @@ public class FadingFactorClassificationPerformanceEvaluator extends BasicClassif
 
     }
 
+    /**
+     * Confusion matrix estimator using a fading factor. The precision and
+     * recall of a class only fade with the instances predicted as, or of, the
+     * class, so they are updated directly. The weights of the rows and
+     * columns fade with every instance: they are kept multiplied by the
+     * inverse of the fading so far, which avoids updating every class, and
+     * are brought back to scale from time to time.
+     */
+    public class FadingFactorConfusionMatrix implements ConfusionMatrixEstimator {
+
+        /** Largest scale of the weights of the rows and columns */
+        protected static final double MAX_SCALE = 1e100;
+
+        protected double alpha;
+
+        protected double weightCorrect;
+
+        protected double b;
+
+        protected double scale;
+
+        protected double[] weightPredicted;
+
+        protected double[] weightTrue;
+
+        protected double[] precisionEstimation;
+
+        protected double[] precisionB;
+
+        protected double[] recallEstimation;
+
+        protected double[] recallB;
+
+        protected int majorityClass;
+
+        public FadingFactorConfusionMatrix(int numClasses, double a) {
+            alpha = a;
+            scale = 1.0;
+            weightPredicted = new double[numClasses];
+            weightTrue = new double[numClasses];
+            precisionEstimation = new double[numClasses];
+            precisionB = new double[numClasses];
+            recallEstimation = new double[numClasses];
+            recallB = new double[numClasses];
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            double correct = predictedClass == trueClass ? weight : 0.0;
+            weightCorrect = alpha * weightCorrect + correct;
+            b = alpha * b + 1.0;
+            scale /= alpha;
+            if (scale > MAX_SCALE) {
+                rescale();
+            }
+            if (predictedClass < weightPredicted.length) {
+                weightPredicted[predictedClass] += weight * scale;
+                precisionEstimation[predictedClass] = alpha * precisionEstimation[predictedClass] + correct;
+                precisionB[predictedClass] = alpha * precisionB[predictedClass] + 1.0;
+            }
+            if (trueClass < weightTrue.length) {
+                weightTrue[trueClass] += weight * scale;
+                recallEstimation[trueClass] = alpha * recallEstimation[trueClass] + correct;
+                recallB[trueClass] = alpha * recallB[trueClass] + 1.0;
+                // all the weights fade alike, so only the class of the
+                // instance can become the majority class
+                double majorityWeight = weightTrue[majorityClass];
+                if (weightTrue[trueClass] > majorityWeight
+                        || (weightTrue[trueClass] == majorityWeight && trueClass < majorityClass)) {
+                    majorityClass = trueClass;
+                }
+            }
+        }
+
+        protected void rescale() {
+            double factor = 1.0 / scale;
+            for (int i = 0; i < weightTrue.length; i++) {
+                weightPredicted[i] *= factor;
+                weightTrue[i] *= factor;
+            }
+            scale = 1.0;
+        }
+
+        @Override
+        public double fractionCorrect() {
+            return b > 0.0 ? weightCorrect / b : 0;
+        }
+
+        @Override
+        public double fractionPredicted(int classIndex) {
+            return b > 0.0 ? weightPredicted[classIndex] / scale / b : 0;
+        }
+
+        @Override
+        public double fractionTrue(int classIndex) {
+            return b > 0.0 ? weightTrue[classIndex] / scale / b : 0;
+        }
+
+        @Override
+        public double precision(int classIndex) {
+            return precisionB[classIndex] > 0.0 ? precisionEstimation[classIndex] / precisionB[classIndex] : 0;
+        }
+
+        @Override
+        public double recall(int classIndex) {
+            return recallB[classIndex] > 0.0 ? recallEstimation[classIndex] / recallB[classIndex] : 0;
+        }
+
+        @Override
+        public int majorityClass() {
+            return majorityClass;
+        }
+    }
+
 }
@@ -0,0 +1,216 @@
+/*
+ *    PointKDTree.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.evaluation;
+
+/**
+ * k-d tree over a subset of the points of an evaluation window, for the
+ * exact k nearest neighbour queries of the clustering measures.
+ *
+ * <p>The points are given by their ids, rows of a shared coordinate matrix
+ * that is built once per window. The tree is a balanced implicit tree over
+ * a permutation of the ids, split at the median of the widest dimension.
+ * The distances are the Euclidean distances over the first
+ * <code>numDims</code> coordinates, computed as the brute force loops of the
+ * measures did, so the neighbours found are the same.</p>
+ *
+ * <p>Once built the tree is read only: queries write to the buffers of the
+ * caller and can run concurrently.</p>
+ */
+public class PointKDTree {
+
+    /**
+     * Ranges of at most this number of points are scanned.
+     */
+    protected static final int LEAF_SIZE = 8;
+
+    /**
+     * Relative slack of the pruning bound, so that rounding errors of the
+     * distances never prune a neighbour.
+     */
+    protected static final double PRUNING_SLACK = 1e-9;
+
+    protected final double[][] coordinates;
+
+    protected final int numDims;
+
+    /**
+     * The ids of the points, permuted so that each range of the tree is
+     * split at its middle position.
+     */
+    protected final int[] ids;
+
+    /**
+     * The split dimension of the range whose middle is at this position.
+     */
+    protected final int[] splitDims;
+
+    /**
+     * Builds the tree.
+     *
+     * @param coordinates the coordinates of all the points of the window
+     * @param numDims the number of coordinates used in the distances
+     * @param pointIDs the ids of the points of the tree
+     */
+    public PointKDTree(double[][] coordinates, int numDims, int[] pointIDs) {
+        this.coordinates = coordinates;
+        this.numDims = numDims;
+        this.ids = pointIDs.clone();
+        this.splitDims = new int[this.ids.length];
+        build(0, this.ids.length);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    private void build(int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE || numDims == 0) {
+            return;
+        }
+        // widest dimension of the range
+        int dim = 0;
+        double maxSpread = -1;
+        for (int d = 0; d < numDims; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double v = coordinates[ids[i]][d];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            if (max - min > maxSpread) {
+                maxSpread = max - min;
+                dim = d;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, dim);
+        splitDims[mid] = dim;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Quickselect: moves the id with the k-th smallest coordinate in
+     * dimension dim to position k, smaller ones before and larger ones after.
+     */
+    private void select(int left, int right, int k, int dim) {
+        while (right > left) {
+            double pivot = coordinates[ids[(left + right) >>> 1]][dim];
+            int i = left, j = right;
+            while (i <= j) {
+                while (coordinates[ids[i]][dim] < pivot) i++;
+                while (coordinates[ids[j]][dim] > pivot) j--;
+                if (i <= j) {
+                    int tmp = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the k nearest neighbours of a point.
+     *
+     * @param point the coordinates of the query point
+     * @param excludeID id of a point that is not a neighbour, usually the
+     * query point itself, or -1
+     * @param k number of neighbours
+     * @param knnDist receives the distances of the neighbours in ascending
+     * order, of length at least k
+     * @param knnIDs receives the ids of the neighbours, or null
+     * @return the number of neighbours found, k unless the tree is smaller
+     */
+    public int knn(double[] point, int excludeID, int k, double[] knnDist, int[] knnIDs) {
+        if (k <= 0) {
+            return 0;
+        }
+        int[] count = new int[1];
+        search(0, ids.length, point, excludeID, k, knnDist, knnIDs, count);
+        return count[0];
+    }
+
+    private void search(int lo, int hi, double[] point, int excludeID, int k,
+                        double[] knnDist, int[] knnIDs, int[] count) {
+        if (hi - lo <= LEAF_SIZE || numDims == 0) {
+            for (int i = lo; i < hi; i++) {
+                consider(ids[i], point, excludeID, k, knnDist, knnIDs, count);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int dim = splitDims[mid];
+        double diff = point[dim] - coordinates[ids[mid]][dim];
+        consider(ids[mid], point, excludeID, k, knnDist, knnIDs, count);
+        if (diff < 0) {
+            search(lo, mid, point, excludeID, k, knnDist, knnIDs, count);
+        } else {
+            search(mid + 1, hi, point, excludeID, k, knnDist, knnIDs, count);
+        }
+        if (count[0] < k || Math.abs(diff) <= knnDist[count[0] - 1] * (1 + PRUNING_SLACK)) {
+            if (diff < 0) {
+                search(mid + 1, hi, point, excludeID, k, knnDist, knnIDs, count);
+            } else {
+                search(lo, mid, point, excludeID, k, knnDist, knnIDs, count);
+            }
+        }
+    }
+
+    private void consider(int id, double[] point, int excludeID, int k,
+                          double[] knnDist, int[] knnIDs, int[] count) {
+        if (id == excludeID) {
+            return;
+        }
+        double dist = distance(point, coordinates[id], numDims);
+        int n = count[0];
+        if (n < k || dist < knnDist[n - 1]) {
+            int index = n < k ? n : n - 1;
+            while (index > 0 && dist <= knnDist[index - 1]) {
+                knnDist[index] = knnDist[index - 1];
+                if (knnIDs != null) knnIDs[index] = knnIDs[index - 1];
+                index--;
+            }
+            knnDist[index] = dist;
+            if (knnIDs != null) knnIDs[index] = id;
+            if (n < k) count[0]++;
+        }
+    }
+
+    /**
+     * Euclidean distance over the first numDims coordinates.
+     */
+    public static double distance(double[] point1, double[] point2, int numDims) {
+        double distance = 0.0;
+        for (int i = 0; i < numDims; i++) {
+            double d = point1[i] - point2[i];
+            distance += d * d;
+        }
+        return Math.sqrt(distance);
+    }
+}
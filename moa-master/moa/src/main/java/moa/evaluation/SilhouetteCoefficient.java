@@ -21,14 +21,50 @@
 package moa.evaluation; 
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Random;
+import java.util.stream.IntStream;
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.gui.visualization.DataPoint;
 
+/**
+ * Silhouette coefficient of the points that are included in a found cluster,
+ * normalized from [-1, 1] to [0, 1].
+ *
+ * <p>The average distances of each point to all the clusters take one pass over
+ * the window per point. The points are copied once to primitive arrays and the
+ * passes of the points run in parallel on large windows. Setting
+ * <code>sampleSize</code> estimates the coefficient on a random sample of the
+ * points instead, the half width of its confidence interval is then available
+ * through {@link #getConfidenceBound()}.</p>
+ */
 public class SilhouetteCoefficient extends MeasureCollection{
     private double pointInclusionProbThreshold = 0.8;
 
+    /**
+     * number of sampled points of the estimate, 0 to evaluate all points
+     */
+    public int sampleSize = 0;
+
+    /**
+     * confidence of the bound of the estimate, as a two-sided normal quantile
+     */
+    public double confidenceQuantile = 1.96;
+
+    /**
+     * seed of the sampling of the points
+     */
+    public long sampleSeed = 1;
+
+    /**
+     * number of points above which the points are processed in parallel
+     */
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private Random sampleRandom = null;
+
+    private double confidenceBound = 0.0;
+
     public SilhouetteCoefficient() {
         super();
     }
@@ -45,95 +81,177 @@ public class SilhouetteCoefficient extends MeasureCollection{
         return names;
     }
 
+    /**
+     * Half width of the confidence interval of the last value, 0 when all
+     * points were evaluated.
+     */
+    public double getConfidenceBound() {
+        return confidenceBound;
+    }
+
     public void evaluateClustering(Clustering clustering, Clustering trueClustering, ArrayList<DataPoint> points) {
-        int numFCluster = clustering.size();
+        final int numPoints = points.size();
+        final int numFCluster = clustering.size();
 
-        double [][] pointInclusionProbFC = new double[points.size()][numFCluster];
-        for (int p = 0; p < points.size(); p++) {
+        //copy points and cluster memberships to primitive arrays
+        final double[][] coordinates = new double[numPoints][];
+        final boolean[][] included = new boolean[numPoints][numFCluster];
+        for (int p = 0; p < numPoints; p++) {
             DataPoint point = points.get(p);
+            int numDims = point.numAttributes();
+            coordinates[p] = new double[numDims];
+            for (int i = 0; i < numDims; i++) {
+                coordinates[p][i] = point.value(i);
+            }
             for (int fc = 0; fc < numFCluster; fc++) {
                 Cluster cl = clustering.get(fc);
-                pointInclusionProbFC[p][fc] = cl.getInclusionProbability(point);
+                included[p][fc] = cl.getInclusionProbability(point) > pointInclusionProbThreshold;
+            }
+        }
+
+        //points to evaluate
+        int[] evaluated;
+        boolean sampled = sampleSize > 0 && sampleSize < numPoints;
+        if (sampled) {
+            if (sampleRandom == null) {
+                sampleRandom = new Random(sampleSeed);
+            }
+            evaluated = samplePoints(numPoints, sampleSize, sampleRandom);
+        } else {
+            evaluated = new int[numPoints];
+            for (int p = 0; p < numPoints; p++) {
+                evaluated[p] = p;
             }
         }
 
+        final int[] pointIDs = evaluated;
+        final double[] own = new double[pointIDs.length];
+        final double[] other = new double[pointIDs.length];
+        final double[] silh = new double[pointIDs.length];
+        IntStream range = IntStream.range(0, pointIDs.length);
+        if (pointIDs.length >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        range.forEach(i -> silh[i] = silhouette(pointIDs[i], coordinates, included, numFCluster, own, other, i));
+
         double silhCoeff = 0.0;
+        double sumSquares = 0.0;
         int totalCount = 0;
-        for (int p = 0; p < points.size(); p++) {
-            DataPoint point = points.get(p);
-            ArrayList<Integer> ownClusters = new ArrayList<Integer>();
-            for (int fc = 0; fc < numFCluster; fc++) {
-                if(pointInclusionProbFC[p][fc] > pointInclusionProbThreshold){
-                    ownClusters.add(fc);
-                }
+        for (int i = 0; i < pointIDs.length; i++) {
+            if (own[i] >= 0) {
+                DataPoint point = points.get(pointIDs[i]);
+                point.setMeasureValue("SC - own", own[i]);
+                point.setMeasureValue("SC - other", other[i]);
+                point.setMeasureValue("SC", silh[i]);
+
+                silhCoeff+=silh[i];
+                sumSquares+=silh[i]*silh[i];
+                totalCount++;
+            }
+        }
+        confidenceBound = 0.0;
+        if(totalCount>0) {
+            silhCoeff/=(double)totalCount;
+            if (sampled && totalCount > 1) {
+                double variance = (sumSquares - totalCount * silhCoeff * silhCoeff) / (totalCount - 1);
+                //finite population correction, then normalized as the coefficient
+                double fpc = (numPoints - pointIDs.length) / (double) (numPoints - 1);
+                confidenceBound = confidenceQuantile * Math.sqrt(Math.max(variance, 0.0) * fpc / totalCount) / 2.0;
             }
+        }
+        //normalize from -1, 1 to 0,1
+        silhCoeff = (silhCoeff+1)/2.0;
+        addValue(0,silhCoeff);
+    }
+
+    /**
+     * Silhouette of a point, with its average distances to the closest own and
+     * other clusters written to own[slot] and other[slot]. own[slot] is -1 if
+     * the point is in no cluster.
+     */
+    private double silhouette(int p, double[][] coordinates, boolean[][] included, int numFCluster,
+                              double[] own, double[] other, int slot) {
+        boolean inCluster = false;
+        for (int fc = 0; fc < numFCluster && !inCluster; fc++) {
+            inCluster = included[p][fc];
+        }
+        if (!inCluster) {
+            own[slot] = -1;
+            return 0;
+        }
 
-            if(ownClusters.size() > 0){
-                double[] distanceByClusters = new double[numFCluster];
-                int[] countsByClusters = new int[numFCluster];
-                    //calculate averageDistance of p to all cluster
-                for (int p1 = 0; p1 < points.size(); p1++) {
-                    DataPoint point1 = points.get(p1);
-                    if(p1!= p){ 
-                        // Matthias Carnein 2019/04/03
-                        // Removed second part of if-condition: && point1.classValue() != -1 
-                        // Accessing the classValue will go outOfBounds when no class label exists
-                        // What is the purpose of this check anyway? Class label is not used for Silhouette calculation
-                        for (int fc = 0; fc < numFCluster; fc++) {
-                            if(pointInclusionProbFC[p1][fc] > pointInclusionProbThreshold){
-                                double distance = distance(point, point1);
-                                distanceByClusters[fc]+=distance;
-                                countsByClusters[fc]++;
-                            }
+        double[] distanceByClusters = new double[numFCluster];
+        int[] countsByClusters = new int[numFCluster];
+        //calculate averageDistance of p to all cluster
+        double[] point = coordinates[p];
+        for (int p1 = 0; p1 < coordinates.length; p1++) {
+            if(p1!= p){
+                // Matthias Carnein 2019/04/03
+                // Removed second part of if-condition: && point1.classValue() != -1
+                // Accessing the classValue will go outOfBounds when no class label exists
+                // What is the purpose of this check anyway? Class label is not used for Silhouette calculation
+                boolean[] included1 = included[p1];
+                double distance = -1;
+                for (int fc = 0; fc < numFCluster; fc++) {
+                    if(included1[fc]){
+                        if (distance < 0) {
+                            distance = distance(point, coordinates[p1]);
                         }
+                        distanceByClusters[fc]+=distance;
+                        countsByClusters[fc]++;
                     }
                 }
+            }
+        }
 
-                //find closest OWN cluster as clusters might overlap
-                double minAvgDistanceOwn = Double.MAX_VALUE;
-                int minOwnIndex = -1;
-                for (int fc : ownClusters) {
-                        double normDist = distanceByClusters[fc]/(double)countsByClusters[fc];
-                        if(normDist < minAvgDistanceOwn){// && pointInclusionProbFC[p][fc] > pointInclusionProbThreshold){
-                            minAvgDistanceOwn = normDist;
-                            minOwnIndex = fc;
-                        }
+        //find closest OWN cluster as clusters might overlap
+        double minAvgDistanceOwn = Double.MAX_VALUE;
+        int minOwnIndex = -1;
+        for (int fc = 0; fc < numFCluster; fc++) {
+            if (included[p][fc]) {
+                double normDist = distanceByClusters[fc]/(double)countsByClusters[fc];
+                if(normDist < minAvgDistanceOwn){
+                    minAvgDistanceOwn = normDist;
+                    minOwnIndex = fc;
                 }
+            }
+        }
 
-
-                //find closest other (or other own) cluster
-                double minAvgDistanceOther = Double.MAX_VALUE;
-                for (int fc = 0; fc < numFCluster; fc++) {
-                    if(fc != minOwnIndex){
-                        double normDist = distanceByClusters[fc]/(double)countsByClusters[fc];
-                        if(normDist < minAvgDistanceOther){
-                            minAvgDistanceOther = normDist;
-                        }
-                    }
+        //find closest other (or other own) cluster
+        double minAvgDistanceOther = Double.MAX_VALUE;
+        for (int fc = 0; fc < numFCluster; fc++) {
+            if(fc != minOwnIndex){
+                double normDist = distanceByClusters[fc]/(double)countsByClusters[fc];
+                if(normDist < minAvgDistanceOther){
+                    minAvgDistanceOther = normDist;
                 }
+            }
+        }
 
-                double silhP = (minAvgDistanceOther-minAvgDistanceOwn)/Math.max(minAvgDistanceOther, minAvgDistanceOwn);
-                point.setMeasureValue("SC - own", minAvgDistanceOwn);
-                point.setMeasureValue("SC - other", minAvgDistanceOther);
-                point.setMeasureValue("SC", silhP);
+        own[slot] = minAvgDistanceOwn;
+        other[slot] = minAvgDistanceOther;
+        return (minAvgDistanceOther-minAvgDistanceOwn)/Math.max(minAvgDistanceOther, minAvgDistanceOwn);
+    }
 
-                silhCoeff+=silhP;
-                totalCount++;
-                //System.out.println(point.getTimestamp()+" Silh "+silhP+" / "+avgDistanceOwn+" "+minAvgDistanceOther+" (C"+minIndex+")");
+    /**
+     * Sorted sample of distinct point indices, by selection sampling.
+     */
+    private static int[] samplePoints(int numPoints, int size, Random random) {
+        int[] sample = new int[size];
+        int selected = 0;
+        for (int p = 0; p < numPoints && selected < size; p++) {
+            if (random.nextInt(numPoints - p) < size - selected) {
+                sample[selected++] = p;
             }
         }
-        if(totalCount>0)
-            silhCoeff/=(double)totalCount;
-        //normalize from -1, 1 to 0,1
-        silhCoeff = (silhCoeff+1)/2.0;
-        addValue(0,silhCoeff);
+        return sample;
     }
 
-    private double distance(DataPoint inst1, DataPoint inst2){
+    private static double distance(double[] inst1, double[] inst2){
         double distance = 0.0;
-        int numDims = inst1.numAttributes();
+        int numDims = inst1.length;
         for (int i = 0; i < numDims; i++) {
-            double d = inst1.value(i) - inst2.value(i);
+            double d = inst1[i] - inst2[i];
             distance += d * d;
         }
         return Math.sqrt(distance);
@@ -46,6 +46,11 @@ public class WindowClassificationPerformanceEvaluator extends BasicClassificatio
         return new WindowEstimator(this.widthOption.getValue());
     }
 
+    @Override
+    protected ConfusionMatrixEstimator newConfusionMatrixEstimator(int numClasses) {
+        return new WindowConfusionMatrix(numClasses, this.widthOption.getValue());
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == WindowClassificationPerformanceEvaluator.class)
@@ -99,4 +104,88 @@ public class WindowClassificationPerformanceEvaluator extends BasicClassificatio
 
     }
 
+    /**
+     * Confusion matrix estimator over a sliding window. The window keeps the
+     * true class, predicted class and weight of each instance, so that the
+     * oldest one can be removed from the sums of the matrix when a new
+     * instance is added.
+     */
+    public class WindowConfusionMatrix extends BasicConfusionMatrix {
+
+        protected int[] trueClasses;
+
+        protected int[] predictedClasses;
+
+        protected double[] weights;
+
+        protected int posWindow;
+
+        public WindowConfusionMatrix(int numClasses, int sizeWindow) {
+            super(numClasses);
+            this.trueClasses = new int[sizeWindow];
+            this.predictedClasses = new int[sizeWindow];
+            this.weights = new double[sizeWindow];
+            this.posWindow = 0;
+        }
+
+        @Override
+        public void add(int trueClass, int predictedClass, double weight) {
+            double majorityWeight = this.weightTrue[this.majorityClass];
+            if (this.numInstances == this.weights.length) {
+                update(this.trueClasses[this.posWindow],
+                        this.predictedClasses[this.posWindow],
+                        -this.weights[this.posWindow], -1);
+            } else {
+                this.numInstances++;
+            }
+            update(trueClass, predictedClass, weight, 1);
+            this.trueClasses[this.posWindow] = trueClass;
+            this.predictedClasses[this.posWindow] = predictedClass;
+            this.weights[this.posWindow] = weight;
+            this.posWindow++;
+            if (this.posWindow == this.weights.length) {
+                this.posWindow = 0;
+            }
+
+            if (this.weightTrue[this.majorityClass] < majorityWeight) {
+                findMajorityClass();
+            } else if (trueClass < this.weightTrue.length
+                    && isMajorityCandidate(trueClass)) {
+                this.majorityClass = trueClass;
+            }
+        }
+
+        /**
+         * Adds the weight of an instance to the sums, or removes it when
+         * the weight and count are negative.
+         */
+        protected void update(int trueClass, int predictedClass, double weight, int count) {
+            if (predictedClass == trueClass) {
+                this.weightCorrect += weight;
+            }
+            if (predictedClass < this.weightPredicted.length) {
+                this.weightPredicted[predictedClass] += weight;
+                this.numPredicted[predictedClass] += count;
+                if (predictedClass == trueClass) {
+                    this.weightCorrectPerClass[predictedClass] += weight;
+                }
+            }
+            if (trueClass < this.weightTrue.length) {
+                this.weightTrue[trueClass] += weight;
+                this.numTrue[trueClass] += count;
+            }
+        }
+
+        protected void findMajorityClass() {
+            this.majorityClass = 0;
+            double maxWeightClass = 0.0;
+            for (int i = 0; i < this.weightTrue.length; i++) {
+                if (this.weightTrue[i] > maxWeightClass) {
+                    this.majorityClass = i;
+                    maxWeightClass = this.weightTrue[i];
+                }
+            }
+        }
+    }
+
 }
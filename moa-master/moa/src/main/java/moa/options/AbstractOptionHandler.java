@@ -189,4 +189,14 @@ public abstract class AbstractOptionHandler extends AbstractMOAObject implements
     protected Object getPreparedClassOption(ClassOption opt) {
         return this.config.getPreparedClassOption(opt);
     }
+
+    /**
+     *  Gets a new copy of a prepared option of this class.
+     *
+     * @param opt the class option to copy
+     * @return a copy of the option stored in the dictionary
+     */
+    protected Object newPreparedClassOption(ClassOption opt) {
+        return this.config.newPreparedClassOption(opt);
+    }
 }
@@ -1,7 +1,9 @@
 package moa.options;
 
 
+import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Map;
 import com.github.javacliparser.JavaCLIParser;
 import com.github.javacliparser.Option;
 import moa.core.ObjectRepository;
@@ -20,6 +22,9 @@ import moa.tasks.TaskMonitor;
 public class OptionsHandler extends JavaCLIParser {
 
     //public Object handler;
+
+    /** Factories of copies of the prepared options, by option name */
+    protected transient Map<String, PreparedObjectFactory> classOptionNamesToFactories;
     
     public OptionsHandler(Object c, String cliString) {
         super(c,cliString);
@@ -132,6 +137,9 @@ public class OptionsHandler extends JavaCLIParser {
     public void prepareClassOptions(TaskMonitor monitor,
             ObjectRepository repository) {
         this.classOptionNamesToPreparedObjects = null;
+        synchronized (this) {
+            this.classOptionNamesToFactories = null;
+        }
         Option[] optionArray = getOptions().getOptionArray();
         for (Option option : optionArray) {
             if (option instanceof ClassOption) {
@@ -174,6 +182,31 @@ public class OptionsHandler extends JavaCLIParser {
         return this.classOptionNamesToPreparedObjects.get(opt.getName());
     }
 
+    /**
+     * Gets a new copy of a prepared option of this class. The prepared option
+     * is serialized on the first call only, which makes this cheaper than
+     * copying the prepared option each time, e.g. for the members of an
+     * ensemble creating their change detectors.
+     *
+     * @param opt the class option to copy
+     * @return a copy of the option stored in the dictionary
+     */
+    public Object newPreparedClassOption(ClassOption opt) {
+        PreparedObjectFactory factory;
+        synchronized (this) {
+            if (this.classOptionNamesToFactories == null) {
+                this.classOptionNamesToFactories = new HashMap<String, PreparedObjectFactory>();
+            }
+            factory = this.classOptionNamesToFactories.get(opt.getName());
+            if (factory == null) {
+                factory = new PreparedObjectFactory(
+                        (Serializable) getPreparedClassOption(opt));
+                this.classOptionNamesToFactories.put(opt.getName(), factory);
+            }
+        }
+        return factory.newInstance();
+    }
+
     //@Override
     //public void getDescription(StringBuilder sb, int i) {
     //    throw new UnsupportedOperationException("Not supported yet.");
@@ -0,0 +1,78 @@
+/*
+ *    PreparedObjectFactory.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.options;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Creates fresh copies of the prepared object of a class option. The
+ * prototype is serialized once, when the factory is created, so that every
+ * new instance only costs its deserialization, instead of the serialization
+ * and deserialization of <code>copy()</code>.
+ *
+ * <p>The instances are copies of the prototype as it was when the factory
+ * was created: the factories of an option handler are dropped when its class
+ * options are prepared again.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class PreparedObjectFactory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The serialized prototype */
+    protected final byte[] prototype;
+
+    /**
+     * Creates a factory for copies of the given prototype.
+     *
+     * @param prototype the prepared object to copy
+     */
+    public PreparedObjectFactory(Serializable prototype) {
+        try {
+            ByteArrayOutputStream baoStream = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(baoStream);
+            out.writeObject(prototype);
+            out.close();
+            this.prototype = baoStream.toByteArray();
+        } catch (Exception e) {
+            throw new RuntimeException("Object copy failed.", e);
+        }
+    }
+
+    /**
+     * Creates a new copy of the prototype.
+     *
+     * @return the copy
+     */
+    public Object newInstance() {
+        try {
+            ObjectInputStream in = new ObjectInputStream(
+                    new ByteArrayInputStream(this.prototype));
+            Object copy = in.readObject();
+            in.close();
+            return copy;
+        } catch (Exception e) {
+            throw new RuntimeException("Object copy failed.", e);
+        }
+    }
+}
@@ -53,6 +53,8 @@ import moa.tasks.TaskMonitor;
  *      regularization</li>
  * <li> i: iterations - the number of iterations to be used when retraining
  *      user and item features (online training). </li>
+ * <li> j: numberOfJobs - the number of threads to be used when training
+ *      from scratch (batch training). </li>
  * </lu>
  * 
  */
@@ -77,6 +79,11 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
             "How many iterations to use.",
             100, 0, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs",
+            'j',
+            "Total number of concurrent jobs used for batch training (-1 = as much as possible, 0 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
     public ClassOption dataOption = new ClassOption("data", 'd',
             "Data", RecommenderData.class, "moa.recommender.data.MemRecommenderData");
      
@@ -86,6 +93,10 @@ public class BRISMFPredictor extends AbstractOptionHandler implements RatingPred
         RecommenderData data = (RecommenderData) getPreparedClassOption(this.dataOption);
         rp = new moa.recommender.rc.predictor.impl.BRISMFPredictor(featuresOption.getValue(), data.getData(), lRateOption.getValue(), rFactorOption.getValue(), false);
         rp.setNIterations(iterationsOption.getValue());
+        int numberOfJobs = numberOfJobsOption.getValue();
+        if (numberOfJobs == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        rp.setNThreads(numberOfJobs);
     }
 
     @Override
@@ -39,6 +39,17 @@ public interface RecommenderData extends Serializable {
     public void removeRating(int userID, int itemID);
     public SparseVector getRatingsUser(int userID); //TODO:Iterator version for this?
     public SparseVector getRatingsItem(int itemID); //TODO:Iterator version for this?
+    /**
+     * Copies the ratings of a user, without boxing them. The arrays must hold
+     * at least <code>countRatingsUser(userID)</code> ratings.
+     * @return the number of ratings copied
+     */
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings);
+    /**
+     * Copies the ratings of an item, as <code>getRatingsUser</code>.
+     * @return the number of ratings copied
+     */
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings);
     public double getRating(int userID, int itemID);
     public int getNumItems();
     public int getNumUsers();
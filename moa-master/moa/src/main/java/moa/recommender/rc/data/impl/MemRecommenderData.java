@@ -21,30 +21,143 @@
 package moa.recommender.rc.data.impl;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import moa.recommender.rc.data.AbstractRecommenderData;
+import moa.recommender.rc.utils.IntIndexMap;
 import moa.recommender.rc.utils.Rating;
 import moa.recommender.rc.utils.SparseVector;
 
+/**
+ * Recommender data kept in memory. The ratings of every user, and of every
+ * item, are kept in a row of two primitive arrays, the ids of the rated items
+ * (or of the rating users) and the ratings, that grow by doubling as ratings
+ * are appended. The ids are mapped to their rows by an {@link IntIndexMap},
+ * so no rating is boxed, and the sum of the ratings of every row is kept for
+ * the averages.
+ */
 public class MemRecommenderData extends AbstractRecommenderData {
 
     private static final long serialVersionUID = 2844235954903772074L;
 
-    class EntityStats implements Serializable {
+    /**
+     * The ratings of the users, or of the items, one row per id.
+     */
+    protected static class RatingRows implements Serializable {
         private static final long serialVersionUID = -8933750377510577120L;
-        public double sum = 0;
-        public double num = 0;
+
+        protected IntIndexMap index = new IntIndexMap();
+        protected int[][] ids = new int[16][];
+        protected double[][] ratings = new double[16][];
+        protected int[] counts = new int[16];
+        protected double[] sums = new double[16];
+
+        public int row(int id) {
+            return index.get(id);
+        }
+
+        /**
+         * Adds an empty row for an id that has none.
+         */
+        public int newRow(int id) {
+            int row = index.add(id);
+            if (row >= counts.length) {
+                int n = Math.max(counts.length * 2, row + 1);
+                int[][] newIds = new int[n][];
+                double[][] newRatings = new double[n][];
+                System.arraycopy(ids, 0, newIds, 0, ids.length);
+                System.arraycopy(ratings, 0, newRatings, 0, ratings.length);
+                ids = newIds;
+                ratings = newRatings;
+                counts = Arrays.copyOf(counts, n);
+                sums = Arrays.copyOf(sums, n);
+            }
+            if (ids[row] == null) {
+                ids[row] = new int[4];
+                ratings[row] = new double[4];
+            }
+            counts[row] = 0;
+            sums[row] = 0;
+            return row;
+        }
+
+        /**
+         * Removes the row of an id. Its arrays are kept for the next row.
+         */
+        public void removeRow(int id) {
+            int row = index.remove(id);
+            if (row != -1) {
+                counts[row] = 0;
+                sums[row] = 0;
+            }
+        }
+
+        /**
+         * @return the position of the id in the row, -1 if it is not there
+         */
+        public int find(int row, int id) {
+            int[] rowIds = ids[row];
+            int n = counts[row];
+            for (int i = 0; i < n; ++i)
+                if (rowIds[i] == id) return i;
+            return -1;
+        }
+
+        public void append(int row, int id, double rating) {
+            int n = counts[row];
+            if (n == ids[row].length) {
+                ids[row] = Arrays.copyOf(ids[row], n * 2);
+                ratings[row] = Arrays.copyOf(ratings[row], n * 2);
+            }
+            ids[row][n] = id;
+            ratings[row][n] = rating;
+            counts[row] = n + 1;
+            sums[row] += rating;
+        }
+
+        /**
+         * Removes a rating, moving the last one of the row to its position.
+         */
+        public void removeAt(int row, int pos) {
+            int last = --counts[row];
+            sums[row] -= ratings[row][pos];
+            ids[row][pos] = ids[row][last];
+            ratings[row][pos] = ratings[row][last];
+        }
+
+        public int copy(int row, int[] toIds, double[] toRatings) {
+            if (row == -1) return 0;
+            int n = counts[row];
+            System.arraycopy(ids[row], 0, toIds, 0, n);
+            System.arraycopy(ratings[row], 0, toRatings, 0, n);
+            return n;
+        }
+
+        public SparseVector toSparseVector(int row) {
+            HashMap<Integer, Double> map = new HashMap<Integer, Double>();
+            if (row != -1) {
+                int n = counts[row];
+                for (int i = 0; i < n; ++i)
+                    map.put(ids[row][i], ratings[row][i]);
+            }
+            return new SparseVector(map);
+        }
+
+        public void clear() {
+            index.clear();
+            ids = new int[16][];
+            ratings = new double[16][];
+            counts = new int[16];
+            sums = new double[16];
+        }
     }
     
-    protected Map<Integer, Map<Integer, Double>> ratingsUser;
-    protected Map<Integer, Map<Integer, Double>> ratingsItem;
-    protected Map<Integer, EntityStats> usersStats;
-    protected Map<Integer, EntityStats> itemsStats;
+    protected RatingRows ratingsUser;
+    protected RatingRows ratingsItem;
     
     protected int nItems = 0;
     protected int nUsers = 0;
@@ -54,83 +167,51 @@ public class MemRecommenderData extends AbstractRecommenderData {
     protected double maxRating = 0;
     
     protected class RatingIterator implements Iterator<Rating> {
-        private int currentUser = -1;
-        private Iterator<Integer> userIt = null;
-        private Iterator<Entry<Integer, Double>> ratsIt = null;
-        private boolean calculated = false;
-        private boolean result = true;
-        
-        RatingIterator() throws Exception {
-        }
+        private Iterator<Integer> userIt = ratingsUser.index.keySet().iterator();
+        private int currentUser;
+        private int row = -1;
+        private int pos = 0;
         
         @Override
         public boolean hasNext() {
-            if (calculated)
-                return result;
-            
-            calculated = true;
-            result = false;
-            if (ratsIt == null) {
-                if (!ratingsUser.isEmpty()) {
-                    userIt = ratingsUser.keySet().iterator();
-                    if (userIt.hasNext()) {
-                        Integer first = userIt.next();
-                        currentUser = first;
-                        ratsIt = ratingsUser.get(first).entrySet().iterator();
-                        if (ratsIt.hasNext()) {
-                            result = true;
-                        }
-                    }
-                }
+            while (row == -1 || pos >= ratingsUser.counts[row]) {
+                if (!userIt.hasNext()) return false;
+                currentUser = userIt.next();
+                row = ratingsUser.row(currentUser);
+                pos = 0;
             }
-            else {
-                if (ratsIt.hasNext()) {
-                    result = true;
-                }
-                else if (userIt.hasNext()) {
-                    Integer first = userIt.next();
-                    currentUser = first;
-                    ratsIt = ratingsUser.get(first).entrySet().iterator();
-                    if (ratsIt.hasNext()) {
-                        result = true;
-                    }
-                }
-            }
-            return result;
+            return true;
         }
 
         @Override
         public Rating next() {
-            if (!calculated)
-                hasNext();
-            calculated = false;
-            Entry<Integer, Double> pair = ratsIt.next();
-            
-            return new Rating(currentUser, pair.getKey(), pair.getValue());
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Rating ret = new Rating(currentUser, ratingsUser.ids[row][pos], ratingsUser.ratings[row][pos]);
+            ++pos;
+            return ret;
         }
 
         @Override
         public void remove() {
-            // TODO Auto-generated method stub
-            
+            throw new UnsupportedOperationException();
         }
         
     }
     
     public MemRecommenderData() {
         super();
-        ratingsItem = new HashMap<Integer, Map<Integer, Double>>();
-        ratingsUser = new HashMap<Integer, Map<Integer, Double>>();
-        usersStats = new HashMap<Integer, EntityStats>();
-        itemsStats = new HashMap<Integer, EntityStats>();
+        ratingsItem = new RatingRows();
+        ratingsUser = new RatingRows();
     }
     
     @Override
     public void addUser(int userID, List<Integer> ratedItems, List<Double> ratings) {
         super.addUser(userID, ratedItems, ratings);
         
-        ratingsUser.put(userID, new HashMap<Integer, Double>());
-        usersStats.put(userID, new EntityStats());
+        removeRatingsUser(userID);
+        if (ratingsUser.row(userID) == -1)
+            ratingsUser.newRow(userID);
         
         int n = ratedItems.size();
         
@@ -138,31 +219,64 @@ public class MemRecommenderData extends AbstractRecommenderData {
             auxSetRating(userID, ratedItems.get(i), ratings.get(i));
     }
 
-    //FIXME: have to update item stats!!!
     @Override
     public void removeUser(int userID) {
         super.removeUser(userID);
-        ratingsUser.remove(userID);
-        usersStats.remove(userID);
+        removeRatingsUser(userID);
+        ratingsUser.removeRow(userID);
     }
 
     @Override
     public void addItem(int itemID, List<Integer> ratingUsers, List<Double> ratings) {
         super.addItem(itemID, ratingUsers, ratings);
         
-        ratingsItem.put(itemID, new HashMap<Integer, Double>());
-        itemsStats.put(itemID, new EntityStats());
+        removeRatingsItem(itemID);
+        if (ratingsItem.row(itemID) == -1)
+            ratingsItem.newRow(itemID);
         int n = ratingUsers.size();
         for (int i = 0; i < n; ++i)
             auxSetRating(ratingUsers.get(i), itemID, ratings.get(i));
     }
 
-    //FIXME: have to update user stats!!!
     @Override
     public void removeItem(int itemID) {
         super.removeItem(itemID);
-        ratingsItem.remove(itemID);
-        itemsStats.remove(itemID);
+        removeRatingsItem(itemID);
+        ratingsItem.removeRow(itemID);
+    }
+
+    /**
+     * Removes the ratings of a user from the rows of the items it rated, so
+     * that the rows of the users and of the items hold the same ratings.
+     */
+    private void removeRatingsUser(int userID) {
+        int urow = ratingsUser.row(userID);
+        if (urow == -1) return;
+        int n = ratingsUser.counts[urow];
+        for (int i = 0; i < n; ++i) {
+            int irow = ratingsItem.row(ratingsUser.ids[urow][i]);
+            double rat = ratingsUser.ratings[urow][i];
+            ratingsItem.removeAt(irow, ratingsItem.find(irow, userID));
+            sumRatings -= rat;
+            --nRatings;
+        }
+        ratingsUser.counts[urow] = 0;
+        ratingsUser.sums[urow] = 0;
+    }
+
+    private void removeRatingsItem(int itemID) {
+        int irow = ratingsItem.row(itemID);
+        if (irow == -1) return;
+        int n = ratingsItem.counts[irow];
+        for (int i = 0; i < n; ++i) {
+            int urow = ratingsUser.row(ratingsItem.ids[irow][i]);
+            double rat = ratingsItem.ratings[irow][i];
+            ratingsUser.removeAt(urow, ratingsUser.find(urow, itemID));
+            sumRatings -= rat;
+            --nRatings;
+        }
+        ratingsItem.counts[irow] = 0;
+        ratingsItem.sums[irow] = 0;
     }
 
     private void auxSetRating(int userID, int itemID, double rating) {
@@ -175,42 +289,47 @@ public class MemRecommenderData extends AbstractRecommenderData {
             maxRating = Math.max(maxRating, rating);
         }
         
-        EntityStats userStats = usersStats.get(userID);
-        EntityStats itemStats = itemsStats.get(itemID);
-        if (userStats == null) {
+        int urow = ratingsUser.row(userID);
+        int irow = ratingsItem.row(itemID);
+        if (urow == -1) {
             ++nUsers;
-            ratingsUser.put(userID, new HashMap<Integer, Double>());
-            userStats = new EntityStats();
-            usersStats.put(userID, userStats);
+            urow = ratingsUser.newRow(userID);
         }
         
-        if (itemStats == null) {
+        if (irow == -1) {
             ++nItems;
-            ratingsItem.put(itemID, new HashMap<Integer, Double>());
-            itemStats = new EntityStats();
-            itemsStats.put(itemID, itemStats);
+            irow = ratingsItem.newRow(itemID);
         }
         
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        Map<Integer, Double> ratItem = ratingsItem.get(itemID);
-        Double rat = ratUser.get(itemID);
-        if (rat != null) {
-            sumRatings -= rat;
-            userStats.sum -= rat;
-            userStats.num--;
-            itemStats.sum -= rat;
-            itemStats.num--;
-            --nRatings;
+        // both rows hold the rating if there is one: look in the shorter one
+        int upos;
+        int ipos;
+        if (ratingsUser.counts[urow] <= ratingsItem.counts[irow]) {
+            upos = ratingsUser.find(urow, itemID);
+            ipos = (upos != -1 ? ratingsItem.find(irow, userID) : -1);
+        }
+        else {
+            ipos = ratingsItem.find(irow, userID);
+            upos = (ipos != -1 ? ratingsUser.find(urow, itemID) : -1);
         }
         
-        userStats.sum += rating;
-        userStats.num++;
-        itemStats.sum += rating;
-        itemStats.num++;
-        sumRatings += rating;
-        ++nRatings;
-        ratUser.put(itemID, rating);
-        ratItem.put(userID, rating);
+        if (upos != -1) {
+            double rat = ratingsUser.ratings[urow][upos];
+            sumRatings -= rat;
+            ratingsUser.sums[urow] -= rat;
+            ratingsItem.sums[irow] -= rat;
+            sumRatings += rating;
+            ratingsUser.sums[urow] += rating;
+            ratingsItem.sums[irow] += rating;
+            ratingsUser.ratings[urow][upos] = rating;
+            ratingsItem.ratings[irow][ipos] = rating;
+        }
+        else {
+            sumRatings += rating;
+            ++nRatings;
+            ratingsUser.append(urow, itemID, rating);
+            ratingsItem.append(irow, userID, rating);
+        }
     }
     
     @Override
@@ -223,33 +342,33 @@ public class MemRecommenderData extends AbstractRecommenderData {
     public void removeRating(int userID, int itemID) {
         super.removeRating(userID, itemID);
         
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        Map<Integer, Double> ratItem = ratingsItem.get(itemID);
-        Double rat = ratUser.get(itemID);
-        EntityStats userStats = usersStats.get(userID);
-        EntityStats itemStats = itemsStats.get(itemID);
-        if (rat != null) {
-            sumRatings -= rat;
+        int urow = ratingsUser.row(userID);
+        int irow = ratingsItem.row(itemID);
+        if (urow == -1 || irow == -1) return;
+        int upos = ratingsUser.find(urow, itemID);
+        if (upos != -1) {
+            sumRatings -= ratingsUser.ratings[urow][upos];
             --nRatings;
-            userStats.sum -= rat;
-            userStats.num--;
-            itemStats.sum -= rat;
-            itemStats.num--;
-            ratUser.remove(itemID);
-            ratItem.remove(userID);
+            ratingsUser.removeAt(urow, upos);
+            ratingsItem.removeAt(irow, ratingsItem.find(irow, userID));
         }
     }
 
     @Override
     public SparseVector getRatingsUser(int userID) {
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        return new SparseVector(ratUser);
+        return ratingsUser.toSparseVector(ratingsUser.row(userID));
+    }
+
+    @Override
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings) {
+        return ratingsUser.copy(ratingsUser.row(userID), itemIDs, ratings);
     }
     
     @Override
     public double getRating(int userID, int itemID) {
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        return (ratUser.get(itemID) != null ? ratUser.get(itemID) : 0);
+        int urow = ratingsUser.row(userID);
+        int pos = (urow != -1 ? ratingsUser.find(urow, itemID) : -1);
+        return (pos != -1 ? ratingsUser.ratings[urow][pos] : 0);
     }
 
     @Override
@@ -264,18 +383,18 @@ public class MemRecommenderData extends AbstractRecommenderData {
     
     @Override
     public double getAvgRatingUser(int userID) {
-        EntityStats stats = usersStats.get(userID);
-        double sum = (stats != null ? stats.sum : 0);
-        double num = (stats != null ? stats.num : 0);
+        int row = ratingsUser.row(userID);
+        double sum = (row != -1 ? ratingsUser.sums[row] : 0);
+        double num = (row != -1 ? ratingsUser.counts[row] : 0);
         double mean = (nRatings > 0 ? sumRatings/(double)nRatings : (minRating + maxRating)/2.0);
         return (mean*25 + sum)/(25 + num);
     }
 
     @Override
     public double getAvgRatingItem(int itemID) {
-        EntityStats stats = itemsStats.get(itemID);
-        double sum = (stats != null ? stats.sum : 0);
-        double num = (stats != null ? stats.num : 0);
+        int row = ratingsItem.row(itemID);
+        double sum = (row != -1 ? ratingsItem.sums[row] : 0);
+        double num = (row != -1 ? ratingsItem.counts[row] : 0);
         double mean = (nRatings > 0 ? sumRatings/(double)nRatings : (minRating + maxRating)/2.0);
         return (mean*25 + sum)/(25 + num);
     }
@@ -292,18 +411,22 @@ public class MemRecommenderData extends AbstractRecommenderData {
 
     @Override
     public Set<Integer> getUsers() {
-        return usersStats.keySet();
+        return ratingsUser.index.keySet();
     }
 
     @Override
     public SparseVector getRatingsItem(int itemID) {
-        Map<Integer, Double> ratItem = ratingsItem.get(itemID);
-        return new SparseVector(ratItem);
+        return ratingsItem.toSparseVector(ratingsItem.row(itemID));
+    }
+
+    @Override
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings) {
+        return ratingsItem.copy(ratingsItem.row(itemID), userIDs, ratings);
     }
 
     @Override
     public Set<Integer> getItems() {
-        return itemsStats.keySet();
+        return ratingsItem.index.keySet();
     }
 
     @Override
@@ -313,20 +436,19 @@ public class MemRecommenderData extends AbstractRecommenderData {
 
     @Override
     public int countRatingsUser(int userID) {
-        EntityStats stats = usersStats.get(userID);
-        return (stats != null ? (int)stats.num : 0);
+        int row = ratingsUser.row(userID);
+        return (row != -1 ? ratingsUser.counts[row] : 0);
     }
 
     @Override
     public int countRatingsItem(int itemID) {
-        EntityStats stats = itemsStats.get(itemID);
-        return (stats != null ? (int)stats.num : 0);
+        int row = ratingsItem.row(itemID);
+        return (row != -1 ? ratingsItem.counts[row] : 0);
     }
 
     @Override
     public Iterator<Rating> ratingIterator() {
-        // TODO Auto-generated method stub
-        return null;
+        return new RatingIterator();
     }
 
     @Override
@@ -336,21 +458,18 @@ public class MemRecommenderData extends AbstractRecommenderData {
     
     @Override
     public boolean userExists(int userID) {
-        return usersStats.containsKey(userID);
+        return ratingsUser.row(userID) != -1;
     }
     @Override
     public boolean itemExists(int itemID) {
-        return itemsStats.containsKey(itemID);
+        return ratingsItem.row(itemID) != -1;
     }
 
     @Override
     public void clear() {
-        usersStats.clear();
-        itemsStats.clear();
         minRating = maxRating = nItems = nUsers = 0;
         sumRatings = nRatings = 0;
         ratingsUser.clear();
         ratingsItem.clear();
     }
 }
-
@@ -21,14 +21,18 @@
 package moa.recommender.rc.predictor.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import moa.recommender.rc.data.RecommenderData;
-import moa.recommender.rc.utils.Pair;
+import moa.recommender.rc.utils.IntIndexMap;
 import moa.recommender.rc.utils.Rating;
-import moa.recommender.rc.utils.SparseVector;
 import moa.recommender.rc.utils.Updatable;
 
 /**
@@ -55,6 +59,7 @@ import moa.recommender.rc.utils.Updatable;
  *      regularization</li>
  * <li> iterations - the number of iterations to be used when retraining
  *      user and item features (online training). </li>
+ * <li> threads - the number of threads to be used in the batch training</li>
  * </lu>
  * 
  */
@@ -63,12 +68,28 @@ public class BRISMFPredictor implements Updatable {
     
     protected RecommenderData data;
     protected int nFeatures;
-    protected HashMap<Integer, float[]> userFeature;
-    protected HashMap<Integer, float[]> itemFeature;
+    /**
+     * The features of the users and of the items, in contiguous slabs of
+     * nFeatures floats per row. The rows are given by userRows and itemRows.
+     */
+    protected float[] userFeature;
+    protected float[] itemFeature;
+    protected IntIndexMap userRows;
+    protected IntIndexMap itemRows;
     protected Random rnd;
     protected double lRate = 0.01;
     protected double rFactor = 0.02;
     protected int nIterations = 30;
+    /**
+     * The number of threads of the batch training.
+     */
+    protected int nThreads = 1;
+    /**
+     * Buffers for the ratings of the user or item being trained.
+     */
+    protected int[] ratedIDs = new int[16];
+    protected double[] ratedValues = new double[16];
+    protected int[] ratedOffsets = new int[16];
     
     public void setLRate(double lRate) {
         this.lRate = lRate;
@@ -82,6 +103,17 @@ public class BRISMFPredictor implements Updatable {
         this.nIterations = nIterations; 
     }
     
+    /**
+     * Sets the number of threads used by <code>train</code>. With more than
+     * one, the users and the items are split in as many blocks, and each
+     * epoch trains the ratings block by block, as in stratified stochastic
+     * gradient descent: the result depends on the number of threads but not
+     * on their scheduling. The online updates use a single thread.
+     */
+    public void setNThreads(int nThreads) {
+        this.nThreads = nThreads;
+    }
+    
     public RecommenderData getData() {
     	return data;
     }
@@ -89,8 +121,10 @@ public class BRISMFPredictor implements Updatable {
     public BRISMFPredictor(int nFeatures, RecommenderData data, boolean train) {
         this.data = data;
         this.nFeatures = nFeatures;
-        this.userFeature = new HashMap<Integer, float[]>();
-        this.itemFeature = new HashMap<Integer, float[]>();
+        this.userRows = new IntIndexMap();
+        this.itemRows = new IntIndexMap();
+        this.userFeature = new float[16*nFeatures];
+        this.itemFeature = new float[16*nFeatures];
         this.rnd = new Random(12345);
         data.attachUpdatable(this);
         if (train) train();
@@ -99,8 +133,10 @@ public class BRISMFPredictor implements Updatable {
     public BRISMFPredictor(int nFeatures, RecommenderData data, double lRate, double rFactor, boolean train) {
         this.data = data;
         this.nFeatures = nFeatures;
-        this.userFeature = new HashMap<Integer, float[]>();
-        this.itemFeature = new HashMap<Integer, float[]>();
+        this.userRows = new IntIndexMap();
+        this.itemRows = new IntIndexMap();
+        this.userFeature = new float[16*nFeatures];
+        this.itemFeature = new float[16*nFeatures];
         this.rnd = new Random(12345);
         this.lRate = lRate;
         this.rFactor = rFactor;
@@ -108,25 +144,86 @@ public class BRISMFPredictor implements Updatable {
         if (train) train();
     }
     
-    private void resetFeatures(float[] feats, boolean userFeats) {
-        int n = feats.length;
-        for (int i = 0; i < n; ++i)
-            feats[i] = (float)0.01*(rnd.nextFloat()*2 - 1);
-        if (userFeats) feats[0] = 1;
-        else feats[1] = 1;
+    private void resetFeatures(float[] feats, int offset, boolean userFeats) {
+        for (int i = 0; i < nFeatures; ++i)
+            feats[offset + i] = (float)0.01*(rnd.nextFloat()*2 - 1);
+        if (userFeats) feats[offset] = 1;
+        else feats[offset + 1] = 1;
+    }
+    
+    /**
+     * @return the offset of the features of the user in userFeature, -1 if
+     * the user has none
+     */
+    protected int userOffset(int userID) {
+        int row = userRows.get(userID);
+        return (row != -1 ? row*nFeatures : -1);
+    }
+    
+    protected int itemOffset(int itemID) {
+        int row = itemRows.get(itemID);
+        return (row != -1 ? row*nFeatures : -1);
+    }
+    
+    /**
+     * @return the offset of the features of the user, adding a row to
+     * userFeature if the user has none
+     */
+    protected int addUserRow(int userID) {
+        int offset = userRows.add(userID)*nFeatures;
+        if (offset + nFeatures > userFeature.length)
+            userFeature = Arrays.copyOf(userFeature, Math.max(2*userFeature.length, offset + nFeatures));
+        return offset;
+    }
+    
+    protected int addItemRow(int itemID) {
+        int offset = itemRows.add(itemID)*nFeatures;
+        if (offset + nFeatures > itemFeature.length)
+            itemFeature = Arrays.copyOf(itemFeature, Math.max(2*itemFeature.length, offset + nFeatures));
+        return offset;
+    }
+    
+    /**
+     * Makes the rating buffers hold at least n ratings.
+     */
+    protected void ensureRatedCapacity(int n) {
+        if (n > ratedIDs.length) {
+            int size = Math.max(n, 2*ratedIDs.length);
+            ratedIDs = new int[size];
+            ratedValues = new double[size];
+        }
+    }
+    
+    /**
+     * Copies the ratings of the lists to the rating buffers.
+     */
+    private int copyRatings(List<Integer> ids, List<Double> ratings) {
+        int n = ids.size();
+        ensureRatedCapacity(n);
+        for (int i = 0; i < n; ++i) {
+            ratedIDs[i] = ids.get(i);
+            ratedValues[i] = ratings.get(i);
+        }
+        return n;
     }
     
     public double predictRating(int userID, int itemID) {
-        float[] userFeats = userFeature.get(userID);
-        float[] itemFeats = itemFeature.get(itemID);
-        return predictRating(userFeats, itemFeats);
+        return predictRating(userFeature, userOffset(userID), itemFeature, itemOffset(itemID));
     }
     
     public double predictRating(float userFeats[], float itemFeats[]) {
+        return predictRating(userFeats, (userFeats != null ? 0 : -1), itemFeats, (itemFeats != null ? 0 : -1));
+    }
+    
+    /**
+     * Predicts the rating from features at the given offsets, -1 if the user
+     * or the item has no features.
+     */
+    protected double predictRating(float userFeats[], int userOffset, float itemFeats[], int itemOffset) {
         double ret = data.getGlobalMean();
-        if (userFeats != null && itemFeats != null)
+        if (userOffset != -1 && itemOffset != -1)
             for (int i = 0; i < nFeatures; ++i)
-                ret += userFeats[i]*itemFeats[i];
+                ret += userFeats[userOffset + i]*itemFeats[itemOffset + i];
 
         if (ret < data.getMinRating()) ret = data.getMinRating();
         else if (ret > data.getMaxRating()) ret = data.getMaxRating();
@@ -136,206 +233,337 @@ public class BRISMFPredictor implements Updatable {
     
     public float[] trainUserFeats(List<Integer> itm, List<Double> rat, int nIts) {
         float[] userFeats = new float[nFeatures];
-        resetFeatures(userFeats, true);
+        int n = copyRatings(itm, rat);
+        trainUserFeats(userFeats, 0, ratedIDs, ratedValues, n, nIts);
+        return userFeats;
+    }
+    
+    /**
+     * Trains from scratch the features of a user at the given offset, from
+     * its first n ratings.
+     */
+    protected void trainUserFeats(float[] userFeats, int userOffset, int[] itm, double[] rat, int n, int nIts) {
+        resetFeatures(userFeats, userOffset, true);
         
-        int n = itm.size();
+        if (ratedOffsets.length < n) ratedOffsets = new int[Math.max(n, 2*ratedOffsets.length)];
+        int[] offsets = ratedOffsets;
+        for (int i = 0; i < n; ++i)
+            offsets[i] = itemOffset(itm[i]);
+        // the ratings do not change while training: neither do the mean and
+        // the bounds of the predictions
+        double mean = data.getGlobalMean();
+        double minRating = data.getMinRating();
+        double maxRating = data.getMaxRating();
+        float[] itemFeats = itemFeature;
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int itemID = itm.get(i);
-                float[] itemFeats = itemFeature.get(itemID);
-                double rating = rat.get(i);
-                double pred = predictRating(userFeats, itemFeats);
-                double err = rating - pred;
+                int itemOffset = offsets[i];
+                // the features are not updated by ratings of unknown items
+                if (itemOffset == -1) continue;
+                double pred = mean;
+                for (int j = 0; j < nFeatures; ++j)
+                    pred += userFeats[userOffset + j]*itemFeats[itemOffset + j];
+                if (pred < minRating) pred = minRating;
+                else if (pred > maxRating) pred = maxRating;
+                double err = rat[i] - pred;
                 
-                if (itemFeats != null)
-                    for (int j = 1; j < nFeatures; ++j) 
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
+                for (int j = 1; j < nFeatures; ++j) 
+                    userFeats[userOffset + j] += lRate*(err*itemFeats[itemOffset + j] - rFactor*userFeats[userOffset + j]);
             }
         }
-        
-        return userFeats;
     }
     
     public float[] trainItemFeats(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
         float[] itemFeats = new float[nFeatures];
-        resetFeatures(itemFeats, false);
+        int n = copyRatings(usr, rat);
+        trainItemFeats(itemFeats, 0, ratedIDs, ratedValues, n, nIts);
+        return itemFeats;
+    }
+    
+    /**
+     * Trains from scratch the features of an item at the given offset, from
+     * its first n ratings.
+     */
+    protected void trainItemFeats(float[] itemFeats, int itemOffset, int[] usr, double[] rat, int n, int nIts) {
+        resetFeatures(itemFeats, itemOffset, false);
         
-        int n = usr.size();
+        if (ratedOffsets.length < n) ratedOffsets = new int[Math.max(n, 2*ratedOffsets.length)];
+        int[] offsets = ratedOffsets;
+        for (int i = 0; i < n; ++i)
+            offsets[i] = userOffset(usr[i]);
+        double mean = data.getGlobalMean();
+        double minRating = data.getMinRating();
+        double maxRating = data.getMaxRating();
+        float[] userFeats = userFeature;
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int userID = usr.get(i);
-                float[] userFeats = userFeature.get(userID);
-                double rating = rat.get(i);
-                double pred = predictRating(userFeats, itemFeats);
-                double err = rating - pred;
+                int userOffset = offsets[i];
+                if (userOffset == -1) continue;
+                double pred = mean;
+                for (int j = 0; j < nFeatures; ++j)
+                    pred += userFeats[userOffset + j]*itemFeats[itemOffset + j];
+                if (pred < minRating) pred = minRating;
+                else if (pred > maxRating) pred = maxRating;
+                double err = rat[i] - pred;
                 
-                if (userFeats != null) {
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    for (int j = 2; j < nFeatures; ++j)
-                        itemFeats[j] += lRate*(err*userFeats[j] - rFactor*itemFeats[j]);
-                }
+                itemFeats[itemOffset] += lRate*(err*userFeats[userOffset] - rFactor*itemFeats[itemOffset]);
+                for (int j = 2; j < nFeatures; ++j)
+                    itemFeats[itemOffset + j] += lRate*(err*userFeats[userOffset + j] - rFactor*itemFeats[itemOffset + j]);
             }
         }
-        
-        return itemFeats;
+    }
+    
+    /**
+     * Trains the user from the first n ratings of the rating buffers.
+     */
+    protected void trainUser(int userID, int n, int nIts) {
+        int offset = addUserRow(userID);
+        trainUserFeats(userFeature, offset, ratedIDs, ratedValues, n, nIts);
+    }
+    
+    protected void trainItem(int itemID, int n, int nIts) {
+        int offset = addItemRow(itemID);
+        trainItemFeats(itemFeature, offset, ratedIDs, ratedValues, n, nIts);
     }
     
     public void trainUser(int userID, List<Integer> itm, List<Double> rat, int nIts) {
-        userFeature.put(userID, trainUserFeats(itm, rat, nIts));
+        trainUser(userID, copyRatings(itm, rat), nIts);
     }
     
     public void trainUser(int userID, int nIts) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat, nIts);
+        ensureRatedCapacity(data.countRatingsUser(userID));
+        trainUser(userID, data.getRatingsUser(userID, ratedIDs, ratedValues), nIts);
     }
     
     public void trainUser(int userID, List<Integer> itm, List<Double> rat) {
-        userFeature.put(userID, trainUserFeats(itm, rat, nIterations));
+        trainUser(userID, copyRatings(itm, rat), nIterations);
     }
     
     public void trainItem(int itemID) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat);
+        trainItem(itemID, nIterations);
     }
     
     public void trainItem(int itemID, int nIts) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat, nIts);
+        ensureRatedCapacity(data.countRatingsItem(itemID));
+        trainItem(itemID, data.getRatingsItem(itemID, ratedIDs, ratedValues), nIts);
     }
     
     public void trainUser(int userID) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat);
+        trainUser(userID, nIterations);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIterations));
+        trainItem(itemID, copyRatings(usr, rat), nIterations);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIts));
+        trainItem(itemID, copyRatings(usr, rat), nIts);
     }
     
     public void train() {
-        userFeature.clear();
-        itemFeature.clear();
+        userRows.clear();
+        itemRows.clear();
         
         int n = data.getNumRatings();
         
         Iterator<Integer> it = data.getUsers().iterator();
         while (it.hasNext()) {
-            float[] feats = new float[nFeatures];
-            resetFeatures(feats, true);
-            userFeature.put(it.next(), feats);
+            int offset = addUserRow(it.next());
+            resetFeatures(userFeature, offset, true);
         }
         
         it = data.getItems().iterator();
         while (it.hasNext()) {
-            float[] feats = new float[nFeatures];
-            resetFeatures(feats, false);
-            itemFeature.put(it.next(), feats);
+            int offset = addItemRow(it.next());
+            resetFeatures(itemFeature, offset, false);
+        }
+
+        // split the ratings once: every trainDiv-th one is kept for testing,
+        // the others are kept as offsets of the features they update
+        int trainDiv = Math.max(20, n/1000000);
+        ArrayList<Rating> ratTest = new ArrayList<Rating>(n/trainDiv);
+        int[] trainUsers = new int[n];
+        int[] trainItems = new int[n];
+        double[] trainRatings = new double[n];
+        int nTrain = 0;
+        Iterator<Rating> ratIt = data.ratingIterator();
+        int idx = 0;
+        while (ratIt.hasNext()) {
+            Rating rat = ratIt.next();
+            if (idx%trainDiv == 0) {
+                ratTest.add(rat);
+            }
+            else {
+                trainUsers[nTrain] = userOffset(rat.userID);
+                trainItems[nTrain] = itemOffset(rat.itemID);
+                trainRatings[nTrain] = rat.rating;
+                ++nTrain;
+            }
+            ++idx;
+        }
+        
+        int nBlocks = Math.min(nThreads, Math.min(userRows.size(), itemRows.size()));
+        int[] strata = null;
+        ExecutorService executor = null;
+        if (nBlocks > 1) {
+            strata = sortIntoStrata(trainUsers, trainItems, trainRatings, nTrain, nBlocks);
+            executor = Executors.newFixedThreadPool(nBlocks);
         }
 
         int exit = 0;
         double lastRMSE = 1e20;
         
-        int count = 0;
-        int trainDiv = Math.max(20, n/1000000);
-        ArrayList<Rating> ratTest = new ArrayList<Rating>(n/trainDiv);
-        do {
-            long start = System.currentTimeMillis();
-            Iterator<Rating> ratIt = data.ratingIterator();
-            int idx = 0;
-            
-            while (ratIt.hasNext()) {
-                Rating rat = ratIt.next();
-                if (idx%trainDiv == 0) {
-                    if (count == 0) ratTest.add(rat);
+        try {
+            do {
+                long start = System.currentTimeMillis();
+                if (executor == null) {
+                    trainRatings(trainUsers, trainItems, trainRatings, 0, nTrain);
                 }
                 else {
-                    int userID = rat.userID;
-                    int itemID = rat.itemID;
-                    double rating = rat.rating;
-                    float[] userFeats = userFeature.get(userID);
-                    float[] itemFeats = itemFeature.get(itemID);
-                    
-                    double pred = predictRating(userFeats, itemFeats);
-                    double err = rating - pred;
-                    
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    userFeats[1] += lRate*(err*itemFeats[1] - rFactor*userFeats[1]);
-                    for (int j = 2; j < nFeatures; ++j) {
-                        double uv = userFeats[j];
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
-                        itemFeats[j] += lRate*(err*uv - rFactor*itemFeats[j]);
+                    // the strata of a sub-epoch share no user and no item, so
+                    // they are trained at the same time without locks, and the
+                    // features do not depend on the scheduling of the threads
+                    for (int s = 0; s < nBlocks; ++s) {
+                        ArrayList<Callable<Integer>> trainers = new ArrayList<Callable<Integer>>(nBlocks);
+                        for (int b = 0; b < nBlocks; ++b) {
+                            int stratum = b*nBlocks + (b + s)%nBlocks;
+                            trainers.add(new StratumTrainer(trainUsers, trainItems, trainRatings,
+                                    strata[stratum], strata[stratum + 1]));
+                        }
+                        for (Future<Integer> future : executor.invokeAll(trainers))
+                            future.get();
                     }
                 }
-                ++idx;
-            }
-            int nTest = ratTest.size();
+                int nTest = ratTest.size();
 
-            double sum = 0;
-            for (int i = 0; i < nTest; ++i) {
-                int userID = ratTest.get(i).userID;
-                int itemID = ratTest.get(i).itemID;
-                double rating = ratTest.get(i).rating;
-                double pred = predictRating(userID, itemID);
-                sum += Math.pow(rating - pred, 2);
+                double sum = 0;
+                for (int i = 0; i < nTest; ++i) {
+                    int userID = ratTest.get(i).userID;
+                    int itemID = ratTest.get(i).itemID;
+                    double rating = ratTest.get(i).rating;
+                    double pred = predictRating(userID, itemID);
+                    sum += Math.pow(rating - pred, 2);
+                }
+                
+                double curRMSE = Math.sqrt(sum/(double)nTest);
+                System.out.println(curRMSE + " " + (System.currentTimeMillis() - start)/1000);
+                if (curRMSE + 0.0001 >= lastRMSE) {
+                    ++exit;
+                }
+                lastRMSE = curRMSE;
             }
+            while (exit < 1);
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on training threads.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * One step of stochastic gradient descent for each of the ratings from
+     * position from to position to, in order.
+     */
+    protected void trainRatings(int[] trainUsers, int[] trainItems, double[] trainRatings, int from, int to) {
+        double mean = data.getGlobalMean();
+        double minRating = data.getMinRating();
+        double maxRating = data.getMaxRating();
+        float[] userFeats = userFeature;
+        float[] itemFeats = itemFeature;
+        for (int i = from; i < to; ++i) {
+            int userOffset = trainUsers[i];
+            int itemOffset = trainItems[i];
+            
+            double pred = mean;
+            for (int j = 0; j < nFeatures; ++j)
+                pred += userFeats[userOffset + j]*itemFeats[itemOffset + j];
+            if (pred < minRating) pred = minRating;
+            else if (pred > maxRating) pred = maxRating;
+            double err = trainRatings[i] - pred;
             
-            double curRMSE = Math.sqrt(sum/(double)nTest);
-            System.out.println(curRMSE + " " + (System.currentTimeMillis() - start)/1000);
-            if (curRMSE + 0.0001 >= lastRMSE) {
-                ++exit;
+            itemFeats[itemOffset] += lRate*(err*userFeats[userOffset] - rFactor*itemFeats[itemOffset]);
+            userFeats[userOffset + 1] += lRate*(err*itemFeats[itemOffset + 1] - rFactor*userFeats[userOffset + 1]);
+            for (int j = 2; j < nFeatures; ++j) {
+                double uv = userFeats[userOffset + j];
+                userFeats[userOffset + j] += lRate*(err*itemFeats[itemOffset + j] - rFactor*userFeats[userOffset + j]);
+                itemFeats[itemOffset + j] += lRate*(err*uv - rFactor*itemFeats[itemOffset + j]);
             }
-            lastRMSE = curRMSE;
-            ++count;
         }
-        while (exit < 1);
     }
     
+    /**
+     * Sorts the training ratings by stratum, keeping their order within a
+     * stratum. The users and the items are split in nBlocks blocks by row,
+     * and stratum b*nBlocks + c holds the ratings of the users of block b
+     * to the items of block c.
+     * @return the first position of every stratum, and the end of the last
+     */
+    private int[] sortIntoStrata(int[] trainUsers, int[] trainItems, double[] trainRatings, int nTrain, int nBlocks) {
+        int[] strata = new int[nBlocks*nBlocks + 1];
+        int[] stratumOf = new int[nTrain];
+        for (int i = 0; i < nTrain; ++i) {
+            int userBlock = (trainUsers[i]/nFeatures)%nBlocks;
+            int itemBlock = (trainItems[i]/nFeatures)%nBlocks;
+            stratumOf[i] = userBlock*nBlocks + itemBlock;
+            ++strata[stratumOf[i] + 1];
+        }
+        for (int i = 1; i < strata.length; ++i)
+            strata[i] += strata[i - 1];
+        int[] next = Arrays.copyOf(strata, strata.length - 1);
+        int[] users = Arrays.copyOf(trainUsers, nTrain);
+        int[] items = Arrays.copyOf(trainItems, nTrain);
+        double[] ratings = Arrays.copyOf(trainRatings, nTrain);
+        for (int i = 0; i < nTrain; ++i) {
+            int pos = next[stratumOf[i]]++;
+            trainUsers[pos] = users[i];
+            trainItems[pos] = items[i];
+            trainRatings[pos] = ratings[i];
+        }
+        return strata;
+    }
+    
+    /**
+     * Trains the ratings of one stratum, in a thread of the batch training.
+     */
+    protected class StratumTrainer implements Callable<Integer> {
+        final private int[] trainUsers;
+        final private int[] trainItems;
+        final private double[] trainRatings;
+        final private int from;
+        final private int to;
+
+        public StratumTrainer(int[] trainUsers, int[] trainItems, double[] trainRatings, int from, int to) {
+            this.trainUsers = trainUsers;
+            this.trainItems = trainItems;
+            this.trainRatings = trainRatings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer call() {
+            trainRatings(trainUsers, trainItems, trainRatings, from, to);
+            return to - from;
+        }
+    }
+    
+    /**
+     * @return a copy of the features of the user, null if it has none
+     */
     public float[] getUserFeatures(int userID) {
-        return userFeature.get(userID);
+        int offset = userOffset(userID);
+        return (offset != -1 ? Arrays.copyOfRange(userFeature, offset, offset + nFeatures) : null);
     }
 
+    /**
+     * @return a copy of the features of the item, null if it has none
+     */
     public float[] getItemFeatures(int itemID) {
-        return itemFeature.get(itemID);
+        int offset = itemOffset(itemID);
+        return (offset != -1 ? Arrays.copyOfRange(itemFeature, offset, offset + nFeatures) : null);
     }
 
     public int getNumFeatures() {
@@ -360,12 +588,12 @@ public class BRISMFPredictor implements Updatable {
 
     @Override
     public void updateRemoveUser(int userID) {
-        userFeature.remove(userID);
+        userRows.remove(userID);
     }
 
     @Override
     public void updateRemoveItem(int itemID) {
-        itemFeature.remove(itemID);
+        itemRows.remove(itemID);
     }
     
     //We retrain the user/item separately, depending on a probability
@@ -379,51 +607,37 @@ public class BRISMFPredictor implements Updatable {
         double prob2 = Math.pow(0.99, nItm);
 
         if (nUsr < 5 || rnd.nextDouble() < prob1) {
-            SparseVector usrRats = data.getRatingsUser(userID);
-            ArrayList<Integer> itm = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            
-            //Train user
-            boolean found = false;
-            Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                itm.add(p.getFirst());
-                if (p.getFirst() == itemID) {
-                    found = true;
-                    rat.add(rating);
-                }
-                else rat.add(p.getSecond());
-            }
-            if (!found) {
-                itm.add(itemID);
-                rat.add(rating);
-            }
-            trainUser(userID, itm, rat);
+            //Train user, with the new rating
+            ensureRatedCapacity((int)nUsr + 1);
+            int n = data.getRatingsUser(userID, ratedIDs, ratedValues);
+            n = setRated(n, itemID, rating);
+            trainUser(userID, n, nIterations);
         }
         
         if (nItm < 5 || rnd.nextDouble() < prob2) {
-            SparseVector itmRats = data.getRatingsItem(itemID);
-            //Train item
-            Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-            boolean found = false;
-            ArrayList<Integer> usr = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                usr.add(p.getFirst());
-                if (p.getFirst() == userID) {
-                    found = true;
-                    rat.add(rating);
-                }
-                else rat.add(p.getSecond());
-            }
-            if (!found) {
-                usr.add(itemID);
-                rat.add(rating);
+            //Train item, with the new rating
+            ensureRatedCapacity((int)nItm + 1);
+            int n = data.getRatingsItem(itemID, ratedIDs, ratedValues);
+            n = setRated(n, userID, rating);
+            trainItem(itemID, n, nIterations);
+        }
+    }
+    
+    /**
+     * Sets the rating of an id among the first n ratings of the rating
+     * buffers, appending it if it is not there.
+     * @return the number of ratings in the buffers
+     */
+    private int setRated(int n, int id, double rating) {
+        for (int i = 0; i < n; ++i) {
+            if (ratedIDs[i] == id) {
+                ratedValues[i] = rating;
+                return n;
             }
-            trainItem(itemID, usr, rat);
         }
+        ratedIDs[n] = id;
+        ratedValues[n] = rating;
+        return n + 1;
     }
 
     @Override
@@ -0,0 +1,225 @@
+/*
+ *    IntIndexMap.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Assigns dense indices to int keys, such as user or item ids, so that the
+ * data of every key can be kept in rows of primitive arrays. The keys are
+ * stored in an open addressing hash table with linear probing, without
+ * boxing. The index of a removed key is given again to the next key added,
+ * so the indices stay below the number of keys ever present at once.
+ */
+public class IntIndexMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+
+    /**
+     * The index of the key in the same slot, -1 if the slot is empty.
+     */
+    private int[] indices;
+
+    private int size;
+
+    /**
+     * The number of indices given so far, including the free ones.
+     */
+    private int numIndices;
+
+    private int[] freeIndices;
+
+    private int numFree;
+
+    public IntIndexMap() {
+        clear();
+    }
+
+    /**
+     * @return the index of the key, -1 if it is not in the map
+     */
+    public int get(int key) {
+        int mask = indices.length - 1;
+        int slot = Hash.hashCode(key) & mask;
+        while (indices[slot] != -1) {
+            if (keys[slot] == key) return indices[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != -1;
+    }
+
+    /**
+     * Adds the key if it is not in the map.
+     *
+     * @return the index of the key
+     */
+    public int add(int key) {
+        int mask = indices.length - 1;
+        int slot = Hash.hashCode(key) & mask;
+        while (indices[slot] != -1) {
+            if (keys[slot] == key) return indices[slot];
+            slot = (slot + 1) & mask;
+        }
+        int index = (numFree > 0 ? freeIndices[--numFree] : numIndices++);
+        keys[slot] = key;
+        indices[slot] = index;
+        if (++size * 2 > indices.length) rehash(indices.length * 2);
+        return index;
+    }
+
+    /**
+     * Removes the key. Its index is given to the next key added.
+     *
+     * @return the index the key had, -1 if it was not in the map
+     */
+    public int remove(int key) {
+        int mask = indices.length - 1;
+        int slot = Hash.hashCode(key) & mask;
+        while (indices[slot] != -1 && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        int index = indices[slot];
+        if (index == -1) return -1;
+
+        // shift back the following keys of the run, so that no probe stops
+        // at the emptied slot
+        int empty = slot;
+        slot = (slot + 1) & mask;
+        while (indices[slot] != -1) {
+            int home = Hash.hashCode(keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - empty) & mask)) {
+                keys[empty] = keys[slot];
+                indices[empty] = indices[slot];
+                empty = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        indices[empty] = -1;
+        --size;
+
+        if (numFree == freeIndices.length) {
+            int[] grown = new int[Math.max(INITIAL_CAPACITY, numFree * 2)];
+            System.arraycopy(freeIndices, 0, grown, 0, numFree);
+            freeIndices = grown;
+        }
+        freeIndices[numFree++] = index;
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return an upper bound of the indices given, i.e. the number of rows
+     * the owner of the map needs
+     */
+    public int indexBound() {
+        return numIndices;
+    }
+
+    public final void clear() {
+        keys = new int[INITIAL_CAPACITY];
+        indices = new int[INITIAL_CAPACITY];
+        Arrays.fill(indices, -1);
+        size = 0;
+        numIndices = 0;
+        freeIndices = new int[0];
+        numFree = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldIndices = indices;
+        keys = new int[capacity];
+        indices = new int[capacity];
+        Arrays.fill(indices, -1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldIndices.length; ++i) {
+            if (oldIndices[i] == -1) continue;
+            int slot = Hash.hashCode(oldKeys[i]) & mask;
+            while (indices[slot] != -1)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            indices[slot] = oldIndices[i];
+        }
+    }
+
+    /**
+     * @return a view of the keys of the map
+     */
+    public Set<Integer> keySet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new KeyIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return (o instanceof Integer) && containsKey((Integer) o);
+            }
+        };
+    }
+
+    protected class KeyIterator implements Iterator<Integer> {
+        private int next = advance(-1);
+
+        private int advance(int from) {
+            int i = from + 1;
+            while (i < indices.length && indices[i] == -1) ++i;
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < indices.length;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int key = keys[next];
+            next = advance(next);
+            return key;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -165,7 +165,7 @@ public class ConceptDriftRealStream extends AbstractOptionHandler implements
         numberInstanceStream++;
         double numclass = 0.0;
         double x = -4.0 * (double) (numberInstanceStream - this.positionOption.getValue()) / (double) this.widthOption.getValue();
-        double probabilityDrift = 1.0 / (1.0 + Math.exp(x));
+        double probabilityDrift = ConceptDriftStream.probabilityDrift(x);
         if (this.random.nextDouble() > probabilityDrift) {
             if (this.inputStream.hasMoreInstances() == false) {
                 this.inputStream.restart();
@@ -125,7 +125,7 @@ public class ConceptDriftStream extends AbstractOptionHandler implements
     public Example nextInstance() {
         numberInstanceStream++;
         double x = -4.0 * (double) (numberInstanceStream - this.positionOption.getValue()) / (double) this.widthOption.getValue();
-        double probabilityDrift = 1.0 / (1.0 + Math.exp(x));
+        double probabilityDrift = probabilityDrift(x);
         if (this.random.nextDouble() > probabilityDrift) {
             return this.inputStream.nextInstance();
         } else {
@@ -134,6 +134,28 @@ public class ConceptDriftStream extends AbstractOptionHandler implements
 
     }
 
+    /**
+     * Gets the probability 1 / (1 + exp(x)) of an instance of the drift
+     * stream, to be compared with a value of <code>Random.nextDouble</code>.
+     * The exponential is only computed around the drift: after it the
+     * probability is exactly 1, and long before it the probability is below
+     * 2^-53, the smallest non-zero value of <code>nextDouble</code>, so
+     * taking it as 0 gives the same comparisons.
+     *
+     * @param x the position relative to the drift, -4 (n - p) / w
+     * @return the probability of the drift stream
+     */
+    protected static double probabilityDrift(double x) {
+        if (x <= -40.0) {
+            // exp(x) is below half an ulp of 1
+            return 1.0;
+        }
+        if (x >= 40.0) {
+            return 0.0;
+        }
+        return 1.0 / (1.0 + Math.exp(x));
+    }
+
     @Override
     public void restart() {
         this.inputStream.restart();
@@ -0,0 +1,243 @@
+/*
+ *    ParallelGeneratorStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.streams.generators.InstanceGenerator;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream generating the instances of a generator in blocks, each block from
+ * its own random number generator. The seed of a block only depends on the
+ * block seed and the index of the block, so the blocks of a stationary
+ * generator are generated in parallel, several blocks ahead, and the stream
+ * is the same whatever the number of threads. The blocks of generators with
+ * drift are generated in order, on the calling thread.
+ *
+ * The instances differ from the ones of the generator itself, which draws all
+ * of them from a single random number generator.
+ *
+ * @version $Revision: 1 $
+ */
+public class ParallelGeneratorStream extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "Generates the instances of a generator in blocks, in parallel.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption generatorOption = new ClassOption("generator", 'g',
+            "Generator producing the instances.", InstanceGenerator.class,
+            "RandomRBFGenerator");
+
+    public IntOption blockSizeOption = new IntOption("blockSize", 'b',
+            "The number of instances generated from the same random number generator.",
+            1000, 1, Integer.MAX_VALUE);
+
+    public IntOption blockRandomSeedOption = new IntOption(
+            "blockRandomSeed", 'r',
+            "Seed for the random number generators of the blocks.", 1);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "The number of blocks generated in parallel (-1 = as much as possible), for stationary generators.",
+            1, -1, Integer.MAX_VALUE);
+
+    protected InstanceGenerator generator;
+
+    /** The block the instances are read from */
+    protected InstanceExample[] block;
+
+    protected int blockPosition;
+
+    /** The index of the block after the current one */
+    protected long nextBlockIndex;
+
+    protected transient ExecutorService executor;
+
+    /** The blocks being generated, from the one at nextBlockIndex on */
+    protected transient LinkedList<Future<InstanceExample[]>> pendingBlocks;
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        this.generator = (InstanceGenerator) getPreparedClassOption(this.generatorOption);
+        restart();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.generator.getHeader();
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.generator.estimatedRemainingInstances();
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.generator.hasMoreInstances();
+    }
+
+    @Override
+    public Example<Instance> nextInstance() {
+        if (this.blockPosition == this.block.length) {
+            nextBlock();
+        }
+        return this.block[this.blockPosition++];
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        cleanThreads();
+        this.generator.restart();
+        this.block = new InstanceExample[this.blockSizeOption.getValue()];
+        this.blockPosition = this.block.length;
+        this.nextBlockIndex = 0;
+    }
+
+    /**
+     * Moves on to the next block. Its array is the one of the block read
+     * last, which is reused for a block being generated.
+     */
+    protected void nextBlock() {
+        if (this.executor == null && this.generator.isStationary()) {
+            initThreads();
+        }
+        if (this.executor == null) {
+            generateBlock(this.nextBlockIndex, this.block);
+        } else {
+            InstanceExample[] consumed = this.block;
+            try {
+                this.block = this.pendingBlocks.removeFirst().get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Could not generate a block of instances.", e);
+            }
+            submitBlock(this.nextBlockIndex + this.pendingBlocks.size() + 1, consumed);
+        }
+        this.nextBlockIndex++;
+        this.blockPosition = 0;
+    }
+
+    /**
+     * Fills an array with the instances of a block.
+     *
+     * @param blockIndex the index of the block
+     * @param instances the array to fill
+     */
+    protected void generateBlock(long blockIndex, InstanceExample[] instances) {
+        Random random = new Random(blockSeed(blockIndex));
+        for (int i = 0; i < instances.length; i++) {
+            instances[i] = this.generator.nextInstance(random);
+        }
+    }
+
+    /**
+     * Gets the seed of a block, by mixing the block seed and the index of the
+     * block so that the random number generators of neighbouring blocks are
+     * unrelated.
+     *
+     * @param blockIndex the index of the block
+     * @return the seed of its random number generator
+     */
+    protected long blockSeed(long blockIndex) {
+        return mix(mix(this.blockRandomSeedOption.getValue())
+                + blockIndex * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * The finalizer of SplitMix64.
+     */
+    protected static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    protected void submitBlock(final long blockIndex, final InstanceExample[] instances) {
+        this.pendingBlocks.addLast(this.executor.submit(() -> {
+            generateBlock(blockIndex, instances);
+            return instances;
+        }));
+    }
+
+    /**
+     * Starts the threads if more than one job is requested, and the
+     * generation of the blocks following the current one: two per thread.
+     */
+    protected void initThreads() {
+        int numberOfJobs;
+        if (this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = this.numberOfJobsOption.getValue();
+        if (numberOfJobs <= 1) {
+            return;
+        }
+        this.executor = Executors.newFixedThreadPool(numberOfJobs, runnable -> {
+            // the stream is never closed, so the threads must not keep the
+            // virtual machine running
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingBlocks = new LinkedList<>();
+        for (int i = 0; i < 2 * numberOfJobs; i++) {
+            submitBlock(this.nextBlockIndex + i,
+                    new InstanceExample[this.blockSizeOption.getValue()]);
+        }
+    }
+
+    /**
+     * Stops the threads, dropping the blocks being generated.
+     */
+    public void cleanThreads() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+            this.pendingBlocks = null;
+        }
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
@@ -92,8 +92,14 @@ public class RecurrentConceptDriftStream extends ConceptDriftStream {
         //As long as the probabilistic function is recursive, it depends
         //on the number of repetitions established in the options
         for (int iNumRep = 0; iNumRep < this.numRepOption.getValue(); iNumRep++){
-            probabilityDrift += 1.0 / (1.0 + Math.exp(-4*(x-iPos)/this.widthOption.getValue())) - 
-                1.0 / (1.0 + Math.exp(-4*(x-(iPos + this.widthRecurrenceOption.getValue()))/this.widthOption.getValue()));
+            double start = -4*(x-iPos)/this.widthOption.getValue();
+            double end = -4*(x-(iPos + this.widthRecurrenceOption.getValue()))/this.widthOption.getValue();
+            //Repetitions that are over (both sigmoids are exactly 1) or far
+            //ahead (both are exactly 0, exp overflows) add nothing
+            if (!(start <= -40.0 && end <= -40.0) && !(start >= 710.0 && end >= 710.0)) {
+                probabilityDrift += 1.0 / (1.0 + Math.exp(start)) - 
+                    1.0 / (1.0 + Math.exp(end));
+            }
             
             iPos += this.widthRecurrenceOption.getValue() + this.stabPeriodOption.getValue();
         }
@@ -3,6 +3,7 @@
 package moa.streams.filters;
 
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.*;
 import moa.core.FastVector;
 import moa.core.InstanceExample;
@@ -10,11 +11,25 @@ import moa.streams.InstanceStream;
 
 import java.util.Arrays;
 import java.util.Random;
-import java.util.stream.IntStream;
 
 /**
  *    Filter to perform random projection to reduce the number of attributes. It applies
- *    a Gaussian matrix on features to project them into a lower-dimensional space.
+ *    a random matrix on features to project them into a lower-dimensional space.
+ *
+ *    <p>Four projections are available:</p>
+ *    <ul>
+ *    <li>Gaussian: dense matrix with N(0,1) entries.</li>
+ *    <li>Sparse: Achlioptas matrix, entries are sqrt(3) * {+1, 0, -1} with
+ *    probabilities {1/6, 2/3, 1/6}.</li>
+ *    <li>VerySparse: Li, Hastie and Church matrix, entries are sqrt(s) * {+1, 0, -1}
+ *    with probabilities {1/2s, 1 - 1/s, 1/2s} and s = sqrt(number of input features).</li>
+ *    <li>SRHT: subsampled randomized Hadamard transform, random sign flips followed
+ *    by a fast Walsh-Hadamard transform and a random choice of output coordinates.</li>
+ *    </ul>
+ *    All matrices have unit variance entries, so their outputs share the same scale.
+ *    The matrix based projections are stored column-wise and only the non-zero values
+ *    of the input instance are visited, so a projection costs O(nnz * d) for Gaussian,
+ *    less for the sparse matrices and O(n log n) for SRHT.
  *
  *   @author Maroua Bahri
  */
@@ -24,36 +39,72 @@ public class RandomProjectionFilter extends AbstractStreamFilter {
 
     public IntOption dim = new IntOption("OutputFeatureDimension", 'd',
             "the target feature dimension.", 10);
+
+    public MultiChoiceOption projectionTypeOption = new MultiChoiceOption(
+            "projectionType", 'p', "The type of random matrix used for the projection.",
+            new String[]{"Gaussian", "Sparse", "VerySparse", "SRHT"},
+            new String[]{"Dense Gaussian matrix",
+                "Achlioptas sparse matrix (density 1/3)",
+                "Very sparse matrix (density 1/sqrt(n))",
+                "Subsampled randomized Hadamard transform"}, 0);
+
+    public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
+            "Seed for the random projection matrix.", 1);
+
     protected InstancesHeader streamHeader;
+
+    /** Number of input features, i.e. number of attributes without the class. */
+    protected int numInputs;
+
+    /** Dense Gaussian matrix stored column-wise: GaussMatrix[input][output]. */
     protected double[][] GaussMatrix ;
 
+    /** Sparse matrices: output indices of the non-zero entries of each input column. */
+    protected int[][] sparseIndices;
+
+    /** Sparse matrices: signs of the non-zero entries of each input column. */
+    protected boolean[][] sparseNegative;
+
+    /** Scale of the non-zero entries of the sparse matrices. */
+    protected double sparseScale;
+
+    /** SRHT: random sign flip of each input feature. */
+    protected boolean[] hadamardNegative;
+
+    /** SRHT: coordinates of the Hadamard transform kept as output. */
+    protected int[] hadamardRows;
+
+    /** SRHT: scratch buffer of size power of two holding the transform. */
+    protected double[] hadamardBuffer;
+
 
     public String getPurposeString() { return "Reduces the number of input features using random projection.";  }
 
     @Override
     protected void restartImpl() {
         this.streamHeader = null;
+        this.GaussMatrix = null;
+        this.sparseIndices = null;
+        this.sparseNegative = null;
+        this.hadamardNegative = null;
+        this.hadamardRows = null;
+        this.hadamardBuffer = null;
     }
 
     @Override
     public InstancesHeader getHeader() {
-        Instance sparseInstance = (Instance) this.inputStream.nextInstance().getData();
-        Random r = new Random(System.currentTimeMillis());
-        this.GaussMatrix = new double[this.dim.getValue()][sparseInstance.numAttributes()-1] ;
-        for(int i = 0 ; i < this.dim.getValue() ; i++){
-            for(int j = 0; j < sparseInstance.numAttributes()-1 ; j++){
-                this.GaussMatrix[i][j]= r.nextGaussian();
-            }
-        }
-
         if (streamHeader == null) {
+            InstancesHeader inputHeader = this.inputStream.getHeader();
+            this.numInputs = inputHeader.numAttributes() - 1;
+            initProjection();
+
             //Create a new header
             FastVector attributes = new FastVector();
             for (int i = 0; i < this.dim.getValue(); i++) {
                 attributes.addElement(new Attribute("numeric" + (i + 1)));
             }
 
-            attributes.addElement(sparseInstance.classAttribute());
+            attributes.addElement(inputHeader.classAttribute());
             this.streamHeader = new InstancesHeader(new Instances(
                     getCLICreationString(InstanceStream.class), attributes, 0));
             this.streamHeader.setClassIndex(this.streamHeader.numAttributes() - 1);
@@ -66,9 +117,12 @@ public class RandomProjectionFilter extends AbstractStreamFilter {
     @Override
     public InstanceExample nextInstance() {
         Instance sparseInstance = (Instance) this.inputStream.nextInstance().getData();
+        if (this.streamHeader == null) {
+            getHeader();
+        }
 
         return new InstanceExample(transformedInstance(sparseInstance,
-                randomProjection(sparseInstance,this.GaussMatrix)));
+                randomProjection(sparseInstance)));
     }
 
 
@@ -91,27 +145,166 @@ public class RandomProjectionFilter extends AbstractStreamFilter {
         // TODO Auto-generated method stub
     }
 
-    public  double[] randomProjection(Instance instance, double[][] gm) {
+    /**
+     * Draws the random matrix of the selected projection type for
+     * <code>numInputs</code> input features.
+     */
+    protected void initProjection() {
+        Random r = new Random(this.randomSeedOption.getValue());
+        int d = this.dim.getValue();
+        switch (this.projectionTypeOption.getChosenIndex()) {
+            case 1:
+                initSparseProjection(r, 3.0);
+                break;
+            case 2:
+                initSparseProjection(r, Math.max(1.0, Math.sqrt(this.numInputs)));
+                break;
+            case 3:
+                initHadamardProjection(r);
+                break;
+            default:
+                this.GaussMatrix = new double[this.numInputs][d];
+                for (int j = 0; j < this.numInputs; j++) {
+                    for (int i = 0; i < d; i++) {
+                        this.GaussMatrix[j][i] = r.nextGaussian();
+                    }
+                }
+        }
+    }
 
-        double [] denseValues;
+    /**
+     * Sparse sign matrix in which each entry is non-zero with probability 1/s.
+     */
+    protected void initSparseProjection(Random r, double s) {
+        int d = this.dim.getValue();
+        this.sparseScale = Math.sqrt(s);
+        this.sparseIndices = new int[this.numInputs][];
+        this.sparseNegative = new boolean[this.numInputs][];
+        int[] indices = new int[d];
+        boolean[] negative = new boolean[d];
+        for (int j = 0; j < this.numInputs; j++) {
+            int nnz = 0;
+            for (int i = 0; i < d; i++) {
+                if (r.nextDouble() * s < 1.0) {
+                    indices[nnz] = i;
+                    negative[nnz] = r.nextBoolean();
+                    nnz++;
+                }
+            }
+            this.sparseIndices[j] = new int[nnz];
+            this.sparseNegative[j] = new boolean[nnz];
+            System.arraycopy(indices, 0, this.sparseIndices[j], 0, nnz);
+            System.arraycopy(negative, 0, this.sparseNegative[j], 0, nnz);
+        }
+    }
 
-        double[] ins = new double [instance.numAttributes()-1];
-        for(int i = 0 ; i < instance.numAttributes()-1 ; i++) {
-            ins[i] = instance.value(i);
+    /**
+     * Random signs and output coordinates of the subsampled randomized
+     * Hadamard transform. Output coordinates are sampled without replacement
+     * as long as the output is not larger than the padded input.
+     */
+    protected void initHadamardProjection(Random r) {
+        int d = this.dim.getValue();
+        int n = 1;
+        while (n < this.numInputs) {
+            n <<= 1;
+        }
+        this.hadamardBuffer = new double[n];
+        this.hadamardNegative = new boolean[this.numInputs];
+        for (int j = 0; j < this.numInputs; j++) {
+            this.hadamardNegative[j] = r.nextBoolean();
+        }
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
         }
-        denseValues = multiply(gm, ins);
+        this.hadamardRows = new int[d];
+        for (int i = 0; i < d; i++) {
+            // partial Fisher-Yates shuffle, restarted when the output exceeds n
+            int k = i % n;
+            int swap = k + r.nextInt(n - k);
+            int tmp = permutation[k];
+            permutation[k] = permutation[swap];
+            permutation[swap] = tmp;
+            this.hadamardRows[i] = permutation[k];
+        }
+    }
 
+    /**
+     * Projects the input features of an instance. Only the non-zero values
+     * of the instance are visited.
+     *
+     * @param instance the instance to project
+     * @return the projected values, of length <code>OutputFeatureDimension</code>
+     */
+    public double[] randomProjection(Instance instance) {
+        if (this.streamHeader == null) {
+            getHeader();
+        }
+        double[] denseValues = new double[this.dim.getValue()];
+        int classIndex = instance.classIndex();
+        boolean hadamard = this.hadamardBuffer != null;
+        if (hadamard) {
+            Arrays.fill(this.hadamardBuffer, 0.0);
+        }
+        for (int p = 0; p < instance.numValues(); p++) {
+            int j = instance.index(p);
+            if (j == classIndex) {
+                continue;
+            }
+            double value = instance.valueSparse(p);
+            if (value == 0.0) {
+                continue;
+            }
+            if (classIndex >= 0 && j > classIndex) {
+                j--;
+            }
+            if (j >= this.numInputs) {
+                continue;
+            }
+            if (hadamard) {
+                this.hadamardBuffer[j] = this.hadamardNegative[j] ? -value : value;
+            } else if (this.GaussMatrix != null) {
+                double[] column = this.GaussMatrix[j];
+                for (int i = 0; i < column.length; i++) {
+                    denseValues[i] += column[i] * value;
+                }
+            } else {
+                int[] indices = this.sparseIndices[j];
+                boolean[] negative = this.sparseNegative[j];
+                double scaled = this.sparseScale * value;
+                for (int i = 0; i < indices.length; i++) {
+                    denseValues[indices[i]] += negative[i] ? -scaled : scaled;
+                }
+            }
+        }
+        if (hadamard) {
+            fastWalshHadamardTransform(this.hadamardBuffer);
+            for (int i = 0; i < denseValues.length; i++) {
+                denseValues[i] = this.hadamardBuffer[this.hadamardRows[i]];
+            }
+        }
         return denseValues;
     }
 
-    public static double[] multiply(double[][] matrix, double[] vector) {
-        return Arrays.stream(matrix)
-                .mapToDouble(row ->
-                        IntStream.range(0, row.length)
-                                .mapToDouble(col -> row[col] * vector[col])
-                                .sum()
-                ).toArray();
+    /**
+     * In-place unnormalized fast Walsh-Hadamard transform.
+     *
+     * @param values array whose length is a power of two
+     */
+    public static void fastWalshHadamardTransform(double[] values) {
+        int n = values.length;
+        for (int h = 1; h < n; h <<= 1) {
+            for (int i = 0; i < n; i += h << 1) {
+                for (int j = i; j < i + h; j++) {
+                    double a = values[j];
+                    double b = values[j + h];
+                    values[j] = a + b;
+                    values[j + h] = a - b;
+                }
+            }
+        }
     }
 
 
-}
\ No newline at end of file
+}
@@ -44,7 +44,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
  * @version $Revision: 7 $
  */
 public class HyperplaneGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        InstanceGenerator, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -131,13 +131,18 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        return nextInstance(this.instanceRandom);
+    }
+
+    @Override
+    public InstanceExample nextInstance(Random random) {
 
         int numAtts = this.numAttsOption.getValue();
         double[] attVals = new double[numAtts + 1];
         double sum = 0.0;
         double sumWeights = 0.0;
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = this.instanceRandom.nextDouble();
+            attVals[i] = random.nextDouble();
             sum += this.weights[i] * attVals[i];
             sumWeights += this.weights[i];
         }
@@ -148,22 +153,31 @@ public class HyperplaneGenerator extends AbstractOptionHandler implements
             classLabel = 0;
         }
         //Add Noise
-        if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+        if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
             classLabel = (classLabel == 0 ? 1 : 0);
         }
 
         Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(getHeader());
         inst.setClassValue(classLabel);
-        addDrift();
+        addDrift(random);
         return new InstanceExample(inst);
     }
 
-    private void addDrift() {
+    /**
+     * The direction of the drift is updated after every instance, so the
+     * generator is only stationary without drifting attributes.
+     */
+    @Override
+    public boolean isStationary() {
+        return this.numDriftAttsOption.getValue() == 0;
+    }
+
+    private void addDrift(Random random) {
         for (int i = 0; i < this.numDriftAttsOption.getValue(); i++) {
             this.weights[i] += (double) ((double) sigma[i]) * ((double) this.magChangeOption.getValue());
             if (//this.weights[i] >= 1.0 || this.weights[i] <= 0.0 ||
-                    (1 + (this.instanceRandom.nextInt(100))) <= this.sigmaPercentageOption.getValue()) {
+                    (1 + (random.nextInt(100))) <= this.sigmaPercentageOption.getValue()) {
                 this.sigma[i] *= -1;
             }
         }
@@ -0,0 +1,52 @@
+/*
+ *    InstanceGenerator.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams.generators;
+
+import java.util.Random;
+
+import moa.core.InstanceExample;
+import moa.streams.InstanceStream;
+
+/**
+ * Stream generator that can draw its instances from any random number
+ * generator. The stream itself uses the generator seeded with its instance
+ * seed, <code>ParallelGeneratorStream</code> gives each block of instances
+ * its own random number generator.
+ *
+ * @version $Revision: 1 $
+ */
+public interface InstanceGenerator extends InstanceStream {
+
+    /**
+     * Generates the next instance of the stream from the given random number
+     * generator instead of the one of the stream.
+     *
+     * @param random the random number generator
+     * @return the instance
+     */
+    InstanceExample nextInstance(Random random);
+
+    /**
+     * Gets whether the generator stays the same from one instance to the
+     * next. Only the instances of stationary generators can be generated
+     * concurrently, the others must be generated in order.
+     *
+     * @return true if generating an instance does not change the generator
+     */
+    boolean isStationary();
+}
@@ -46,7 +46,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class LEDGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        InstanceGenerator, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -127,12 +127,17 @@ public class LEDGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        return nextInstance(this.instanceRandom);
+    }
+
+    @Override
+    public InstanceExample nextInstance(Random random) {
         InstancesHeader header = getHeader();
         Instance inst = new DenseInstance(header.numAttributes());
         inst.setDataset(header);
-        int selected = this.instanceRandom.nextInt(10);
+        int selected = random.nextInt(10);
         for (int i = 0; i < 7; i++) {
-            if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+            if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
                 inst.setValue(i, originalInstances[selected][i] == 0 ? 1 : 0);
             } else {
                 inst.setValue(i, originalInstances[selected][i]);
@@ -140,13 +145,18 @@ public class LEDGenerator extends AbstractOptionHandler implements
         }
         if (!this.suppressIrrelevantAttributesOption.isSet()) {
             for (int i = 0; i < NUM_IRRELEVANT_ATTRIBUTES; i++) {
-                inst.setValue(i + 7, this.instanceRandom.nextInt(2));
+                inst.setValue(i + 7, random.nextInt(2));
             }
         }
         inst.setClassValue(selected);
         return new InstanceExample(inst);
     }
 
+    @Override
+    public boolean isStationary() {
+        return true;
+    }
+
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
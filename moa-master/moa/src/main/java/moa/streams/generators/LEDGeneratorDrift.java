@@ -19,6 +19,8 @@
  */
 package moa.streams.generators;
 
+import java.util.Random;
+
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.core.InstanceExample;
@@ -71,13 +73,13 @@ public class LEDGeneratorDrift extends LEDGenerator {
     }
 
     @Override
-    public InstanceExample nextInstance() {
+    public InstanceExample nextInstance(Random random) {
         InstancesHeader header = getHeader();
         Instance inst = new DenseInstance(header.numAttributes());
         inst.setDataset(header);
-        int selected = this.instanceRandom.nextInt(10);
+        int selected = random.nextInt(10);
         for (int i = 0; i < 7; i++) {
-            if ((1 + (this.instanceRandom.nextInt(100))) <= this.noisePercentageOption.getValue()) {
+            if ((1 + (random.nextInt(100))) <= this.noisePercentageOption.getValue()) {
                 inst.setValue(this.numberAttribute[i], originalInstances[selected][i] == 0 ? 1 : 0);
             } else {
                 inst.setValue(this.numberAttribute[i], originalInstances[selected][i]);
@@ -85,7 +87,7 @@ public class LEDGeneratorDrift extends LEDGenerator {
         }
         if (!this.suppressIrrelevantAttributesOption.isSet()) {
             for (int i = 0; i < NUM_IRRELEVANT_ATTRIBUTES; i++) {
-                inst.setValue(this.numberAttribute[i + 7], this.instanceRandom.nextInt(2));
+                inst.setValue(this.numberAttribute[i + 7], random.nextInt(2));
             }
         }
         inst.setClassValue(selected);
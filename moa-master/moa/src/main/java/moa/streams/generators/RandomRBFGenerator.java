@@ -47,7 +47,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomRBFGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        InstanceGenerator, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -89,6 +89,8 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
 
     protected double[] centroidWeights;
 
+    protected double[] centroidCumulativeWeights;
+
     protected Random instanceRandom;
 
     @Override
@@ -127,19 +129,24 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
-        Centroid centroid = this.centroids[MiscUtils.chooseRandomIndexBasedOnWeights(this.centroidWeights,
-                this.instanceRandom)];
+        return nextInstance(this.instanceRandom);
+    }
+
+    @Override
+    public InstanceExample nextInstance(Random random) {
+        Centroid centroid = this.centroids[MiscUtils.chooseRandomIndexBasedOnCumulativeWeights(
+                this.centroidCumulativeWeights, random)];
         int numAtts = this.numAttsOption.getValue();
         double[] attVals = new double[numAtts + 1];
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = (this.instanceRandom.nextDouble() * 2.0) - 1.0;
+            attVals[i] = (random.nextDouble() * 2.0) - 1.0;
         }
         double magnitude = 0.0;
         for (int i = 0; i < numAtts; i++) {
             magnitude += attVals[i] * attVals[i];
         }
         magnitude = Math.sqrt(magnitude);
-        double desiredMag = this.instanceRandom.nextGaussian()
+        double desiredMag = random.nextGaussian()
                 * centroid.stdDev;
         double scale = desiredMag / magnitude;
         for (int i = 0; i < numAtts; i++) {
@@ -151,6 +158,11 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
         return new InstanceExample(inst);
     }
 
+    @Override
+    public boolean isStationary() {
+        return true;
+    }
+
     protected void generateHeader() {
         FastVector attributes = new FastVector();
         for (int i = 0; i < this.numAttsOption.getValue(); i++) {
@@ -181,6 +193,7 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
             this.centroids[i].stdDev = modelRand.nextDouble();
             this.centroidWeights[i] = modelRand.nextDouble();
         }
+        this.centroidCumulativeWeights = MiscUtils.cumulativeSums(this.centroidWeights);
     }
 
     @Override
@@ -52,26 +52,32 @@ public class RandomRBFGeneratorDrift extends RandomRBFGenerator {
     protected double[][] speedCentroids;
 
     @Override
-    public InstanceExample nextInstance() {
+    public InstanceExample nextInstance(Random random) {
         //Update Centroids with drift
-        int len = this.numDriftCentroidsOption.getValue();
-        if (len > this.centroids.length) {
-            len = this.centroids.length;
-        }
+        int len = this.speedCentroids.length;
+        double speedChange = this.speedChangeOption.getValue();
         for (int j = 0; j < len; j++) {
-            for (int i = 0; i < this.numAttsOption.getValue(); i++) {
-                this.centroids[j].centre[i] += this.speedCentroids[j][i] * this.speedChangeOption.getValue();
-                if (this.centroids[j].centre[i] > 1) {
-                    this.centroids[j].centre[i] = 1;
-                    this.speedCentroids[j][i] = -this.speedCentroids[j][i];
+            double[] centre = this.centroids[j].centre;
+            double[] speed = this.speedCentroids[j];
+            for (int i = 0; i < centre.length; i++) {
+                centre[i] += speed[i] * speedChange;
+                if (centre[i] > 1) {
+                    centre[i] = 1;
+                    speed[i] = -speed[i];
                 }
-                if (this.centroids[j].centre[i] < 0) {
-                    this.centroids[j].centre[i] = 0;
-                    this.speedCentroids[j][i] = -this.speedCentroids[j][i];
+                if (centre[i] < 0) {
+                    centre[i] = 0;
+                    speed[i] = -speed[i];
                 }
             }
         }
-        return super.nextInstance();
+        return super.nextInstance(random);
+    }
+
+    @Override
+    public boolean isStationary() {
+        return this.speedCentroids.length == 0
+                || this.speedChangeOption.getValue() == 0.0;
     }
 
     @Override
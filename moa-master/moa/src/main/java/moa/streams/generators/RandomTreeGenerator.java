@@ -48,7 +48,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomTreeGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        InstanceGenerator, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -149,20 +149,31 @@ public class RandomTreeGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
-        double[] attVals = new double[this.numNominalsOption.getValue()
-                + this.numNumericsOption.getValue()];
+        return nextInstance(this.instanceRandom);
+    }
+
+    @Override
+    public InstanceExample nextInstance(Random random) {
+        int numNominals = this.numNominalsOption.getValue();
+        int numValsPerNominal = this.numValsPerNominalOption.getValue();
         InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
-        for (int i = 0; i < attVals.length; i++) {
-            attVals[i] = i < this.numNominalsOption.getValue() ? this.instanceRandom.nextInt(this.numValsPerNominalOption.getValue())
-                    : this.instanceRandom.nextDouble();
-            inst.setValue(i, attVals[i]);
+        // the class value goes in the last slot, after the attributes
+        double[] attVals = new double[header.numAttributes()];
+        for (int i = 0; i < attVals.length - 1; i++) {
+            attVals[i] = i < numNominals ? random.nextInt(numValsPerNominal)
+                    : random.nextDouble();
         }
+        Instance inst = new DenseInstance(1.0, attVals);
         inst.setDataset(header);
         inst.setClassValue(classifyInstance(this.treeRoot, attVals));
         return new InstanceExample(inst);
     }
 
+    @Override
+    public boolean isStationary() {
+        return true;
+    }
+
     protected int classifyInstance(Node node, double[] attVals) {
         if (node.children == null) {
             return node.classLabel;
@@ -46,7 +46,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class WaveformGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        InstanceGenerator, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -120,10 +120,15 @@ public class WaveformGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        return nextInstance(this.instanceRandom);
+    }
+
+    @Override
+    public InstanceExample nextInstance(Random random) {
         InstancesHeader header = getHeader();
         Instance inst = new DenseInstance(header.numAttributes());
         inst.setDataset(header);
-        int waveform = this.instanceRandom.nextInt(NUM_CLASSES);
+        int waveform = random.nextInt(NUM_CLASSES);
         int choiceA = 0, choiceB = 0;
         switch (waveform) {
             case 0:
@@ -140,22 +145,27 @@ public class WaveformGenerator extends AbstractOptionHandler implements
                 break;
 
         }
-        double multiplierA = this.instanceRandom.nextDouble();
+        double multiplierA = random.nextDouble();
         double multiplierB = 1.0 - multiplierA;
         for (int i = 0; i < NUM_BASE_ATTRIBUTES; i++) {
             inst.setValue(i, (multiplierA * hFunctions[choiceA][i])
                     + (multiplierB * hFunctions[choiceB][i])
-                    + this.instanceRandom.nextGaussian());
+                    + random.nextGaussian());
         }
         if (this.addNoiseOption.isSet()) {
             for (int i = NUM_BASE_ATTRIBUTES; i < TOTAL_ATTRIBUTES_INCLUDING_NOISE; i++) {
-                inst.setValue(i, this.instanceRandom.nextGaussian());
+                inst.setValue(i, random.nextGaussian());
             }
         }
         inst.setClassValue(waveform);
         return new InstanceExample(inst);
     }
 
+    @Override
+    public boolean isStationary() {
+        return true;
+    }
+
     @Override
     public void restart() {
         this.instanceRandom = new Random(this.instanceRandomSeedOption.getValue());
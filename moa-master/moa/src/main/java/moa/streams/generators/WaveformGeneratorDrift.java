@@ -20,6 +20,8 @@
  */
 package moa.streams.generators;
 
+import java.util.Random;
+
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.core.InstanceExample;
@@ -72,11 +74,11 @@ public class WaveformGeneratorDrift extends WaveformGenerator {
     }
 
     @Override
-    public InstanceExample nextInstance() {
+    public InstanceExample nextInstance(Random random) {
         InstancesHeader header = getHeader();
         Instance inst = new DenseInstance(header.numAttributes());
         inst.setDataset(header);
-        int waveform = this.instanceRandom.nextInt(NUM_CLASSES);
+        int waveform = random.nextInt(NUM_CLASSES);
         int choiceA = 0, choiceB = 0;
         switch (waveform) {
             case 0:
@@ -93,16 +95,16 @@ public class WaveformGeneratorDrift extends WaveformGenerator {
                 break;
 
         }
-        double multiplierA = this.instanceRandom.nextDouble();
+        double multiplierA = random.nextDouble();
         double multiplierB = 1.0 - multiplierA;
         for (int i = 0; i < NUM_BASE_ATTRIBUTES; i++) {
             inst.setValue(this.numberAttribute[i], (multiplierA * hFunctions[choiceA][i])
                     + (multiplierB * hFunctions[choiceB][i])
-                    + this.instanceRandom.nextGaussian());
+                    + random.nextGaussian());
         }
         if (this.addNoiseOption.isSet()) {
             for (int i = NUM_BASE_ATTRIBUTES; i < TOTAL_ATTRIBUTES_INCLUDING_NOISE; i++) {
-                inst.setValue(this.numberAttribute[i], this.instanceRandom.nextGaussian());
+                inst.setValue(this.numberAttribute[i], random.nextGaussian());
             }
         }
         inst.setClassValue(waveform);
@@ -39,6 +39,11 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Task for prequential cross-validation evaluation of a classifier on a stream by testing then training with each
@@ -108,6 +113,16 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
     public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
             "Seed for random behaviour of the task.", 1);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used to test and train the folds (-1 = as much as possible, 0 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
+    /**
+     * The number of instances the folds test and train between two
+     * synchronisations, when they run concurrently.
+     */
+    protected static final int INSTANCES_BETWEEN_FOLD_SYNCHRONISATIONS = 1000;
+
 
     @Override
     public Class<?> getTaskResultType() {
@@ -157,101 +172,145 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
             }
         }
 
+        int numberOfJobs = this.numberOfJobsOption.getValue();
+        if (numberOfJobs == -1) {
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        }
+        numberOfJobs = Math.min(numberOfJobs, learners.length);
+        ExecutorService executor = null;
+        if (numberOfJobs > 1) {
+            executor = Executors.newFixedThreadPool(numberOfJobs);
+        }
+
+        // The instances are read in chunks, that every fold tests and trains
+        // on its own. The weights of the folds are drawn while reading, in the
+        // order of the sequential evaluation, so the results do not depend on
+        // the number of jobs.
+        int chunkCapacity = executor != null ? INSTANCES_BETWEEN_FOLD_SYNCHRONISATIONS
+                : INSTANCES_BETWEEN_MONITOR_UPDATES;
+        Example[] chunk = new Example[chunkCapacity];
+        FoldTrainer[] trainers = new FoldTrainer[learners.length];
+        for (int i = 0; i < learners.length; i++) {
+            trainers[i] = new FoldTrainer(learners[i], evaluators[i], chunk, new int[chunkCapacity]);
+        }
+
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
-        while (stream.hasMoreInstances()
-                && ((maxInstances < 0) || (instancesProcessed < maxInstances))
-                && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst; //.copy();
-            //testInst.setClassMissing();
-
-            for (int i = 0; i < learners.length; i++) {
-                evaluators[i].addResult(testInst, learners[i].getVotesForInstance(testInst));
-            }
+        try {
+            while (stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))
+                    && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+                long chunkStart = instancesProcessed;
+                int chunkSize = 0;
+                do {
+                    chunk[chunkSize] = stream.nextInstance();
+
+                    for (int i = 0; i < learners.length; i++) {
+                        int k = 1;
+                        switch (this.validationMethodologyOption.getChosenIndex()) {
+                            case 0: //Cross-Validation;
+                                k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
+                                break;
+                            case 1: //Bootstrap;
+                                k = MiscUtils.poisson(1, random);
+                                break;
+                            case 2: //Split-Validation;
+                                k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
+                                break;
+                        }
+                        trainers[i].weights[chunkSize] = k;
+                    }
+
+                    chunkSize++;
+                    instancesProcessed++;
+                } while (instancesProcessed % chunkCapacity != 0
+                        && instancesProcessed % this.sampleFrequencyOption.getValue() != 0
+                        && stream.hasMoreInstances()
+                        && ((maxInstances < 0) || (instancesProcessed < maxInstances)));
 
-            for (int i = 0; i < learners.length; i++) {
-                int k = 1;
-                switch (this.validationMethodologyOption.getChosenIndex()) {
-                    case 0: //Cross-Validation;
-                        k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
-                        break;
-                    case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
-                        break;
-                    case 2: //Split-Validation;
-                        k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
-                        break;
+                for (FoldTrainer trainer : trainers) {
+                    trainer.numInstances = chunkSize;
                 }
-                if (k > 0) {
-                    Example weightedInst = (Example) trainInst.copy();
-                    weightedInst.setWeight(trainInst.weight() * k);
-                    learners[i].trainOnInstance(weightedInst);
+                if (executor != null) {
+                    for (Future<Integer> future : executor.invokeAll(Arrays.asList(trainers))) {
+                        future.get();
+                    }
+                } else {
+                    for (FoldTrainer trainer : trainers) {
+                        trainer.run();
+                    }
                 }
-            }
 
-            instancesProcessed++;
-            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-
-                for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                    RAMHours += RAMHoursIncrement;
-                }
+                if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || stream.hasMoreInstances() == false) {
+                    long evaluateTime = getNanoCPUTime(trainers);
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
-                lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
-                        getEvaluationMeasurements(
-                        new Measurement[]{
-                                new Measurement(
-                                        "learning evaluation instances",
-                                        instancesProcessed),
-                                new Measurement(
-                                        "evaluation time ("
-                                                + (preciseCPUTiming ? "cpu "
-                                                : "") + "seconds)",
-                                        time),
-                                new Measurement(
-                                        "model cost (RAM-Hours)",
-                                        RAMHours)
-                        }, evaluators)));
-
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
+                    for (int i = 0; i < learners.length; i++) {
+                        double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                        RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                        RAMHours += RAMHoursIncrement;
                     }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
-                }
-            }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
-                if (monitor.taskShouldAbort()) {
-                    return null;
-                }
-                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
-                if (maxInstances > 0) {
-                    long maxRemaining = maxInstances - instancesProcessed;
-                    if ((estimatedRemainingInstances < 0)
-                            || (maxRemaining < estimatedRemainingInstances)) {
-                        estimatedRemainingInstances = maxRemaining;
+
+                    lastEvaluateStartTime = evaluateTime;
+                    learningCurve.insertEntry(new LearningEvaluation(
+                            getEvaluationMeasurements(
+                            new Measurement[]{
+                                    new Measurement(
+                                            "learning evaluation instances",
+                                            instancesProcessed),
+                                    new Measurement(
+                                            "evaluation time ("
+                                                    + (preciseCPUTiming ? "cpu "
+                                                    : "") + "seconds)",
+                                            time),
+                                    new Measurement(
+                                            "model cost (RAM-Hours)",
+                                            RAMHours)
+                            }, evaluators)));
+
+                    if (immediateResultStream != null) {
+                        if (firstDump) {
+                            immediateResultStream.println(learningCurve.headerToString());
+                            firstDump = false;
+                        }
+                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
+                        immediateResultStream.flush();
                     }
                 }
-                monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
-                        : (double) instancesProcessed
-                        / (double) (instancesProcessed + estimatedRemainingInstances));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                if (instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES > chunkStart / INSTANCES_BETWEEN_MONITOR_UPDATES) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.copy());
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(getNanoCPUTime(trainers)
+                            - evaluateStartTime);
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on the folds.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
         if (immediateResultStream != null) {
@@ -261,6 +320,61 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
     }
 
 
+    /**
+     * @return the CPU time of the task thread and of the jobs that tested
+     * and trained the folds
+     */
+    protected long getNanoCPUTime(FoldTrainer[] trainers) {
+        long time = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        for (FoldTrainer trainer : trainers) {
+            time += trainer.jobCPUTime;
+        }
+        return time;
+    }
+
+    /**
+     * Tests then trains the learner of a fold with each instance of a chunk.
+     */
+    protected static class FoldTrainer implements Runnable, Callable<Integer> {
+        final private Learner learner;
+        final private LearningPerformanceEvaluator evaluator;
+        final private Example[] instances;
+        final protected int[] weights;
+        protected int numInstances;
+        // CPU time spent in the jobs, the task thread counts the rest
+        protected long jobCPUTime;
+
+        public FoldTrainer(Learner learner, LearningPerformanceEvaluator evaluator,
+                           Example[] instances, int[] weights) {
+            this.learner = learner;
+            this.evaluator = evaluator;
+            this.instances = instances;
+            this.weights = weights;
+        }
+
+        @Override
+        public void run() {
+            for (int j = 0; j < this.numInstances; j++) {
+                Example trainInst = this.instances[j];
+                this.evaluator.addResult(trainInst, this.learner.getVotesForInstance(trainInst));
+                int k = this.weights[j];
+                if (k > 0) {
+                    Example weightedInst = (Example) trainInst.copy();
+                    weightedInst.setWeight(trainInst.weight() * k);
+                    this.learner.trainOnInstance(weightedInst);
+                }
+            }
+        }
+
+        @Override
+        public Integer call() {
+            long start = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            run();
+            this.jobCPUTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - start;
+            return this.numInstances;
+        }
+    }
+
     public Measurement[] getEvaluationMeasurements(Measurement[] modelMeasurements, LearningPerformanceEvaluator[] subEvaluators) {
         List<Measurement> measurementList = new LinkedList<Measurement>();
         if (modelMeasurements != null) {
@@ -40,6 +40,11 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Task for delayed cross-validation evaluation of a classifier on a 
@@ -120,6 +125,16 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
     public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
             "Seed for random behaviour of the task.", 1);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used to test and train the folds (-1 = as much as possible, 0 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
+    /**
+     * The number of instances the folds test and train between two
+     * synchronisations, when they run concurrently.
+     */
+    protected static final int INSTANCES_BETWEEN_FOLD_SYNCHRONISATIONS = 1000;
+
     // Buffer of instances to use for training. 
     // Note: It is a list of lists because it stores instances per learner, e.g.
     // CV of 10, would be 10 lists of buffered instances for delayed training. 
@@ -178,105 +193,145 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
             }
         }
 
+        int numberOfJobs = this.numberOfJobsOption.getValue();
+        if (numberOfJobs == -1) {
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        }
+        numberOfJobs = Math.min(numberOfJobs, learners.length);
+        ExecutorService executor = null;
+        if (numberOfJobs > 1) {
+            executor = Executors.newFixedThreadPool(numberOfJobs);
+        }
+
+        // The instances are read in chunks, that every fold tests and trains
+        // on its own. The weights of the folds are drawn while reading, in the
+        // order of the sequential evaluation, so the results do not depend on
+        // the number of jobs.
+        int chunkCapacity = executor != null ? INSTANCES_BETWEEN_FOLD_SYNCHRONISATIONS
+                : INSTANCES_BETWEEN_MONITOR_UPDATES;
+        Example[] chunk = new Example[chunkCapacity];
+        FoldTrainer[] trainers = new FoldTrainer[learners.length];
+        for (int i = 0; i < learners.length; i++) {
+            trainers[i] = new FoldTrainer(learners[i], evaluators[i], chunk, new int[chunkCapacity],
+                    this.trainInstances.get(i), this.delayLengthOption.getValue());
+        }
+
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
-        
-        while (stream.hasMoreInstances()
-                && ((maxInstances < 0) || (instancesProcessed < maxInstances))
-                && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            
-            
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst;
-            
-            instancesProcessed++;
-            for (int i = 0; i < learners.length; i++) {
-                
-                double[] prediction = learners[i].getVotesForInstance(testInst);
-                evaluators[i].addResult(testInst, prediction);
-                
-                int k = 1;
-                switch (this.validationMethodologyOption.getChosenIndex()) {
-                    case 0: //Cross-Validation;
-                        k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
-                        break;
-                    case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
-                        break;
-                    case 2: //Split-Validation;
-                        k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
-                        break;
-                }
-                if (k > 0) {
-                    this.trainInstances.get(i).addLast(trainInst);
-                }
-                if(this.delayLengthOption.getValue() < this.trainInstances.get(i).size()) {
-                    Example trainInstI = this.trainInstances.get(i).removeFirst();
-                    learners[i].trainOnInstance(trainInstI);
-                }
-            }
-            
-            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-
-                for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                    RAMHours += RAMHoursIncrement;
-                }
+        try {
+            while (stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed < maxInstances))
+                    && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
+                long chunkStart = instancesProcessed;
+                int chunkSize = 0;
+                do {
+                    chunk[chunkSize] = stream.nextInstance();
+                    chunkSize++;
+                    instancesProcessed++;
 
-                lastEvaluateStartTime = evaluateTime;
-                learningCurve.insertEntry(new LearningEvaluation(
-                        getEvaluationMeasurements(
-                        new Measurement[]{
-                                new Measurement(
-                                        "learning evaluation instances",
-                                        instancesProcessed),
-                                new Measurement(
-                                        "evaluation time ("
-                                                + (preciseCPUTiming ? "cpu "
-                                                : "") + "seconds)",
-                                        time),
-                                new Measurement(
-                                        "model cost (RAM-Hours)",
-                                        RAMHours)
-                        }, evaluators)));
-
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
+                    for (int i = 0; i < learners.length; i++) {
+                        int k = 1;
+                        switch (this.validationMethodologyOption.getChosenIndex()) {
+                            case 0: //Cross-Validation;
+                                k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
+                                break;
+                            case 1: //Bootstrap;
+                                k = MiscUtils.poisson(1, random);
+                                break;
+                            case 2: //Split-Validation;
+                                k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
+                                break;
+                        }
+                        trainers[i].weights[chunkSize - 1] = k;
                     }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
+                } while (instancesProcessed % chunkCapacity != 0
+                        && instancesProcessed % this.sampleFrequencyOption.getValue() != 0
+                        && stream.hasMoreInstances()
+                        && ((maxInstances < 0) || (instancesProcessed < maxInstances)));
+
+                for (FoldTrainer trainer : trainers) {
+                    trainer.numInstances = chunkSize;
                 }
-            }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
-                if (monitor.taskShouldAbort()) {
-                    return null;
+                if (executor != null) {
+                    for (Future<Integer> future : executor.invokeAll(Arrays.asList(trainers))) {
+                        future.get();
+                    }
+                } else {
+                    for (FoldTrainer trainer : trainers) {
+                        trainer.run();
+                    }
                 }
-                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
-                if (maxInstances > 0) {
-                    long maxRemaining = maxInstances - instancesProcessed;
-                    if ((estimatedRemainingInstances < 0)
-                            || (maxRemaining < estimatedRemainingInstances)) {
-                        estimatedRemainingInstances = maxRemaining;
+
+                if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || stream.hasMoreInstances() == false) {
+                    long evaluateTime = getNanoCPUTime(trainers);
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+
+                    for (int i = 0; i < learners.length; i++) {
+                        double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                        RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                        RAMHours += RAMHoursIncrement;
+                    }
+
+                    lastEvaluateStartTime = evaluateTime;
+                    learningCurve.insertEntry(new LearningEvaluation(
+                            getEvaluationMeasurements(
+                            new Measurement[]{
+                                    new Measurement(
+                                            "learning evaluation instances",
+                                            instancesProcessed),
+                                    new Measurement(
+                                            "evaluation time ("
+                                                    + (preciseCPUTiming ? "cpu "
+                                                    : "") + "seconds)",
+                                            time),
+                                    new Measurement(
+                                            "model cost (RAM-Hours)",
+                                            RAMHours)
+                            }, evaluators)));
+
+                    if (immediateResultStream != null) {
+                        if (firstDump) {
+                            immediateResultStream.println(learningCurve.headerToString());
+                            firstDump = false;
+                        }
+                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
+                        immediateResultStream.flush();
                     }
                 }
-                monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
-                        : (double) instancesProcessed
-                        / (double) (instancesProcessed + estimatedRemainingInstances));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                if (instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES > chunkStart / INSTANCES_BETWEEN_MONITOR_UPDATES) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.copy());
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(getNanoCPUTime(trainers)
+                            - evaluateStartTime);
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
+            }
+        } catch (InterruptedException ex) {
+            throw new RuntimeException("Could not call invokeAll() on the folds.");
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
         if (immediateResultStream != null) {
@@ -286,6 +341,69 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
     }
 
 
+    /**
+     * @return the CPU time of the task thread and of the jobs that tested
+     * and trained the folds
+     */
+    protected long getNanoCPUTime(FoldTrainer[] trainers) {
+        long time = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        for (FoldTrainer trainer : trainers) {
+            time += trainer.jobCPUTime;
+        }
+        return time;
+    }
+
+    /**
+     * Tests the learner of a fold with each instance of a chunk, and trains it
+     * with the instances that arrived delayLength instances before.
+     */
+    protected static class FoldTrainer implements Runnable, Callable<Integer> {
+        final private Learner learner;
+        final private LearningPerformanceEvaluator evaluator;
+        final private Example[] instances;
+        final protected int[] weights;
+        final private LinkedList<Example> trainInstances;
+        final private int delayLength;
+        protected int numInstances;
+        // CPU time spent in the jobs, the task thread counts the rest
+        protected long jobCPUTime;
+
+        public FoldTrainer(Learner learner, LearningPerformanceEvaluator evaluator,
+                           Example[] instances, int[] weights,
+                           LinkedList<Example> trainInstances, int delayLength) {
+            this.learner = learner;
+            this.evaluator = evaluator;
+            this.instances = instances;
+            this.weights = weights;
+            this.trainInstances = trainInstances;
+            this.delayLength = delayLength;
+        }
+
+        @Override
+        public void run() {
+            for (int j = 0; j < this.numInstances; j++) {
+                Example testInst = this.instances[j];
+                double[] prediction = this.learner.getVotesForInstance(testInst);
+                this.evaluator.addResult(testInst, prediction);
+                if (this.weights[j] > 0) {
+                    this.trainInstances.addLast(testInst);
+                }
+                if (this.delayLength < this.trainInstances.size()) {
+                    Example trainInstI = this.trainInstances.removeFirst();
+                    this.learner.trainOnInstance(trainInstI);
+                }
+            }
+        }
+
+        @Override
+        public Integer call() {
+            long start = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            run();
+            this.jobCPUTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - start;
+            return this.numInstances;
+        }
+    }
+
     public Measurement[] getEvaluationMeasurements(Measurement[] modelMeasurements, LearningPerformanceEvaluator[] subEvaluators) {
         List<Measurement> measurementList = new LinkedList<>();
         if (modelMeasurements != null) {
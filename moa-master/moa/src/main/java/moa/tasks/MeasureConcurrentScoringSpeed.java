@@ -0,0 +1,167 @@
+/*
+ *    MeasureConcurrentScoringSpeed.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningEvaluation;
+import moa.options.ClassOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.ExampleStream;
+
+/**
+ * Task for measuring the speed of the predictions of a classifier made by
+ * several threads while another thread keeps training it. The classifier
+ * must support concurrent predictions, as the trees of the Hoeffding tree
+ * family.
+ *
+ * @version $Revision: 1 $
+ */
+public class MeasureConcurrentScoringSpeed extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Measures the speed of the predictions of a classifier made by several threads while it is trained.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption learnerOption = new ClassOption("learner", 'l',
+            "Classifier to measure, supporting concurrent predictions.",
+            Classifier.class, "trees.HoeffdingTree");
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to learn from and to score.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption trainSizeOption = new IntOption("trainSize", 't',
+            "Number of instances to train on before scoring.", 100000, 0,
+            Integer.MAX_VALUE);
+
+    public IntOption concurrentTrainSizeOption = new IntOption(
+            "concurrentTrainSize", 'c',
+            "Number of instances to train on while the readers are scoring.",
+            100000, 1, Integer.MAX_VALUE);
+
+    public IntOption testSizeOption = new IntOption("testSize", 'n',
+            "Number of instances scored over and over by the readers.", 10000,
+            1, Integer.MAX_VALUE);
+
+    public IntOption numberOfReadersOption = new IntOption("numberOfReaders",
+            'j', "The number of threads scoring the instances.", 2, 1,
+            Integer.MAX_VALUE);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        final Classifier learner = (Classifier) getPreparedClassOption(this.learnerOption);
+        ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        learner.setModelContext(stream.getHeader());
+        monitor.setCurrentActivity("Training learner...", -1.0);
+        int numTrained = 0;
+        while (numTrained < this.trainSizeOption.getValue()
+                && stream.hasMoreInstances()) {
+            learner.trainOnInstance((Example) stream.nextInstance());
+            numTrained++;
+            if (numTrained % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                    && monitor.taskShouldAbort()) {
+                return null;
+            }
+        }
+        List<Instance> testList = new ArrayList<Instance>();
+        while (testList.size() < this.testSizeOption.getValue()
+                && stream.hasMoreInstances()) {
+            testList.add((Instance) stream.nextInstance().getData());
+        }
+        final Instance[] testInstances = testList.toArray(new Instance[testList.size()]);
+
+        monitor.setCurrentActivity("Training while scoring...", -1.0);
+        int numberOfReaders = this.numberOfReadersOption.getValue();
+        final AtomicBoolean training = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfReaders);
+        List<Future<Long>> readers = new ArrayList<Future<Long>>();
+        int numConcurrentlyTrained = 0;
+        long numScored = 0;
+        double trainTime;
+        long startTime = System.nanoTime();
+        try {
+            for (int i = 0; i < numberOfReaders; i++) {
+                readers.add(executor.submit(() -> {
+                    long numReaderScored = 0;
+                    while (training.get()) {
+                        for (Instance inst : testInstances) {
+                            learner.getVotesForInstance(inst);
+                        }
+                        numReaderScored += testInstances.length;
+                    }
+                    return numReaderScored;
+                }));
+            }
+            while (numConcurrentlyTrained < this.concurrentTrainSizeOption.getValue()
+                    && stream.hasMoreInstances()) {
+                learner.trainOnInstance((Example) stream.nextInstance());
+                numConcurrentlyTrained++;
+                if (numConcurrentlyTrained % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                        && monitor.taskShouldAbort()) {
+                    break;
+                }
+            }
+            trainTime = (System.nanoTime() - startTime) / 1.0e9;
+            training.set(false);
+            for (Future<Long> reader : readers) {
+                numScored += reader.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Scoring failed.", e);
+        } finally {
+            // stops the readers also when training fails
+            training.set(false);
+            executor.shutdownNow();
+        }
+        double elapsedTime = (System.nanoTime() - startTime) / 1.0e9;
+        if (monitor.taskShouldAbort()) {
+            return null;
+        }
+        return new LearningEvaluation(
+                new Measurement[]{
+                    new Measurement("Number of readers", numberOfReaders),
+                    new Measurement("Number of instances scored", numScored),
+                    new Measurement("Number of instances trained",
+                    numConcurrentlyTrained),
+                    new Measurement("Time elapsed", elapsedTime),
+                    new Measurement("Instances scored per second",
+                    numScored / elapsedTime),
+                    new Measurement("Instances trained per second",
+                    numConcurrentlyTrained / trainTime)});
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningEvaluation.class;
+    }
+}
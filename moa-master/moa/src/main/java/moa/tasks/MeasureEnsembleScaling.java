@@ -0,0 +1,141 @@
+/*
+ *    MeasureEnsembleScaling.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningEvaluation;
+import moa.options.ClassOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.Option;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.ExampleStream;
+
+/**
+ * Task for measuring how the training of an ensemble scales with the number
+ * of members, with one job and with several jobs. The ensemble must have the
+ * ensembleSize and numberOfJobs options of the bagging ensembles. The
+ * prequential accuracy is reported along with the time so that the runs with
+ * one and several jobs can be checked to build the same ensemble.
+ *
+ * @version $Revision: 1 $
+ */
+public class MeasureEnsembleScaling extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Measures how the training of an ensemble scales with the number of members and jobs.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption learnerOption = new ClassOption("learner", 'l',
+            "Ensemble to measure.", Classifier.class, "meta.OzaBag");
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to learn from.", ExampleStream.class,
+            "generators.RandomRBFGeneratorDrift");
+
+    public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
+            "Number of instances to learn from for each ensemble size.", 10000,
+            1, Integer.MAX_VALUE);
+
+    public IntOption minEnsembleSizeOption = new IntOption("minEnsembleSize",
+            'm', "Smallest number of members.", 10, 1, Integer.MAX_VALUE);
+
+    public IntOption maxEnsembleSizeOption = new IntOption("maxEnsembleSize",
+            'M', "Largest number of members.", 100, 1, Integer.MAX_VALUE);
+
+    public IntOption ensembleSizeStepOption = new IntOption("ensembleSizeStep",
+            'e', "Increment of the number of members.", 30, 1,
+            Integer.MAX_VALUE);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "The number of jobs compared to a single job.", 4, 2,
+            Integer.MAX_VALUE);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        Classifier ensemble = (Classifier) getPreparedClassOption(this.learnerOption);
+        ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        int[] numbersOfJobs = {1, this.numberOfJobsOption.getValue()};
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        for (int size = this.minEnsembleSizeOption.getValue();
+                size <= this.maxEnsembleSizeOption.getValue();
+                size += this.ensembleSizeStepOption.getValue()) {
+            for (int numberOfJobs : numbersOfJobs) {
+                monitor.setCurrentActivity("Training " + size + " members with "
+                        + numberOfJobs + " jobs...", -1.0);
+                Classifier learner = ensemble.copy();
+                getEnsembleOption(learner, "ensembleSize").setValueViaCLIString(Integer.toString(size));
+                getEnsembleOption(learner, "numberOfJobs").setValueViaCLIString(Integer.toString(numberOfJobs));
+                learner.prepareForUse();
+                learner.setModelContext(stream.getHeader());
+                stream.restart();
+                long numCorrect = 0;
+                int numInstances = 0;
+                long startTime = System.nanoTime();
+                while (numInstances < this.instanceLimitOption.getValue()
+                        && stream.hasMoreInstances()) {
+                    Example example = stream.nextInstance();
+                    if (learner.correctlyClassifies((Instance) example.getData())) {
+                        numCorrect++;
+                    }
+                    learner.trainOnInstance(example);
+                    numInstances++;
+                    if (numInstances % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                            && monitor.taskShouldAbort()) {
+                        learner.resetLearning();
+                        return null;
+                    }
+                }
+                double elapsedTime = (System.nanoTime() - startTime) / 1.0e9;
+                // releases the training threads
+                learner.resetLearning();
+                String run = " (" + size + " members, " + numberOfJobs + " jobs)";
+                measurements.add(new Measurement("Time elapsed" + run,
+                        elapsedTime));
+                measurements.add(new Measurement("Instances per second" + run,
+                        numInstances / elapsedTime));
+                measurements.add(new Measurement("Accuracy" + run,
+                        100.0 * numCorrect / numInstances));
+            }
+        }
+        return new LearningEvaluation(
+                measurements.toArray(new Measurement[measurements.size()]));
+    }
+
+    private static Option getEnsembleOption(Classifier learner, String name) {
+        Option option = learner.getOptions().getOption(name);
+        if (option == null) {
+            throw new IllegalArgumentException(learner.getClass().getName()
+                    + " has no " + name + " option.");
+        }
+        return option;
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningEvaluation.class;
+    }
+}
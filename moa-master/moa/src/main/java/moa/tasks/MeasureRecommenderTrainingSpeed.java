@@ -0,0 +1,107 @@
+/*
+ *    MeasureRecommenderTrainingSpeed.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningEvaluation;
+import moa.options.ClassOption;
+import moa.recommender.dataset.Dataset;
+import moa.recommender.predictor.RatingPredictor;
+import moa.recommender.rc.data.RecommenderData;
+
+/**
+ * Task for measuring the speed of the batch training of a recommender. All
+ * the ratings of the dataset are loaded without updating the model, then the
+ * rating predictor is trained from scratch. The RMSE on the loaded ratings is
+ * reported so that runs with different numbers of jobs can be compared, e.g.
+ * <code>MeasureRecommenderTrainingSpeed -s (BRISMFPredictor -j 4)</code>.
+ *
+ * <p>Parameters:</p>
+ * <ul>
+ * <li> d: dataset - the dataset to train the rating predictor on.</li>
+ * <li> s: rating predictor - the rating predictor to train.</li>
+ * </ul>
+ *
+ * @version $Revision: 1 $
+ */
+public class MeasureRecommenderTrainingSpeed extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Measures the speed of the batch training of a recommender.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption datasetOption = new ClassOption("dataset", 'd',
+            "Dataset to train on.", Dataset.class, "moa.recommender.dataset.impl.MovielensDataset");
+
+    public ClassOption ratingPredictorOption = new ClassOption("ratingPredictor", 's',
+            "Rating Predictor to train.", RatingPredictor.class,
+            "moa.recommender.predictor.BRISMFPredictor");
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningEvaluation.class;
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        Dataset d = (Dataset) getPreparedClassOption(this.datasetOption);
+        RatingPredictor rp = (RatingPredictor) getPreparedClassOption(this.ratingPredictorOption);
+        RecommenderData data = rp.getData();
+        data.clear();
+        data.disableUpdates(true);
+        monitor.setCurrentActivity("Loading ratings...", -1.0);
+        int numRatings = 0;
+        while (d.next()) {
+            data.setRating(d.curUserID(), d.curItemID(), d.curRating());
+            numRatings++;
+            if (numRatings % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                    && monitor.taskShouldAbort()) {
+                return null;
+            }
+        }
+
+        monitor.setCurrentActivity("Training...", -1.0);
+        long startTime = System.nanoTime();
+        rp.train();
+        double trainTime = (System.nanoTime() - startTime) / 1.0e9;
+        if (monitor.taskShouldAbort()) {
+            return null;
+        }
+
+        monitor.setCurrentActivity("Computing the RMSE...", -1.0);
+        d.reset();
+        double sum = 0;
+        int n = 0;
+        while (d.next()) {
+            sum += Math.pow(rp.predictRating(d.curUserID(), d.curItemID()) - d.curRating(), 2);
+            n++;
+        }
+        return new LearningEvaluation(
+                new Measurement[]{
+                    new Measurement("Number of ratings", numRatings),
+                    new Measurement("Number of users", data.getNumUsers()),
+                    new Measurement("Number of items", data.getNumItems()),
+                    new Measurement("Training time", trainTime),
+                    new Measurement("Ratings per second", numRatings / trainTime),
+                    new Measurement("RMSE", Math.sqrt(sum / n))});
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *    MeasureScoringSpeed.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.TimingUtils;
+import moa.evaluation.LearningEvaluation;
+import moa.options.ClassOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.ExampleStream;
+
+/**
+ * Task for measuring the speed of the predictions of a classifier, one
+ * instance at a time and in batches.
+ *
+ * @version $Revision: 1 $
+ */
+public class MeasureScoringSpeed extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Measures the speed of the predictions of a classifier, one instance at a time and in batches.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption learnerOption = new ClassOption("learner", 'l',
+            "Classifier to measure.", Classifier.class, "trees.HoeffdingTree");
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to learn from and to score.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption trainSizeOption = new IntOption("trainSize", 't',
+            "Number of instances to train on before scoring.", 100000, 0,
+            Integer.MAX_VALUE);
+
+    public IntOption testSizeOption = new IntOption("testSize", 'n',
+            "Number of instances to score.", 100000, 0, Integer.MAX_VALUE);
+
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+            "Number of instances scored together.", 1000, 1,
+            Integer.MAX_VALUE);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        Classifier learner = (Classifier) getPreparedClassOption(this.learnerOption);
+        ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        learner.setModelContext(stream.getHeader());
+        monitor.setCurrentActivity("Training learner...", -1.0);
+        int numTrained = 0;
+        while (numTrained < this.trainSizeOption.getValue()
+                && stream.hasMoreInstances()) {
+            learner.trainOnInstance((Example) stream.nextInstance());
+            numTrained++;
+            if (numTrained % INSTANCES_BETWEEN_MONITOR_UPDATES == 0
+                    && monitor.taskShouldAbort()) {
+                return null;
+            }
+        }
+        Instance[] testInstances = new Instance[this.testSizeOption.getValue()];
+        int numInstances = 0;
+        while (numInstances < testInstances.length && stream.hasMoreInstances()) {
+            testInstances[numInstances++] = (Instance) stream.nextInstance().getData();
+        }
+
+        TimingUtils.enablePreciseTiming();
+        monitor.setCurrentActivity("Warming up...", -1.0);
+        scoreOneAtATime(learner, testInstances, numInstances);
+        scoreInBatches(learner, testInstances, numInstances);
+        if (monitor.taskShouldAbort()) {
+            return null;
+        }
+
+        monitor.setCurrentActivity("Scoring one instance at a time...", -1.0);
+        long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        scoreOneAtATime(learner, testInstances, numInstances);
+        double singleTime = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                - startTime);
+        if (monitor.taskShouldAbort()) {
+            return null;
+        }
+
+        monitor.setCurrentActivity("Scoring in batches...", -1.0);
+        startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        scoreInBatches(learner, testInstances, numInstances);
+        double batchTime = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                - startTime);
+        return new LearningEvaluation(
+                new Measurement[]{
+                    new Measurement("Number of instances scored",
+                    numInstances),
+                    new Measurement("Time scoring one instance at a time",
+                    singleTime),
+                    new Measurement("Time scoring in batches", batchTime),
+                    new Measurement("Instances per second one at a time",
+                    numInstances / singleTime),
+                    new Measurement("Instances per second in batches",
+                    numInstances / batchTime)});
+    }
+
+    protected void scoreOneAtATime(Classifier learner, Instance[] instances,
+            int numInstances) {
+        for (int i = 0; i < numInstances; i++) {
+            learner.getVotesForInstance(instances[i]);
+        }
+    }
+
+    protected void scoreInBatches(Classifier learner, Instance[] instances,
+            int numInstances) {
+        int batchSize = this.batchSizeOption.getValue();
+        Instance[] batch = new Instance[Math.min(batchSize, numInstances)];
+        double[][] votes = new double[batch.length][];
+        for (int first = 0; first < numInstances; first += batchSize) {
+            if (numInstances - first < batch.length) {
+                batch = new Instance[numInstances - first];
+            }
+            System.arraycopy(instances, first, batch, 0, batch.length);
+            learner.getVotesForInstances(batch, votes);
+        }
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningEvaluation.class;
+    }
+}
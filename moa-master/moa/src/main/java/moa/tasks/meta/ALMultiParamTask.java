@@ -88,6 +88,11 @@ public class ALMultiParamTask extends ALMainTask {
 					new FloatOption("", ' ', "", 0.5)
 			}, ',');
 	
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Maximum number of evaluations running at once (-1 = as much as"
+			+ " possible). Ignored if the task is run by a partition"
+			+ " evaluation task.", 1, -1, Integer.MAX_VALUE);
+	
 	
 	private ArrayList<ALPrequentialEvaluationTask> subtasks = new ArrayList<>();
 	private ArrayList<ALTaskThread> subtaskThreads = new ArrayList<>();
@@ -96,6 +101,8 @@ public class ALMultiParamTask extends ALMainTask {
 	private Color[] subTaskColorCoding;
 	private int partitionIdx = -1;
 	
+	private ALTaskScheduler scheduler;
+	
 	/**
 	 * Default constructor which sets up the refresh mechanism between the 
 	 * learner and the variedParamName option.
@@ -126,6 +133,16 @@ public class ALMultiParamTask extends ALMainTask {
 		this.setNameSuffix("partition " + partitionIdx);
 	}
 	
+	/**
+	 * Sets the scheduler starting the evaluations, shared with the other 
+	 * tasks of the parent task.
+	 * 
+	 * @param scheduler
+	 */
+	public void setScheduler(ALTaskScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	
 	@Override
 	public Options getOptions() {
 		Options options = super.getOptions();
@@ -295,12 +312,18 @@ public class ALMultiParamTask extends ALMainTask {
 					this.variedParamNameOption.getValueAsCLIString(),
 					variedParamValues);
 		
-		// start subtasks
+		// queue subtasks, they are started when a worker is free
 		monitor.setCurrentActivity(
 				"Evaluating learners for parameter values...", -1.0);
+		if (this.scheduler == null) {
+			this.scheduler = 
+					new ALTaskScheduler(this.numberOfJobsOption.getValue());
+		}
+		ALTaskScheduler.SubtaskEvents events = 
+				new ALTaskScheduler.SubtaskEvents(this.subtaskThreads);
 		for(int i = 0; i < this.subtaskThreads.size(); ++i)
 		{
-			subtaskThreads.get(i).start();
+			this.scheduler.submit(subtaskThreads.get(i));
 		}
 
 		// get the number of subtask threads
@@ -349,7 +372,9 @@ public class ALMultiParamTask extends ALMainTask {
 					PreviewCollectionLearningCurveWrapper finalPreview = 
 							(PreviewCollectionLearningCurveWrapper) 
 							currentTaskThread.getFinalResult();
-					previewCollection.setPreview(i, finalPreview);
+					if (finalPreview != null) {
+						previewCollection.setPreview(i, finalPreview);
+					}
 				}
 			}
 			double completionFraction = completionSum / numSubtaskThreads;
@@ -372,6 +397,11 @@ public class ALMultiParamTask extends ALMainTask {
 	        		monitor.setCurrentActivityFractionComplete(-1.0);
 	            }
 			}
+			
+			// wait for a subtask to publish a preview or to complete
+			if (!allThreadsCompleted) {
+				events.await();
+			}
 		}
 		
 		return previewCollection;
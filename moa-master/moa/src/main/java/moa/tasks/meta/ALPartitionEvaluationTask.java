@@ -69,6 +69,11 @@ public class ALPartitionEvaluationTask extends ALMainTask {
 	public IntOption randomSeedOption = new IntOption("randomSeed", 'r', 
 			"random seed which is used for partitioning of the stream.", 0);
 	
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Maximum number of evaluations running at once over all"
+			+ " partitions (-1 = as much as possible).", 1, -1, 
+			Integer.MAX_VALUE);
+	
 	
 	private ArrayList<ALTaskThread> subtaskThreads = new ArrayList<>();
 	private ArrayList<ALTaskThread> flattenedSubtaskThreads = new ArrayList<>();
@@ -152,10 +157,16 @@ public class ALPartitionEvaluationTask extends ALMainTask {
 
 		monitor.setCurrentActivity("Performing evaluation...", 50.0);
 		
-		// start subtasks
+		// start subtasks, they share one scheduler for their evaluations
 		monitor.setCurrentActivity("Performing evaluation...", -1.0);
+		ALTaskScheduler scheduler = 
+				new ALTaskScheduler(this.numberOfJobsOption.getValue());
+		ALTaskScheduler.SubtaskEvents events = 
+				new ALTaskScheduler.SubtaskEvents(this.subtaskThreads);
 		for(int i = 0; i < this.subtaskThreads.size(); ++i)
 		{
+			((ALMultiParamTask) subtaskThreads.get(i).getTask())
+				.setScheduler(scheduler);
 			subtaskThreads.get(i).start();
 		}
 
@@ -208,7 +219,9 @@ public class ALPartitionEvaluationTask extends ALMainTask {
 						finalPreview = 
 							(PreviewCollection<PreviewCollectionLearningCurveWrapper>)
 							currentTaskThread.getFinalResult();
-					previewCollection.setPreview(i, finalPreview);
+					if (finalPreview != null) {
+						previewCollection.setPreview(i, finalPreview);
+					}
 				}
 			}
 			
@@ -230,6 +243,11 @@ public class ALPartitionEvaluationTask extends ALMainTask {
 	                monitor.setLatestResultPreview(previewCollection.copy());
 	            }
 			}
+			
+			// wait for a subtask to publish a preview or to complete
+			if (!allThreadsCompleted) {
+				events.await();
+			}
 		}
 		
 		return previewCollection;
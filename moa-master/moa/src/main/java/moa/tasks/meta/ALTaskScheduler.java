@@ -0,0 +1,163 @@
+/*
+ *    ALTaskScheduler.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks.meta;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import moa.tasks.ResultPreviewListener;
+import moa.tasks.TaskCompletionListener;
+import moa.tasks.TaskThread;
+
+/**
+ * Scheduler for the subtasks of the active learning meta tasks. The threads
+ * of the subtasks doing the evaluations are queued and started when one of a
+ * bounded number of workers is free, so that a large sweep of parameter
+ * values and partitions does not start all of its evaluations at once. The
+ * threads of subtasks which only wait for their own subtasks are not counted.
+ * One scheduler is shared by the whole tree of subtasks.
+ *
+ * @version $Revision: 1 $
+ */
+public class ALTaskScheduler implements TaskCompletionListener {
+
+	private final int numWorkers;
+
+	private final LinkedList<ALTaskThread> queue = new LinkedList<>();
+
+	private final HashSet<TaskThread> running = new HashSet<>();
+
+	/**
+	 * @param numWorkers the maximum number of subtasks running at once, -1
+	 * for the number of available processors
+	 */
+	public ALTaskScheduler(int numWorkers) {
+		if (numWorkers < 1) {
+			numWorkers = Runtime.getRuntime().availableProcessors();
+		}
+		this.numWorkers = numWorkers;
+	}
+
+	public int getNumWorkers() {
+		return this.numWorkers;
+	}
+
+	/**
+	 * Queues the thread of a subtask, it is started as soon as a worker is
+	 * free. Subtasks are started in the order they were submitted.
+	 *
+	 * @param thread the thread of the subtask, not started
+	 */
+	public void submit(ALTaskThread thread) {
+		thread.addTaskCompletionListener(this);
+		synchronized (this) {
+			this.queue.addLast(thread);
+		}
+		startQueued();
+	}
+
+	@Override
+	public void taskCompleted(TaskThread task) {
+		synchronized (this) {
+			if (!this.running.remove(task)) {
+				// cancelled before being started
+				this.queue.remove(task);
+				return;
+			}
+		}
+		startQueued();
+	}
+
+	/**
+	 * Starts queued threads while workers are free. The threads are started
+	 * outside of the lock, since a thread being cancelled holds its own lock
+	 * while informing the scheduler.
+	 */
+	private void startQueued() {
+		List<ALTaskThread> toStart = new ArrayList<>();
+		synchronized (this) {
+			while (this.running.size() < this.numWorkers && !this.queue.isEmpty()) {
+				ALTaskThread thread = this.queue.removeFirst();
+				if (!thread.isComplete()) {
+					this.running.add(thread);
+					toStart.add(thread);
+				}
+			}
+		}
+		for (ALTaskThread thread : toStart) {
+			thread.start();
+		}
+	}
+
+	/**
+	 * Waits for the events of a set of subtask threads: the completion of
+	 * a subtask or a new result preview. Parent tasks wait on it instead of
+	 * polling their subtasks.
+	 */
+	public static class SubtaskEvents
+		implements TaskCompletionListener, ResultPreviewListener
+	{
+		/**
+		 * The longest time to wait for an event, so that the parent task
+		 * also checks its own monitor regularly.
+		 */
+		private static final long MAX_WAIT_MILLIS = 1000;
+
+		private boolean changed = true;
+
+		/**
+		 * Listens to the completion and previews of the threads.
+		 *
+		 * @param threads the threads of the subtasks
+		 */
+		public SubtaskEvents(List<ALTaskThread> threads) {
+			for (ALTaskThread thread : threads) {
+				thread.addTaskCompletionListener(this);
+				thread.addPreviewListener(this);
+			}
+		}
+
+		@Override
+		public synchronized void taskCompleted(TaskThread task) {
+			this.changed = true;
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void latestPreviewChanged() {
+			this.changed = true;
+			notifyAll();
+		}
+
+		/**
+		 * Waits until an event happened since the last call.
+		 */
+		public synchronized void await() {
+			try {
+				if (!this.changed) {
+					wait(MAX_WAIT_MILLIS);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.changed = false;
+		}
+	}
+}
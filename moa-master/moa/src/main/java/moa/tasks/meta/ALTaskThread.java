@@ -22,10 +22,13 @@
 package moa.tasks.meta;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
 import moa.tasks.FailedTaskReport;
+import moa.tasks.ResultPreviewListener;
+import moa.tasks.StandardTaskMonitor;
 import moa.tasks.Task;
 import moa.tasks.TaskThread;
 
@@ -37,12 +40,41 @@ import moa.tasks.TaskThread;
  */
 public class ALTaskThread extends TaskThread {
 
+	private final CopyOnWriteArraySet<ResultPreviewListener> previewListeners = 
+			new CopyOnWriteArraySet<>();
+
 	public ALTaskThread(Task toRun) {
-		super(toRun, null);
+		this(toRun, null);
 	}
 
 	public ALTaskThread(Task toRun, ObjectRepository repository) {
 		super(toRun, repository);
+		
+		// inform the preview listeners of every new preview of the task
+		this.taskMonitor = new StandardTaskMonitor() {
+			@Override
+			public void setLatestResultPreview(Object latestPreview) {
+				super.setLatestResultPreview(latestPreview);
+				for (ResultPreviewListener listener : previewListeners) {
+					listener.latestPreviewChanged();
+				}
+			}
+		};
+		this.taskMonitor.setCurrentActivityDescription("Running task " + toRun);
+	}
+	
+	/**
+	 * Adds a listener which is informed whenever the task publishes a new
+	 * result preview, e.g. the parent task waiting for its subtasks.
+	 * 
+	 * @param listener the listener
+	 */
+	public void addPreviewListener(ResultPreviewListener listener) {
+		this.previewListeners.add(listener);
+	}
+	
+	public void removePreviewListener(ResultPreviewListener listener) {
+		this.previewListeners.remove(listener);
 	}
 	
 	@Override
@@ -50,6 +82,10 @@ public class ALTaskThread extends TaskThread {
 		ALMainTask task = (ALMainTask)getTask();
 		List<ALTaskThread> threads = task.getSubtaskThreads();
 		
+		if (this.currentStatus == Status.NOT_STARTED) {
+			// the task is paused as soon as it is started
+			this.taskMonitor.requestPause();
+		}
         super.pauseTask();
         
         // pause all subtask threads
@@ -64,6 +100,9 @@ public class ALTaskThread extends TaskThread {
 		ALMainTask task = (ALMainTask)getTask();
 		List<ALTaskThread> threads = task.getSubtaskThreads();
 		
+		if (this.currentStatus == Status.NOT_STARTED) {
+			this.taskMonitor.requestResume();
+		}
         super.resumeTask();
 
         // resume all subtask threads
@@ -80,6 +119,14 @@ public class ALTaskThread extends TaskThread {
 		
         super.cancelTask();
         
+        boolean cancelledBeforeStart = false;
+        if (this.currentStatus == Status.NOT_STARTED) {
+        	// the thread is still waiting for a worker of the scheduler
+        	this.taskMonitor.requestCancel();
+        	this.currentStatus = Status.CANCELLED;
+        	cancelledBeforeStart = true;
+        }
+        
         if(!isFailed())
         	this.finalResult = getLatestResultPreview();
         
@@ -92,14 +139,25 @@ public class ALTaskThread extends TaskThread {
             	threads.get(i).cancelTask();
         	}
         }
+        
+        if (cancelledBeforeStart) {
+        	fireTaskCompleted();
+        }
     }
 
     @Override
     public void run() {
         TimingUtils.enablePreciseTiming();
         this.taskStartTime = TimingUtils.getNanoCPUTimeOfThread(getId());
+        synchronized (this) {
+        	if (this.currentStatus == Status.CANCELLED) {
+        		// cancelled while waiting for a worker
+        		return;
+        	}
+        	this.currentStatus = this.taskMonitor.isPaused() ? Status.PAUSED
+        			: Status.RUNNING;
+        }
         try {
-            this.currentStatus = Status.RUNNING;
             this.finalResult = this.runningTask.doTask(this.taskMonitor,
                     this.repository);
             this.currentStatus = this.taskMonitor.isCancelled() ? Status.CANCELLED
@@ -0,0 +1,43 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.*;
+
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+/**
+ * Test weighted views of instances
+ */
+public class InstanceImplTest {
+	private static double EPS=0.00000001;
+
+	private static Instance firstInstance() {
+		ArffFileStream stream=new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath(), -1);
+		stream.prepareForUse();
+		return stream.nextInstance().getData();
+	}
+
+	@Test
+	public void testWeightedViewSharesValues(){
+		Instance inst=firstInstance();
+		Instance view=inst.weightedView(3.5);
+		assertEquals(3.5, view.weight(), EPS);
+		assertEquals(1.0, inst.weight(), EPS);
+		assertSame(inst.dataset(), view.dataset());
+		assertEquals(inst.classIndex(), view.classIndex());
+		assertArrayEquals(inst.toDoubleArray(), view.toDoubleArray(), EPS);
+		inst.setValue(0, 42.0);
+		assertEquals(42.0, view.value(0), EPS);
+	}
+
+	@Test
+	public void testCopyDoesNotShareValues(){
+		Instance inst=firstInstance();
+		double original=inst.value(0);
+		Instance copy=inst.copy();
+		inst.setValue(0, 42.0);
+		assertEquals(original, copy.value(0), EPS);
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+/**
+ * Test WindowedInstances against Instances
+ */
+public class WindowedInstancesTest {
+	private static double EPS=0.00000001;
+
+	private static void assertSameInstances(Instances expected, Instances actual) {
+		assertEquals(expected.numInstances(), actual.numInstances());
+		for (int i = 0; i < expected.numInstances(); i++) {
+			assertArrayEquals(expected.instance(i).toDoubleArray(), actual.instance(i).toDoubleArray(), EPS);
+			assertEquals(expected.instance(i).weight(), actual.instance(i).weight(), EPS);
+			assertEquals(expected.instance(i).classValue(), actual.instance(i).classValue(), EPS);
+		}
+	}
+
+	@Test
+	public void testSlidingWindow(){
+		ArffFileStream stream=new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath(), -1);
+		stream.prepareForUse();
+		Instances list=new Instances(stream.getHeader(), 0);
+		WindowedInstances window=new WindowedInstances(stream.getHeader(), 2);
+		Random random=new Random(1);
+		int added=0;
+		for (int pass = 0; pass < 20; pass++) {
+			stream.restart();
+			while (stream.hasMoreInstances()) {
+				Instance inst=stream.nextInstance().getData();
+				inst.setWeight(++added);
+				if (list.numInstances() >= 5) {
+					list.delete(0);
+					window.delete(0);
+				}
+				list.add(inst);
+				window.add(inst);
+				assertSameInstances(list, window);
+				if (random.nextInt(4) == 0 && list.numInstances() > 1) {
+					int index=random.nextInt(list.numInstances());
+					list.delete(index);
+					window.delete(index);
+					assertSameInstances(list, window);
+				}
+			}
+		}
+		list.randomize(new Random(2));
+		window.randomize(new Random(2));
+		assertSameInstances(list, window);
+		list.stratify(2);
+		window.stratify(2);
+		assertSameInstances(list, window);
+		assertSameInstances(list, new Instances(window));
+		window.delete();
+		assertEquals(0, window.numInstances());
+	}
+
+	@Test
+	public void testViewWritesThrough(){
+		ArffFileStream stream=new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath(), -1);
+		stream.prepareForUse();
+		WindowedInstances window=new WindowedInstances(stream.getHeader(), 1);
+		window.add(stream.nextInstance().getData());
+		Instance copy=window.instance(0).copy();
+		window.instance(0).setValue(0, 42.0);
+		assertEquals(42.0, window.instance(0).value(0), EPS);
+		assertTrue(copy.value(0) != 42.0);
+	}
+
+	@Test
+	public void testDistances(){
+		ArffFileStream stream=new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath(), -1);
+		stream.prepareForUse();
+		WindowedInstances window=new WindowedInstances(stream.getHeader(), 2);
+		Instance query=stream.nextInstance().getData();
+		window.add(query);
+		while (stream.hasMoreInstances()) {
+			window.add(stream.nextInstance().getData());
+		}
+		window.delete(0);
+		window.add(query);
+		double[] distances=window.distances(query.toDoubleArray());
+		assertEquals(window.numInstances(), distances.length);
+		for (int i = 0; i < window.numInstances(); i++) {
+			double sum=0;
+			for (int j = 0; j < query.numInputAttributes(); j++) {
+				double diff=query.valueInputAttribute(j)-window.instance(i).valueInputAttribute(j);
+				sum+=diff*diff;
+			}
+			assertEquals(Math.sqrt(sum), distances[i], EPS);
+		}
+		assertEquals(0.0, distances[distances.length-1], EPS);
+	}
+
+}
@@ -0,0 +1,65 @@
+package moa.classifiers;
+
+import static org.junit.Assert.*;
+
+import moa.classifiers.bayes.NaiveBayes;
+import moa.classifiers.meta.AdaptiveRandomForest;
+import moa.classifiers.meta.OzaBag;
+import moa.classifiers.trees.HoeffdingAdaptiveTree;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Test the batch predictions of the classifiers overriding
+ * getVotesForInstances
+ */
+public class GetVotesForInstancesTest {
+
+	private static void assertSameVotes(Classifier classifier) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		classifier.prepareForUse();
+		classifier.setModelContext(stream.getHeader());
+		Instance[] batch = new Instance[300];
+		double[][] votes = new double[batch.length][];
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = stream.nextInstance().getData();
+			}
+			classifier.getVotesForInstances(batch, votes);
+			for (int i = 0; i < batch.length; i++) {
+				assertArrayEquals(classifier.getVotesForInstance(batch[i]), votes[i], 0.0);
+			}
+			for (int i = 0; i < 5000; i++) {
+				classifier.trainOnInstance(stream.nextInstance().getData());
+			}
+		}
+	}
+
+	@Test
+	public void testHoeffdingTree() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		assertSameVotes(tree);
+		assertSameVotes(new HoeffdingAdaptiveTree());
+	}
+
+	@Test
+	public void testNaiveBayes() {
+		assertSameVotes(new NaiveBayes());
+	}
+
+	@Test
+	public void testEnsembles() {
+		OzaBag bagging = new OzaBag();
+		bagging.ensembleSizeOption.setValue(3);
+		assertSameVotes(bagging);
+		AdaptiveRandomForest forest = new AdaptiveRandomForest();
+		forest.ensembleSizeOption.setValue(3);
+		assertSameVotes(forest);
+	}
+}
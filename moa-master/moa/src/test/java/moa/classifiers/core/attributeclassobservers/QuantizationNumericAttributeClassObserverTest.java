@@ -0,0 +1,55 @@
+package moa.classifiers.core.attributeclassobservers;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.VarianceReductionSplitCriterion;
+
+import org.junit.Test;
+
+public class QuantizationNumericAttributeClassObserverTest {
+
+	private static double EPS=0.00000001;
+
+	@Test
+	public void testSameSplitAsEBSTWhenValuesFallInDistinctBins() {
+		FIMTDDNumericAttributeClassObserver ebst=new FIMTDDNumericAttributeClassObserver();
+		QuantizationNumericAttributeClassObserver qo=new QuantizationNumericAttributeClassObserver();
+		qo.radiusOption.setValue(0.5);
+		Random random=new Random(1);
+		double count=0, sum=0, sumSq=0;
+		for (int i = 0; i < 1000; i++) {
+			double attVal=random.nextInt(50);
+			double classVal=(attVal < 20 ? 3.0 : -1.0) + random.nextGaussian();
+			ebst.observeAttributeClass(attVal, classVal, 1.0);
+			qo.observeAttributeClass(attVal, classVal, 1.0);
+			count++;
+			sum+=classVal;
+			sumSq+=classVal*classVal;
+		}
+		assertEquals(50, qo.getNumBins());
+		double[] preSplitDist=new double[]{count, sum, sumSq};
+		VarianceReductionSplitCriterion criterion=new VarianceReductionSplitCriterion();
+		AttributeSplitSuggestion expected=ebst.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true);
+		AttributeSplitSuggestion actual=qo.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true);
+		assertEquals(expected.merit, actual.merit, EPS);
+		assertArrayEquals(expected.resultingClassDistributions[0], actual.resultingClassDistributions[0], EPS);
+		// the E-BST cuts at the last value of the left branch, the observer halfway to the next one
+		assertEquals(19.0, ((NumericAttributeBinaryTest) expected.splitTest).getSplitValue(), EPS);
+		assertEquals(19.5, ((NumericAttributeBinaryTest) actual.splitTest).getSplitValue(), EPS);
+	}
+
+	@Test
+	public void testMemoryBoundedByRange() {
+		QuantizationNumericAttributeClassObserver qo=new QuantizationNumericAttributeClassObserver();
+		qo.radiusOption.setValue(0.1);
+		Random random=new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			qo.observeAttributeClass(random.nextDouble() * 10.0, random.nextGaussian(), 1.0);
+		}
+		assertEquals(100, qo.getNumBins());
+	}
+}
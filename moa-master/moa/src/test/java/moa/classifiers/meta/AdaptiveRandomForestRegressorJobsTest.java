@@ -0,0 +1,57 @@
+package moa.classifiers.meta;
+
+import static org.junit.Assert.*;
+
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Test that the adaptive random forest regressor learns the same model
+ * whatever the number of jobs it is trained with
+ */
+public class AdaptiveRandomForestRegressorJobsTest {
+
+	private static final int TRAIN_SIZE = 1500;
+
+	private static final int TEST_SIZE = 500;
+
+	/**
+	 * Trains the forest on the start of the stream and returns its votes on
+	 * the instances that follow.
+	 */
+	private static double[][] trainAndVote(int numberOfJobs) {
+		ArffFileStream stream = new ArffFileStream(
+				ClassLoader.getSystemResource("moa/classifiers/data/regression.arff").getPath(), -1);
+		stream.prepareForUse();
+		AdaptiveRandomForestRegressor forest = new AdaptiveRandomForestRegressor();
+		forest.ensembleSizeOption.setValue(10);
+		forest.numberOfJobsOption.setValue(numberOfJobs);
+		forest.prepareForUse();
+		forest.setModelContext(stream.getHeader());
+		try {
+			for (int i = 0; i < TRAIN_SIZE; i++) {
+				forest.trainOnInstance(stream.nextInstance().getData());
+			}
+		} finally {
+			forest.cleanThreads();
+		}
+		double[][] votes = new double[TEST_SIZE][];
+		for (int i = 0; i < votes.length; i++) {
+			Instance inst = stream.nextInstance().getData();
+			votes[i] = forest.getVotesForInstance(inst);
+		}
+		return votes;
+	}
+
+	@Test
+	public void testSameVotesWithFourJobs() {
+		double[][] expected = trainAndVote(1);
+		double[][] actual = trainAndVote(4);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 0.0);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package moa.classifiers.meta;
+
+import static org.junit.Assert.*;
+
+import moa.classifiers.AbstractClassifier;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Test that the chunk based ensembles build the same members when a slow
+ * chunk is processed in the background as when processed serially
+ */
+public class BackgroundChunkProcessingTest {
+
+	private static final String SLOW_LEARNER = SlowNaiveBayes.class.getName();
+
+	private static final int CHUNK_SIZE = 50;
+
+	/**
+	 * Naive Bayes taking a while to train, so that the next chunk is
+	 * complete before the previous one is processed.
+	 */
+	public static class SlowNaiveBayes extends NaiveBayes {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void trainOnInstanceImpl(Instance inst) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.trainOnInstanceImpl(inst);
+		}
+	}
+
+	/**
+	 * Trains the ensemble on a few chunks, waits for the last one and returns
+	 * its votes on the instances that follow.
+	 */
+	private static double[][] trainAndVote(AbstractClassifier ensemble, Runnable waitForChunk) {
+		RandomRBFGenerator stream = new RandomRBFGenerator();
+		stream.prepareForUse();
+		ensemble.prepareForUse();
+		ensemble.setModelContext(stream.getHeader());
+		for (int i = 0; i < 5 * CHUNK_SIZE; i++) {
+			ensemble.trainOnInstance(stream.nextInstance().getData());
+		}
+		waitForChunk.run();
+		double[][] votes = new double[100][];
+		for (int i = 0; i < votes.length; i++) {
+			votes[i] = ensemble.getVotesForInstance(stream.nextInstance().getData());
+		}
+		return votes;
+	}
+
+	private static void assertSameVotes(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertArrayEquals(expected[i], actual[i], 0.0);
+		}
+	}
+
+	private static AccuracyUpdatedEnsemble newAccuracyUpdatedEnsemble(int numberOfJobs) {
+		AccuracyUpdatedEnsemble ensemble = new AccuracyUpdatedEnsemble();
+		ensemble.learnerOption.setValueViaCLIString(SLOW_LEARNER);
+		ensemble.chunkSizeOption.setValue(CHUNK_SIZE);
+		ensemble.numberOfJobsOption.setValue(numberOfJobs);
+		return ensemble;
+	}
+
+	private static AccuracyWeightedEnsemble newAccuracyWeightedEnsemble(int numberOfJobs) {
+		AccuracyWeightedEnsemble ensemble = new AccuracyWeightedEnsemble();
+		ensemble.learnerOption.setValueViaCLIString(SLOW_LEARNER);
+		ensemble.chunkSizeOption.setValue(CHUNK_SIZE);
+		ensemble.numFoldsOption.setValue(2);
+		ensemble.numberOfJobsOption.setValue(numberOfJobs);
+		return ensemble;
+	}
+
+	private static LearnNSE newLearnNSE(int numberOfJobs) {
+		LearnNSE ensemble = new LearnNSE();
+		ensemble.baseLearnerOption.setValueViaCLIString(SLOW_LEARNER);
+		ensemble.periodOption.setValue(CHUNK_SIZE);
+		ensemble.numberOfJobsOption.setValue(numberOfJobs);
+		return ensemble;
+	}
+
+	@Test
+	public void testAccuracyUpdatedEnsemble() {
+		final AccuracyUpdatedEnsemble serial = newAccuracyUpdatedEnsemble(1);
+		final AccuracyUpdatedEnsemble background = newAccuracyUpdatedEnsemble(2);
+		double[][] expected = trainAndVote(serial, serial::installProcessedChunk);
+		double[][] actual = trainAndVote(background, background::installProcessedChunk);
+		background.cleanThreads();
+		assertEquals(serial.getSubClassifiers().length, background.getSubClassifiers().length);
+		assertSameVotes(expected, actual);
+	}
+
+	@Test
+	public void testAccuracyWeightedEnsemble() {
+		final AccuracyWeightedEnsemble serial = newAccuracyWeightedEnsemble(1);
+		final AccuracyWeightedEnsemble background = newAccuracyWeightedEnsemble(2);
+		double[][] expected = trainAndVote(serial, serial::installProcessedChunk);
+		double[][] actual = trainAndVote(background, background::installProcessedChunk);
+		background.cleanThreads();
+		assertEquals(serial.getSubClassifiers().length, background.getSubClassifiers().length);
+		assertSameVotes(expected, actual);
+	}
+
+	@Test
+	public void testLearnNSE() {
+		final LearnNSE serial = newLearnNSE(1);
+		final LearnNSE background = newLearnNSE(2);
+		double[][] expected = trainAndVote(serial, serial::installProcessedChunk);
+		double[][] actual = trainAndVote(background, background::installProcessedChunk);
+		background.cleanThreads();
+		assertEquals(serial.ensemble.size(), background.ensemble.size());
+		assertSameVotes(expected, actual);
+	}
+}
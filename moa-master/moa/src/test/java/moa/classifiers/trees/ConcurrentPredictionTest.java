@@ -0,0 +1,99 @@
+package moa.classifiers.trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Test the predictions of the Hoeffding trees from several threads while
+ * another thread trains them
+ */
+public class ConcurrentPredictionTest {
+
+	private static void assertConcurrentPredictions(final HoeffdingTree tree) throws Exception {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		tree.prepareForUse();
+		tree.setModelContext(stream.getHeader());
+		final int numClasses = stream.getHeader().numClasses();
+		final Instance[] batch = new Instance[200];
+		for (int i = 0; i < batch.length; i++) {
+			batch[i] = stream.nextInstance().getData();
+		}
+		final AtomicBoolean training = new AtomicBoolean(true);
+		ExecutorService readers = Executors.newFixedThreadPool(3);
+		List<Future<double[][]>> results = new ArrayList<Future<double[][]>>();
+		try {
+			for (int reader = 0; reader < 3; reader++) {
+				final boolean inBatches = reader == 0;
+				results.add(readers.submit(() -> {
+					double[][] votes = new double[batch.length][];
+					boolean trained;
+					do {
+						// a last pass once training has stopped scores the finished tree
+						trained = !training.get();
+						if (inBatches) {
+							tree.getVotesForInstances(batch, votes);
+						} else {
+							for (int i = 0; i < batch.length; i++) {
+								votes[i] = tree.getVotesForInstance(batch[i]);
+							}
+						}
+						for (double[] instanceVotes : votes) {
+							assertTrue(instanceVotes.length <= numClasses);
+						}
+					} while (!trained);
+					return votes;
+				}));
+			}
+			for (int i = 0; i < 30000; i++) {
+				tree.trainOnInstance(stream.nextInstance().getData());
+			}
+			training.set(false);
+			for (Future<double[][]> result : results) {
+				// rethrows the failure of the reader
+				double[][] votes = result.get();
+				for (int i = 0; i < batch.length; i++) {
+					assertArrayEquals(tree.getVotesForInstance(batch[i]), votes[i], 0.0);
+				}
+			}
+		} finally {
+			// stops the readers also when training fails
+			training.set(false);
+			readers.shutdownNow();
+		}
+		assertTrue(tree.measureTreeDepth() > 1);
+	}
+
+	@Test
+	public void testHoeffdingTree() throws Exception {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		assertConcurrentPredictions(tree);
+	}
+
+	@Test
+	public void testHoeffdingAdaptiveTree() throws Exception {
+		HoeffdingAdaptiveTree tree = new HoeffdingAdaptiveTree();
+		tree.gracePeriodOption.setValue(50);
+		assertConcurrentPredictions(tree);
+	}
+
+	@Test
+	public void testARFHoeffdingTree() throws Exception {
+		ARFHoeffdingTree tree = new ARFHoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		assertConcurrentPredictions(tree);
+	}
+}
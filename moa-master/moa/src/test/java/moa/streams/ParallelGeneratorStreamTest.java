@@ -0,0 +1,94 @@
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import moa.streams.generators.RandomRBFGenerator;
+import moa.streams.generators.RandomRBFGeneratorDrift;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Test ParallelGeneratorStream
+ */
+public class ParallelGeneratorStreamTest {
+
+	private static List<Instance> generate(String generator, int numberOfJobs, int numInstances) {
+		ParallelGeneratorStream stream = new ParallelGeneratorStream();
+		stream.generatorOption.setValueViaCLIString(generator);
+		stream.blockSizeOption.setValue(100);
+		stream.numberOfJobsOption.setValue(numberOfJobs);
+		stream.prepareForUse();
+		List<Instance> instances = new ArrayList<Instance>();
+		for (int i = 0; i < numInstances; i++) {
+			instances.add(stream.nextInstance().getData());
+		}
+		stream.cleanThreads();
+		return instances;
+	}
+
+	private static void assertSameInstances(List<Instance> expected, List<Instance> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i).toDoubleArray(), actual.get(i).toDoubleArray(), 0.0);
+		}
+	}
+
+	@Test
+	public void testSameStreamWithThreads() {
+		List<Instance> serial = generate("RandomRBFGenerator", 1, 1050);
+		assertSameInstances(serial, generate("RandomRBFGenerator", 3, 1050));
+		assertSameInstances(serial, generate("RandomRBFGenerator", 3, 1050));
+	}
+
+	@Test
+	public void testBlocksFromOwnRandom() {
+		List<Instance> instances = generate("RandomRBFGenerator", 2, 250);
+		RandomRBFGenerator generator = new RandomRBFGenerator();
+		generator.prepareForUse();
+		ParallelGeneratorStream stream = new ParallelGeneratorStream();
+		for (int block = 0; block < 3; block++) {
+			Random random = new Random(stream.blockSeed(block));
+			for (int i = block * 100; i < Math.min(instances.size(), (block + 1) * 100); i++) {
+				assertArrayEquals(generator.nextInstance(random).getData().toDoubleArray(),
+						instances.get(i).toDoubleArray(), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testGeneratorWithDrift() {
+		RandomRBFGeneratorDrift generator = new RandomRBFGeneratorDrift();
+		generator.speedChangeOption.setValue(0.01);
+		generator.prepareForUse();
+		assertFalse(generator.isStationary());
+
+		String cli = "RandomRBFGeneratorDrift -s 0.01";
+		List<Instance> serial = generate(cli, 1, 350);
+		assertSameInstances(serial, generate(cli, 4, 350));
+	}
+
+	@Test
+	public void testRestart() {
+		ParallelGeneratorStream stream = new ParallelGeneratorStream();
+		stream.numberOfJobsOption.setValue(2);
+		stream.blockSizeOption.setValue(10);
+		stream.prepareForUse();
+		List<Instance> first = new ArrayList<Instance>();
+		for (int i = 0; i < 25; i++) {
+			first.add(stream.nextInstance().getData());
+		}
+		stream.restart();
+		List<Instance> second = new ArrayList<Instance>();
+		for (int i = 0; i < 25; i++) {
+			second.add(stream.nextInstance().getData());
+		}
+		stream.cleanThreads();
+		assertSameInstances(first, second);
+	}
+}
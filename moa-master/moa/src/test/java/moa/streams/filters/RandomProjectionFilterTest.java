@@ -0,0 +1,63 @@
+package moa.streams.filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+
+/**
+ * Test RandomProjectionFilter
+ */
+
+public class RandomProjectionFilterTest {
+	private static double EPS=0.00000001;
+
+	private static RandomProjectionFilter createFilter(int projectionType, int seed) {
+		ArffFileStream stream=new ArffFileStream(ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath(), -1);
+		stream.prepareForUse();
+		RandomProjectionFilter filter= new RandomProjectionFilter();
+		filter.dim.setValue(4);
+		filter.projectionTypeOption.setChosenIndex(projectionType);
+		filter.randomSeedOption.setValue(seed);
+		filter.setInputStream(stream);
+		return filter;
+	}
+
+	@Test
+	public void testSameSeedSameProjection(){
+		for (int type = 0; type < 4; type++) {
+			RandomProjectionFilter first=createFilter(type, 7);
+			RandomProjectionFilter second=createFilter(type, 7);
+			assertEquals(5, first.getHeader().numAttributes());
+			while (first.hasMoreInstances()) {
+				Instance a=first.nextInstance().getData();
+				Instance b=second.nextInstance().getData();
+				assertArrayEquals(a.toDoubleArray(), b.toDoubleArray(), EPS);
+			}
+		}
+	}
+
+	@Test
+	public void testSparseEqualsDense(){
+		for (int type = 0; type < 4; type++) {
+			RandomProjectionFilter filter=createFilter(type, 1);
+			InstancesHeader header=filter.inputStream.getHeader();
+			//Input values 0, 1, 0, 1.2, 0 and class 1.1
+			DenseInstance dense=new DenseInstance(1.0, new double[]{0, 1, 0, 1.2, 0, 1.1});
+			dense.setDataset(header);
+			SparseInstance sparse=new SparseInstance(1.0, new double[]{1, 1.2, 1.1}, new int[]{1, 3, 5}, 6);
+			sparse.setDataset(header);
+			double[] fromDense=filter.randomProjection(dense);
+			double[] fromSparse=filter.randomProjection(sparse);
+			assertEquals(4, fromDense.length);
+			assertArrayEquals(fromDense, fromSparse, EPS);
+		}
+	}
+
+}
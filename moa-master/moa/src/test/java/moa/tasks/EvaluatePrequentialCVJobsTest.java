@@ -0,0 +1,57 @@
+package moa.tasks;
+
+import static org.junit.Assert.*;
+
+import moa.evaluation.preview.LearningCurve;
+
+import org.junit.Test;
+
+/**
+ * Test that the cross-validated prequential evaluations give the same
+ * learning curves when the folds are trained by several jobs
+ */
+public class EvaluatePrequentialCVJobsTest {
+
+	private static final String STREAM = "(generators.RandomTreeGenerator -r 3 -i 5)";
+
+	/**
+	 * Checks that the timing columns aside, both curves have the same entries.
+	 */
+	private static void assertSameCurves(LearningCurve expected, LearningCurve actual) {
+		assertEquals(expected.getMeasurementNameCount(), actual.getMeasurementNameCount());
+		assertEquals(expected.numEntries(), actual.numEntries());
+		assertTrue(expected.numEntries() > 1);
+		for (int m = 0; m < expected.getMeasurementNameCount(); m++) {
+			String name = expected.getMeasurementName(m);
+			assertEquals(name, actual.getMeasurementName(m));
+			if (name.contains("time") || name.contains("RAM-Hours")) {
+				continue;
+			}
+			for (int e = 0; e < expected.numEntries(); e++) {
+				assertEquals(name, expected.getMeasurement(e, m), actual.getMeasurement(e, m), 0.0);
+			}
+		}
+	}
+
+	private static LearningCurve runTask(MainTask task, String options) {
+		task.getOptions().setViaCLIString(options);
+		task.prepareForUse();
+		return (LearningCurve) task.doTask();
+	}
+
+	@Test
+	public void testEvaluatePrequentialCV() {
+		String options = "-l trees.HoeffdingTree -s " + STREAM + " -i 3000 -f 500 -w 5";
+		LearningCurve expected = runTask(new EvaluatePrequentialCV(), options + " -j 1");
+		LearningCurve actual = runTask(new EvaluatePrequentialCV(), options + " -j 3");
+		assertSameCurves(expected, actual);
+	}
+
+	@Test
+	public void testEvaluatePrequentialDelayedCV() {
+		String options = "-l trees.HoeffdingTree -s " + STREAM + " -k 100 -i 3000 -f 500 -w 5";
+		LearningCurve expected = runTask(new EvaluatePrequentialDelayedCV(), options + " -j 1");
+		LearningCurve actual = runTask(new EvaluatePrequentialDelayedCV(), options + " -j 3");
+		assertSameCurves(expected, actual);
+	}
+}